@@ -25,6 +25,7 @@ import org.apache.roller.planet.pojos.Planet;
 import org.apache.roller.planet.pojos.SubscriptionEntry;
 import org.apache.roller.planet.pojos.PlanetGroup;
 import org.apache.roller.planet.pojos.Subscription;
+import org.apache.roller.weblogger.pojos.PageCursor;
 
 
 /**
@@ -49,7 +50,8 @@ public interface PlanetManager extends Manager {
     
     
     /**
-     * Save new or update existing a group
+     * Save new or update existing a group, adding the entries of new
+     * subscriptions to the group timeline and removing those of removed ones.
      */
     void saveGroup(PlanetGroup sub) throws RollerException;
     
@@ -139,6 +141,17 @@ public interface PlanetManager extends Manager {
     void deleteEntries(Subscription sub) throws RollerException;
     
     
+    /**
+     * Replace the timeline rows of a subscription with rows for its current
+     * entries in each of its groups.  Call after replacing the entries of a
+     * subscription and saving it.
+     *
+     * @param sub The subscription whose entries changed.
+     * @throws RollerException If there is a problem updating the timeline.
+     */
+    void updateTimeline(Subscription sub) throws RollerException;
+    
+    
     /**
      * Lookup an entry by id.
      */
@@ -179,4 +192,17 @@ public interface PlanetManager extends Manager {
                            int offset, 
                            int len) throws RollerException;
     
+    
+    /**
+     * Get Entries for a Group in reverse chronological order, starting after
+     * the given position instead of at an offset.
+     *
+     * @param group Restrict to entries from one group.
+     * @param cursor Publish time and id of the last entry of the previous
+     *               page, or null for the first page.
+     * @param len Maximum number of results to return (for paging)
+     */
+    List<SubscriptionEntry> getEntries(PlanetGroup group, PageCursor cursor, int len)
+        throws RollerException;
+    
 }
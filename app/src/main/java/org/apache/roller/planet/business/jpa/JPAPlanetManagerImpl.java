@@ -20,9 +20,14 @@ package org.apache.roller.planet.business.jpa;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
@@ -35,15 +40,25 @@ import org.apache.roller.planet.business.PlanetManager;
 import org.apache.roller.planet.pojos.Planet;
 import org.apache.roller.planet.pojos.SubscriptionEntry;
 import org.apache.roller.planet.pojos.PlanetGroup;
+import org.apache.roller.planet.pojos.PlanetGroupEntry;
 import org.apache.roller.planet.pojos.Subscription;
 import org.apache.roller.planet.business.AbstractManagerImpl;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.jpa.JPAPersistenceStrategy;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.PageCursor;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 
 /**
  * Manages Planet Roller objects and entry aggregations in a database.
  *
+ * Group entries are read from a per group timeline which is kept up to date
+ * as entries, subscriptions and groups are saved and deleted.  The ids of
+ * the newest planet.timeline.headSize entries of each group are also kept in
+ * memory, for at most planet.timeline.headTimeout seconds.
+ *
  * @author Dave Johnson
  */
 @com.google.inject.Singleton
@@ -53,21 +68,88 @@ public class JPAPlanetManagerImpl extends AbstractManagerImpl implements PlanetM
     
     /** The strategy for this manager. */
     private final JPAPersistenceStrategy strategy;
+    
+    /** Ids of the newest entries of each group, by group id, or null. */
+    private final Cache timelineHeads;
+    
+    private final int headSize;
 
     @com.google.inject.Inject  
     protected JPAPlanetManagerImpl(JPAPersistenceStrategy strategy) {
         log.debug("Instantiating JPA Planet Manager");
         
         this.strategy = strategy;
+        
+        this.headSize = WebloggerConfig.getIntProperty("planet.timeline.headSize", 100);
+        if (headSize > 0) {
+            Map<String, String> cacheProps = new HashMap<String, String>();
+            cacheProps.put("id", "planetTimelineHeads");
+            cacheProps.put("size", "100");
+            cacheProps.put("timeout", ""
+                    + WebloggerConfig.getIntProperty("planet.timeline.headTimeout", 300));
+            
+            // handler is null cuz heads are invalidated by this manager
+            this.timelineHeads = CacheManager.constructCache(null, cacheProps);
+        } else {
+            this.timelineHeads = null;
+        }
     }
     
     
     public void saveGroup(PlanetGroup group) throws RollerException {
         strategy.store(group);
+        
+        // subscriptions in the timeline of the group
+        TypedQuery<String> q = strategy.getNamedQueryCommitFirst(
+                "PlanetGroupEntry.getSubscriptionIdsByGroupId", String.class);
+        q.setParameter(1, group.getId());
+        Set<String> timelineSubs = new HashSet<String>(q.getResultList());
+        
+        boolean changed = false;
+        Set<String> groupSubs = new HashSet<String>();
+        for (Subscription sub : group.getSubscriptions()) {
+            groupSubs.add(sub.getId());
+            if (!timelineSubs.contains(sub.getId())) {
+                for (SubscriptionEntry entry : sub.getEntries()) {
+                    strategy.store(new PlanetGroupEntry(group, entry));
+                    changed = true;
+                }
+            }
+        }
+        for (String subId : timelineSubs) {
+            if (!groupSubs.contains(subId)) {
+                Query remove = strategy.getNamedUpdate(
+                        "PlanetGroupEntry.removeByGroupId&SubscriptionId");
+                remove.setParameter(1, group.getId());
+                remove.setParameter(2, subId);
+                remove.executeUpdate();
+                changed = true;
+            }
+        }
+        
+        if (changed) {
+            invalidateHead(group);
+        }
     }
     
     public void saveEntry(SubscriptionEntry entry) throws RollerException {
         strategy.store(entry);
+        
+        removeTimelineRows("PlanetGroupEntry.removeByEntryId", entry.getId());
+        for (PlanetGroup group : entry.getSubscription().getGroups()) {
+            strategy.store(new PlanetGroupEntry(group, entry));
+            invalidateHead(group);
+        }
+    }
+    
+    public void updateTimeline(Subscription sub) throws RollerException {
+        removeTimelineRows("PlanetGroupEntry.removeBySubscriptionId", sub.getId());
+        for (PlanetGroup group : sub.getGroups()) {
+            for (SubscriptionEntry entry : sub.getEntries()) {
+                strategy.store(new PlanetGroupEntry(group, entry));
+            }
+            invalidateHead(group);
+        }
     }
     
     public void saveSubscription(Subscription sub)
@@ -81,15 +163,25 @@ public class JPAPlanetManagerImpl extends AbstractManagerImpl implements PlanetM
     }
     
     public void deleteEntry(SubscriptionEntry entry) throws RollerException {
+        removeTimelineRows("PlanetGroupEntry.removeByEntryId", entry.getId());
+        for (PlanetGroup group : entry.getSubscription().getGroups()) {
+            invalidateHead(group);
+        }
         strategy.remove(entry);
     }
     
     public void deleteGroup(PlanetGroup group) throws RollerException {
+        removeTimelineRows("PlanetGroupEntry.removeByGroupId", group.getId());
+        invalidateHead(group);
         strategy.remove(group);
     }
     
     public void deleteSubscription(Subscription sub)
     throws RollerException {
+        removeTimelineRows("PlanetGroupEntry.removeBySubscriptionId", sub.getId());
+        for (PlanetGroup group : sub.getGroups()) {
+            invalidateHead(group);
+        }
         strategy.remove(sub);
     }
     
@@ -121,8 +213,8 @@ public class JPAPlanetManagerImpl extends AbstractManagerImpl implements PlanetM
     }
     
     public int getSubscriptionCount() throws RollerException {
-        Query q = strategy.getNamedQuery("Subscription.getAll", Subscription.class);
-        return q.getResultList().size();
+        TypedQuery<Long> q = strategy.getNamedQuery("Subscription.getCount", Long.class);
+        return q.getSingleResult().intValue();
     }
     
     public List<Subscription> getTopSubscriptions(int offset, int length)
@@ -231,6 +323,10 @@ public class JPAPlanetManagerImpl extends AbstractManagerImpl implements PlanetM
     
     public void deleteEntries(Subscription sub) 
         throws RollerException {
+        removeTimelineRows("PlanetGroupEntry.removeBySubscriptionId", sub.getId());
+        for (PlanetGroup group : sub.getGroups()) {
+            invalidateHead(group);
+        }
         for (Object entry : sub.getEntries()) {
             strategy.remove(entry);
         }
@@ -276,52 +372,146 @@ public class JPAPlanetManagerImpl extends AbstractManagerImpl implements PlanetM
         try {
             long startTime = System.currentTimeMillis();
             
-            StringBuilder sb = new StringBuilder();
-            List<Object> params = new ArrayList<Object>();
-            int size = 0;
-            sb.append("SELECT e FROM SubscriptionEntry e ");
-            sb.append("JOIN e.subscription.groups g ");
-                        
-            params.add(size++, group.getHandle());
-            sb.append("WHERE g.handle = ?").append(size);
-            
-            if (startDate != null) {
-                params.add(size++, new Timestamp(startDate.getTime()));
-                sb.append(" AND e.pubTime > ?").append(size);
+            List<String> ids;
+            if (startDate == null && endDate == null && isInHead(offset, len)) {
+                List<String> head = getTimelineHead(group);
+                ids = head.subList(Math.min(offset, head.size()),
+                        Math.min(offset + len, head.size()));
+            } else {
+                ids = getTimelineIds(group, startDate, endDate, null, offset, len);
             }
-            if (endDate != null) {
-                params.add(size++, new Timestamp(endDate.getTime()));
-                sb.append(" AND e.pubTime < :?").append(size);
-            }
-            sb.append(" ORDER BY e.pubTime DESC");
-            
-            TypedQuery<SubscriptionEntry> query = strategy.getDynamicQuery(sb.toString(), SubscriptionEntry.class);
-            for (int i=0; i<params.size(); i++) {
-                query.setParameter(i+1, params.get(i));
-            }
-            if (offset > 0) {
-                query.setFirstResult(offset);
-            }
-            if (len != -1) {
-                query.setMaxResults(len);
-            }
-            
-            ret = query.getResultList();
+            ret = getEntriesByIds(ids);
             
             long endTime = System.currentTimeMillis();
             
             log.debug("Generated aggregation of " + ret.size() + " in " +
                     ((endTime-startTime) / RollerConstants.SEC_IN_MS) + " seconds");
             
+        } catch (WebloggerException e) {
+            throw e;
         } catch (Exception e) {
             throw new WebloggerException(e);
         }
         
         return ret;
     }
-}
-
-
-
 
+    public List<SubscriptionEntry> getEntries(PlanetGroup group, PageCursor cursor, int len) throws RollerException {
 
+        if (cursor == null) {
+            return getEntries(group, null, null, 0, len);
+        }
+        if (group == null) {
+            throw new WebloggerException("group cannot be null or empty");
+        }
+        return getEntriesByIds(getTimelineIds(group, null, null, cursor, 0, len));
+    }
+    
+    
+    private boolean isInHead(int offset, int len) {
+        return timelineHeads != null && len != -1 && offset >= 0 && offset + len <= headSize;
+    }
+    
+    
+    /**
+     * Ids of the newest entries of a group, from memory if possible.
+     */
+    private List<String> getTimelineHead(PlanetGroup group) throws WebloggerException {
+        @SuppressWarnings("unchecked")
+        List<String> head = (List<String>) timelineHeads.get(group.getId());
+        if (head == null) {
+            head = Collections.unmodifiableList(
+                    getTimelineIds(group, null, null, null, 0, headSize));
+            timelineHeads.put(group.getId(), head);
+        }
+        return head;
+    }
+    
+    
+    private void invalidateHead(PlanetGroup group) {
+        if (timelineHeads != null) {
+            timelineHeads.remove(group.getId());
+        }
+    }
+    
+    
+    /**
+     * Ids of the entries of a group, newest first, from the timeline.
+     */
+    private List<String> getTimelineIds(PlanetGroup group, Date startDate, Date endDate,
+            PageCursor cursor, int offset, int len) throws WebloggerException {
+        
+        StringBuilder sb = new StringBuilder();
+        List<Object> params = new ArrayList<Object>();
+        int size = 0;
+        sb.append("SELECT t.entryId FROM PlanetGroupEntry t ");
+        
+        params.add(size++, group.getId());
+        sb.append("WHERE t.groupId = ?").append(size);
+        
+        if (startDate != null) {
+            params.add(size++, new Timestamp(startDate.getTime()));
+            sb.append(" AND t.pubTime > ?").append(size);
+        }
+        if (endDate != null) {
+            params.add(size++, new Timestamp(endDate.getTime()));
+            sb.append(" AND t.pubTime < ?").append(size);
+        }
+        if (cursor != null) {
+            params.add(size++, new Timestamp(cursor.getTime().getTime()));
+            params.add(size++, cursor.getId());
+            sb.append(" AND (t.pubTime < ?").append(size - 1);
+            sb.append(" OR (t.pubTime = ?").append(size - 1);
+            sb.append(" AND t.entryId < ?").append(size).append("))");
+        }
+        sb.append(" ORDER BY t.pubTime DESC, t.entryId DESC");
+        
+        TypedQuery<String> query = strategy.getDynamicQuery(sb.toString(), String.class);
+        for (int i=0; i<params.size(); i++) {
+            query.setParameter(i+1, params.get(i));
+        }
+        if (offset > 0) {
+            query.setFirstResult(offset);
+        }
+        if (len != -1) {
+            query.setMaxResults(len);
+        }
+        return query.getResultList();
+    }
+    
+    
+    /**
+     * Load entries by id, in the order of the ids.  Entries which have been
+     * deleted since the ids were read are left out.
+     */
+    private List<SubscriptionEntry> getEntriesByIds(List<String> ids) throws WebloggerException {
+        
+        if (ids.isEmpty()) {
+            return new ArrayList<SubscriptionEntry>();
+        }
+        
+        TypedQuery<SubscriptionEntry> q = strategy.getDynamicQuery(
+                "SELECT e FROM SubscriptionEntry e WHERE e.id IN ?1", SubscriptionEntry.class);
+        q.setParameter(1, ids);
+        Map<String, SubscriptionEntry> byId = new HashMap<String, SubscriptionEntry>();
+        for (SubscriptionEntry entry : q.getResultList()) {
+            byId.put(entry.getId(), entry);
+        }
+        
+        List<SubscriptionEntry> ret = new ArrayList<SubscriptionEntry>(ids.size());
+        for (String id : ids) {
+            SubscriptionEntry entry = byId.get(id);
+            if (entry != null) {
+                ret.add(entry);
+            }
+        }
+        return ret;
+    }
+    
+    
+    private void removeTimelineRows(String queryName, String id) throws WebloggerException {
+        Query q = strategy.getNamedUpdate(queryName);
+        q.setParameter(1, id);
+        q.executeUpdate();
+    }
+}
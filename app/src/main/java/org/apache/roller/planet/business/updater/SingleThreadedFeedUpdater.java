@@ -108,6 +108,7 @@ public class SingleThreadedFeedUpdater implements FeedUpdater {
 
                 // save and flush
                 pmgr.saveSubscription(sub);
+                pmgr.updateTimeline(sub);
                 WebloggerFactory.getWeblogger().flush();
 
                 log.debug("Added entries");
@@ -174,7 +175,7 @@ public class SingleThreadedFeedUpdater implements FeedUpdater {
     
     
     // convenience method which handles updating any arbitrary collection of subs
-    private void updateSubscriptions(Collection<Subscription> subscriptions) {
+    protected void updateSubscriptions(Collection<Subscription> subscriptions) {
         
         PlanetManager pmgr = WebloggerFactory.getWeblogger().getPlanetManager();
 		for (Subscription sub : subscriptions) {
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.planet.pojos;
+
+import java.io.Serializable;
+import java.util.Date;
+import org.apache.roller.util.UUIDGenerator;
+
+
+/**
+ * One entry in the timeline of a planet group.
+ *
+ * The timeline holds a row for each entry of each subscription in a group,
+ * with the entry publish time copied in, so the newest entries of a group
+ * are read from one narrow index instead of joining entries through the
+ * subscriptions of the group.  Rows are maintained by the PlanetManager.
+ */
+public class PlanetGroupEntry implements Serializable {
+
+    private String id = UUIDGenerator.generateUUID();
+    private String groupId = null;
+    private String subscriptionId = null;
+    private String entryId = null;
+    private Date pubTime = null;
+
+
+    public PlanetGroupEntry() {}
+
+    public PlanetGroupEntry(PlanetGroup group, SubscriptionEntry entry) {
+        this.groupId = group.getId();
+        this.subscriptionId = entry.getSubscription().getId();
+        this.entryId = entry.getId();
+        this.pubTime = entry.getPubTime();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
+
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    public void setSubscriptionId(String subscriptionId) {
+        this.subscriptionId = subscriptionId;
+    }
+
+    public String getEntryId() {
+        return entryId;
+    }
+
+    public void setEntryId(String entryId) {
+        this.entryId = entryId;
+    }
+
+    public Date getPubTime() {
+        return pubTime;
+    }
+
+    public void setPubTime(Date pubTime) {
+        this.pubTime = pubTime;
+    }
+
+}
@@ -16,18 +16,36 @@
  * directory of this distribution.
  */
 
+
 package org.apache.roller.planet.tasks;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.roller.RollerException;
+import org.apache.roller.planet.business.PlanetManager;
+import org.apache.roller.planet.pojos.Planet;
+import org.apache.roller.planet.pojos.PlanetGroup;
+import org.apache.roller.planet.pojos.SubscriptionEntry;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.startup.WebloggerStartup;
 import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.util.Utilities;
 //import org.apache.roller.util.UtilitiesModel;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
-import org.apache.velocity.texen.Generator;
 
 
 /**
@@ -36,23 +54,23 @@ import org.apache.velocity.texen.Generator;
  * - Uses PlanetConfig properties for templateDir, outputDir and template name
  * - Creates outputdir and a subdirectory for each group
  * - Uses Velocity Texen to generate the static files
+ * - Only renders the pages of groups with new entries, see PlanetGenerator
  * </pre>
  */
 public class GeneratePlanetTask extends PlanetTask {
     
     private static Log log = LogFactory.getLog(GeneratePlanetTask.class);
     
+    // records the newest entry of each group as of the last generation
+    static final String STATE_FILE = ".planet-generation.properties";
+    
+    // engines with cached templates, by template directory
+    private static final Map<String, VelocityEngine> engines = new HashMap<String, VelocityEngine>();
+    
     
     public void run() {
         try {            
-//          PlanetManager planetManager = WebloggerFactory.getWeblogger().getPlanetManager();
-                        
-            // Ignore values from database
-            //String mainPage = planetManager.getConfiguration().getMainPage();
-            //String templateDir = planetManager.getConfiguration().getTemplateDir();
-            //String outputDir = planetManager.getConfiguration().getMainPage();
-            
-            // Use values from PlanetConfig instead
+            // Use values from PlanetConfig
             String mainPage =    
                 WebloggerConfig.getProperty("planet.aggregator.mainPage");
             String templateDir = 
@@ -64,14 +82,29 @@ public class GeneratePlanetTask extends PlanetTask {
             log.info("   Control file       ["+mainPage+"]");
             log.info("   Template directory ["+templateDir+"]"); 
             log.info("   Output directory   ["+outputDir+"]");
-
-            // Fire up Velocity engine, point it at templates and init
-            VelocityEngine engine = new VelocityEngine();
-            engine.setProperty("resource.loader","file");
-            engine.setProperty("file.resource.loader.class",
-              "org.apache.velocity.runtime.resource.loader.FileResourceLoader");
-            engine.setProperty("file.resource.loader.path", templateDir);
-            engine.init();
+            
+            long startTime = System.currentTimeMillis();
+            
+            // Ensure that output directories exists, one for each group
+            File outputDirObj = new File(outputDir);
+            if (!outputDirObj.exists()) {
+                outputDirObj.mkdirs();
+            }
+            
+            // find the groups which changed since the last generation
+            Properties lastState = loadState(outputDirObj);
+            Properties state = getState(WebloggerFactory.getWeblogger().getPlanetManager());
+            if (state.equals(lastState)) {
+                log.info("No groups changed, nothing to generate");
+                return;
+            }
+            Set<String> changedGroups = new HashSet<String>();
+            for (String groupId : state.stringPropertyNames()) {
+                if (!state.getProperty(groupId).equals(lastState.getProperty(groupId))) {
+                    changedGroups.add(groupId);
+                }
+            }
+            log.info(changedGroups.size() + " of " + state.size() + " groups changed");
             
             // Build context with current date 
             VelocityContext context = new VelocityContext();
@@ -81,30 +114,109 @@ public class GeneratePlanetTask extends PlanetTask {
             context.put("utilities", new Utilities());
             context.put("planet", new StaticPlanetModel());
             
-            // Ensure that output directories exists, one for each group
-            File outputDirObj = new File(outputDir);
-            if (!outputDirObj.exists()) {
-                outputDirObj.mkdirs();
-            }
-            
             // Generate files: execute control template
-            Generator generator = Generator.getInstance();
-            generator.setVelocityEngine(engine);
+            PlanetGenerator generator = new PlanetGenerator(changedGroups);
+            generator.setVelocityEngine(getEngine(templateDir));
             generator.setOutputEncoding("UTF-8");
             generator.setInputEncoding("UTF-8");
             generator.setOutputPath(outputDir);
             generator.setTemplatePath(templateDir);
-            generator.parse(mainPage, context);
-            generator.shutdown();
+            try {
+                generator.parse(mainPage, context);
+            } finally {
+                generator.shutdown();
+            }
+            
+            // only remember what was generated once it all worked
+            saveState(outputDirObj, state);
+            
+            for (Map.Entry<String, Long> groupTime : generator.getGroupTimes().entrySet()) {
+                log.info("   Generated group [" + groupTime.getKey() + "] in "
+                        + groupTime.getValue() + " ms");
+            }
+            log.info("Generated planet in " + (System.currentTimeMillis() - startTime)
+                    + " ms, " + generator.getSkipped() + " unchanged group files skipped");
             
         } catch (Exception e) {
             log.error("ERROR generating planet", e);
+        } finally {
+            WebloggerFactory.getWeblogger().release();
+        }
+    }
+    
+    
+    /**
+     * Get an engine for the template directory.  Engines are kept for the
+     * life of the JVM, with templates cached and checked for changes every
+     * planet.aggregator.template.checkInterval seconds.
+     */
+    static synchronized VelocityEngine getEngine(String templateDir) throws Exception {
+        VelocityEngine engine = engines.get(templateDir);
+        if (engine == null) {
+            engine = new VelocityEngine();
+            engine.setProperty("resource.loader","file");
+            engine.setProperty("file.resource.loader.class",
+              "org.apache.velocity.runtime.resource.loader.FileResourceLoader");
+            engine.setProperty("file.resource.loader.path", templateDir);
+            engine.setProperty("file.resource.loader.cache", "true");
+            engine.setProperty("file.resource.loader.modificationCheckInterval",
+              WebloggerConfig.getProperty("planet.aggregator.template.checkInterval", "60"));
+            engine.init();
+            engines.put(templateDir, engine);
         }
+        return engine;
     }
     
+    
+    /**
+     * The newest entry of each group, by group id.
+     */
+    static Properties getState(PlanetManager planetManager) throws RollerException {
+        Properties state = new Properties();
+        for (Planet planet : planetManager.getWebloggers()) {
+            for (PlanetGroup group : planet.getGroups()) {
+                List<SubscriptionEntry> newest = planetManager.getEntries(group, 0, 1);
+                state.setProperty(group.getId(), newest.isEmpty() ? ""
+                        : new PageCursor(newest.get(0).getPubTime(), newest.get(0).getId()).toString());
+            }
+        }
+        return state;
+    }
+    
+    
+    private static Properties loadState(File outputDir) throws IOException {
+        Properties state = new Properties();
+        File stateFile = new File(outputDir, STATE_FILE);
+        if (stateFile.exists()) {
+            InputStream in = new FileInputStream(stateFile);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return state;
+    }
+    
+    
+    private static void saveState(File outputDir, Properties state) throws IOException {
+        Writer out = new PlanetGenerator.AtomicFileWriter(new File(outputDir, STATE_FILE), "ISO-8859-1");
+        try {
+            state.store(out, "Newest entry of each group as of the last generation");
+        } finally {
+            out.close();
+        }
+    }
+    
+    
     public static void main(String[] args) throws Exception{
         GeneratePlanetTask task = new GeneratePlanetTask();
         task.initialize();
+        
+        // need to prepare and bootstrap Planet as well
+        WebloggerStartup.prepare();
+        WebloggerFactory.bootstrap();
+        
         task.run();
     }
     
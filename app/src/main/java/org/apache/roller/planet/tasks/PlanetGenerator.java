@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.planet.tasks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.planet.pojos.PlanetGroup;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.texen.Generator;
+
+
+/**
+ * Texen generator which only renders the outputs of groups which changed
+ * and replaces output files atomically.
+ *
+ * Control templates render the pages of a group by passing the group as
+ * the object, e.g. $generator.parse("group.vm", "$group.handle/index.html",
+ * "group", $group).  Such outputs are skipped if the group is not in the
+ * set of changed groups and the file already exists.  All other outputs
+ * are always rendered.
+ *
+ * Files are written next to their final name and renamed over it when the
+ * generator is shut down, so readers never see a partially written page
+ * and a failed render leaves the previous page in place.
+ */
+public class PlanetGenerator extends Generator {
+
+    private static Log log = LogFactory.getLog(PlanetGenerator.class);
+
+    private final Set<String> changedGroups;
+
+    // render time in milliseconds of each generated group, by handle
+    private final Map<String, Long> groupTimes = new LinkedHashMap<String, Long>();
+
+    // writers of the output currently rendering
+    private final Map<String, AtomicFileWriter> writers = new LinkedHashMap<String, AtomicFileWriter>();
+
+    private int skipped = 0;
+
+
+    /**
+     * @param changedGroups Ids of the groups whose outputs are rendered.
+     */
+    public PlanetGenerator(Set<String> changedGroups) {
+        super(new Properties());
+        this.changedGroups = changedGroups;
+    }
+
+
+    @Override
+    public String parse(String inputTemplate, String inputEncoding, String outputFile,
+            String outputEncoding, String objectID, Object object) throws Exception {
+
+        PlanetGroup group = (object instanceof PlanetGroup) ? (PlanetGroup) object : null;
+        if (group != null && outputFile != null && !changedGroups.contains(group.getId())
+                && new File(getOutputPath(), outputFile).exists()) {
+            log.debug("Skipping unchanged [" + outputFile + "]");
+            skipped++;
+            return "";
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            return super.parse(inputTemplate, inputEncoding, outputFile, outputEncoding, objectID, object);
+        } catch (Exception e) {
+            // keep the previous version of the file
+            if (outputFile != null) {
+                AtomicFileWriter writer = writers.get(getOutputPath() + File.separator + outputFile);
+                if (writer != null) {
+                    writer.discard();
+                }
+            }
+            throw e;
+        } finally {
+            if (group != null) {
+                Long time = groupTimes.get(group.getHandle());
+                groupTimes.put(group.getHandle(), (time == null ? 0 : time)
+                        + System.currentTimeMillis() - startTime);
+            }
+        }
+    }
+
+
+    /**
+     * Texen puts its singleton in the context as $generator, put this
+     * generator there instead.
+     */
+    @Override
+    protected void fillContextDefaults(Context context) {
+        super.fillContextDefaults(context);
+        context.put("generator", this);
+    }
+
+
+    @Override
+    public Writer getWriter(String path, String encoding) throws Exception {
+        File file = new File(path);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        AtomicFileWriter writer = new AtomicFileWriter(file, encoding);
+        writers.put(path, writer);
+        return writer;
+    }
+
+
+    /**
+     * Render time in milliseconds of each group rendered, by handle.
+     */
+    public Map<String, Long> getGroupTimes() {
+        return Collections.unmodifiableMap(groupTimes);
+    }
+
+
+    /**
+     * Number of group outputs skipped because the group didn't change.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+
+    /**
+     * Writes to a temporary file which replaces the target file on close,
+     * unless discarded.
+     */
+    static class AtomicFileWriter extends OutputStreamWriter {
+
+        private final File file;
+        private final File tmpFile;
+        private boolean discarded = false;
+
+        AtomicFileWriter(File file, String encoding) throws IOException {
+            this(file, new File(file.getPath() + ".tmp"), encoding);
+        }
+
+        private AtomicFileWriter(File file, File tmpFile, String encoding) throws IOException {
+            super(new FileOutputStream(tmpFile), encoding == null ? "UTF-8" : encoding);
+            this.file = file;
+            this.tmpFile = tmpFile;
+        }
+
+        void discard() {
+            discarded = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (discarded) {
+                Files.deleteIfExists(tmpFile.toPath());
+                return;
+            }
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                // the generator ignores errors closing its writers
+                log.error("Unable to replace " + file, e);
+                throw e;
+            }
+        }
+    }
+
+}
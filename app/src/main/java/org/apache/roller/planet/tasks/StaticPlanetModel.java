@@ -17,10 +17,12 @@
  */
 package org.apache.roller.planet.tasks;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.apache.roller.RollerException;
 import org.apache.roller.planet.business.PlanetManager;
+import org.apache.roller.planet.pojos.Planet;
 import org.apache.roller.planet.pojos.PlanetGroup;
 import org.apache.roller.planet.pojos.Subscription;
 import org.apache.roller.planet.pojos.SubscriptionEntry;
@@ -65,6 +67,15 @@ public class StaticPlanetModel {
         }
     }
        
+    public List<PlanetGroup> getGroups() throws RollerException {
+        Planet planet = planetManager.getWeblogger("default");
+        if (planet == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<PlanetGroup>(planet.getGroups());
+    }
+    
+    
     public List getAggregation(
             PlanetGroup group, int maxEntries) throws RollerException {
         return planetManager.getEntries(group, 0, maxEntries);
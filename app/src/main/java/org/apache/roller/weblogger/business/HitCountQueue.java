@@ -23,11 +23,6 @@ import java.util.Collections;
 import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.roller.util.RollerConstants;
-import org.apache.roller.weblogger.business.runnable.ContinuousWorkerThread;
-import org.apache.roller.weblogger.business.runnable.HitCountProcessingJob;
-import org.apache.roller.weblogger.business.runnable.WorkerThread;
-import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.Weblog;
 
 
@@ -35,8 +30,9 @@ import org.apache.roller.weblogger.pojos.Weblog;
  * Queue's up incoming hit counts so that they can be recorded to the db in
  * an asynchronous manner at give intervals.
  *
- * We also start up a single thread which runs continously to take the queued
- * hit counts, tally them, and record them into the db.
+ * The queued hit counts are tallied and recorded into the db by the
+ * HitCountProcessingJob, which the ThreadManager schedules at intervals set
+ * by the hitcount.queue.sleepTime property.
  *
  * TODO: we may want to make this an interface that is pluggable if there is
  *   some indication that users want to override this implementation.
@@ -47,7 +43,6 @@ public final class HitCountQueue {
     
     private static HitCountQueue instance = null;
     
-    private WorkerThread worker = null;
     private List<String> queue = null;
     
     
@@ -58,23 +53,8 @@ public final class HitCountQueue {
     
     // non-instantiable because we are a singleton
     private HitCountQueue() {
-        int sleepTime = 3 * RollerConstants.MIN_IN_MS;
-        String sleep = WebloggerConfig.getProperty("hitcount.queue.sleepTime", "180");
-        
-        try {
-            // convert input in seconds to ms
-            sleepTime = Integer.parseInt(sleep) * RollerConstants.SEC_IN_MS;
-        } catch(NumberFormatException nfe) {
-            log.warn("Invalid sleep time ["+sleep+"], using default");
-        }
-        
         // create the hits queue
         this.queue = Collections.synchronizedList(new ArrayList<String>());
-        
-        // start up a worker to process the hits at intervals
-        HitCountProcessingJob job = new HitCountProcessingJob();
-        worker = new ContinuousWorkerThread("HitCountQueueProcessor", job, sleepTime);
-        worker.start();
     }
     
     
@@ -110,12 +90,7 @@ public final class HitCountQueue {
      * clean up.
      */
     public void shutdown() {
-        
-        if(this.worker != null) {
-            log.info("stopping worker "+this.worker.getName());
-            worker.interrupt();
-        }
-        
+        // no-op, queued hits are processed by a job of the ThreadManager
     }
     
 }
@@ -25,6 +25,7 @@ import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.pojos.MediaFile;
 import org.apache.roller.weblogger.pojos.MediaFileDirectory;
 import org.apache.roller.weblogger.pojos.MediaFileFilter;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.util.RollerMessages;
 
@@ -154,6 +155,16 @@ public interface MediaFileManager {
     void moveMediaFile(MediaFile mediaFile, MediaFileDirectory directory)
             throws WebloggerException;
 
+    /**
+     * Return the media files of a directory, most recently updated first.
+     *
+     * @param directory The directory.
+     * @param cursor The last file of the previous page, or null for the first page.
+     * @param max Maximum number of files to return.
+     */
+    List<MediaFile> getMediaFiles(MediaFileDirectory directory, PageCursor cursor, int max)
+            throws WebloggerException;
+
     /**
      * Return recently added media files that are public.
      */
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+
+
+/**
+ * Request scoped memoization of read-only manager queries.
+ *
+ * While a scope is open on the current thread the Weblogger hands out
+ * manager proxies which remember the result of every get/is/has call until
+ * the scope ends.  Rendering code which asks for the same categories, counts
+ * or tags several times during one page render then only queries once.
+ * Any other manager call is treated as a write and clears what was
+ * remembered so far.
+ *
+ * Memoized results are shared, callers must not modify returned collections.
+ */
+public final class RequestQueryCache {
+
+    private static Log log = LogFactory.getLog(RequestQueryCache.class);
+
+    private static final ThreadLocal<RequestQueryCache> current =
+            new ThreadLocal<RequestQueryCache>();
+
+    // search criteria are mutable beans, so keys take a copy of their fields
+    private static final Map<Class<?>, Field[]> criteriaFields = new HashMap<Class<?>, Field[]>();
+
+    static {
+        criteriaFields.put(WeblogEntrySearchCriteria.class,
+                fieldsOf(WeblogEntrySearchCriteria.class));
+        criteriaFields.put(CommentSearchCriteria.class,
+                fieldsOf(CommentSearchCriteria.class));
+    }
+
+    private final Map<List<Object>, Object> results = new HashMap<List<Object>, Object>();
+    private final Map<Class<?>, Object> proxies = new HashMap<Class<?>, Object>();
+    private int depth = 0;
+    private int queries = 0;
+    private int memoized = 0;
+
+
+    private RequestQueryCache() {}
+
+
+    /**
+     * Open a scope on the current thread, or join the one already open.
+     * Every call must be paired with a call to {@link #end()}.
+     */
+    public static RequestQueryCache begin() {
+        RequestQueryCache cache = current.get();
+        if (cache == null) {
+            cache = new RequestQueryCache();
+            current.set(cache);
+        }
+        cache.depth++;
+        return cache;
+    }
+
+
+    /**
+     * Leave the current scope, discarding all memoized results once the
+     * outermost scope ends.
+     */
+    public static void end() {
+        RequestQueryCache cache = current.get();
+        if (cache != null && --cache.depth <= 0) {
+            current.remove();
+            if (log.isDebugEnabled()) {
+                log.debug("Request query cache closed: " + cache);
+            }
+        }
+    }
+
+
+    /**
+     * Discard the scope open on the current thread, if any.
+     */
+    public static void clear() {
+        current.remove();
+    }
+
+
+    /**
+     * Get the scope open on the current thread, or null if there is none.
+     */
+    public static RequestQueryCache getCurrent() {
+        return current.get();
+    }
+
+
+    /**
+     * Get a memoizing proxy for the given manager if a scope is open on the
+     * current thread, otherwise the manager itself.
+     */
+    static <T> T memoize(Class<T> type, T manager) {
+        RequestQueryCache cache = current.get();
+        if (cache == null || manager == null) {
+            return manager;
+        }
+        Object proxy = cache.proxies.get(type);
+        if (proxy == null) {
+            proxy = Proxy.newProxyInstance(type.getClassLoader(),
+                    new Class<?>[] {type}, cache.new MemoizingHandler(manager));
+            cache.proxies.put(type, proxy);
+        }
+        return type.cast(proxy);
+    }
+
+
+    /**
+     * Number of queries passed on to the managers in this scope.
+     */
+    public int getQueries() {
+        return queries;
+    }
+
+
+    /**
+     * Number of queries answered from memoized results in this scope.
+     */
+    public int getMemoized() {
+        return memoized;
+    }
+
+
+    @Override
+    public String toString() {
+        return "queries=" + queries + ", memoized=" + memoized;
+    }
+
+
+    private static boolean isQuery(Method method) {
+        String name = method.getName();
+        return method.getReturnType() != Void.TYPE
+                && (name.startsWith("get") || name.startsWith("is") || name.startsWith("has"));
+    }
+
+
+    private static List<Object> keyOf(Method method, Object[] args) {
+        List<Object> key = new ArrayList<Object>();
+        key.add(method);
+        if (args != null) {
+            for (Object arg : args) {
+                key.add(keyOf(arg));
+            }
+        }
+        return key;
+    }
+
+
+    private static Object keyOf(Object arg) {
+        if (arg == null || arg instanceof String || arg instanceof Number
+                || arg instanceof Boolean || arg instanceof Character || arg instanceof Enum) {
+            return arg;
+        } else if (arg instanceof Date) {
+            return Arrays.asList(Date.class, ((Date) arg).getTime());
+        } else if (arg instanceof Weblog) {
+            return entityKey(Weblog.class, ((Weblog) arg).getId(), arg);
+        } else if (arg instanceof WeblogEntry) {
+            return entityKey(WeblogEntry.class, ((WeblogEntry) arg).getId(), arg);
+        } else if (arg instanceof WeblogCategory) {
+            return entityKey(WeblogCategory.class, ((WeblogCategory) arg).getId(), arg);
+        } else if (arg instanceof User) {
+            return entityKey(User.class, ((User) arg).getId(), arg);
+        } else if (arg instanceof Collection) {
+            List<Object> key = new ArrayList<Object>();
+            for (Object element : (Collection<?>) arg) {
+                key.add(keyOf(element));
+            }
+            return key;
+        }
+
+        Field[] fields = criteriaFields.get(arg.getClass());
+        if (fields != null) {
+            List<Object> key = new ArrayList<Object>();
+            key.add(arg.getClass());
+            try {
+                for (Field field : fields) {
+                    key.add(keyOf(field.get(arg)));
+                }
+                return key;
+            } catch (IllegalAccessException ex) {
+                log.warn("Unable to read search criteria " + arg.getClass().getName(), ex);
+            }
+        }
+
+        // anything else only matches the very same instance
+        return new IdentityKey(arg);
+    }
+
+
+    private static Object entityKey(Class<?> type, String id, Object entity) {
+        return (id != null) ? Arrays.asList(type, id) : new IdentityKey(entity);
+    }
+
+
+    private static Field[] fieldsOf(Class<?> type) {
+        List<Field> fields = new ArrayList<Field>();
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+
+    /**
+     * Memoizes query results of a single manager for the owning scope.
+     */
+    private class MemoizingHandler implements InvocationHandler {
+
+        private final Object manager;
+
+        MemoizingHandler(Object manager) {
+            this.manager = manager;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            // proxies which outlive their scope just pass everything through
+            if (method.getDeclaringClass() == Object.class
+                    || current.get() != RequestQueryCache.this) {
+                return invokeManager(method, args);
+            }
+
+            if (!isQuery(method)) {
+                results.clear();
+                return invokeManager(method, args);
+            }
+
+            List<Object> key = keyOf(method, args);
+            if (results.containsKey(key)) {
+                memoized++;
+                return results.get(key);
+            }
+
+            Object result = invokeManager(method, args);
+            queries++;
+            results.put(key, result);
+            return result;
+        }
+
+        private Object invokeManager(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(manager, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+
+    /**
+     * Key which only matches the object it was created for.
+     */
+    private static final class IdentityKey {
+
+        private final Object target;
+
+        IdentityKey(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof IdentityKey && ((IdentityKey) other).target == target;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(target);
+        }
+    }
+
+}
@@ -26,6 +26,7 @@ import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.StatCount;
 import org.apache.roller.weblogger.pojos.TagStat;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogArchiveIndex;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
@@ -90,6 +91,18 @@ public interface WeblogEntryManager {
     Map<Date, String> getWeblogEntryStringMap(WeblogEntrySearchCriteria wesc)
             throws WebloggerException;
     
+    /**
+     * Get the days of a weblog which have published entries, with the number
+     * of entries on each day.  Only publish times are loaded, not entries,
+     * and the index is kept until entries of the weblog change or an entry
+     * published for later goes live.  Entries published for later are not
+     * in the index.
+     * @param weblog Weblog to get the index of
+     * @return The archive index of the weblog
+     * @throws WebloggerException
+     */
+    WeblogArchiveIndex getArchiveIndex(Weblog weblog) throws WebloggerException;
+    
     /**
      * Get weblog entries ordered by descending number of comments.
      * @param website    Weblog or null to get for all weblogs.
@@ -199,7 +212,49 @@ public interface WeblogEntryManager {
     List<WeblogEntryComment> getComments(CommentSearchCriteria csc) throws WebloggerException;
 
     /**
-     * Deletes comments that match paramters.
+     * Count comments matching search criteria, ignoring offset and max results.
+     * @param csc CommentSearchCriteria object with fields indicating search criteria
+     * @return number of comments fitting search criteria
+     */
+    long getCommentCount(CommentSearchCriteria csc) throws WebloggerException;
+
+    /**
+     * Get ids of comments matching search criteria in id order, so that large
+     * result sets can be walked through in chunks. Search text is matched
+     * the same way as by getComments() and getCommentCount(); offset, max
+     * results and ordering of the criteria are ignored.
+     * @param csc     CommentSearchCriteria object with fields indicating search criteria
+     * @param afterId Only return ids after this one, or null to start at the beginning
+     * @param max     Maximum number of ids to return
+     * @return ids of comments fitting search criteria
+     */
+    List<String> getCommentIds(CommentSearchCriteria csc, String afterId, int max)
+            throws WebloggerException;
+
+    /**
+     * Remove comments by id with a single bulk delete. Unlike removeComment()
+     * this does not update weblogs, caches or the entries in the search
+     * index, callers are expected to do that once for each affected weblog.
+     * The comments themselves are removed from the index.
+     * @param ids Ids of the comments to remove
+     * @return ids of the weblogs the removed comments belonged to
+     */
+    List<String> removeComments(List<String> ids) throws WebloggerException;
+
+    /**
+     * Set the status of comments by id with a single bulk update. Like
+     * removeComments() this does not update weblogs, caches or the entries in
+     * the search index, the comments are updated in the index.
+     * @param ids    Ids of the comments to update
+     * @param status New status of the comments
+     * @return ids of the weblogs the updated comments belong to
+     */
+    List<String> updateCommentStatus(List<String> ids, ApprovalStatus status)
+            throws WebloggerException;
+
+    /**
+     * Deletes comments that match paramters. Comments are deleted in chunks
+     * and changes are committed after each chunk.
      * @param website    Website or null for all comments on site
      * @param entry      Entry or null to include all comments
      * @param startDate  Start date or null for no restriction
@@ -195,6 +195,12 @@ public interface WeblogManager {
     long getWeblogCount() throws WebloggerException;
     
     
+    /**
+     * Get the time any weblog was last modified, or null if there are none.
+     */
+    Date getLastModified() throws WebloggerException;
+    
+    
     /**
      * Release any resources held by manager.
      */
@@ -33,6 +33,8 @@ import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.business.runnable.ThreadManager;
 import org.apache.roller.weblogger.business.themes.ThemeManager;
 import org.apache.roller.weblogger.config.PingConfig;
+import org.apache.roller.weblogger.util.cache.CacheInvalidationBus;
+import org.apache.roller.weblogger.util.cache.SurrogateKeyPurgeHandler;
 
 
 /**
@@ -167,7 +169,7 @@ public abstract class WebloggerImpl implements Weblogger {
      * @see org.apache.roller.weblogger.modelWebloggerr#getUserManager()
      */
     public UserManager getUserManager() {
-        return userManager;
+        return RequestQueryCache.memoize(UserManager.class, userManager);
     }
     
     
@@ -206,7 +208,7 @@ public abstract class WebloggerImpl implements Weblogger {
      * @see org.apache.roller.weblogger.modelWebloggerr#getWeblogEntryManager()
      */
     public WeblogEntryManager getWeblogEntryManager() {
-        return weblogEntryManager;
+        return RequestQueryCache.memoize(WeblogEntryManager.class, weblogEntryManager);
     }
     
     
@@ -216,7 +218,7 @@ public abstract class WebloggerImpl implements Weblogger {
      * @see org.apache.roller.weblogger.modelWebloggerr#getWeblogManager()
      */
     public WeblogManager getWeblogManager() {
-        return weblogManager;
+        return RequestQueryCache.memoize(WeblogManager.class, weblogManager);
     }
     
 
@@ -314,6 +316,7 @@ public abstract class WebloggerImpl implements Weblogger {
             threadManager.release();
             userManager.release();
             weblogManager.release();
+            RequestQueryCache.clear();
         } catch(Exception e) {
             log.error("Error calling Roller.release()", e);
         }
@@ -335,6 +338,12 @@ public abstract class WebloggerImpl implements Weblogger {
         getIndexManager().initialize();
         getMediaFileManager().initialize();
         
+        // share cache invalidations with the rest of the cluster, if configured
+        CacheInvalidationBus.initialize(getThreadManager());
+        
+        // purge the http cache in front of us by surrogate key, if enabled
+        SurrogateKeyPurgeHandler.initialize(getThreadManager());
+        
         try {
             // Initialize ping systems
             // TODO: this should probably be moving inside ping manager initialize() methods?
@@ -372,6 +381,8 @@ public abstract class WebloggerImpl implements Weblogger {
     public void shutdown() {
         try {
             HitCountQueue.getInstance().shutdown();
+            CacheInvalidationBus.shutdown();
+            SurrogateKeyPurgeHandler.shutdown();
             if (indexManager != null) {
                 indexManager.shutdown();
             }
@@ -57,6 +57,7 @@ import org.apache.roller.weblogger.pojos.MediaFileDirectory;
 import org.apache.roller.weblogger.pojos.MediaFileFilter;
 import org.apache.roller.weblogger.pojos.MediaFileTag;
 import org.apache.roller.weblogger.pojos.MediaFileType;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.util.RollerMessages;
@@ -474,6 +475,29 @@ public class JPAMediaFileManagerImpl implements MediaFileManager {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public List<MediaFile> getMediaFiles(MediaFileDirectory directory,
+            PageCursor cursor, int max) throws WebloggerException {
+
+        StringBuilder queryString = new StringBuilder();
+        queryString.append("SELECT m FROM MediaFile m WHERE m.directory = ?1");
+        if (cursor != null) {
+            queryString.append(" AND (m.lastUpdated < ?2 OR (m.lastUpdated = ?2 AND m.id < ?3))");
+        }
+        queryString.append(" ORDER BY m.lastUpdated DESC, m.id DESC");
+
+        TypedQuery<MediaFile> query = strategy.getDynamicQuery(queryString.toString(), MediaFile.class);
+        query.setParameter(1, directory);
+        if (cursor != null) {
+            query.setParameter(2, new Timestamp(cursor.getTime().getTime()));
+            query.setParameter(3, cursor.getId());
+        }
+        query.setMaxResults(max);
+        return query.getResultList();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -20,6 +20,7 @@ package org.apache.roller.weblogger.business.jpa;
 
 import java.sql.Timestamp;
 import java.util.Date;
+import java.util.List;
 import javax.persistence.NoResultException;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
@@ -29,6 +30,7 @@ import org.apache.roller.util.DateUtil;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.runnable.ThreadManagerImpl;
 import org.apache.roller.weblogger.business.runnable.RollerTask;
+import org.apache.roller.weblogger.pojos.JobRecord;
 import org.apache.roller.weblogger.pojos.TaskLock;
 
 
@@ -57,12 +59,13 @@ public class JPAThreadManagerImpl extends ThreadManagerImpl {
 
 
     /**
-     * Try to aquire a lock for a given RollerTask.
+     * Try to aquire a lock for a partition of a given RollerTask.
      */
     @Override
-    public boolean registerLease(RollerTask task) {
+    public boolean registerLease(RollerTask task, int partition) {
         
-        LOG.debug("Attempting to register lease for task - " + task.getName());
+        String lockName = task.getLockName(partition);
+        LOG.debug("Attempting to register lease for task - " + lockName);
         
         // keep a copy of the current time
         Date currentTime = new Date();
@@ -70,9 +73,9 @@ public class JPAThreadManagerImpl extends ThreadManagerImpl {
         // query for existing lease record first
         TaskLock taskLock;
         try {
-            taskLock = getTaskLockByName(task.getName());
+            taskLock = getTaskLockByName(lockName);
             if(taskLock == null) {
-                LOG.warn("Cannot acquire lease when no tasklock record exists for task - " + task.getName());
+                LOG.warn("Cannot acquire lease when no tasklock record exists for task - " + lockName);
             }
         } catch (WebloggerException ex) {
             LOG.warn("Error getting TaskLock", ex);
@@ -113,7 +116,7 @@ public class JPAThreadManagerImpl extends ThreadManagerImpl {
                 q.setParameter(1, task.getClientId());
                 q.setParameter(2, task.getLeaseTime());
                 q.setParameter(3, new Timestamp(runTime.getTime()));
-                q.setParameter(4, task.getName());
+                q.setParameter(4, lockName);
                 q.setParameter(5, taskLock.getTimeAcquired());
                 q.setParameter(6, new Timestamp(leaseExpiration.getTime()));
                 int result = q.executeUpdate();
@@ -134,15 +137,17 @@ public class JPAThreadManagerImpl extends ThreadManagerImpl {
 
 
     /**
-     * Try to release the lock for a given RollerTask.
+     * Try to release the lock for a partition of a given RollerTask.
      */
     @Override
-    public boolean unregisterLease(RollerTask task) {
+    public boolean unregisterLease(RollerTask task, int partition) {
 
+        String lockName = task.getLockName(partition);
+        
         // query for existing lease record first
         TaskLock taskLock;
         try {
-            taskLock = this.getTaskLockByName(task.getName());
+            taskLock = this.getTaskLockByName(lockName);
 
             if(taskLock == null) {
                 return false;
@@ -162,7 +167,7 @@ public class JPAThreadManagerImpl extends ThreadManagerImpl {
             Query q = strategy.getNamedUpdate(
                     "TaskLock.updateTimeLeasedByName&Client");
             q.setParameter(1, 0);
-            q.setParameter(2, task.getName());
+            q.setParameter(2, lockName);
             q.setParameter(3, task.getClientId());
             int result = q.executeUpdate();
             
@@ -207,4 +212,80 @@ public class JPAThreadManagerImpl extends ThreadManagerImpl {
         this.strategy.store(data);
     }
 
+    
+    /**
+     * @inheritDoc
+     */
+    public JobRecord getJobRecord(String id) throws WebloggerException {
+        return (JobRecord) this.strategy.load(JobRecord.class, id);
+    }
+    
+    
+    /**
+     * @inheritDoc
+     */
+    public List<JobRecord> getJobRecords(JobRecord.State state) throws WebloggerException {
+        TypedQuery<JobRecord> q = strategy.getNamedQuery("JobRecord.getByState", JobRecord.class);
+        q.setParameter(1, state.name());
+        return q.getResultList();
+    }
+    
+    
+    /**
+     * @inheritDoc
+     */
+    public void saveJobRecord(JobRecord record) throws WebloggerException {
+        this.strategy.store(record);
+    }
+    
+    
+    @Override
+    protected List<JobRecord> getResumableJobRecords(Date heartbeatCutoff, String clientId)
+            throws WebloggerException {
+        TypedQuery<JobRecord> q;
+        if (clientId != null) {
+            q = strategy.getNamedQuery("JobRecord.getUnfinishedByHeartbeat&Client", JobRecord.class);
+            q.setParameter(2, clientId);
+        } else {
+            q = strategy.getNamedQuery("JobRecord.getUnfinishedByHeartbeat", JobRecord.class);
+        }
+        q.setParameter(1, new Timestamp(heartbeatCutoff.getTime()));
+        return q.getResultList();
+    }
+    
+    
+    @Override
+    protected boolean claimJobRecord(String id, int attempts) throws WebloggerException {
+        if (attempts >= getMaxJobAttempts()) {
+            // give up, unless someone else claimed it since it was read
+            Query q = strategy.getNamedUpdate("JobRecord.updateState&Finished&LastErrorById&Attempts");
+            q.setParameter(1, new Timestamp(System.currentTimeMillis()));
+            q.setParameter(2, "Gave up after " + attempts + " attempts");
+            q.setParameter(3, id);
+            q.setParameter(4, attempts);
+            if (q.executeUpdate() == 1) {
+                LOG.warn("Job " + id + " failed " + attempts + " times, giving up");
+            }
+            strategy.flush();
+            return false;
+        }
+        
+        Query q = strategy.getNamedUpdate("JobRecord.updateClient&Heartbeat&StateById&Attempts");
+        q.setParameter(1, getClientId());
+        q.setParameter(2, new Timestamp(System.currentTimeMillis()));
+        q.setParameter(3, id);
+        q.setParameter(4, attempts);
+        int result = q.executeUpdate();
+        strategy.flush();
+        return result == 1;
+    }
+    
+    
+    @Override
+    protected void removeFinishedJobRecords(Date finishedBefore) throws WebloggerException {
+        Query q = strategy.getNamedUpdate("JobRecord.removeFinishedByFinished");
+        q.setParameter(1, new Timestamp(finishedBefore.getTime()));
+        q.executeUpdate();
+    }
+
 }
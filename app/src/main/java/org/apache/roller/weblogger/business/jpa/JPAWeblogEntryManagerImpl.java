@@ -32,7 +32,9 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
@@ -47,10 +49,19 @@ import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.WeblogEntryTagAggregate;
 import org.apache.roller.weblogger.pojos.WeblogEntryTag;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogArchiveIndex;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogEntryAttribute;
 import org.apache.roller.weblogger.pojos.StatCountCountComparator;
 import org.apache.roller.util.DateUtil;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.business.runnable.CommentModerationJob;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 
 
 /**
@@ -70,6 +81,9 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     // cached mapping of entryAnchors -> entryIds
     private Map<String, String> entryAnchorToIdMap = new HashMap<String, String>();
     
+    // archive indexes by weblog id
+    private final Cache archiveIndexes;
+    
     private static final Comparator<TagStat> TAG_STAT_NAME_COMPARATOR = new TagStatComparator();
     
     private static final Comparator<TagStat> TAG_STAT_COUNT_REVERSE_COMPARATOR =
@@ -78,12 +92,29 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     private static final Comparator<StatCount> STAT_COUNT_COUNT_REVERSE_COMPARATOR =
             Collections.reverseOrder(StatCountCountComparator.getInstance());
     
+    // EclipseLink batch fetching hints, ignored by other JPA providers
+    private static final String BATCH_HINT = "eclipselink.batch";
+    private static final String BATCH_TYPE_HINT = "eclipselink.batch.type";
+    private static final String REFRESH_HINT = "eclipselink.refresh";
+    
     
     @com.google.inject.Inject
     protected JPAWeblogEntryManagerImpl(Weblogger roller, JPAPersistenceStrategy strategy) {
         LOG.debug("Instantiating JPA Weblog Manager");
         this.roller = roller;
         this.strategy = strategy;
+        
+        Map<String, String> cacheProps = new HashMap<String, String>();
+        cacheProps.put("id", "cache.archiveindex");
+        cacheProps.put("size", ""
+                + WebloggerConfig.getIntProperty("cache.archiveindex.size", 500));
+        cacheProps.put("timeout", ""
+                + WebloggerConfig.getIntProperty("cache.archiveindex.timeout", 3600));
+        
+        // the handler drops indexes once entry changes are committed, also
+        // those made on other cluster members
+        this.archiveIndexes = CacheManager.constructCache(
+                new ArchiveIndexInvalidator(), cacheProps);
     }
     
     /**
@@ -154,6 +185,8 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     public void saveComment(WeblogEntryComment comment) throws WebloggerException {
         this.strategy.store(comment);
+        comment.getWeblogEntry().setCommentCount(null);
+        roller.getIndexManager().addCommentIndexOperation(comment);
         
         // update weblog last modified date.  date updated by saveWebsite()
         roller.getWeblogManager().saveWeblog(comment.getWeblogEntry().getWebsite());
@@ -164,6 +197,8 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     public void removeComment(WeblogEntryComment comment) throws WebloggerException {
         this.strategy.remove(comment);
+        comment.getWeblogEntry().setCommentCount(null);
+        roller.getIndexManager().removeCommentIndexOperation(comment);
         
         // update weblog last modified date.  date updated by saveWebsite()
         roller.getWeblogManager().saveWeblog(comment.getWeblogEntry().getWebsite());
@@ -239,6 +274,10 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             roller.getWeblogManager().saveWeblog(entry.getWebsite());
         }
         
+        // the entry may have been published, unpublished or moved in time,
+        // the old state is not known here
+        archiveIndexes.remove(entry.getWebsite().getId());
+        
         if(entry.isPublished()) {
             // Queue applicable pings for this update.
             roller.getAutopingManager().queueApplicableAutoPings(entry);
@@ -259,6 +298,9 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         for (WeblogEntryComment comment : comments) {
             this.strategy.remove(comment);
         }
+        if (!comments.isEmpty()) {
+            roller.getIndexManager().removeEntryCommentsIndexOperation(entry);
+        }
         
         // remove tag & tag aggregates
         if (entry.getTags() != null) {
@@ -282,6 +324,7 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         // update weblog last modified date.  date updated by saveWebsite()
         if (entry.isPublished()) {
             roller.getWeblogManager().saveWeblog(weblog);
+            archiveIndexes.remove(weblog.getId());
         }
         
         // remove entry from cache mapping
@@ -444,32 +487,81 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             queryString.append(") ");
         }
 
+        String timeField = "e.pubTime";
         if (wesc.getSortBy() != null && wesc.getSortBy().equals(WeblogEntrySearchCriteria.SortBy.UPDATE_TIME)) {
-            queryString.append(" ORDER BY e.updateTime ");
-        } else {
-            queryString.append(" ORDER BY e.pubTime ");
+            timeField = "e.updateTime";
         }
-        
-        if (wesc.getSortOrder() != null && wesc.getSortOrder().equals(WeblogEntrySearchCriteria.SortOrder.ASCENDING)) {
-            queryString.append("ASC ");
-        } else {
-            queryString.append("DESC ");
+        boolean ascending = wesc.getSortOrder() != null
+                && wesc.getSortOrder().equals(WeblogEntrySearchCriteria.SortOrder.ASCENDING);
+
+        if (wesc.getCursor() != null) {
+            // seek past the last entry of the previous page
+            queryString.append(" AND ");
+            appendCursorClause(wesc.getCursor(), timeField, "e.id", ascending,
+                    queryString, params);
         }
-        
+
+        // entries with the same time are ordered by id, so that pages
+        // neither skip nor repeat entries
+        String direction = ascending ? "ASC" : "DESC";
+        queryString.append(" ORDER BY ").append(timeField).append(' ').append(direction);
+        queryString.append(", e.id ").append(direction);
         
         TypedQuery<WeblogEntry> query = strategy.getDynamicQuery(queryString.toString(), WeblogEntry.class);
         for (int i=0; i<params.size(); i++) {
             query.setParameter(i+1, params.get(i));
         }
         
-        if (wesc.getOffset() != 0) {
+        if (wesc.getOffset() != 0 && wesc.getCursor() == null) {
             query.setFirstResult(wesc.getOffset());
         }
         if (wesc.getMaxResults() != -1) {
             query.setMaxResults(wesc.getMaxResults());
         }
-        
-        return query.getResultList();
+
+        // batch load requested associations with one IN query per
+        // association the first time any entry in the result needs them
+        if (wesc.getFetch().contains(WeblogEntrySearchCriteria.Fetch.TAGS)) {
+            query.setHint(BATCH_HINT, "e.tags");
+        }
+        if (wesc.getFetch().contains(WeblogEntrySearchCriteria.Fetch.CATEGORIES)) {
+            query.setHint(BATCH_HINT, "e.category");
+        }
+        if (!wesc.getFetch().isEmpty()) {
+            query.setHint(BATCH_TYPE_HINT, "IN");
+        }
+
+        List<WeblogEntry> entries = query.getResultList();
+
+        if (wesc.getFetch().contains(WeblogEntrySearchCriteria.Fetch.COMMENT_COUNTS)) {
+            loadCommentCounts(entries);
+        }
+        return entries;
+    }
+
+
+    /**
+     * Count approved comments for all of the given entries in one query and
+     * attach the counts to the entries.
+     */
+    private void loadCommentCounts(List<WeblogEntry> entries) throws WebloggerException {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Map<String, WeblogEntry> entriesById = new HashMap<String, WeblogEntry>();
+        for (WeblogEntry entry : entries) {
+            entriesById.put(entry.getId(), entry);
+            entry.setCommentCount(0);
+        }
+
+        Query query = strategy.getNamedQuery("WeblogEntryComment.getCountByEntryIds&Status");
+        query.setParameter(1, new ArrayList<String>(entriesById.keySet()));
+        query.setParameter(2, ApprovalStatus.APPROVED);
+        for (Object obj : query.getResultList()) {
+            Object[] row = (Object[]) obj;
+            entriesById.get((String) row[0]).setCommentCount(((Long) row[1]).intValue());
+        }
     }
     
     /**
@@ -620,11 +712,228 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     public List<WeblogEntryComment> getComments(CommentSearchCriteria csc) throws WebloggerException {
         
+        // text searches are answered by the search index when possible
+        if (csc.getSearchText() != null) {
+            List<String> ids = roller.getIndexManager().searchComments(csc);
+            if (ids != null) {
+                return getCommentsById(ids);
+            }
+        }
+        
         List<Object> params = new ArrayList<Object>();
-        int size = 0;
         StringBuilder queryString = new StringBuilder();
         queryString.append("SELECT c FROM WeblogEntryComment c ");
+        appendCommentWhereClause(csc, queryString, params);
+        
+        if (csc.getCursor() != null) {
+            queryString.append(params.isEmpty() ? " WHERE " : " AND ");
+            appendCursorClause(csc.getCursor(), "c.postTime", "c.id", !csc.isReverseChrono(),
+                    queryString, params);
+        }
+
+        if (csc.isReverseChrono()) {
+            queryString.append(" ORDER BY c.postTime DESC, c.id DESC");
+        } else {
+            queryString.append(" ORDER BY c.postTime ASC, c.id ASC");
+        }
+        
+        TypedQuery<WeblogEntryComment> query = strategy.getDynamicQuery(queryString.toString(), WeblogEntryComment.class);
+        if (csc.getOffset() != 0 && csc.getCursor() == null) {
+            query.setFirstResult(csc.getOffset());
+        }
+        if (csc.getMaxResults() != -1) {
+            query.setMaxResults(csc.getMaxResults());
+        }
+        for (int i=0; i<params.size(); i++) {
+            query.setParameter(i+1, params.get(i));
+        }
+        return query.getResultList();
+        
+    }
+    
+    
+    /**
+     * Append a condition selecting the rows after the cursor in (time, id)
+     * order, so the database can seek to them using its (time, id) index.
+     */
+    private static void appendCursorClause(PageCursor cursor, String timeField, String idField,
+            boolean ascending, StringBuilder queryString, List<Object> params) {
+
+        String op = ascending ? " > " : " < ";
+        params.add(new Timestamp(cursor.getTime().getTime()));
+        int time = params.size();
+        params.add(cursor.getId());
+        int id = params.size();
+        queryString.append('(').append(timeField).append(op).append('?').append(time);
+        queryString.append(" OR (").append(timeField).append(" = ?").append(time);
+        queryString.append(" AND ").append(idField).append(op).append('?').append(id);
+        queryString.append("))");
+    }
+
+
+    /**
+     * @inheritDoc
+     */
+    public long getCommentCount(CommentSearchCriteria csc) throws WebloggerException {
+        
+        if (csc.getSearchText() != null) {
+            int count = roller.getIndexManager().countComments(csc);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        
+        List<Object> params = new ArrayList<Object>();
+        StringBuilder queryString = new StringBuilder();
+        queryString.append("SELECT COUNT(c) FROM WeblogEntryComment c ");
+        appendCommentWhereClause(csc, queryString, params);
+        
+        TypedQuery<Long> query = strategy.getDynamicQuery(queryString.toString(), Long.class);
+        for (int i=0; i<params.size(); i++) {
+            query.setParameter(i+1, params.get(i));
+        }
+        return query.getSingleResult();
+    }
+    
+    
+    /**
+     * @inheritDoc
+     */
+    public List<String> getCommentIds(CommentSearchCriteria csc, String afterId, int max)
+            throws WebloggerException {
         
+        // same matcher as getComments() and getCommentCount()
+        if (csc.getSearchText() != null) {
+            List<String> ids = roller.getIndexManager().searchCommentIds(csc, afterId, max);
+            while (ids != null) {
+                // the index is updated in the background, keep only the
+                // comments which still exist and match the other criteria
+                List<String> matching = getMatchingCommentIds(csc, ids);
+                if (!matching.isEmpty() || ids.isEmpty()) {
+                    return matching;
+                }
+                ids = roller.getIndexManager().searchCommentIds(csc, ids.get(ids.size() - 1), max);
+            }
+        }
+        
+        List<Object> params = new ArrayList<Object>();
+        StringBuilder queryString = new StringBuilder();
+        queryString.append("SELECT c.id FROM WeblogEntryComment c ");
+        appendCommentWhereClause(csc, queryString, params);
+        
+        if (afterId != null) {
+            queryString.append(params.isEmpty() ? " WHERE " : " AND ");
+            params.add(afterId);
+            queryString.append("c.id > ?").append(params.size());
+        }
+        queryString.append(" ORDER BY c.id");
+        
+        TypedQuery<String> query = strategy.getDynamicQuery(queryString.toString(), String.class);
+        query.setMaxResults(max);
+        for (int i=0; i<params.size(); i++) {
+            query.setParameter(i+1, params.get(i));
+        }
+        return query.getResultList();
+    }
+    
+    
+    /**
+     * Of the given comment ids, get those of comments which match all
+     * criteria but the search text, in id order.
+     */
+    private List<String> getMatchingCommentIds(CommentSearchCriteria csc, List<String> ids)
+            throws WebloggerException {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        CommentSearchCriteria other = new CommentSearchCriteria();
+        other.setWeblog(csc.getWeblog());
+        other.setEntry(csc.getEntry());
+        other.setStartDate(csc.getStartDate());
+        other.setEndDate(csc.getEndDate());
+        other.setStatus(csc.getStatus());
+        
+        List<Object> params = new ArrayList<Object>();
+        StringBuilder queryString = new StringBuilder();
+        queryString.append("SELECT c.id FROM WeblogEntryComment c ");
+        appendCommentWhereClause(other, queryString, params);
+        
+        queryString.append(params.isEmpty() ? " WHERE " : " AND ");
+        params.add(ids);
+        queryString.append("c.id IN ?").append(params.size());
+        queryString.append(" ORDER BY c.id");
+        
+        TypedQuery<String> query = strategy.getDynamicQuery(queryString.toString(), String.class);
+        for (int i=0; i<params.size(); i++) {
+            query.setParameter(i+1, params.get(i));
+        }
+        return query.getResultList();
+    }
+    
+    
+    /**
+     * @inheritDoc
+     */
+    public List<String> removeComments(List<String> ids) throws WebloggerException {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> weblogIds = getCommentWeblogIds(ids);
+        
+        Query q = strategy.getNamedUpdate("WeblogEntryComment.removeByIds");
+        q.setParameter(1, ids);
+        q.executeUpdate();
+        roller.getIndexManager().removeCommentsIndexOperation(ids);
+        
+        return weblogIds;
+    }
+    
+    
+    /**
+     * @inheritDoc
+     */
+    public List<String> updateCommentStatus(List<String> ids, ApprovalStatus status)
+            throws WebloggerException {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> weblogIds = getCommentWeblogIds(ids);
+        
+        Query q = strategy.getNamedUpdate("WeblogEntryComment.updateStatusByIds");
+        q.setParameter(1, status);
+        q.setParameter(2, ids);
+        q.executeUpdate();
+        
+        if (roller.getIndexManager().isCommentIndexEnabled()) {
+            // the bulk update bypassed any comments we already hold
+            TypedQuery<WeblogEntryComment> query = strategy.getDynamicQuery(
+                    "SELECT c FROM WeblogEntryComment c WHERE c.id IN ?1", WeblogEntryComment.class);
+            query.setParameter(1, ids);
+            query.setHint(REFRESH_HINT, "true");
+            roller.getIndexManager().addCommentsIndexOperation(query.getResultList());
+        }
+        
+        return weblogIds;
+    }
+    
+    
+    private List<String> getCommentWeblogIds(List<String> ids) throws WebloggerException {
+        TypedQuery<String> q = strategy.getNamedQuery(
+                "WeblogEntryComment.getWeblogIdsByIds", String.class);
+        q.setParameter(1, ids);
+        return q.getResultList();
+    }
+    
+    
+    /**
+     * Append the where clause for comment search criteria to a query,
+     * adding the parameters to the given list.
+     */
+    private void appendCommentWhereClause(CommentSearchCriteria csc,
+            StringBuilder queryString, List<Object> params) {
+        
+        int size = params.size();
         StringBuilder whereClause = new StringBuilder();
         if (csc.getEntry() != null) {
             params.add(size++, csc.getEntry());
@@ -659,24 +968,36 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         if(whereClause.length() != 0) {
             queryString.append(" WHERE ").append(whereClause);
         }
-        if (csc.isReverseChrono()) {
-            queryString.append(" ORDER BY c.postTime DESC");
-        } else {
-            queryString.append(" ORDER BY c.postTime ASC");
+    }
+    
+    
+    /**
+     * Load comments by id, keeping the order of the ids and skipping
+     * comments which no longer exist.
+     */
+    private List<WeblogEntryComment> getCommentsById(List<String> ids)
+            throws WebloggerException {
+        if (ids.isEmpty()) {
+            return new ArrayList<WeblogEntryComment>();
         }
         
-        TypedQuery<WeblogEntryComment> query = strategy.getDynamicQuery(queryString.toString(), WeblogEntryComment.class);
-        if (csc.getOffset() != 0) {
-            query.setFirstResult(csc.getOffset());
-        }
-        if (csc.getMaxResults() != -1) {
-            query.setMaxResults(csc.getMaxResults());
-        }
-        for (int i=0; i<params.size(); i++) {
-            query.setParameter(i+1, params.get(i));
+        TypedQuery<WeblogEntryComment> query = strategy.getDynamicQuery(
+                "SELECT c FROM WeblogEntryComment c WHERE c.id IN ?1", WeblogEntryComment.class);
+        query.setParameter(1, ids);
+        
+        Map<String, WeblogEntryComment> byId = new HashMap<String, WeblogEntryComment>();
+        for (WeblogEntryComment comment : query.getResultList()) {
+            byId.put(comment.getId(), comment);
         }
-        return query.getResultList();
         
+        List<WeblogEntryComment> comments = new ArrayList<WeblogEntryComment>(ids.size());
+        for (String id : ids) {
+            WeblogEntryComment comment = byId.get(id);
+            if (comment != null) {
+                comments.add(comment);
+            }
+        }
+        return comments;
     }
     
     
@@ -691,10 +1012,6 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             Date    endDate,
             ApprovalStatus status) throws WebloggerException {
         
-        // TODO dynamic bulk delete query: I'd MUCH rather use a bulk delete,
-        // but MySQL says "General error, message from server: "You can't
-        // specify target table 'roller_comment' for update in FROM clause"
-        
         CommentSearchCriteria csc = new CommentSearchCriteria();
         csc.setWeblog(weblog);
         csc.setEntry(entry);
@@ -703,13 +1020,14 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         csc.setEndDate(endDate);
         csc.setStatus(status);
 
-        List<WeblogEntryComment> comments = getComments(csc);
-        int count = 0;
-        for (WeblogEntryComment comment : comments) {
-            removeComment(comment);
-            count++;
-        }
-        return count;
+        // delete in chunks of bulk deletes, committing after each chunk
+        CommentModerationJob job = new CommentModerationJob(roller, csc, null);
+        job.execute();
+        if (job.getState() != CommentModerationJob.State.COMPLETED) {
+            throw new WebloggerException("Error removing matching comments, "
+                    + job.getProcessed() + " comments removed");
+        }
+        return job.getProcessed();
     }
     
     
@@ -804,6 +1122,24 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return map;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public WeblogArchiveIndex getArchiveIndex(Weblog weblog) throws WebloggerException {
+        WeblogArchiveIndex index = (WeblogArchiveIndex) archiveIndexes.get(weblog.getId());
+        Date now = new Date();
+        if (index == null || !index.getTimeZone().equals(weblog.getTimeZoneInstance())
+                || !index.isCurrent(now)) {
+            TypedQuery<Timestamp> q = strategy.getNamedQuery(
+                    "WeblogEntry.getPubTimeByStatus&Website", Timestamp.class);
+            q.setParameter(1, PubStatus.PUBLISHED);
+            q.setParameter(2, weblog);
+            index = new WeblogArchiveIndex(weblog.getTimeZoneInstance(), q.getResultList(), now);
+            archiveIndexes.put(weblog.getId(), index);
+        }
+        return index;
+    }
+
     /**
      * @inheritDoc
      */
@@ -902,6 +1238,46 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     public void release() {}
     
+    
+    /**
+     * Drops the archive index of a weblog when its entries or settings
+     * change.
+     */
+    private class ArchiveIndexInvalidator implements CacheHandler {
+        
+        public void invalidate(WeblogEntry entry) {
+            archiveIndexes.remove(entry.getWebsite().getId());
+        }
+        
+        public void invalidate(Weblog website) {
+            archiveIndexes.remove(website.getId());
+        }
+        
+        public void invalidate(WeblogBookmark bookmark) {
+            // ignored
+        }
+        
+        public void invalidate(WeblogBookmarkFolder folder) {
+            // ignored
+        }
+        
+        public void invalidate(WeblogEntryComment comment) {
+            // ignored
+        }
+        
+        public void invalidate(User user) {
+            // ignored
+        }
+        
+        public void invalidate(WeblogCategory category) {
+            // ignored
+        }
+        
+        public void invalidate(WeblogTemplate template) {
+            // ignored
+        }
+    }
+    
     /**
      * @inheritDoc
      */
@@ -682,4 +682,10 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         return results.get(0);
     }
 
+    public Date getLastModified() throws WebloggerException {
+        List<Date> results = strategy.getNamedQuery(
+                "Weblog.getMaxLastModified", Date.class).getResultList();
+        return results.isEmpty() ? null : results.get(0);
+    }
+
 }
@@ -18,11 +18,23 @@
 
 package org.apache.roller.weblogger.business.pings;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.pings.WeblogUpdatePinger.PingResult;
+import org.apache.roller.weblogger.business.runnable.RollerTask;
+import org.apache.roller.weblogger.business.runnable.ThreadManager;
 import org.apache.roller.weblogger.config.PingConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.pojos.PingQueueEntry;
@@ -77,6 +89,15 @@ public final class PingQueueProcessor {
      * reached.
      */
     public synchronized void processQueue() {
+        processQueue(0, 1);
+    }
+    
+    
+    /**
+     * Process the entries of the ping queue which belong to the given partition, entries are partitioned by weblog.
+     * Passes over different partitions may run concurrently.
+     */
+    public void processQueue(int partition, int partitions) {
         if (PingConfig.getSuspendPingProcessing()) {
             LOGGER.info("Ping processing has been suspended.  Skipping current round of ping queue processing.");
             return;
@@ -98,51 +119,95 @@ public final class PingQueueProcessor {
                 LOGGER.debug("Started processing ping queue.");
             }
             // Get all of the entries
-            List<PingQueueEntry> entries = pingQueueMgr.getAllQueueEntries();
+            List<PingQueueEntry> entries = new ArrayList<PingQueueEntry>();
+            for (PingQueueEntry pingQueueEntry : pingQueueMgr.getAllQueueEntries()) {
+                if (RollerTask.isInPartition(pingQueueEntry.getWebsite().getId(), partition, partitions)) {
+                    entries.add(pingQueueEntry);
+                }
+            }
             
-            // Process each entry
+            // Send all pings concurrently, then process each entry's outcome
+            Map<PingQueueEntry, Future<PingResult>> pings = sendPings(entries);
             for (PingQueueEntry pingQueueEntry : entries) {
-                processQueueEntry(pingQueueEntry);
+                processQueueEntry(pingQueueEntry, pings.get(pingQueueEntry));
             }
 
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Finished processing ping queue.");
             }
+        } catch (InterruptedException ex) {
+            LOGGER.warn("Interrupted while waiting for pings, aborting this pass of ping queue processing.");
+            Thread.currentThread().interrupt();
         } catch (Exception ex) {
             LOGGER.error("Unexpected exception processing ping queue!  Aborting this pass of ping queue processing.", ex);
         }
     }
     
     
+    /**
+     * Hand the pings for the given entries to the ping worker pool.  Entries
+     * which could not be queued are left out and retried on the next pass.
+     */
+    private Map<PingQueueEntry, Future<PingResult>> sendPings(List<PingQueueEntry> entries) {
+        Map<PingQueueEntry, Future<PingResult>> pings = new HashMap<PingQueueEntry, Future<PingResult>>();
+        if (PingConfig.getLogPingsOnly()) {
+            return pings;
+        }
+        
+        ThreadManager threadMgr = WebloggerFactory.getWeblogger().getThreadManager();
+        for (final PingQueueEntry pingQueueEntry : entries) {
+            final PingTarget pingTarget = pingQueueEntry.getPingTarget();
+            final Weblog website = pingQueueEntry.getWebsite();
+            try {
+                pings.put(pingQueueEntry, threadMgr.submit(ThreadManager.PINGS_POOL,
+                        new Callable<PingResult>() {
+                    public PingResult call() throws Exception {
+                        return WeblogUpdatePinger.sendPing(pingTarget, website);
+                    }
+                }));
+            } catch (RejectedExecutionException ex) {
+                LOGGER.warn("Ping pool is full, deferring ping for " + pingQueueEntry);
+            }
+        }
+        return pings;
+    }
+    
+    
     /**
      * Process an individual ping queue entry.
      *
-     * @param pingQueueEntry     the ping queue entry
+     * @param pingQueueEntry the ping queue entry
+     * @param ping the ping sent for the entry, or null if none was sent
      * @throws WebloggerException only if there are problems processing the queue.  Exceptions from sending pings are
      *                         handled, not thrown.
      */
-    private void processQueueEntry(PingQueueEntry pingQueueEntry) throws WebloggerException {
+    private void processQueueEntry(PingQueueEntry pingQueueEntry, Future<PingResult> ping)
+            throws WebloggerException, InterruptedException {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Processing ping queue entry: " + pingQueueEntry);
         }
         
-        PingTarget pingTarget = pingQueueEntry.getPingTarget();
-        Weblog website = pingQueueEntry.getWebsite();
         boolean pingSucceeded = false;
         if (PingConfig.getLogPingsOnly()) {
             // Just log the ping and pretend it succeeded.
             LOGGER.info("Logging simulated ping for ping queue entry " + pingQueueEntry);
             pingSucceeded = true;
+        } else if (ping == null) {
+            // Not sent this time around, leave it queued.
+            return;
         } else {
-            // Actually process the ping
+            // Wait for the ping to complete
             try {
-                // Send the ping
-                WeblogUpdatePinger.sendPing(pingTarget, website);
+                ping.get(PingConfig.getPingTimeoutSecs(), TimeUnit.SECONDS);
                 // Consider successful ping transmission if we didn't get an exception.  We don't care here
                 // about the result of the ping if it was transmitted.
                 pingSucceeded = true;
-            } catch (Exception ex) {
+            } catch (ExecutionException ex) {
                 // Handle the ping error, either removing or requeuing the ping queue entry.
+                Throwable cause = ex.getCause();
+                handlePingError(pingQueueEntry, (cause instanceof Exception) ? (Exception) cause : ex);
+            } catch (TimeoutException ex) {
+                ping.cancel(true);
                 handlePingError(pingQueueEntry, ex);
             }
         }
@@ -121,15 +121,38 @@ public class PingQueueTask extends RollerTaskWithLeasing {
     }
     
 
+    /**
+     * The ping queue is partitioned by weblog.
+     */
+    @Override
+    public boolean isPartitionable() {
+        return true;
+    }
+    
+
     /**
      * Run the task once.
      */
     public void runTask() {
+        processQueue(0, 1);
+    }
+    
+    
+    /**
+     * Run the task once for the weblogs in the given partition.
+     */
+    @Override
+    public void runTask(int partition) {
+        processQueue(partition, getPartitions());
+    }
+    
+    
+    private void processQueue(int partition, int partitions) {
         
         try {
             log.debug("task started");
             
-            PingQueueProcessor.getInstance().processQueue();
+            PingQueueProcessor.getInstance().processQueue(partition, partitions);
             WebloggerFactory.getWeblogger().flush();
             
             log.debug("task completed");
@@ -0,0 +1,432 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business.runnable;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+
+
+/**
+ * A job which deletes or re-statuses all comments matching some search
+ * criteria.
+ *
+ * Matching comments are processed in chunks of ids with a bulk delete or
+ * update and a commit per chunk, so the job never holds more than one chunk
+ * in memory. The comments of each chunk are removed from or updated in the
+ * search index right away, so a text search keeps matching what is left.
+ * Weblog last modified dates, caches and the entries in the search index
+ * are updated once for each affected weblog after all chunks are done.
+ *
+ * Jobs started with {@link #start} are submitted as resumable jobs, which
+ * checkpoint after each chunk and each updated weblog and carry on from
+ * there if they are interrupted. While they run on this server they can be looked up by id to
+ * report progress.
+ */
+public class CommentModerationJob implements ResumableJob, Runnable {
+    
+    private static Log log = LogFactory.getLog(CommentModerationJob.class);
+    
+    /** How long finished jobs are kept around for progress lookups */
+    private static final long FINISHED_JOB_RETENTION = 60 * 60 * 1000L;
+    
+    // running and recently finished background jobs, by id
+    private static final Map<String, CommentModerationJob> jobs =
+            new ConcurrentHashMap<String, CommentModerationJob>();
+    
+    public enum State { PENDING, RUNNING, COMPLETED, FAILED }
+    
+    private String id = null;
+    private final Weblogger roller;
+    private final CommentSearchCriteria criteria;
+    private ApprovalStatus newStatus;
+    private final int chunkSize;
+    
+    // saves our progress, only when running as a resumable job
+    private Checkpointer checkpointer = null;
+    
+    // ids of weblog and entry of the criteria, until they are looked up
+    private String weblogId = null;
+    private String entryId = null;
+    
+    // last comment processed, and weblogs with comments processed so far
+    private String lastId = null;
+    private final Set<String> weblogIds = new LinkedHashSet<String>();
+    
+    private volatile State state = State.PENDING;
+    private volatile String error = null;
+    private volatile long total = -1;
+    private volatile int processed = 0;
+    private volatile int weblogCount = 0;
+    private volatile long finishTime = 0;
+    
+    
+    /**
+     * Create a job to be resumed from its saved state, see {@link #input}.
+     */
+    public CommentModerationJob() {
+        this(WebloggerFactory.getWeblogger(), new CommentSearchCriteria(), null);
+    }
+    
+    
+    /**
+     * Create a job for the comments matching the given criteria.
+     *
+     * @param roller    Weblogger to work with
+     * @param criteria  Comments to process, offset and max results are ignored
+     * @param newStatus Status to set on matching comments, or null to delete them
+     */
+    public CommentModerationJob(Weblogger roller, CommentSearchCriteria criteria,
+            ApprovalStatus newStatus) {
+        this(roller, criteria, newStatus,
+                WebloggerConfig.getIntProperty("comments.bulk.chunkSize", 500));
+    }
+    
+    
+    CommentModerationJob(Weblogger roller, CommentSearchCriteria criteria,
+            ApprovalStatus newStatus, int chunkSize) {
+        this.roller = roller;
+        this.criteria = copy(criteria);
+        this.newStatus = newStatus;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+    
+    
+    /**
+     * Submit a job as a resumable job and keep track of it so that its
+     * progress can be looked up with {@link #getJob}.
+     */
+    public static CommentModerationJob start(Weblogger roller,
+            CommentSearchCriteria criteria, ApprovalStatus newStatus)
+            throws WebloggerException {
+        
+        purgeFinishedJobs();
+        
+        CommentModerationJob job = new CommentModerationJob(roller, criteria, newStatus);
+        synchronized (job) {
+            job.id = roller.getThreadManager().submitJob("CommentModerationJob", job);
+            jobs.put(job.id, job);
+        }
+        return job;
+    }
+    
+    
+    /**
+     * Get a running or recently finished job started by {@link #start}.
+     */
+    public static CommentModerationJob getJob(String id) {
+        return (id != null) ? jobs.get(id) : null;
+    }
+    
+    
+    private static void purgeFinishedJobs() {
+        long cutoff = System.currentTimeMillis() - FINISHED_JOB_RETENTION;
+        for (Iterator<CommentModerationJob> it = jobs.values().iterator(); it.hasNext();) {
+            CommentModerationJob job = it.next();
+            if (job.isFinished() && job.finishTime < cutoff) {
+                it.remove();
+            }
+        }
+    }
+    
+    
+    public void run() {
+        execute();
+    }
+    
+    
+    /**
+     * Execute the job, or carry on from where it stopped.
+     */
+    public void execute() {
+        
+        state = State.RUNNING;
+        long startTime = System.currentTimeMillis();
+        WeblogEntryManager wmgr = roller.getWeblogEntryManager();
+        
+        // release the session after each chunk, only when running in background
+        boolean releaseChunks = (checkpointer != null);
+        
+        try {
+            lookupCriteria();
+            if (total < 0) {
+                total = wmgr.getCommentCount(criteria);
+            }
+            
+            List<String> ids = wmgr.getCommentIds(criteria, lastId, chunkSize);
+            while (!ids.isEmpty()) {
+                if (newStatus == null) {
+                    weblogIds.addAll(wmgr.removeComments(ids));
+                } else {
+                    weblogIds.addAll(wmgr.updateCommentStatus(ids, newStatus));
+                }
+                processed += ids.size();
+                lastId = ids.get(ids.size() - 1);
+                
+                if (checkpointer != null) {
+                    checkpointer.checkpoint();
+                }
+                roller.flush();
+                if (releaseChunks) {
+                    roller.release();
+                }
+                
+                if (Thread.currentThread().isInterrupted()) {
+                    log.info("Comment moderation job " + getId() + " interrupted after "
+                            + processed + " comments");
+                    return;
+                }
+                ids = wmgr.getCommentIds(criteria, lastId, chunkSize);
+            }
+            
+            updateWeblogs();
+            
+            state = State.COMPLETED;
+            log.info("Comment moderation job " + getId() + " processed " + processed
+                    + " comments in " + weblogCount + " weblogs in "
+                    + (System.currentTimeMillis() - startTime) + " ms");
+            
+        } catch (WebloggerException ex) {
+            state = State.FAILED;
+            error = ex.getMessage();
+            log.error("Error in comment moderation job " + getId() + " after "
+                    + processed + " comments", ex);
+        } catch (RuntimeException ex) {
+            state = State.FAILED;
+            error = ex.toString();
+            log.error("Unexpected exception in comment moderation job " + getId()
+                    + " after " + processed + " comments", ex);
+        } finally {
+            finishTime = System.currentTimeMillis();
+            if (releaseChunks) {
+                roller.release();
+            }
+        }
+    }
+    
+    
+    /**
+     * Look up the weblog and entry of a resumed job.
+     */
+    private void lookupCriteria() throws WebloggerException {
+        if (weblogId != null) {
+            Weblog weblog = roller.getWeblogManager().getWeblog(weblogId);
+            if (weblog == null) {
+                throw new WebloggerException("Weblog not found: " + weblogId);
+            }
+            criteria.setWeblog(weblog);
+            weblogId = null;
+        }
+        if (entryId != null) {
+            criteria.setEntry(roller.getWeblogEntryManager().getWeblogEntry(entryId));
+            if (criteria.getEntry() == null) {
+                throw new WebloggerException("Entry not found: " + entryId);
+            }
+            entryId = null;
+        }
+    }
+    
+    
+    /**
+     * Update last modified date, caches and search index once for each
+     * weblog which had comments changed.  Weblogs are taken off the list as
+     * they are done, with a checkpoint after each one.
+     */
+    private void updateWeblogs() throws WebloggerException {
+        for (Iterator<String> it = weblogIds.iterator(); it.hasNext();) {
+            Weblog weblog = roller.getWeblogManager().getWeblog(it.next());
+            if (weblog != null) {
+                roller.getWeblogManager().saveWeblog(weblog);
+                roller.flush();
+                
+                CacheManager.invalidate(weblog);
+                roller.getIndexManager().rebuildWebsiteIndex(weblog);
+                weblogCount++;
+            }
+            it.remove();
+            
+            if (checkpointer != null) {
+                checkpointer.checkpoint();
+                roller.flush();
+            }
+        }
+    }
+    
+    
+    private static CommentSearchCriteria copy(CommentSearchCriteria csc) {
+        CommentSearchCriteria copy = new CommentSearchCriteria();
+        copy.setWeblog(csc.getWeblog());
+        copy.setEntry(csc.getEntry());
+        copy.setSearchText(csc.getSearchText());
+        copy.setStartDate(csc.getStartDate());
+        copy.setEndDate(csc.getEndDate());
+        copy.setStatus(csc.getStatus());
+        return copy;
+    }
+    
+    
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+    
+    
+    /**
+     * Restore the criteria and progress of a job saved by {@link #output}.
+     */
+    public void input(Map<String, Object> input) {
+        weblogId = (String) input.get("weblogId");
+        entryId = (String) input.get("entryId");
+        criteria.setSearchText((String) input.get("searchText"));
+        criteria.setStartDate(toDate(input.get("startDate")));
+        criteria.setEndDate(toDate(input.get("endDate")));
+        if (input.get("status") != null) {
+            criteria.setStatus(ApprovalStatus.valueOf(input.get("status").toString()));
+        }
+        if (input.get("newStatus") != null) {
+            newStatus = ApprovalStatus.valueOf(input.get("newStatus").toString());
+        }
+        lastId = (String) input.get("lastId");
+        if (input.get("processed") != null) {
+            processed = Integer.parseInt(input.get("processed").toString());
+        }
+        if (input.get("total") != null) {
+            total = Long.parseLong(input.get("total").toString());
+        }
+        if (input.get("weblogs") != null) {
+            weblogCount = Integer.parseInt(input.get("weblogs").toString());
+        }
+        String weblogs = (String) input.get("weblogIds");
+        if (weblogs != null) {
+            Collections.addAll(weblogIds, StringUtils.split(weblogs, ","));
+        }
+    }
+    
+    public Map<String, Object> output() {
+        Map<String, Object> output = new HashMap<String, Object>();
+        if (criteria.getWeblog() != null) {
+            output.put("weblogId", criteria.getWeblog().getId());
+        } else {
+            output.put("weblogId", weblogId);
+        }
+        if (criteria.getEntry() != null) {
+            output.put("entryId", criteria.getEntry().getId());
+        } else {
+            output.put("entryId", entryId);
+        }
+        output.put("searchText", criteria.getSearchText());
+        if (criteria.getStartDate() != null) {
+            output.put("startDate", criteria.getStartDate().getTime());
+        }
+        if (criteria.getEndDate() != null) {
+            output.put("endDate", criteria.getEndDate().getTime());
+        }
+        output.put("status", criteria.getStatus());
+        output.put("newStatus", newStatus);
+        output.put("lastId", lastId);
+        output.put("processed", processed);
+        output.put("total", total);
+        output.put("weblogIds", StringUtils.join(weblogIds, ","));
+        output.put("weblogs", weblogCount);
+        return Collections.unmodifiableMap(output);
+    }
+    
+    private static Date toDate(Object millis) {
+        return (millis != null) ? new Date(Long.parseLong(millis.toString())) : null;
+    }
+    
+    
+    /**
+     * Id of the job record of a job started by {@link #start}, or null.
+     */
+    public synchronized String getId() {
+        return id;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    /**
+     * True if the job deletes comments, false if it changes their status.
+     */
+    public boolean isDelete() {
+        return newStatus == null;
+    }
+    
+    /**
+     * Weblog of the comments processed, or null if not limited to a weblog.
+     */
+    public Weblog getWeblog() {
+        return criteria.getWeblog();
+    }
+    
+    /**
+     * Number of matching comments when the job started, or -1 if not known yet.
+     */
+    public long getTotal() {
+        return total;
+    }
+    
+    public int getProcessed() {
+        return processed;
+    }
+    
+    /**
+     * Percentage of matching comments processed so far.
+     */
+    public int getPercentComplete() {
+        if (state == State.COMPLETED) {
+            return 100;
+        }
+        long t = total;
+        return (t > 0) ? (int) Math.min(99, processed * 100 / t) : 0;
+    }
+    
+    public int getWeblogCount() {
+        return weblogCount;
+    }
+    
+}
@@ -24,7 +24,11 @@ import org.apache.commons.logging.LogFactory;
 
 /**
  * A worker that performs a given job continuously.
+ *
+ * @deprecated Use {@link ThreadManager#scheduleJob(String, Job, long, java.util.concurrent.TimeUnit)},
+ *             which runs jobs on the shared scheduler.
  */
+@Deprecated
 public class ContinuousWorkerThread extends WorkerThread {
     private static Log mLogger = LogFactory.getLog(ContinuousWorkerThread.class);
     private static final int DEFAULT_SLEEP_IN_MS = 10000;
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business.runnable;
+
+import java.util.Date;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.JobRecord;
+
+
+/**
+ * Runs a ResumableJob on behalf of its JobRecord.
+ *
+ * The runner first claims the record, so that a job is only run by one
+ * cluster member at a time, then executes the job and saves its outcome.
+ * A job which stops without finishing stays RUNNING and is picked up again
+ * once its heartbeat times out, a job which throws an exception is marked
+ * FAILED.
+ */
+class JobRunner implements Runnable, ResumableJob.Checkpointer {
+    
+    private static Log log = LogFactory.getLog(JobRunner.class);
+    
+    private final ThreadManagerImpl manager;
+    private final String recordId;
+    private final int attempts;
+    private final ResumableJob job;
+    
+    
+    JobRunner(ThreadManagerImpl manager, String recordId, int attempts, ResumableJob job) {
+        this.manager = manager;
+        this.recordId = recordId;
+        this.attempts = attempts;
+        this.job = job;
+    }
+    
+    
+    public void run() {
+        
+        Weblogger roller = WebloggerFactory.getWeblogger();
+        try {
+            if (!manager.claimJobRecord(recordId, attempts)) {
+                log.debug("Job " + recordId + " was claimed by someone else");
+                return;
+            }
+            roller.release();
+            
+            job.setCheckpointer(this);
+            RuntimeException failure = null;
+            try {
+                job.execute();
+            } catch (RuntimeException ex) {
+                failure = ex;
+            } finally {
+                // the job may have left work behind in the session
+                roller.release();
+            }
+            
+            if (failure != null) {
+                log.error("Unexpected exception running job " + recordId, failure);
+                saveFailure(failure);
+            } else {
+                saveOutcome();
+            }
+            
+        } catch (WebloggerException ex) {
+            log.error("Error running job " + recordId, ex);
+        } catch (RuntimeException ex) {
+            log.error("Unexpected exception running job " + recordId, ex);
+        } finally {
+            manager.jobDone(recordId);
+            roller.release();
+        }
+    }
+    
+    
+    public void checkpoint() throws WebloggerException {
+        JobRecord record = manager.getJobRecord(recordId);
+        if (record != null) {
+            record.setDataMap(job.output());
+            record.setHeartbeat(new Date());
+            manager.saveJobRecord(record);
+        }
+    }
+    
+    
+    private void saveOutcome() throws WebloggerException {
+        JobRecord record = manager.getJobRecord(recordId);
+        if (record == null) {
+            return;
+        }
+        
+        Date now = new Date();
+        record.setDataMap(job.output());
+        record.setHeartbeat(now);
+        if (job.isFinished()) {
+            if (job.getError() == null) {
+                record.setState(JobRecord.State.COMPLETED.name());
+            } else {
+                record.setState(JobRecord.State.FAILED.name());
+                record.setLastError(StringUtils.abbreviate(job.getError(), 255));
+            }
+            record.setFinished(now);
+            log.info("Job " + record + " finished");
+        } else {
+            log.info("Job " + record + " stopped, it will be resumed later");
+        }
+        manager.saveJobRecord(record);
+        WebloggerFactory.getWeblogger().flush();
+    }
+    
+    
+    private void saveFailure(Exception ex) throws WebloggerException {
+        JobRecord record = manager.getJobRecord(recordId);
+        if (record == null) {
+            return;
+        }
+        
+        Date now = new Date();
+        record.setHeartbeat(now);
+        record.setState(JobRecord.State.FAILED.name());
+        record.setLastError(StringUtils.abbreviate(ex.toString(), 255));
+        record.setFinished(now);
+        log.info("Job " + record + " failed");
+        manager.saveJobRecord(record);
+        WebloggerFactory.getWeblogger().flush();
+    }
+    
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business.runnable;
+
+import org.apache.roller.weblogger.WebloggerException;
+
+
+/**
+ * A job which keeps a persistent record of its progress, so that it can be
+ * resumed after a restart or crash.
+ *
+ * The job's state is taken from output(), both when the job is submitted and
+ * at each checkpoint. A resumed job is created with its no-arg constructor
+ * and given its last saved state through input() before it is executed.
+ *
+ * @see ThreadManager#submitJob(String, ResumableJob)
+ */
+public interface ResumableJob extends Job {
+    
+    /**
+     * Set the checkpointer the job uses to save its progress while it runs.
+     */
+    void setCheckpointer(Checkpointer checkpointer);
+    
+    
+    /**
+     * True if the job ran to completion, successfully or not. A job which
+     * stopped early, e.g. because it was interrupted, is resumed later.
+     */
+    boolean isFinished();
+    
+    
+    /**
+     * The error which made the job fail, or null if it did not fail.
+     */
+    String getError();
+    
+    
+    /**
+     * Saves the progress of a running job.
+     */
+    interface Checkpointer {
+        
+        /**
+         * Save the job's current output as its checkpoint. The checkpoint is
+         * saved in the calling thread's session, so it is committed together
+         * with the work the job commits next.
+         */
+        void checkpoint() throws WebloggerException;
+    }
+    
+}
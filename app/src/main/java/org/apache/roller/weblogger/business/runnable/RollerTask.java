@@ -29,11 +29,12 @@ import org.apache.roller.util.DateUtil;
 /**
  * An abstract class representing a scheduled task in Roller.
  *
- * This class extends the java.util.TimerTask class and adds in some Roller
- * specifics.
+ * Tasks are run periodically by the TaskScheduler, see
+ * {@link #getInterval()} and {@link #getStartTimeDesc()}.
  */
 public abstract class RollerTask implements Runnable {
     private String taskName = null;
+    private int partitions = 1;
     protected static final int DEFAULT_INTERVAL_MINS = 1440;
 
     
@@ -42,6 +43,17 @@ public abstract class RollerTask implements Runnable {
      */
     public void init(String name) throws WebloggerException {
         this.taskName = name;
+        
+        if (isPartitionable()) {
+            String partitionsStr = WebloggerConfig.getProperty("tasks." + name + ".partitions");
+            if (partitionsStr != null) {
+                try {
+                    this.partitions = Math.max(1, Integer.parseInt(partitionsStr.trim()));
+                } catch (NumberFormatException ex) {
+                    throw new WebloggerException("Invalid partitions: " + partitionsStr, ex);
+                }
+            }
+        }
     }
 
 
@@ -55,6 +67,49 @@ public abstract class RollerTask implements Runnable {
     }
     
     
+    /**
+     * Can the work of this task be split into partitions which are run
+     * independently of each other, possibly by different cluster members?
+     *
+     * Partitionable tasks are run once per partition, each run with its own
+     * lease and TaskLock, and should only do the work which belongs to the
+     * partition they are given.
+     */
+    public boolean isPartitionable() {
+        return false;
+    }
+    
+    
+    /**
+     * Get the number of partitions this task is split into, as set by the
+     * tasks.<taskname>.partitions property.  Always 1 for tasks which are
+     * not partitionable.
+     */
+    public final int getPartitions() {
+        return partitions;
+    }
+    
+    
+    /**
+     * Get the name of the TaskLock for the given partition.  The first
+     * partition uses the name of the task itself.
+     */
+    public final String getLockName(int partition) {
+        return (partition == 0) ? taskName : taskName + "#" + partition;
+    }
+    
+    
+    /**
+     * Does the item with the given key belong to the given partition?
+     */
+    public static boolean isInPartition(String key, int partition, int partitions) {
+        if (partitions <= 1 || key == null) {
+            return partition == 0;
+        }
+        return (key.hashCode() & Integer.MAX_VALUE) % partitions == partition;
+    }
+    
+    
     /**
      * Get the unique id representing a specific instance of a task.  This is
      * important for tasks being run in a clustered environment so that a 
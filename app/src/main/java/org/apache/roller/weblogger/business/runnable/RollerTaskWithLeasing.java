@@ -38,49 +38,75 @@ public abstract class RollerTaskWithLeasing extends RollerTask {
     public abstract void runTask() throws WebloggerException;
     
     
+    /**
+     * Run the given partition of the task.  Partitionable tasks should
+     * override this method to only do the work of the given partition, the
+     * default implementation runs the whole task.
+     */
+    public void runTask(int partition) throws WebloggerException {
+        runTask();
+    }
+    
+    
     /**
      * The run() method as called by our thread manager.
      *
+     * Runs the whole task, or the first partition of partitioned tasks.
+     */
+    public final void run() {
+        try {
+            runPartition(0);
+        } catch (Exception ex) {
+            log.error(getName()+": Unexpected exception", ex);
+        }
+    }
+    
+    
+    /**
+     * Run one partition of the task, as called by our scheduler.
+     *
      * This method is purposely defined as "final" so that any tasks that are
      * defined may not override it and remove any of its functionality.  It is
      * setup to provide some basic functionality to the running of all tasks,
      * such as lease acquisition and releasing.
      *
      * Roller tasks should put their logic in the runTask() method.
+     *
+     * @return True if the lease was acquired and the task was run.
      */
-    public final void run() {
+    public final boolean runPartition(int partition) throws WebloggerException {
         
         ThreadManager mgr = WebloggerFactory.getWeblogger().getThreadManager();
+        String lockName = getLockName(partition);
         
         boolean lockAcquired = false;
         try {
-            log.debug(getName()+": Attempting to acquire lease");
+            log.debug(lockName+": Attempting to acquire lease");
             
-            lockAcquired = mgr.registerLease(this);
+            lockAcquired = mgr.registerLease(this, partition);
             
             // now if we have a lock then run the task
             if(lockAcquired) {
-                log.debug(getName()+": Lease acquired, running task");
-                this.runTask();
+                log.debug(lockName+": Lease acquired, running task");
+                this.runTask(partition);
+                return true;
             } else {
-                log.debug(getName()+": Lease NOT acquired, cannot continue");
-                return;
+                log.debug(lockName+": Lease NOT acquired, cannot continue");
+                return false;
             }
             
-        } catch (Exception ex) {
-            log.error(getName()+": Unexpected exception", ex);
         } finally {
             
             if(lockAcquired) {
                 
-                log.debug(getName()+": Attempting to release lease");
+                log.debug(lockName+": Attempting to release lease");
                 
-                boolean lockReleased = mgr.unregisterLease(this);
+                boolean lockReleased = mgr.unregisterLease(this, partition);
                 
                 if(lockReleased) {
-                    log.debug(getName()+": Lease released, task finished");
+                    log.debug(lockName+": Lease released, task finished");
                 } else {
-                    log.debug(getName()+": Lease NOT released, some kind of problem");
+                    log.debug(lockName+": Lease NOT released, some kind of problem");
                 }
             }
             
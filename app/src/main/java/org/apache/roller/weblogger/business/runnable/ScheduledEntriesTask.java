@@ -18,6 +18,7 @@
 
 package org.apache.roller.weblogger.business.runnable;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
@@ -123,10 +124,33 @@ public class ScheduledEntriesTask extends RollerTaskWithLeasing {
     }
     
     
+    /**
+     * Scheduled entries are partitioned by weblog.
+     */
+    @Override
+    public boolean isPartitionable() {
+        return true;
+    }
+    
+    
     /**
      * Execute the task.
      */
     public void runTask() {
+        promoteEntries(0, 1);
+    }
+    
+    
+    /**
+     * Execute the task for the weblogs in the given partition.
+     */
+    @Override
+    public void runTask(int partition) {
+        promoteEntries(partition, getPartitions());
+    }
+    
+    
+    private void promoteEntries(int partition, int partitions) {
         
         log.debug("task started");
         
@@ -142,7 +166,12 @@ public class ScheduledEntriesTask extends RollerTaskWithLeasing {
             WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
             wesc.setEndDate(now);
             wesc.setStatus(PubStatus.SCHEDULED);
-            List<WeblogEntry> scheduledEntries = wMgr.getWeblogEntries(wesc);
+            List<WeblogEntry> scheduledEntries = new ArrayList<WeblogEntry>();
+            for (WeblogEntry entry : wMgr.getWeblogEntries(wesc)) {
+                if (isInPartition(entry.getWebsite().getId(), partition, partitions)) {
+                    scheduledEntries.add(entry);
+                }
+            }
             log.debug("promoting "+scheduledEntries.size()+" entries to PUBLISHED state");
             
             for (WeblogEntry entry : scheduledEntries) {
@@ -18,42 +18,75 @@
 
 package org.apache.roller.weblogger.business.runnable;
 
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.DateUtil;
 import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.TaskLock;
 
 
 /**
- * Manages scheduling of periodic tasks.
+ * Manages scheduling of periodic tasks and jobs.
  * 
  * This scheduler is meant to be run on a single thread and once started it will
- * run continuously until the thread is interrupted.  The basic logic of the
- * scheduler is to accept some number of tasks to be run and once per minute
- * the scheduler will launch any tasks that need to be executed.  
+ * run continuously until the thread is interrupted.  Scheduled runs wait in a
+ * delay queue ordered by their run time and the scheduler thread launches
+ * each run as soon as it is due, instead of checking all tasks once a minute.
  * 
- * Tasks are executed each on their own thread, so this scheduler does not run
- * serially like a TimerTask.  The threads used for running tasks are managed
- * by an instance of a ThreadPoolExecutor.
+ * Runs are executed each on their own thread, so this scheduler does not run
+ * serially like a TimerTask.  A run is put back on the queue for its next run
+ * time only once it has finished, so a slow task never piles up concurrent
+ * runs of itself; scheduled runs it overran are skipped and counted as missed.
+ * 
+ * Tasks run at a fixed rate starting from their last run as recorded in their
+ * TaskLock, daily and hourly tasks stay aligned to the start of the day or
+ * hour.  Partitioned tasks get a separate run for each of their partitions.
  */
 public class TaskScheduler implements Runnable {
     
     private static Log log = LogFactory.getLog(TaskScheduler.class);
+    
+    // how long after the start of the day or hour an aligned task may still start
+    private static final long ALIGNED_START_WINDOW = 2L * RollerConstants.MIN_IN_MS;
+    
+    private final DelayQueue<ScheduledRun> queue = new DelayQueue<ScheduledRun>();
     private final ExecutorService pool;
     private final List<RollerTask> tasks;
+    private final long startDelay;
+    
+    // run name -> statistics, sorted by name
+    private final ConcurrentMap<String, TaskStats> stats = new ConcurrentSkipListMap<String, TaskStats>();
+    
+    private volatile boolean shutdown = false;
     
     
     public TaskScheduler(List<RollerTask> webloggerTasks) {
+        this(webloggerTasks, WebloggerConfig.getIntProperty("tasks.startDelay", 60)
+                * (long) RollerConstants.SEC_IN_MS);
+    }
+    
+    
+    TaskScheduler(List<RollerTask> webloggerTasks, long startDelay) {
         
         // store list of tasks available to run
-        tasks = webloggerTasks;
+        this.tasks = new ArrayList<RollerTask>(webloggerTasks);
+        this.startDelay = startDelay;
         
         // use an expanding thread executor pool
         pool = Executors.newCachedThreadPool();
@@ -62,130 +95,383 @@ public class TaskScheduler implements Runnable {
     
     public void run() {
         
-        boolean firstRun = true;
+        // add a slight delay to scheduler start
+        long earliest = System.currentTimeMillis() + startDelay;
+        for (RollerTask task : tasks) {
+            for (int partition = 0; partition < task.getPartitions(); partition++) {
+                TaskRun run = new TaskRun(task, partition);
+                run.setRunTime(getFirstRunTime(task, partition, earliest));
+                schedule(run);
+            }
+        }
         
         // run forever, or until we get interrupted
-        while(true) {
-            try {
-                // get current time
-                Date now = new Date();
-                log.debug("Current time = "+now);
-                
-                // run tasks, skip run on first pass
-                if(firstRun) {
-                    // add a slight delay to scheduler start
-                    Calendar cal = Calendar.getInstance();
-                    cal.setTime(now);
-                    cal.add(Calendar.MINUTE, 1);
-                    cal.set(Calendar.SECOND, cal.getMinimum(Calendar.SECOND));
-                    cal.set(Calendar.MILLISECOND, cal.getMinimum(Calendar.MILLISECOND));
-                    now = cal.getTime();
-                    log.debug("Start time = "+now);
-                    
-                    firstRun = false;
-                } else {
-                    try {
-                        runTasks(now);
-                    } finally {
-                        // always release session after each pass
-                        WebloggerFactory.getWeblogger().release();
-                    }
+        try {
+            while (!shutdown) {
+                launch(queue.take());
+            }
+        } catch (InterruptedException ex) {
+            // thread interrupted
+            log.debug("Thread interrupted, scheduler is stopping");
+        } finally {
+            shutdown = true;
+            pool.shutdownNow();
+        }
+    }
+    
+    
+    /**
+     * Run a job repeatedly, with the given delay between the end of one run
+     * and the start of the next.  The first run happens after the delay.
+     */
+    public void scheduleJob(String name, final Job job, long delay, TimeUnit unit) {
+        scheduleRunnable(name, new Runnable() {
+            public void run() {
+                job.execute();
+            }
+        }, delay, unit);
+    }
+    
+    
+    /**
+     * Run a runnable repeatedly, with the given delay between the end of one
+     * run and the start of the next.  The first run happens after the delay.
+     */
+    public void scheduleRunnable(String name, Runnable runnable, long delay, TimeUnit unit) {
+        FixedDelayRun run = new FixedDelayRun(name, runnable, unit.toMillis(delay));
+        run.setRunTime(System.currentTimeMillis() + run.delay);
+        schedule(run);
+    }
+    
+    
+    /**
+     * Get statistics for all scheduled tasks and jobs.
+     */
+    public Collection<TaskStats> getStats() {
+        return Collections.unmodifiableCollection(stats.values());
+    }
+    
+    
+    /**
+     * Number of runs waiting for their run time.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+    
+    
+    public void shutdown() {
+        shutdown = true;
+        pool.shutdownNow();
+    }
+    
+    
+    private void schedule(ScheduledRun run) {
+        TaskStats runStats = getStats(run.getName());
+        runStats.scheduled(run.getRunTime());
+        if (log.isDebugEnabled()) {
+            log.debug(run.getName() + ": next run time = " + new Date(run.getRunTime()));
+        }
+        queue.offer(run);
+    }
+    
+    
+    private TaskStats getStats(String name) {
+        TaskStats runStats = stats.get(name);
+        if (runStats == null) {
+            TaskStats newStats = new TaskStats(name);
+            runStats = stats.putIfAbsent(name, newStats);
+            if (runStats == null) {
+                runStats = newStats;
+            }
+        }
+        return runStats;
+    }
+    
+    
+    private void launch(final ScheduledRun run) {
+        log.debug(run.getName() + ": LAUNCHING");
+        try {
+            pool.submit(new Runnable() {
+                public void run() {
+                    execute(run);
                 }
-                
-                // wait 'til next minute
-                // NOTE: we add 50ms of adjustment time to make sure we awaken
-                //       during the next minute, and not before.  awakening at
-                //       exactly the .000ms is not of any concern to us
-                Date endOfMinute = DateUtil.getEndOfMinute(now);
-                long sleepTime = (endOfMinute.getTime() + 50) - System.currentTimeMillis();
-                if(sleepTime > 0) {
-                    log.debug("sleeping - "+sleepTime);
-                    Thread.sleep(sleepTime);
-                } else {
-                    // it's taken us more than 1 minute for the last loop
-                    // so recalculate to sleep 'til the end of the current minute
-                    endOfMinute = DateUtil.getEndOfMinute(new Date());
-                    sleepTime = (endOfMinute.getTime() + 50) - System.currentTimeMillis();
-                    log.debug("sleeping - "+sleepTime);
-                    Thread.sleep(sleepTime);
+            });
+        } catch (RejectedExecutionException ex) {
+            if (!shutdown) {
+                log.error(run.getName() + ": Could not launch run", ex);
+            }
+        }
+    }
+    
+    
+    /**
+     * Execute a run and queue it again for its next run time.
+     */
+    void execute(ScheduledRun run) {
+        
+        TaskStats runStats = getStats(run.getName());
+        long start = System.currentTimeMillis();
+        runStats.started(run.getRunTime(), start);
+        
+        boolean ran = true;
+        boolean failed = false;
+        try {
+            ran = run.execute();
+        } catch (ThreadDeath t) {
+            throw t;
+        } catch (Throwable t) {
+            failed = true;
+            log.warn(run.getName() + ": Unhandled exception caught", t);
+        } finally {
+            long end = System.currentTimeMillis();
+            runStats.finished(end - start, ran, failed);
+            
+            if (!shutdown) {
+                long nextRunTime = run.getNextRunTime(end);
+                if (run.missed > 0) {
+                    log.debug(run.getName() + ": MISSED " + run.missed + " runs");
+                    runStats.missed(run.missed);
+                    run.missed = 0;
                 }
-                
-            } catch (InterruptedException ex) {
-                // thread interrupted
-                log.debug("Thread interrupted, scheduler is stopping");
-                pool.shutdownNow();
-                break;
+                run.setRunTime(nextRunTime);
+                schedule(run);
+            }
+        }
+    }
+    
+    
+    /**
+     * Calculate the first run time of a task partition from its last run.
+     */
+    private long getFirstRunTime(RollerTask task, int partition, long earliest) {
+        Date lastRun = null;
+        try {
+            ThreadManager tmgr = WebloggerFactory.getWeblogger().getThreadManager();
+            TaskLock tasklock = tmgr.getTaskLockByName(task.getLockName(partition));
+            if (tasklock != null) {
+                lastRun = tasklock.getLastRun();
             }
+        } catch (WebloggerException ex) {
+            log.warn(task.getName() + ": Error getting TaskLock, running as soon as possible", ex);
+        } finally {
+            WebloggerFactory.getWeblogger().release();
         }
+        return getFirstRunTime(task, lastRun, earliest);
+    }
+    
+    
+    /**
+     * Calculate the first run time of a task which last ran at the given
+     * time, not earlier than the given earliest time.
+     * 
+     * If we missed the last scheduled run time then daily and hourly tasks
+     * only run right away within the first couple minutes of the day or hour,
+     * otherwise they wait for the next one.
+     */
+    static long getFirstRunTime(RollerTask task, Date lastRun, long earliest) {
         
+        long due = (lastRun != null) ? align(task, lastRun.getTime() + getInterval(task)) : 0;
+        if (due >= earliest) {
+            return due;
+        }
+        
+        if (isAligned(task)) {
+            long slotStart = getSlotStart(task, earliest);
+            if (earliest - slotStart > ALIGNED_START_WINDOW) {
+                log.debug(task.getName() + ": WAITING for next reasonable run time");
+                return align(task, slotStart + getSlotLength(task));
+            }
+        }
+        return earliest;
+    }
+    
+    
+    /**
+     * Calculate the next run time of a task on its fixed-rate schedule, the
+     * first scheduled time which is later than now.
+     * 
+     * @return The next run time, and the number of scheduled runs skipped
+     *         because they already passed.
+     */
+    static long[] getNextRunTime(RollerTask task, long lastRunTime, long now) {
+        long interval = getInterval(task);
+        long next = align(task, lastRunTime + interval);
+        long missed = 0;
+        if (next <= now) {
+            missed = (now - next) / interval + 1;
+            next = align(task, next + missed * interval);
+            if (next <= now) {
+                // aligning went backwards across a DST change
+                next = align(task, next + interval);
+                missed++;
+            }
+        }
+        return new long[] {next, missed};
+    }
+    
+    
+    private static long getInterval(RollerTask task) {
+        return Math.max(1, task.getInterval()) * (long) RollerConstants.MIN_IN_MS;
+    }
+    
+    private static boolean isAligned(RollerTask task) {
+        return "startOfDay".equals(task.getStartTimeDesc())
+                || "startOfHour".equals(task.getStartTimeDesc());
+    }
+    
+    private static long getSlotLength(RollerTask task) {
+        return "startOfDay".equals(task.getStartTimeDesc())
+                ? 24L * RollerConstants.HOUR_IN_MS : RollerConstants.HOUR_IN_MS;
+    }
+    
+    private static long getSlotStart(RollerTask task, long time) {
+        if ("startOfDay".equals(task.getStartTimeDesc())) {
+            return DateUtil.getStartOfDay(new Date(time)).getTime();
+        }
+        return DateUtil.getStartOfHour(new Date(time)).getTime();
+    }
+    
+    /**
+     * Snap a time to the nearest start of day or hour for aligned tasks, so
+     * that daily tasks stay at midnight when days are 23 or 25 hours long.
+     */
+    private static long align(RollerTask task, long time) {
+        if (!isAligned(task)) {
+            return time;
+        }
+        return getSlotStart(task, time + getSlotLength(task) / 2);
     }
     
     
     /**
-     * Run the necessary tasks given a specific currentTime to work from.
+     * A run waiting in the delay queue.
      */
-    private void runTasks(Date currentTime) {
+    abstract static class ScheduledRun implements Delayed {
         
-        log.debug("Started - "+currentTime);
+        private volatile long runTime;
         
-        ThreadManager tmgr = WebloggerFactory.getWeblogger().getThreadManager();
+        // scheduled runs skipped when calculating the next run time
+        long missed = 0;
         
-        for (RollerTask task : tasks) {
+        abstract String getName();
+        
+        /**
+         * @return False if the run did not do any work, e.g. because another
+         *         cluster member did it already.
+         */
+        abstract boolean execute() throws Exception;
+        
+        abstract long getNextRunTime(long now);
+        
+        long getRunTime() {
+            return runTime;
+        }
+        
+        void setRunTime(long runTime) {
+            this.runTime = runTime;
+        }
+        
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(runTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+        
+        public int compareTo(Delayed other) {
+            if (other instanceof ScheduledRun) {
+                return Long.compare(runTime, ((ScheduledRun) other).runTime);
+            }
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS),
+                    other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+    
+    
+    /**
+     * A run of one partition of a RollerTask.
+     */
+    static class TaskRun extends ScheduledRun {
+        
+        private final RollerTask task;
+        private final int partition;
+        
+        TaskRun(RollerTask task, int partition) {
+            this.task = task;
+            this.partition = partition;
+        }
+        
+        String getName() {
+            return task.getLockName(partition);
+        }
+        
+        boolean execute() throws Exception {
+            if (!(task instanceof RollerTaskWithLeasing)) {
+                task.run();
+                return true;
+            }
+            
+            // make sure another cluster member did not do this run already
+            if (!isDue()) {
+                log.debug(getName() + ": already run, skipping");
+                return false;
+            }
+            return ((RollerTaskWithLeasing) task).runPartition(partition);
+        }
+        
+        private boolean isDue() throws WebloggerException {
             try {
-                // get tasklock for the task
-                TaskLock tasklock = tmgr.getTaskLockByName(task.getName());
-                
-                // TODO: check if task is enabled, otherwise skip
+                ThreadManager tmgr = WebloggerFactory.getWeblogger().getThreadManager();
+                TaskLock tasklock = tmgr.getTaskLockByName(getName());
                 if (tasklock == null) {
-                    continue;
-                }
-                
-                // first, calculate the next allowed run time for the task
-                // based on when the task was last run
-                Date nextRunTime = tasklock.getNextAllowedRun(task.getInterval());
-                log.debug(task.getName()+": next allowed run time = "+nextRunTime);
-                
-                // if we missed the last scheduled run time then see when the
-                // most appropriate next run time should be and wait 'til then
-                boolean needToWait = false;
-                if(currentTime.getTime() > (nextRunTime.getTime() + RollerConstants.MIN_IN_MS)) {
-                    
-                    log.debug("MISSED last run, checking if waiting is necessary");
-                    // add delays if task is non-immediate
-                    if ("startOfDay".equals(task.getStartTimeDesc())) {
-                        // for daily tasks we only run during the first 
-                        // couple minutes of the day
-                        Date startOfDay = DateUtil.getStartOfDay(currentTime);
-                        if(currentTime.getTime() > startOfDay.getTime() + (2 * RollerConstants.MIN_IN_MS)) {
-                            needToWait = true;
-                            log.debug("WAITING for next reasonable run time");
-                        }
-                    } else if("startOfHour".equals(task.getStartTimeDesc())) {
-                        // for hourly tasks we only run during the first
-                        // couple minutes of the hour
-                        Date startOfHour = DateUtil.getStartOfHour(currentTime);
-                        if(currentTime.getTime() > startOfHour.getTime() + (2 * RollerConstants.MIN_IN_MS)) {
-                            needToWait = true;
-                            log.debug("WAITING for next reasonable run time");
-                        }
-                    }
-                }
-                
-                // if we are within 1 minute of run time then execute,
-                // otherwise we do nothing
-                long differential = currentTime.getTime() - nextRunTime.getTime();
-                if (differential >= 0 && !needToWait) {
-                    log.debug(task.getName()+": LAUNCHING task");
-                    pool.submit(task);
+                    return true;
                 }
-            } catch (ThreadDeath t) {
-                throw t;
-            } catch (Throwable t) {
-                log.warn(task.getName() + ": Unhandled exception caught", t);
+                // anything less than half an interval away is this run
+                long nextAllowedRun = tasklock.getNextAllowedRun(task.getInterval()).getTime();
+                return nextAllowedRun - System.currentTimeMillis() < getInterval(task) / 2;
+            } finally {
+                WebloggerFactory.getWeblogger().release();
             }
         }
         
-        log.debug("Finished");
+        long getNextRunTime(long now) {
+            long[] next = TaskScheduler.getNextRunTime(task, getRunTime(), now);
+            missed = next[1];
+            return next[0];
+        }
+    }
+    
+    
+    /**
+     * A run of a job or runnable which repeats after a fixed delay.
+     */
+    static class FixedDelayRun extends ScheduledRun {
+        
+        private final String name;
+        private final Runnable runnable;
+        private final long delay;
+        
+        FixedDelayRun(String name, Runnable runnable, long delay) {
+            this.name = name;
+            this.runnable = runnable;
+            this.delay = delay;
+        }
+        
+        String getName() {
+            return name;
+        }
+        
+        boolean execute() {
+            try {
+                runnable.run();
+            } finally {
+                // always release Roller session
+                WebloggerFactory.getWeblogger().release();
+            }
+            return true;
+        }
+        
+        long getNextRunTime(long now) {
+            return now + delay;
+        }
     }
     
 }
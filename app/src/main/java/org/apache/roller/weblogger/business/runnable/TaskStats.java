@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.runnable;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Run time statistics of a scheduled task or job, for monitoring.
+ *
+ * Besides run times the statistics track how far behind schedule runs
+ * start, and how many scheduled runs were skipped because the previous run
+ * overran, which together show whether a task is keeping up.
+ */
+public class TaskStats {
+    
+    private final String name;
+    
+    private final AtomicLong runs = new AtomicLong(0);
+    private final AtomicLong failures = new AtomicLong(0);
+    private final AtomicLong skipped = new AtomicLong(0);
+    private final AtomicLong missed = new AtomicLong(0);
+    private final AtomicLong totalTime = new AtomicLong(0);
+    
+    private volatile long maxTime = 0;
+    private volatile long lastTime = 0;
+    private volatile long lastDelay = 0;
+    private volatile long maxDelay = 0;
+    private volatile long lastStart = 0;
+    private volatile long nextRun = 0;
+    private volatile boolean running = false;
+    
+    
+    TaskStats(String name) {
+        this.name = name;
+    }
+    
+    
+    void started(long scheduledTime, long startTime) {
+        running = true;
+        lastStart = startTime;
+        lastDelay = Math.max(0, startTime - scheduledTime);
+        if (lastDelay > maxDelay) {
+            maxDelay = lastDelay;
+        }
+    }
+    
+    void finished(long elapsed, boolean ran, boolean failed) {
+        running = false;
+        if (!ran) {
+            skipped.incrementAndGet();
+            return;
+        }
+        runs.incrementAndGet();
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        totalTime.addAndGet(elapsed);
+        lastTime = elapsed;
+        if (elapsed > maxTime) {
+            maxTime = elapsed;
+        }
+    }
+    
+    void missed(long count) {
+        missed.addAndGet(count);
+    }
+    
+    void scheduled(long nextRunTime) {
+        nextRun = nextRunTime;
+    }
+    
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Number of runs, not counting runs skipped because the work was leased
+     * by another cluster member or was already done.
+     */
+    public long getRuns() {
+        return runs.get();
+    }
+    
+    public long getFailures() {
+        return failures.get();
+    }
+    
+    public long getSkipped() {
+        return skipped.get();
+    }
+    
+    /**
+     * Number of scheduled runs which did not happen because a previous run
+     * was still going.
+     */
+    public long getMissed() {
+        return missed.get();
+    }
+    
+    /**
+     * Average run time, in milliseconds.
+     */
+    public long getAverageTime() {
+        long count = runs.get();
+        return (count > 0) ? totalTime.get() / count : 0;
+    }
+    
+    public long getMaxTime() {
+        return maxTime;
+    }
+    
+    public long getLastTime() {
+        return lastTime;
+    }
+    
+    /**
+     * How late the last run started compared to its scheduled time, in
+     * milliseconds.
+     */
+    public long getLastDelay() {
+        return lastDelay;
+    }
+    
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+    
+    public Date getLastStart() {
+        return (lastStart > 0) ? new Date(lastStart) : null;
+    }
+    
+    public Date getNextRun() {
+        return (nextRun > 0) ? new Date(nextRun) : null;
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    @Override
+    public String toString() {
+        return name + " runs=" + getRuns() + " failures=" + getFailures()
+                + " skipped=" + getSkipped() + " missed=" + getMissed()
+                + " avg=" + getAverageTime() + "ms maxDelay=" + getMaxDelay() + "ms";
+    }
+    
+}
@@ -18,8 +18,15 @@
 
 package org.apache.roller.weblogger.business.runnable;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
+import org.apache.roller.weblogger.pojos.JobRecord;
 import org.apache.roller.weblogger.pojos.TaskLock;
 
 
@@ -29,6 +36,24 @@ import org.apache.roller.weblogger.pojos.TaskLock;
 public interface ThreadManager {
     
     long MIN_RATE_INTERVAL_MINS = 1;
+
+    /** Worker pool for general purpose work */
+    String DEFAULT_POOL = "default";
+    
+    /** Worker pool for search index operations */
+    String INDEXING_POOL = "indexing";
+    
+    /** Worker pool for sending weblog update pings */
+    String PINGS_POOL = "pings";
+    
+    /** Worker pool for sending mail */
+    String MAIL_POOL = "mail";
+    
+    /** Worker pool for calling remote comment validators */
+    String VALIDATION_POOL = "validation";
+    
+    /** Worker pool for warming the rendering caches */
+    String WARMUP_POOL = "warmup";
     
     
     /**
@@ -40,7 +65,7 @@ public interface ThreadManager {
     
     
     /**
-     * Execute runnable in background (asynchronously).
+     * Execute runnable in background (asynchronously) using the default pool.
      * @param runnable
      * @throws java.lang.InterruptedException
      */
@@ -49,12 +74,92 @@ public interface ThreadManager {
     
     
     /**
-     * Execute runnable in foreground (synchronously).
+     * Execute runnable in background (asynchronously) using the named pool.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException If the pool's queue is full.
+     */
+    void executeInBackground(String pool, Runnable runnable);
+    
+    
+    /**
+     * Submit a task to the named pool, returning a Future for its result.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException If the pool's queue is full.
+     */
+    <T> Future<T> submit(String pool, Callable<T> task);
+    
+    
+    /**
+     * Execute runnable in foreground (synchronously) using the default pool,
+     * returning as soon as it completes.
      */
     void executeInForeground(Runnable runnable)
         throws InterruptedException;
     
     
+    /**
+     * Execute runnable in foreground (synchronously) using the named pool,
+     * returning as soon as it completes.  The runnable is cancelled if it
+     * does not complete within the given timeout, a timeout of zero waits
+     * for as long as it takes.
+     *
+     * @throws TimeoutException If the runnable did not complete in time.
+     */
+    void executeInForeground(String pool, Runnable runnable, long timeout, TimeUnit unit)
+        throws InterruptedException, TimeoutException;
+    
+    
+    /**
+     * Get the worker pools, for monitoring.
+     */
+    Collection<WorkerPool> getWorkerPools();
+    
+    
+    /**
+     * Run a job repeatedly on this server, with the given delay between the
+     * end of one run and the start of the next.  The first run happens after
+     * the delay.
+     */
+    void scheduleJob(String name, Job job, long delay, TimeUnit unit);
+    
+    
+    /**
+     * Get run statistics of the scheduled tasks and jobs, for monitoring.
+     */
+    Collection<TaskStats> getTaskStats();
+    
+    
+    /**
+     * Submit a job to run in the background, keeping a persistent record of
+     * its progress so that it is resumed if it is interrupted, e.g. by a
+     * restart, possibly on another cluster member.
+     *
+     * @return The id of the job record.
+     * @throws WebloggerException If there is an error saving the job record.
+     */
+    String submitJob(String name, ResumableJob job) throws WebloggerException;
+    
+    
+    /**
+     * Lookup a JobRecord by id.
+     *
+     * @return The JobRecord, or null if not found.
+     */
+    JobRecord getJobRecord(String id) throws WebloggerException;
+    
+    
+    /**
+     * Get all JobRecords in the given state, oldest first.
+     */
+    List<JobRecord> getJobRecords(JobRecord.State state) throws WebloggerException;
+    
+    
+    /**
+     * Save a JobRecord.
+     */
+    void saveJobRecord(JobRecord record) throws WebloggerException;
+    
+    
     /**
      * Lookup a TaskLock by name.
      * 
@@ -83,6 +188,16 @@ public interface ThreadManager {
     boolean registerLease(RollerTask task);
     
     
+    /**
+     * Try to register a lease for a partition of a given RollerTask.
+     *
+     * @param task The RollerTask to register the lease for.
+     * @param partition The partition of the task.
+     * @return boolean True if lease was registered, False otherwise.
+     */
+    boolean registerLease(RollerTask task, int partition);
+    
+    
     /**
      * Try to unregister the lease for a given RollerTask.
      *
@@ -92,6 +207,16 @@ public interface ThreadManager {
     boolean unregisterLease(RollerTask task);
     
     
+    /**
+     * Try to unregister the lease for a partition of a given RollerTask.
+     *
+     * @param task The RollerTask to unregister the lease for.
+     * @param partition The partition of the task.
+     * @return boolean True if lease was unregistered (or was not leased), False otherwise.
+     */
+    boolean unregisterLease(RollerTask task, int partition);
+    
+    
     /**
      * Shutdown.
      */
@@ -19,18 +19,31 @@
 package org.apache.roller.weblogger.business.runnable;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
+import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.JobRecord;
 import org.apache.roller.weblogger.pojos.TaskLock;
 
 
@@ -42,18 +55,57 @@ public abstract class ThreadManagerImpl implements ThreadManager {
     
     private static final Log LOG = LogFactory.getLog(ThreadManagerImpl.class);
     
-    // our own scheduler thread
+    // our own scheduler, and its thread
+    private TaskScheduler scheduler = null;
     private Thread schedulerThread = null;
     
-    // a simple thread executor
-    private final ExecutorService serviceScheduler;
+    // ids of the job records being run on this server
+    private final Set<String> activeJobs =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
+    // identifies this server in job records
+    private final String clientId = WebloggerConfig.getProperty("tasks.clientId", "defaultClientId");
+    
+    // set once the first pass over resumable jobs has been made
+    private volatile boolean jobsRecovered = false;
+    
+    // jobs are given up after being claimed this many times
+    private final int maxJobAttempts = Math.max(1,
+            WebloggerConfig.getIntProperty("jobs.maxAttempts", 3));
+    
+    // bounded worker pools, by name
+    private final Map<String, WorkerPool> pools = new LinkedHashMap<String, WorkerPool>();
     
     
     public ThreadManagerImpl() {
         
         LOG.info("Instantiating Thread Manager");
         
-        serviceScheduler = Executors.newCachedThreadPool();
+        String poolsStr = WebloggerConfig.getProperty("threads.pools", DEFAULT_POOL);
+        for (String name : StringUtils.stripAll(StringUtils.split(poolsStr, ","))) {
+            addPool(name);
+        }
+        if (!pools.containsKey(DEFAULT_POOL)) {
+            addPool(DEFAULT_POOL);
+        }
+    }
+    
+    
+    private void addPool(String name) {
+        int size = WebloggerConfig.getIntProperty("threads." + name + ".size", 2);
+        int queueSize = WebloggerConfig.getIntProperty("threads." + name + ".queueSize", 500);
+        LOG.info("Worker pool " + name + ": " + size + " threads, queue size " + queueSize);
+        pools.put(name, new WorkerPool(name, size, queueSize));
+    }
+    
+    
+    /**
+     * Get the named pool, falling back to the default pool for pools which
+     * are not configured.
+     */
+    private WorkerPool getPool(String name) {
+        WorkerPool pool = pools.get(name);
+        return (pool != null) ? pool : pools.get(DEFAULT_POOL);
     }
     
     
@@ -74,20 +126,22 @@ public abstract class ThreadManagerImpl implements ThreadManager {
                     RollerTask task = (RollerTask) taskClass.newInstance();
                     task.init(taskName);
                     
-                    // make sure there is a tasklock record in the db
-                    TaskLock taskLock = getTaskLockByName(task.getName());
-                    if (taskLock == null) {
-                        LOG.debug("Task record does not exist, inserting empty record to start with");
+                    // make sure there is a tasklock record in the db for each partition
+                    for (int partition = 0; partition < task.getPartitions(); partition++) {
+                        TaskLock taskLock = getTaskLockByName(task.getLockName(partition));
+                        if (taskLock == null) {
+                            LOG.debug("Task record does not exist, inserting empty record to start with");
 
-                        // insert an empty record
-                        taskLock = new TaskLock();
-                        taskLock.setName(task.getName());
-                        taskLock.setLastRun(new Date(0));
-                        taskLock.setTimeAcquired(new Date(0));
-                        taskLock.setTimeLeased(0);
+                            // insert an empty record
+                            taskLock = new TaskLock();
+                            taskLock.setName(task.getLockName(partition));
+                            taskLock.setLastRun(new Date(0));
+                            taskLock.setTimeAcquired(new Date(0));
+                            taskLock.setTimeLeased(0);
 
-                        // save it
-                        this.saveTaskLock(taskLock);
+                            // save it
+                            this.saveTaskLock(taskLock);
+                        }
                     }
                     
                     // add it to the list of configured tasks
@@ -104,7 +158,29 @@ public abstract class ThreadManagerImpl implements ThreadManager {
         }
         
         // create scheduler
-        TaskScheduler scheduler = new TaskScheduler(webloggerTasks);
+        scheduler = new TaskScheduler(webloggerTasks);
+        
+        // store queued hit counts at intervals
+        int hitCountInterval = WebloggerConfig.getIntProperty("hitcount.queue.sleepTime", 180);
+        scheduler.scheduleJob("HitCountProcessingJob", new HitCountProcessingJob(),
+                Math.max(1, hitCountInterval), TimeUnit.SECONDS);
+        
+        // resume interrupted jobs, first right away and then at intervals
+        int recoveryInterval = WebloggerConfig.getIntProperty("jobs.recovery.interval", 5);
+        scheduler.scheduleRunnable("JobRecovery", new Runnable() {
+            public void run() {
+                resumeJobs();
+            }
+        }, Math.max(1, recoveryInterval), TimeUnit.MINUTES);
+        try {
+            executeInBackground(DEFAULT_POOL, new Runnable() {
+                public void run() {
+                    resumeJobs();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            LOG.warn("Could not resume jobs at startup", ex);
+        }
         
         // start scheduler thread, but only if it's not already running
         if (schedulerThread == null) {
@@ -119,19 +195,186 @@ public abstract class ThreadManagerImpl implements ThreadManager {
     
     public void executeInBackground(Runnable runnable)
             throws InterruptedException {
-        serviceScheduler.submit(runnable);
+        executeInBackground(DEFAULT_POOL, runnable);
+    }
+    
+    
+    public void executeInBackground(String pool, Runnable runnable) {
+        getPool(pool).submit(runnable);
+    }
+    
+    
+    public <T> Future<T> submit(String pool, Callable<T> task) {
+        return getPool(pool).submit(task);
     }
     
     
     public void executeInForeground(Runnable runnable)
             throws InterruptedException {
-        Future task = serviceScheduler.submit(runnable);
+        try {
+            runInForeground(getPool(DEFAULT_POOL), runnable, 0, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            // can't happen without a timeout
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    
+    public void executeInForeground(String pool, Runnable runnable, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        runInForeground(getPool(pool), runnable, timeout, unit);
+    }
+    
+    
+    /**
+     * Run in the pool and wait for completion, or time out if a timeout
+     * greater than zero is given.  Failures of the runnable are rethrown in
+     * the calling thread.
+     */
+    private void runInForeground(WorkerPool pool, Runnable runnable, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
         
-        // since this task is really meant to be executed within this calling 
-        // thread, here we can add a little code here to loop until it realizes 
-        // the task is done
-        while(!task.isDone()) {
-            Thread.sleep(RollerConstants.HALF_SEC_IN_MS);
+        // a worker waiting on its own pool could starve it, so just run it here
+        if (pool.isWorkerThread()) {
+            runnable.run();
+            return;
+        }
+        
+        Future<?> task = pool.submit(runnable);
+        try {
+            if (timeout > 0) {
+                task.get(timeout, unit);
+            } else {
+                task.get();
+            }
+        } catch (TimeoutException ex) {
+            task.cancel(true);
+            throw ex;
+        } catch (InterruptedException ex) {
+            task.cancel(true);
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+    
+    
+    public Collection<WorkerPool> getWorkerPools() {
+        return Collections.unmodifiableCollection(pools.values());
+    }
+    
+    
+    public void scheduleJob(String name, Job job, long delay, TimeUnit unit) {
+        if (scheduler == null) {
+            throw new IllegalStateException("Thread manager is not initialized");
+        }
+        scheduler.scheduleJob(name, job, delay, unit);
+    }
+    
+    
+    public Collection<TaskStats> getTaskStats() {
+        if (scheduler == null) {
+            return Collections.emptyList();
+        }
+        return scheduler.getStats();
+    }
+    
+    
+    public String submitJob(String name, ResumableJob job) throws WebloggerException {
+        
+        JobRecord record = new JobRecord(name, job.getClass().getName());
+        record.setClientId(clientId);
+        record.setDataMap(job.output());
+        saveJobRecord(record);
+        WebloggerFactory.getWeblogger().flush();
+        
+        LOG.debug("Submitted job " + record);
+        startJob(record, job);
+        return record.getId();
+    }
+    
+    
+    /**
+     * Run a job for its record in the default pool.  If the pool is full the
+     * record is left for the next pass over resumable jobs.
+     */
+    private void startJob(JobRecord record, ResumableJob job) {
+        if (!activeJobs.add(record.getId())) {
+            return;
+        }
+        try {
+            getPool(DEFAULT_POOL).submit(new JobRunner(this, record.getId(), record.getAttempts(), job));
+        } catch (RejectedExecutionException ex) {
+            activeJobs.remove(record.getId());
+            LOG.warn("Could not start job " + record + " now, it will be resumed later");
+        }
+    }
+    
+    
+    /**
+     * Called by JobRunner when it is done with a job.
+     */
+    void jobDone(String recordId) {
+        activeJobs.remove(recordId);
+    }
+    
+    
+    /**
+     * Resume the jobs which are pending or whose heartbeat timed out, and
+     * purge old finished job records.
+     *
+     * On the first pass after startup the jobs last run by this server are
+     * resumed right away, since they can't be running anymore.
+     */
+    void resumeJobs() {
+        
+        long now = System.currentTimeMillis();
+        long timeout = WebloggerConfig.getIntProperty("jobs.heartbeatTimeout", 10)
+                * (long) RollerConstants.MIN_IN_MS;
+        long retention = WebloggerConfig.getIntProperty("jobs.retentionDays", 7)
+                * 24L * RollerConstants.HOUR_IN_MS;
+        
+        Weblogger roller = WebloggerFactory.getWeblogger();
+        try {
+            List<JobRecord> records = getResumableJobRecords(new Date(now - timeout),
+                    jobsRecovered ? null : clientId);
+            jobsRecovered = true;
+            
+            for (JobRecord record : records) {
+                if (activeJobs.contains(record.getId())) {
+                    continue;
+                }
+                
+                ResumableJob job;
+                try {
+                    job = (ResumableJob) Class.forName(record.getJobClass()).newInstance();
+                } catch (Exception ex) {
+                    LOG.error("Cannot resume job " + record + ", marking it failed", ex);
+                    record.setState(JobRecord.State.FAILED.name());
+                    record.setLastError("Cannot instantiate " + record.getJobClass());
+                    record.setFinished(new Date());
+                    saveJobRecord(record);
+                    continue;
+                }
+                job.input(new HashMap<String, Object>(record.getDataMap()));
+                
+                LOG.info("Resuming job " + record);
+                startJob(record, job);
+            }
+            
+            removeFinishedJobRecords(new Date(now - retention));
+            roller.flush();
+            
+        } catch (WebloggerException ex) {
+            LOG.error("Error resuming jobs", ex);
+        } finally {
+            roller.release();
         }
     }
     
@@ -141,11 +384,15 @@ public abstract class ThreadManagerImpl implements ThreadManager {
         LOG.debug("starting shutdown sequence");
         
         // trigger an immediate shutdown of any backgrounded tasks
-        serviceScheduler.shutdownNow();
+        for (WorkerPool pool : pools.values()) {
+            LOG.info("Stopping worker pool " + pool);
+            pool.shutdownNow();
+        }
         
         // only stop if we are already running
         if(schedulerThread != null) {
             LOG.debug("Stopping scheduler");
+            scheduler.shutdown();
             schedulerThread.interrupt();
         }
     }
@@ -156,13 +403,23 @@ public abstract class ThreadManagerImpl implements ThreadManager {
     }
     
     
+    public boolean registerLease(RollerTask task) {
+        return registerLease(task, 0);
+    }
+    
+    
+    public boolean unregisterLease(RollerTask task) {
+        return unregisterLease(task, 0);
+    }
+    
+    
     /**
      * Default implementation of lease registration, always returns true.
      * 
      * Subclasses should override this method if they plan to run in an
      * environment that supports clustered deployments.
      */
-    public boolean registerLease(RollerTask task) {
+    public boolean registerLease(RollerTask task, int partition) {
         return true;
     }
     
@@ -173,8 +430,53 @@ public abstract class ThreadManagerImpl implements ThreadManager {
      * Subclasses should override this method if they plan to run in an
      * environment that supports clustered deployments.
      */
-    public boolean unregisterLease(RollerTask task) {
+    public boolean unregisterLease(RollerTask task, int partition) {
         return true;
     }
     
+    
+    /**
+     * Get the job records which are pending, or running with a heartbeat
+     * older than the given cutoff or with the given client id.
+     *
+     * @param clientId Client whose running jobs are resumable regardless of
+     *                 their heartbeat, or null for none.
+     */
+    protected abstract List<JobRecord> getResumableJobRecords(Date heartbeatCutoff, String clientId)
+            throws WebloggerException;
+    
+    
+    /**
+     * Claim a job record for this server, by marking it running and counting
+     * an attempt, but only if no one else claimed it since it was read.
+     * Records which had {@link #getMaxJobAttempts()} attempts already are
+     * marked failed instead.
+     *
+     * @param attempts The number of attempts the record had when it was read.
+     * @return True if the record was claimed.
+     */
+    protected abstract boolean claimJobRecord(String id, int attempts) throws WebloggerException;
+    
+    
+    /**
+     * Remove job records which finished before the given time.
+     */
+    protected abstract void removeFinishedJobRecords(Date finishedBefore) throws WebloggerException;
+    
+    
+    /**
+     * Number of times a job is claimed before it is given up.
+     */
+    protected int getMaxJobAttempts() {
+        return maxJobAttempts;
+    }
+    
+    
+    /**
+     * The client id this server uses in job records.
+     */
+    protected String getClientId() {
+        return clientId;
+    }
+    
 }
@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business.runnable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A named, bounded pool of worker threads for one kind of work, e.g. search
+ * indexing or sending pings.
+ *
+ * The pool has a fixed number of threads and a bounded queue, work submitted
+ * while the queue is full is rejected.  Each pool keeps track of how much
+ * work went through it, how long tasks waited in the queue and how long they
+ * took to run.
+ */
+public class WorkerPool {
+
+    // pool owning the current thread, if it is a worker thread
+    private static final ThreadLocal<WorkerPool> currentPool = new ThreadLocal<WorkerPool>();
+
+    private final String name;
+    private final int size;
+    private final int queueSize;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong submitted = new AtomicLong(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong queueTime = new AtomicLong(0);
+    private final AtomicLong runTime = new AtomicLong(0);
+
+
+    public WorkerPool(String name, int size, int queueSize) {
+        this.name = name;
+        this.size = size;
+        this.queueSize = queueSize;
+        this.executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueSize), new WorkerThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+
+    /**
+     * Submit a task to the pool.
+     *
+     * @throws RejectedExecutionException If the queue is full or the pool is shut down.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        try {
+            Future<T> future = executor.submit(new TimedTask<T>(task));
+            submitted.incrementAndGet();
+            return future;
+        } catch (RejectedExecutionException ex) {
+            rejected.incrementAndGet();
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Submit a task to the pool.
+     *
+     * @throws RejectedExecutionException If the queue is full or the pool is shut down.
+     */
+    public Future<?> submit(Runnable task) {
+        return submit(Executors.callable(task));
+    }
+
+
+    /**
+     * True if the calling thread is one of this pool's workers.
+     */
+    public boolean isWorkerThread() {
+        return currentPool.get() == this;
+    }
+
+
+    /**
+     * Stop all workers, discarding queued tasks.
+     */
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Maximum number of worker threads.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Maximum number of tasks waiting in the queue.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Number of tasks currently waiting in the queue.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Number of workers currently running a task.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Average time tasks spent waiting in the queue, in milliseconds.
+     */
+    public long getAverageQueueTime() {
+        long count = completed.get() + failed.get();
+        return (count > 0) ? TimeUnit.NANOSECONDS.toMillis(queueTime.get() / count) : 0;
+    }
+
+    /**
+     * Average time tasks took to run, in milliseconds.
+     */
+    public long getAverageRunTime() {
+        long count = completed.get() + failed.get();
+        return (count > 0) ? TimeUnit.NANOSECONDS.toMillis(runTime.get() / count) : 0;
+    }
+
+
+    @Override
+    public String toString() {
+        return name + ": active=" + getActiveCount() + "/" + size
+                + ", queued=" + getQueueDepth() + "/" + queueSize
+                + ", completed=" + getCompletedCount()
+                + ", failed=" + getFailedCount()
+                + ", rejected=" + getRejectedCount()
+                + ", avgQueueTime=" + getAverageQueueTime() + "ms"
+                + ", avgRunTime=" + getAverageRunTime() + "ms";
+    }
+
+
+    /**
+     * Wraps a task to record its queue and run time.
+     */
+    private class TimedTask<T> implements Callable<T> {
+
+        private final Callable<T> task;
+        private final long queued = System.nanoTime();
+
+        TimedTask(Callable<T> task) {
+            this.task = task;
+        }
+
+        public T call() throws Exception {
+            long start = System.nanoTime();
+            queueTime.addAndGet(start - queued);
+            boolean success = false;
+            try {
+                T result = task.call();
+                success = true;
+                return result;
+            } finally {
+                runTime.addAndGet(System.nanoTime() - start);
+                if (success) {
+                    completed.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Creates named daemon threads which know which pool they belong to.
+     */
+    private class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    currentPool.set(WorkerPool.this);
+                    runnable.run();
+                }
+            }, "Roller " + name + " worker " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
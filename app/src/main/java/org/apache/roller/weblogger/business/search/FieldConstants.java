@@ -47,4 +47,12 @@ public final class FieldConstants {
     public static final String CONSTANT_V = "v";
     public static final String WEBSITE_HANDLE = "handle";
     public static final String LOCALE = "locale";
+
+    // comment documents
+    public static final String DOC_TYPE = "type";
+    // DOC_TYPE_COMMENT must be lowercase or match transform rules of analyzer
+    public static final String DOC_TYPE_COMMENT = "comment";
+    public static final String ENTRY_ID = "entryid";
+    public static final String C_STATUS = "status";
+    public static final String C_POSTTIME = "posttime";
 }
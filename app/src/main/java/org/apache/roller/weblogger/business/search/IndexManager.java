@@ -17,10 +17,13 @@
 */
 package org.apache.roller.weblogger.business.search;
 
+import java.util.List;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.business.search.operations.IndexOperation;
+import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.Weblog;
 
 /**
@@ -44,6 +47,59 @@ public interface IndexManager
     /** R-index entry, returns immediately and operates in background */
     void addEntryReIndexOperation(WeblogEntry entry) throws WebloggerException;
     
+    /** Add or update comment in index, returns immediately and operates in background */
+    void addCommentIndexOperation(WeblogEntryComment comment) throws WebloggerException;
+    
+    /** Remove comment from index, returns immediately and operates in background */
+    void removeCommentIndexOperation(WeblogEntryComment comment) throws WebloggerException;
+    
+    /** Add or update comments in index, returns immediately and operates in background */
+    void addCommentsIndexOperation(List<WeblogEntryComment> comments) throws WebloggerException;
+    
+    /** Remove comments by id from index, returns immediately and operates in background */
+    void removeCommentsIndexOperation(List<String> ids) throws WebloggerException;
+    
+    /** Remove all comments of entry from index, returns immediately and operates in background */
+    void removeEntryCommentsIndexOperation(WeblogEntry entry) throws WebloggerException;
+    
+    /** True if comments are indexed and need to be kept up to date */
+    boolean isCommentIndexEnabled();
+    
+    /**
+     * True if comment searches can currently be answered from the index,
+     * i.e. comments are indexed and no index rebuild is under way.
+     */
+    boolean isCommentIndexAvailable();
+    
+    /**
+     * Search comments in the index.  Honors all criteria, including offset
+     * and max results.
+     *
+     * @return ids of matching comments in post time order, or null if the
+     *         search can't be answered from the index.
+     */
+    List<String> searchComments(CommentSearchCriteria csc);
+    
+    /**
+     * Count comments in the index, ignoring offset and max results.
+     *
+     * @return number of matching comments, or -1 if the search can't be
+     *         answered from the index.
+     */
+    int countComments(CommentSearchCriteria csc);
+    
+    /**
+     * Search comments in the index in id order, so that large results can
+     * be walked through in chunks.  Offset, max results and ordering of the
+     * criteria are ignored.
+     *
+     * @param afterId Only return ids after this one, or null to start at the beginning
+     * @param max     Maximum number of ids to return
+     * @return ids of matching comments in id order, or null if the search
+     *         can't be answered from the index.
+     */
+    List<String> searchCommentIds(CommentSearchCriteria csc, String afterId, int max);
+    
     /** Execute operation immediately */
     void executeIndexOperationNow(final IndexOperation op);
 
@@ -21,6 +21,11 @@ package org.apache.roller.weblogger.business.search;
 import java.io.File;
 import java.io.IOException;
 
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.logging.Log;
@@ -39,14 +44,20 @@ import org.apache.lucene.store.RAMDirectory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.business.runnable.ThreadManager;
+import org.apache.roller.weblogger.business.search.operations.AddCommentOperation;
 import org.apache.roller.weblogger.business.search.operations.AddEntryOperation;
+import org.apache.roller.weblogger.business.search.operations.CommentSearchOperation;
 import org.apache.roller.weblogger.business.search.operations.IndexOperation;
 import org.apache.roller.weblogger.business.search.operations.ReIndexEntryOperation;
 import org.apache.roller.weblogger.business.search.operations.RebuildWebsiteIndexOperation;
+import org.apache.roller.weblogger.business.search.operations.RemoveCommentOperation;
 import org.apache.roller.weblogger.business.search.operations.RemoveEntryOperation;
 import org.apache.roller.weblogger.business.search.operations.RemoveWebsiteIndexOperation;
 import org.apache.roller.weblogger.business.search.operations.WriteToIndexOperation;
+import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 
@@ -85,6 +96,18 @@ public class IndexManagerImpl implements IndexManager {
 
     private ReadWriteLock rwl = new ReentrantReadWriteLock();
 
+    // are comments indexed as documents of their own?
+    private boolean commentIndexEnabled = true;
+
+    // marks an index which has been rebuilt with comment documents
+    File commentIndexMarker;
+
+    // false until comment documents have been added for all comments
+    private volatile boolean commentIndexComplete = true;
+
+    // number of index rebuilds under way
+    private final AtomicInteger rebuilds = new AtomicInteger(0);
+
     // ~ Constructors
     // ===========================================================
 
@@ -117,6 +140,11 @@ public class IndexManagerImpl implements IndexManager {
 
         String test = indexDir + File.separator + ".index-inconsistent";
         indexConsistencyMarker = new File(test);
+
+        this.commentIndexEnabled = WebloggerConfig.getBooleanProperty(
+                "search.comments.enabled", true);
+        commentIndexMarker = new File(indexDir + File.separator + ".comments-indexed");
+        mLogger.info("comment index enabled: " + this.commentIndexEnabled);
     }
 
     /**
@@ -170,6 +198,15 @@ public class IndexManagerImpl implements IndexManager {
                 }
             }
 
+            if (!commentIndexEnabled) {
+                // comment documents won't be kept up to date anymore
+                commentIndexMarker.delete();
+            } else if (!commentIndexMarker.exists()) {
+                mLogger.debug("Index inconsistent: comments not indexed");
+                inconsistentAtStartup = true;
+            }
+            commentIndexComplete = !inconsistentAtStartup;
+
             if (isInconsistentAtStartup()) {
                 mLogger.info("Index was inconsistent. Rebuilding index in the background...");
                 try {
@@ -222,6 +259,113 @@ public class IndexManagerImpl implements IndexManager {
         executeIndexOperationNow(removeOp);
     }
 
+    public void addCommentIndexOperation(WeblogEntryComment comment)
+            throws WebloggerException {
+        if (commentIndexEnabled) {
+            scheduleIndexOperation(new AddCommentOperation(this, comment));
+        }
+    }
+
+    public void removeCommentIndexOperation(WeblogEntryComment comment)
+            throws WebloggerException {
+        if (commentIndexEnabled) {
+            scheduleIndexOperation(new RemoveCommentOperation(this, comment));
+        }
+    }
+
+    public void addCommentsIndexOperation(List<WeblogEntryComment> comments)
+            throws WebloggerException {
+        if (commentIndexEnabled && !comments.isEmpty()) {
+            scheduleIndexOperation(new AddCommentOperation(this, comments));
+        }
+    }
+
+    public void removeCommentsIndexOperation(List<String> ids)
+            throws WebloggerException {
+        if (commentIndexEnabled && !ids.isEmpty()) {
+            scheduleIndexOperation(new RemoveCommentOperation(this, ids));
+        }
+    }
+
+    public void removeEntryCommentsIndexOperation(WeblogEntry entry)
+            throws WebloggerException {
+        if (commentIndexEnabled) {
+            scheduleIndexOperation(new RemoveCommentOperation(this, entry));
+        }
+    }
+
+    public boolean isCommentIndexEnabled() {
+        return commentIndexEnabled;
+    }
+
+    public boolean isCommentIndexAvailable() {
+        return searchEnabled && commentIndexEnabled && commentIndexComplete
+                && rebuilds.get() == 0;
+    }
+
+    public List<String> searchComments(CommentSearchCriteria csc) {
+        if (!isCommentIndexAvailable()) {
+            return null;
+        }
+        CommentSearchOperation search = new CommentSearchOperation(this, csc, false);
+        executeIndexOperationNow(search);
+        if (search.getResultsCount() < 0) {
+            mLogger.debug("Comment search not answered from index: " + search.getParseError());
+            return null;
+        }
+        return search.getResults();
+    }
+
+    public List<String> searchCommentIds(CommentSearchCriteria csc, String afterId, int max) {
+        if (!isCommentIndexAvailable()) {
+            return null;
+        }
+        CommentSearchOperation search = new CommentSearchOperation(this, csc, afterId, max);
+        executeIndexOperationNow(search);
+        if (search.getResultsCount() < 0) {
+            mLogger.debug("Comment search not answered from index: " + search.getParseError());
+            return null;
+        }
+        return search.getResults();
+    }
+
+    public int countComments(CommentSearchCriteria csc) {
+        if (!isCommentIndexAvailable()) {
+            return -1;
+        }
+        CommentSearchOperation search = new CommentSearchOperation(this, csc, true);
+        executeIndexOperationNow(search);
+        if (search.getResultsCount() < 0) {
+            mLogger.debug("Comment count not answered from index: " + search.getParseError());
+        }
+        return search.getResultsCount();
+    }
+
+    /**
+     * Called by index rebuilds as they start, comment searches are answered
+     * by the database until they are finished.
+     */
+    public void rebuildStarted() {
+        rebuilds.incrementAndGet();
+    }
+
+    /**
+     * Called by index rebuilds as they finish.
+     *
+     * @param all True if the index for all weblogs was rebuilt successfully.
+     */
+    public void rebuildFinished(boolean all) {
+        if (all && commentIndexEnabled) {
+            try {
+                commentIndexMarker.createNewFile();
+            } catch (IOException e) {
+                mLogger.error("Unable to create comment index marker", e);
+            }
+            commentIndexComplete = true;
+        }
+        rebuilds.decrementAndGet();
+    }
+
     public ReadWriteLock getReadWriteLock() {
         return rwl;
     }
@@ -245,10 +389,11 @@ public class IndexManagerImpl implements IndexManager {
             if (this.searchEnabled) {
                 mLogger.debug("Starting scheduled index operation: "
                         + op.getClass().getName());
-                roller.getThreadManager().executeInBackground(op);
+                roller.getThreadManager().executeInBackground(
+                        ThreadManager.INDEXING_POOL, op);
             }
-        } catch (InterruptedException e) {
-            mLogger.error("Error executing operation", e);
+        } catch (RejectedExecutionException e) {
+            mLogger.error("Error scheduling operation, indexing queue is full", e);
         }
     }
 
@@ -261,10 +406,15 @@ public class IndexManagerImpl implements IndexManager {
             if (this.searchEnabled) {
                 mLogger.debug("Executing index operation now: "
                         + op.getClass().getName());
-                roller.getThreadManager().executeInForeground(op);
+                roller.getThreadManager().executeInForeground(
+                        ThreadManager.INDEXING_POOL, op, 0, TimeUnit.MILLISECONDS);
             }
         } catch (InterruptedException e) {
             mLogger.error("Error executing operation", e);
+        } catch (TimeoutException e) {
+            mLogger.error("Error executing operation", e);
+        } catch (RejectedExecutionException e) {
+            mLogger.error("Error executing operation, indexing queue is full", e);
         }
     }
 
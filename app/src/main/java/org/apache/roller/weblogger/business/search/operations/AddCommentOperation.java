@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business.search.operations;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.roller.weblogger.business.search.FieldConstants;
+import org.apache.roller.weblogger.business.search.IndexManagerImpl;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+
+/**
+ * An operation that adds comments to the index, or updates them if they're
+ * already there.
+ */
+public class AddCommentOperation extends WriteToIndexOperation {
+
+    //~ Static fields/initializers =============================================
+
+    private static Log mLogger =
+            LogFactory.getFactory().getInstance(AddCommentOperation.class);
+
+    //~ Instance fields ========================================================
+
+    // documents by comment id
+    private Map<String, Document> docs = new LinkedHashMap<String, Document>();
+
+    //~ Constructors ===========================================================
+
+    /**
+     * Adds a comment to the index.
+     *
+     * Comments are indexed as they are saved, i.e. possibly before the
+     * transaction is committed, so the document is built right away instead
+     * of requerying for the comment when the operation runs.
+     */
+    public AddCommentOperation(IndexManagerImpl mgr, WeblogEntryComment data) {
+        super(mgr);
+        docs.put(data.getId(), getDocument(data));
+    }
+
+    /**
+     * Adds comments to the index, e.g. after a bulk update.
+     */
+    public AddCommentOperation(IndexManagerImpl mgr, List<WeblogEntryComment> data) {
+        super(mgr);
+        for (WeblogEntryComment comment : data) {
+            docs.put(comment.getId(), getDocument(comment));
+        }
+    }
+
+    //~ Methods ================================================================
+
+    public void doRun() {
+        IndexWriter writer = beginWriting();
+        try {
+            if (writer != null) {
+                for (Map.Entry<String, Document> doc : docs.entrySet()) {
+                    writer.updateDocument(new Term(FieldConstants.ID, doc.getKey()), doc.getValue());
+                }
+            }
+        } catch (IOException e) {
+            mLogger.error("Problems adding comment to index", e);
+        } finally {
+            endWriting();
+        }
+    }
+}
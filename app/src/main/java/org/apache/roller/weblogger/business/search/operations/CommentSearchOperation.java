@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business.search.operations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.roller.weblogger.business.search.FieldConstants;
+import org.apache.roller.weblogger.business.search.IndexManagerImpl;
+import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
+
+/**
+ * An operation that searches the comment documents of the index, returning
+ * the ids of matching comments or just counting them.
+ */
+public class CommentSearchOperation extends ReadFromIndexOperation {
+
+    // ~ Static fields/initializers
+    // =============================================
+
+    private static Log mLogger = LogFactory.getFactory().getInstance(
+            CommentSearchOperation.class);
+
+    // ~ Instance fields
+    // ========================================================
+
+    private final CommentSearchCriteria criteria;
+    private final boolean countOnly;
+
+    // walk results in id order after this id, see idOrder
+    private final boolean idOrder;
+    private final String afterId;
+    private final int max;
+
+    private List<String> results = Collections.emptyList();
+    private int resultsCount = -1;
+    private String parseError;
+
+    // ~ Constructors
+    // ===========================================================
+
+    /**
+     * Create a new operation that searches comments.
+     *
+     * @param countOnly
+     *            True to only count the matching comments.
+     */
+    public CommentSearchOperation(IndexManagerImpl mgr,
+            CommentSearchCriteria criteria, boolean countOnly) {
+        super(mgr);
+        this.criteria = criteria;
+        this.countOnly = countOnly;
+        this.idOrder = false;
+        this.afterId = null;
+        this.max = -1;
+    }
+
+    /**
+     * Create a new operation that returns ids of matching comments in id
+     * order, ignoring offset, max results and ordering of the criteria.
+     *
+     * @param afterId
+     *            Only return ids after this one, or null for the first ones.
+     * @param max
+     *            Maximum number of ids to return.
+     */
+    public CommentSearchOperation(IndexManagerImpl mgr,
+            CommentSearchCriteria criteria, String afterId, int max) {
+        super(mgr);
+        this.criteria = criteria;
+        this.countOnly = false;
+        this.idOrder = true;
+        this.afterId = afterId;
+        this.max = max;
+    }
+
+    // ~ Methods
+    // ================================================================
+
+    public void doRun() {
+        try {
+            IndexReader reader = manager.getSharedIndexReader();
+            if (reader == null) {
+                parseError = "Index not available";
+                return;
+            }
+            IndexSearcher searcher = new IndexSearcher(reader);
+
+            Query query = buildQuery();
+            if (query == null) {
+                return;
+            }
+
+            if (countOnly) {
+                TotalHitCountCollector collector = new TotalHitCountCollector();
+                searcher.search(query, collector);
+                resultsCount = collector.getTotalHits();
+                return;
+            }
+
+            int offset;
+            int limit;
+            Sort sort;
+            if (idOrder) {
+                offset = 0;
+                limit = max;
+                sort = new Sort(new SortField(FieldConstants.ID, SortField.Type.STRING));
+            } else {
+                offset = Math.max(0, criteria.getOffset());
+                limit = (criteria.getMaxResults() < 0) ? reader.maxDoc()
+                        : offset + criteria.getMaxResults();
+                sort = new Sort(new SortField(FieldConstants.C_POSTTIME,
+                        FieldCache.NUMERIC_UTILS_LONG_PARSER,
+                        criteria.isReverseChrono()));
+            }
+
+            TopFieldDocs docs = searcher.search(query, null, Math.max(1, limit), sort);
+            resultsCount = docs.totalHits;
+
+            List<String> ids = new ArrayList<String>();
+            for (int i = offset; i < docs.scoreDocs.length; i++) {
+                ScoreDoc scoreDoc = docs.scoreDocs[i];
+                ids.add(searcher.doc(scoreDoc.doc).get(FieldConstants.ID));
+            }
+            results = ids;
+
+        } catch (IOException e) {
+            mLogger.error("Error searching comments", e);
+            parseError = e.getMessage();
+        } catch (ParseException e) {
+            parseError = e.getMessage();
+        }
+    }
+
+    /**
+     * Build the query for our criteria, or null if the search text has
+     * nothing the index could match on.
+     */
+    private Query buildQuery() throws ParseException {
+        BooleanQuery query = new BooleanQuery();
+        query.add(new TermQuery(new Term(FieldConstants.DOC_TYPE,
+                FieldConstants.DOC_TYPE_COMMENT)), BooleanClause.Occur.MUST);
+
+        if (criteria.getSearchText() != null) {
+            QueryParser parser = new QueryParser(FieldConstants.LUCENE_VERSION,
+                    FieldConstants.C_CONTENT, IndexManagerImpl.getAnalyzer());
+            parser.setDefaultOperator(QueryParser.Operator.AND);
+
+            // search for the words of the text, not for query syntax
+            Query text = parser.parse(QueryParser.escape(criteria.getSearchText()));
+            if (text instanceof BooleanQuery
+                    && ((BooleanQuery) text).clauses().isEmpty()) {
+                parseError = "No searchable words in: " + criteria.getSearchText();
+                return null;
+            }
+            query.add(text, BooleanClause.Occur.MUST);
+        }
+
+        if (criteria.getEntry() != null) {
+            query.add(new TermQuery(new Term(FieldConstants.ENTRY_ID,
+                    criteria.getEntry().getId())), BooleanClause.Occur.MUST);
+        } else if (criteria.getWeblog() != null) {
+            // handle is indexed as a keyword, so match it as is
+            query.add(new TermQuery(new Term(FieldConstants.WEBSITE_HANDLE,
+                    criteria.getWeblog().getHandle())), BooleanClause.Occur.MUST);
+        }
+
+        if (criteria.getStatus() != null) {
+            query.add(new TermQuery(new Term(FieldConstants.C_STATUS,
+                    criteria.getStatus().name())), BooleanClause.Occur.MUST);
+        }
+
+        if (idOrder && afterId != null) {
+            query.add(TermRangeQuery.newStringRange(FieldConstants.ID,
+                    afterId, null, false, false), BooleanClause.Occur.MUST);
+        }
+
+        if (criteria.getStartDate() != null || criteria.getEndDate() != null) {
+            Long start = (criteria.getStartDate() != null)
+                    ? criteria.getStartDate().getTime() : null;
+            Long end = (criteria.getEndDate() != null)
+                    ? criteria.getEndDate().getTime() : null;
+            query.add(NumericRangeQuery.newLongRange(FieldConstants.C_POSTTIME,
+                    start, end, true, true), BooleanClause.Occur.MUST);
+        }
+
+        return query;
+    }
+
+    /**
+     * Ids of the matching comments, in post time order or in id order.
+     */
+    public List<String> getResults() {
+        return results;
+    }
+
+    /**
+     * Total number of matching comments, or -1 if the search failed.
+     */
+    public int getResultsCount() {
+        return resultsCount;
+    }
+
+    /**
+     * Why the search failed, if it did.
+     */
+    public String getParseError() {
+        return parseError;
+    }
+}
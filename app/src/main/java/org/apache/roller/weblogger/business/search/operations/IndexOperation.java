@@ -26,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
@@ -107,6 +108,10 @@ public abstract class IndexOperation implements Runnable {
         doc.add(new StringField(FieldConstants.ID, data.getId(),
                 Field.Store.YES));
 
+        // keyword, lets a full rebuild delete all documents
+        doc.add(new StringField(FieldConstants.CONSTANT,
+                FieldConstants.CONSTANT_V, Field.Store.NO));
+
         // keyword
         doc.add(new StringField(FieldConstants.WEBSITE_HANDLE, data
                 .getWebsite().getHandle(), Field.Store.YES));
@@ -161,6 +166,55 @@ public abstract class IndexOperation implements Runnable {
         return doc;
     }
 
+    /**
+     * Create the document for a comment.  Comment documents are only used
+     * for comment moderation searches, entry searches skip them.
+     */
+    protected static Document getDocument(WeblogEntryComment data) {
+
+        Document doc = new Document();
+
+        // keyword
+        doc.add(new StringField(FieldConstants.ID, data.getId(),
+                Field.Store.YES));
+
+        // keyword
+        doc.add(new StringField(FieldConstants.DOC_TYPE,
+                FieldConstants.DOC_TYPE_COMMENT, Field.Store.YES));
+
+        // keyword
+        doc.add(new StringField(FieldConstants.CONSTANT,
+                FieldConstants.CONSTANT_V, Field.Store.NO));
+
+        // keyword
+        doc.add(new StringField(FieldConstants.ENTRY_ID, data
+                .getWeblogEntry().getId(), Field.Store.YES));
+
+        // keyword
+        doc.add(new StringField(FieldConstants.WEBSITE_HANDLE, data
+                .getWeblogEntry().getWebsite().getHandle(), Field.Store.YES));
+
+        // keyword
+        if (data.getStatus() != null) {
+            doc.add(new StringField(FieldConstants.C_STATUS, data.getStatus()
+                    .name(), Field.Store.YES));
+        }
+
+        // numeric, for date ranges and sorting
+        if (data.getPostTime() != null) {
+            doc.add(new LongField(FieldConstants.C_POSTTIME, data
+                    .getPostTime().getTime(), Field.Store.NO));
+        }
+
+        // index the comment text, but don't store it
+        if (data.getContent() != null) {
+            doc.add(new TextField(FieldConstants.C_CONTENT, data.getContent(),
+                    Field.Store.NO));
+        }
+
+        return doc;
+    }
+
     /**
      * Begin writing.
      * 
@@ -33,8 +33,10 @@ import org.apache.roller.weblogger.business.Weblogger;
 import org.apache.roller.weblogger.business.search.FieldConstants;
 import org.apache.roller.weblogger.business.search.IndexManagerImpl;
 import org.apache.roller.weblogger.business.search.IndexUtil;
+import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 
@@ -51,6 +53,8 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
     private static Log mLogger = LogFactory.getFactory().getInstance(
             RebuildWebsiteIndexOperation.class);
 
+    private static final int COMMENT_CHUNK_SIZE = 500;
+
     // ~ Instance fields
     // ========================================================
 
@@ -96,6 +100,8 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
             mLogger.debug("Reindexining entire site");
         }
 
+        manager.rebuildStarted();
+        boolean rebuilt = false;
         IndexWriter writer = beginWriting();
 
         try {
@@ -134,6 +140,11 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
 
                 // release the database connection
                 roller.release();
+
+                if (manager.isCommentIndexEnabled()) {
+                    indexComments(writer, weblogManager);
+                }
+                rebuilt = true;
             }
         } catch (Exception e) {
             mLogger.error("ERROR adding/deleting doc to index", e);
@@ -142,6 +153,7 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
             if (roller != null) {
                 roller.release();
             }
+            manager.rebuildFinished(website == null && rebuilt);
         }
 
         Date end = new Date();
@@ -155,4 +167,32 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
                     + website.getHandle() + "' in '" + length + "' seconds");
         }
     }
+
+    /**
+     * Add documents for all comments of the weblog (or all weblogs), a
+     * chunk at a time so we never hold all comments in memory.
+     */
+    private void indexComments(IndexWriter writer,
+            WeblogEntryManager weblogManager) throws Exception {
+
+        CommentSearchCriteria csc = new CommentSearchCriteria();
+        csc.setWeblog(website);
+        csc.setMaxResults(COMMENT_CHUNK_SIZE);
+
+        int count = 0;
+        List<WeblogEntryComment> comments;
+        do {
+            csc.setOffset(count);
+            comments = weblogManager.getComments(csc);
+            for (WeblogEntryComment comment : comments) {
+                writer.addDocument(getDocument(comment));
+            }
+            count += comments.size();
+
+            // release the database connection and loaded comments
+            roller.release();
+        } while (comments.size() == COMMENT_CHUNK_SIZE);
+
+        mLogger.debug("Comments indexed: " + count);
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business.search.operations;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.roller.weblogger.business.search.FieldConstants;
+import org.apache.roller.weblogger.business.search.IndexManagerImpl;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+
+/**
+ * An operation that removes comments, or all comments of an entry, from
+ * the index.
+ */
+public class RemoveCommentOperation extends WriteToIndexOperation {
+
+    //~ Static fields/initializers =============================================
+
+    private static Log mLogger =
+            LogFactory.getFactory().getInstance(RemoveCommentOperation.class);
+
+    //~ Instance fields ========================================================
+
+    private Term[] terms;
+
+    //~ Constructors ===========================================================
+
+    /**
+     * Removes a single comment from the index.
+     */
+    public RemoveCommentOperation(IndexManagerImpl mgr, WeblogEntryComment data) {
+        super(mgr);
+        this.terms = new Term[] { new Term(FieldConstants.ID, data.getId()) };
+    }
+
+    /**
+     * Removes comments by id from the index.
+     */
+    public RemoveCommentOperation(IndexManagerImpl mgr, List<String> ids) {
+        super(mgr);
+        this.terms = new Term[ids.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = new Term(FieldConstants.ID, ids.get(i));
+        }
+    }
+
+    /**
+     * Removes all comments of an entry from the index.
+     */
+    public RemoveCommentOperation(IndexManagerImpl mgr, WeblogEntry entry) {
+        super(mgr);
+        this.terms = new Term[] { new Term(FieldConstants.ENTRY_ID, entry.getId()) };
+    }
+
+    //~ Methods ================================================================
+
+    public void doRun() {
+        IndexWriter writer = beginWriting();
+        try {
+            if (writer != null) {
+                writer.deleteDocuments(terms);
+            }
+        } catch (IOException e) {
+            mLogger.error("Error deleting comment from index", e);
+        } finally {
+            endWriting();
+        }
+    }
+}
@@ -142,6 +142,13 @@ public class SearchOperation extends ReadFromIndexOperation {
                 query = bQuery;
             }
 
+            // comment documents are only for comment moderation
+            BooleanQuery entriesOnly = new BooleanQuery();
+            entriesOnly.add(query, BooleanClause.Occur.MUST);
+            entriesOnly.add(new TermQuery(new Term(FieldConstants.DOC_TYPE,
+                    FieldConstants.DOC_TYPE_COMMENT)), BooleanClause.Occur.MUST_NOT);
+            query = entriesOnly;
+
             searchresults = searcher.search(query, null/* Filter */, docLimit,
                     SORTER);
 
@@ -56,6 +56,12 @@ public final class PingConfig {
     private static final int QUEUE_PROCESSING_INTERVAL_MIN = 0;
     private static final int QUEUE_PROCESSING_INTERVAL_MAX = 120;
 
+    // Config property for the time to wait for a single ping to complete
+    private static final String PING_TIMEOUT_PROP = "pings.timeoutSecs";
+    private static final int PING_TIMEOUT_DEFAULT = 60;
+    private static final int PING_TIMEOUT_MIN = 1;
+    private static final int PING_TIMEOUT_MAX = 600;
+
     // PingConfig property for logging pings (not actually performing them).  Used for debugging.
     private static final String PINGS_LOG_ONLY_PROP = "pings.logOnly";
     private static final boolean PINGS_LOG_ONLY_DEFAULT = false;
@@ -123,6 +129,15 @@ public final class PingConfig {
         return getIntegerProperty(QUEUE_PROCESSING_INTERVAL_PROP, QUEUE_PROCESSING_INTERVAL_DEFAULT, QUEUE_PROCESSING_INTERVAL_MIN, QUEUE_PROCESSING_INTERVAL_MAX);
     }
 
+    /**
+     * Get the time to wait for a single ping to complete before it is abandoned and counted as a failed attempt.
+     *
+     * @return the configured (or default) ping timeout in seconds.
+     */
+    public static int getPingTimeoutSecs() {
+        return getIntegerProperty(PING_TIMEOUT_PROP, PING_TIMEOUT_DEFAULT, PING_TIMEOUT_MIN, PING_TIMEOUT_MAX);
+    }
+
 
     /**
      * Get the logs only setting.  Get configuration value determining whether pings are to be logged only (not sent).
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.planet.business;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.RollerException;
+import org.apache.roller.planet.business.PlanetManager;
+import org.apache.roller.planet.pojos.Subscription;
+import org.apache.roller.planet.pojos.SubscriptionEntry;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.business.plugins.PluginManager;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+
+
+/**
+ * Aggregates local weblogs into their planet subscriptions straight from
+ * the weblogger, without fetching or parsing any feeds.
+ *
+ * Local subscriptions have feed urls of the form weblogger:<blog handle>.
+ * All local subscriptions and weblogs are loaded with one query each and
+ * only weblogs modified since their subscription was last updated are
+ * converted, their recent entries are written directly as subscription
+ * entries.  Changes are flushed every planet.aggregator.local.batchSize
+ * weblogs.  If a weblog fails the uncommitted changes of its batch are
+ * rolled back, so those weblogs are aggregated again next time.
+ */
+public class LocalWeblogAggregator {
+
+    private static Log log = LogFactory.getLog(LocalWeblogAggregator.class);
+
+    public static final String FEED_URL_PREFIX = "weblogger:";
+
+    private final Weblogger roller;
+    private final int batchSize;
+
+    // screen names by user name, users write many entries and weblogs
+    private final Map<String, String> screenNames = new HashMap<String, String>();
+
+
+    public LocalWeblogAggregator() {
+        this.roller = WebloggerFactory.getWeblogger();
+        this.batchSize = Math.max(1, WebloggerConfig.getIntProperty(
+                "planet.aggregator.local.batchSize", 50));
+    }
+
+
+    public static boolean isLocal(Subscription sub) {
+        return sub.getFeedURL() != null && sub.getFeedURL().startsWith(FEED_URL_PREFIX);
+    }
+
+
+    /**
+     * Update the subscriptions of all local weblogs which changed since
+     * they were last aggregated.
+     *
+     * @return the number of subscriptions updated.
+     */
+    public int update() throws WebloggerException {
+
+        long startTime = System.currentTimeMillis();
+        PlanetManager pmgr = roller.getPlanetManager();
+
+        Map<String, String> subIds = new HashMap<String, String>();
+        Map<String, Date> subUpdated = new HashMap<String, Date>();
+        try {
+            for (Subscription sub : pmgr.getSubscriptions()) {
+                if (isLocal(sub)) {
+                    String handle = sub.getFeedURL().substring(FEED_URL_PREFIX.length());
+                    subIds.put(handle, sub.getId());
+                    subUpdated.put(handle, sub.getLastUpdated());
+                }
+            }
+        } catch (RollerException ex) {
+            throw new WebloggerException("Error listing local subscriptions", ex);
+        }
+
+        List<Weblog> changed = new ArrayList<Weblog>();
+        List<Weblog> weblogs = roller.getWeblogManager().getWeblogs(
+                Boolean.TRUE, Boolean.TRUE, null, null, 0, -1);
+        for (Weblog weblog : weblogs) {
+            Date lastUpdated = subUpdated.get(weblog.getHandle());
+            if (subIds.containsKey(weblog.getHandle()) && weblog.getLastModified() != null
+                    && (lastUpdated == null || weblog.getLastModified().after(lastUpdated))) {
+                changed.add(weblog);
+            }
+        }
+        log.debug(changed.size() + " of " + subIds.size() + " local weblogs changed");
+
+        int updated = 0;
+        int pending = 0;
+        for (Weblog weblog : changed) {
+            try {
+                Subscription sub = pmgr.getSubscriptionById(subIds.get(weblog.getHandle()));
+                if (sub != null) {
+                    update(sub, weblog);
+                    updated++;
+                    if (++pending == batchSize) {
+                        roller.flush();
+                        pending = 0;
+                    }
+                }
+            } catch (Exception ex) {
+                log.warn("Error aggregating local weblog " + weblog.getHandle()
+                        + ", rolling back " + pending + " other weblogs of its batch", ex);
+                // don't commit a half updated subscription
+                roller.release();
+                updated -= pending;
+                pending = 0;
+            }
+        }
+        roller.flush();
+
+        log.info("Aggregated " + updated + " of " + subIds.size() + " local weblogs in "
+                + ((System.currentTimeMillis() - startTime) / RollerConstants.SEC_IN_MS)
+                + " seconds");
+        return updated;
+    }
+
+
+    /**
+     * Replace the entries of a subscription with the recent entries of its
+     * weblog.  The subscription is marked up to date once its entries are
+     * saved.  The caller flushes, or releases if this fails.
+     */
+    public void update(Subscription sub, Weblog weblog) throws WebloggerException {
+
+        // convert before touching the subscription
+        List<SubscriptionEntry> entries = getEntries(weblog);
+
+        sub.setSiteURL(roller.getUrlStrategy().getWeblogURL(weblog, null, true));
+        sub.setTitle(weblog.getName());
+        sub.setAuthor(weblog.getName());
+
+        try {
+            PlanetManager pmgr = roller.getPlanetManager();
+            pmgr.deleteEntries(sub);
+            for (SubscriptionEntry entry : entries) {
+                sub.addEntry(entry);
+            }
+            pmgr.saveSubscription(sub);
+            pmgr.updateTimeline(sub);
+
+            sub.setLastUpdated(weblog.getLastModified() != null
+                    ? weblog.getLastModified() : new Date());
+            pmgr.saveSubscription(sub);
+        } catch (RollerException ex) {
+            throw new WebloggerException("Error saving subscription " + sub.getFeedURL(), ex);
+        }
+    }
+
+
+    /**
+     * Convert the recent published entries of a weblog to subscription
+     * entries.
+     */
+    public List<SubscriptionEntry> getEntries(Weblog weblog) throws WebloggerException {
+
+        int entryCount = WebloggerRuntimeConfig.getIntProperty("site.newsfeeds.defaultEntries");
+
+        WeblogEntryManager wmgr = roller.getWeblogEntryManager();
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(weblog);
+        wesc.setStatus(PubStatus.PUBLISHED);
+        wesc.setMaxResults(entryCount);
+        wesc.setFetch(WeblogEntrySearchCriteria.Fetch.CATEGORIES);
+        List<WeblogEntry> entries = wmgr.getWeblogEntries(wesc);
+
+        PluginManager ppmgr = roller.getPluginManager();
+        Map pagePlugins = ppmgr.getWeblogEntryPlugins(weblog);
+
+        List<SubscriptionEntry> results = new ArrayList<SubscriptionEntry>(entries.size());
+        for (WeblogEntry rollerEntry : entries) {
+            SubscriptionEntry entry = new SubscriptionEntry();
+            String content;
+            if (!StringUtils.isEmpty(rollerEntry.getText())) {
+                content = rollerEntry.getText();
+            } else {
+                content = rollerEntry.getSummary();
+            }
+            content = ppmgr.applyWeblogEntryPlugins(pagePlugins, rollerEntry, content);
+
+            entry.setAuthor(getScreenName(rollerEntry));
+            entry.setTitle(rollerEntry.getTitle());
+            entry.setPubTime(rollerEntry.getPubTime());
+            entry.setText(content);
+            entry.setPermalink(rollerEntry.getPermalink());
+            entry.setCategoriesString(rollerEntry.getCategory().getName());
+            results.add(entry);
+        }
+        return results;
+    }
+
+
+    private String getScreenName(WeblogEntry entry) throws WebloggerException {
+        String userName = entry.getCreatorUserName();
+        if (!screenNames.containsKey(userName)) {
+            User user = roller.getUserManager().getUserByUserName(userName);
+            screenNames.put(userName, user != null ? user.getScreenName() : userName);
+        }
+        return screenNames.get(userName);
+    }
+
+}
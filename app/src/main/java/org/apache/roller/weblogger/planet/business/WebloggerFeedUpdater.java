@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.planet.business;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.planet.business.updater.SingleThreadedFeedUpdater;
+import org.apache.roller.planet.business.updater.UpdaterException;
+import org.apache.roller.planet.pojos.PlanetGroup;
+import org.apache.roller.planet.pojos.Subscription;
+import org.apache.roller.weblogger.WebloggerException;
+
+
+/**
+ * Feed updater which aggregates local weblogs in bulk with the
+ * {@link LocalWeblogAggregator} and only fetches remote feeds one by one.
+ */
+public class WebloggerFeedUpdater extends SingleThreadedFeedUpdater {
+
+    private static Log log = LogFactory.getLog(WebloggerFeedUpdater.class);
+
+
+    /**
+     * Aggregate the changed local weblogs, then update all remote
+     * subscriptions.
+     */
+    @Override
+    public void updateSubscriptions() throws UpdaterException {
+        try {
+            new LocalWeblogAggregator().update();
+        } catch (WebloggerException ex) {
+            throw new UpdaterException("Error aggregating local weblogs", ex);
+        }
+        super.updateSubscriptions();
+    }
+
+
+    /**
+     * Aggregate the changed local weblogs, then update the remote
+     * subscriptions of the group.
+     */
+    @Override
+    public void updateSubscriptions(PlanetGroup group) throws UpdaterException {
+        try {
+            new LocalWeblogAggregator().update();
+        } catch (WebloggerException ex) {
+            throw new UpdaterException("Error aggregating local weblogs", ex);
+        }
+        super.updateSubscriptions(group);
+    }
+
+
+    /**
+     * Update the remote subscriptions among the given ones, local ones are
+     * left to the aggregator.
+     */
+    @Override
+    protected void updateSubscriptions(Collection<Subscription> subscriptions) {
+        List<Subscription> remote = new ArrayList<Subscription>();
+        for (Subscription sub : subscriptions) {
+            if (!LocalWeblogAggregator.isLocal(sub)) {
+                remote.add(sub);
+            }
+        }
+        log.debug("Updating " + remote.size() + " remote subscriptions");
+        super.updateSubscriptions(remote);
+    }
+
+}
@@ -19,9 +19,6 @@
 package org.apache.roller.weblogger.planet.business;
 
 import java.util.Date;
-import java.util.List;
-import java.util.Map;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.planet.business.fetcher.FetcherException;
@@ -29,14 +26,8 @@ import org.apache.roller.planet.business.fetcher.RomeFeedFetcher;
 import org.apache.roller.planet.pojos.Subscription;
 import org.apache.roller.planet.pojos.SubscriptionEntry;
 import org.apache.roller.weblogger.WebloggerException;
-import org.apache.roller.weblogger.business.plugins.PluginManager;
 import org.apache.roller.weblogger.business.WebloggerFactory;
-import org.apache.roller.weblogger.business.WeblogEntryManager;
-import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
-import org.apache.roller.weblogger.pojos.WeblogEntry;
-import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.Weblog;
-import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 
 
 /**
@@ -115,44 +106,9 @@ public class WebloggerRomeFeedFetcher extends RomeFeedFetcher {
         
         // lookup recent entries from weblog and add them to the subscription
         try {
-            int entryCount = WebloggerRuntimeConfig.getIntProperty("site.newsfeeds.defaultEntries");
-
-            if (log.isDebugEnabled()) {
-                log.debug("Seeking up to " + entryCount + " entries from " + localWeblog.getHandle());
-            }
-            
-            // grab recent entries for this weblog
-            WeblogEntryManager wmgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
-            WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
-            wesc.setWeblog(localWeblog);
-            wesc.setStatus(PubStatus.PUBLISHED);
-            wesc.setMaxResults(entryCount);
-            List<WeblogEntry> entries = wmgr.getWeblogEntries(wesc);
-            log.debug("Found " + entries.size());
-
-            // Populate subscription object with new entries
-            PluginManager ppmgr = WebloggerFactory.getWeblogger().getPluginManager();
-            Map pagePlugins = ppmgr.getWeblogEntryPlugins(localWeblog);
-            for ( WeblogEntry rollerEntry : entries ) {
-                SubscriptionEntry entry = new SubscriptionEntry();
-                String content = "";
-                if (!StringUtils.isEmpty(rollerEntry.getText())) {
-                    content = rollerEntry.getText();
-                } else {
-                    content = rollerEntry.getSummary();
-                }
-                content = ppmgr.applyWeblogEntryPlugins(pagePlugins, rollerEntry, content);
-                
-                entry.setAuthor(rollerEntry.getCreator().getScreenName());
-                entry.setTitle(rollerEntry.getTitle());
-                entry.setPubTime(rollerEntry.getPubTime());
-                entry.setText(content);
-                entry.setPermalink(rollerEntry.getPermalink());
-                entry.setCategoriesString(rollerEntry.getCategory().getName());
-                
+            for (SubscriptionEntry entry : new LocalWeblogAggregator().getEntries(localWeblog)) {
                 newSub.addEntry(entry);
             }
-            
         } catch (WebloggerException ex) {
             throw new FetcherException("Error processing entries for local weblog - "+weblogHandle, ex);
         }
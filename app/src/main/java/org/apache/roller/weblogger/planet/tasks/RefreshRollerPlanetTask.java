@@ -24,13 +24,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.business.runnable.RollerTaskWithLeasing;
 import org.apache.roller.planet.business.updater.FeedUpdater;
-import org.apache.roller.planet.business.updater.SingleThreadedFeedUpdater;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.GuiceWebloggerProvider;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WebloggerProvider;
 import org.apache.roller.weblogger.business.startup.WebloggerStartup;
+import org.apache.roller.weblogger.planet.business.WebloggerFeedUpdater;
 import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.cache.SurrogateKeyPurgeHandler;
+import org.apache.roller.weblogger.util.cache.SurrogateKeys;
 
 
 /**
@@ -128,9 +130,16 @@ public class RefreshRollerPlanetTask extends RollerTaskWithLeasing {
         try {
             log.info("Refreshing Planet subscriptions");
             
-            FeedUpdater updater = new SingleThreadedFeedUpdater();
+            // local weblogs are aggregated in bulk, only if they changed
+            FeedUpdater updater = new WebloggerFeedUpdater();
             updater.updateSubscriptions();
             
+            // planet responses in the http cache are stale now
+            SurrogateKeyPurgeHandler purgeHandler = SurrogateKeyPurgeHandler.getInstance();
+            if (purgeHandler != null) {
+                purgeHandler.purge(SurrogateKeys.PLANET);
+            }
+            
         } catch (Exception e) {
             log.error("ERROR refreshing planet", e);
         } finally {
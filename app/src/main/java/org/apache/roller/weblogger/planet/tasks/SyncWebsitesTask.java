@@ -18,12 +18,14 @@
 
 package org.apache.roller.weblogger.planet.tasks;
 
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.RollerException;
@@ -39,6 +41,7 @@ import org.apache.roller.weblogger.business.runnable.RollerTask;
 import org.apache.roller.weblogger.business.runnable.RollerTaskWithLeasing;
 import org.apache.roller.weblogger.business.startup.WebloggerStartup;
 import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.planet.business.LocalWeblogAggregator;
 import org.apache.roller.weblogger.pojos.Weblog;
 
 
@@ -152,20 +155,26 @@ public class SyncWebsitesTask extends RollerTaskWithLeasing {
                 WebloggerFactory.getWeblogger().flush();
             }
             
+            // load all subscriptions at once instead of one per weblog
+            Map<String, Subscription> existingSubs = new HashMap<String, Subscription>();
+            for (Subscription sub : pmgr.getSubscriptions()) {
+                existingSubs.put(sub.getFeedURL(), sub);
+            }
+            
             // walk through all enable weblogs and add/update subs as needed
-            List<String> liveUserFeeds = new ArrayList<String>();
+            Set<String> liveUserFeeds = new HashSet<String>();
             List<Weblog> websites = WebloggerFactory.getWeblogger()
                     .getWeblogManager().getWeblogs(Boolean.TRUE, Boolean.TRUE, null, null, 0, -1);
             for ( Weblog weblog : websites ) {
                 
                 log.debug("processing weblog - "+weblog.getHandle());
-                String feedUrl = "weblogger:"+weblog.getHandle();
+                String feedUrl = LocalWeblogAggregator.FEED_URL_PREFIX+weblog.getHandle();
                 
                 // add feed url to the "live" list
                 liveUserFeeds.add(feedUrl);
                 
                 // if sub already exists then update it, otherwise add it
-                Subscription sub = pmgr.getSubscription(feedUrl);
+                Subscription sub = existingSubs.get(feedUrl);
                 if (sub == null) {
                     log.debug("ADDING feed: "+feedUrl);
                     
@@ -181,9 +190,11 @@ public class SyncWebsitesTask extends RollerTaskWithLeasing {
                     sub.getGroups().add(group);
                     group.getSubscriptions().add(sub);
 
-                    pmgr.saveGroup(group);
+                    // save as we go, the group is saved once at the end
+                    WebloggerFactory.getWeblogger().flush();
 
-                } else {
+                } else if (!StringUtils.equals(sub.getTitle(), weblog.getName())
+                        || !StringUtils.equals(sub.getAuthor(), weblog.getName())) {
                     log.debug("UPDATING feed: "+feedUrl);
                     
                     sub.setTitle(weblog.getName());
@@ -191,9 +202,6 @@ public class SyncWebsitesTask extends RollerTaskWithLeasing {
                     
                     pmgr.saveSubscription(sub);
                 }
-                
-                // save as we go
-                WebloggerFactory.getWeblogger().flush();
             }
             
             // new subs added, existing subs updated, now delete old subs
@@ -203,7 +211,7 @@ public class SyncWebsitesTask extends RollerTaskWithLeasing {
                 // only delete subs from the group if ...
                 // 1. they are local
                 // 2. they are no longer listed as a weblog 
-                if (sub.getFeedURL().startsWith("weblogger:") && 
+                if (LocalWeblogAggregator.isLocal(sub) && 
                         !liveUserFeeds.contains(sub.getFeedURL())) {
                     deleteSubs.add(sub);
                 }
@@ -38,6 +38,8 @@ public class CommentSearchCriteria {
     private boolean reverseChrono = false;
     // Offset into results for paging
     private int offset = 0;
+    // Last comment of the previous page, or null to page by offset
+    private PageCursor cursor;
     // Max comments to return (or -1 for no limit)
     private int maxResults = -1;
 
@@ -105,6 +107,14 @@ public class CommentSearchCriteria {
         this.offset = offset;
     }
 
+    public PageCursor getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(PageCursor cursor) {
+        this.cursor = cursor;
+    }
+
     public int getMaxResults() {
         return maxResults;
     }
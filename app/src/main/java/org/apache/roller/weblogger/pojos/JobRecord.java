@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.pojos;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.roller.util.UUIDGenerator;
+
+
+/**
+ * Persistent record of a background job, so that jobs survive restarts and
+ * can be resumed where they left off after a crash.
+ *
+ * Jobs save their progress as a checkpoint of string properties, a resumed
+ * job is handed its last checkpoint as input.
+ */
+public class JobRecord implements Serializable {
+    
+    public enum State { PENDING, RUNNING, COMPLETED, FAILED }
+    
+    private String id = UUIDGenerator.generateUUID();
+    private String name = null;
+    private String jobClass = null;
+    private String state = State.PENDING.name();
+    private String clientId = null;
+    private String data = null;
+    private Date created = null;
+    private Date heartbeat = null;
+    private Date finished = null;
+    private int attempts = 0;
+    private String lastError = null;
+    
+    
+    public JobRecord() {}
+    
+    public JobRecord(String name, String jobClass) {
+        this.name = name;
+        this.jobClass = jobClass;
+        this.created = new Date();
+    }
+    
+    
+    /**
+     * Get the job's checkpoint data as a map.
+     */
+    public Map<String, String> getDataMap() {
+        Map<String, String> map = new HashMap<String, String>();
+        if (data != null) {
+            Properties props = new Properties();
+            try {
+                props.load(new StringReader(data));
+            } catch (IOException ex) {
+                // can't happen reading from a string
+                throw new IllegalStateException(ex);
+            }
+            for (String key : props.stringPropertyNames()) {
+                map.put(key, props.getProperty(key));
+            }
+        }
+        return map;
+    }
+    
+    /**
+     * Set the job's checkpoint data from a map, null values are left out.
+     */
+    public void setDataMap(Map<String, ?> map) {
+        Properties props = new Properties();
+        for (Map.Entry<String, ?> entry : map.entrySet()) {
+            if (entry.getValue() != null) {
+                props.setProperty(entry.getKey(), entry.getValue().toString());
+            }
+        }
+        StringWriter writer = new StringWriter();
+        try {
+            props.store(writer, null);
+        } catch (IOException ex) {
+            // can't happen writing to a string
+            throw new IllegalStateException(ex);
+        }
+        this.data = writer.toString();
+    }
+    
+    //------------------------------------------------------- Good citizenship
+    
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("{");
+        buf.append(getId());
+        buf.append(", ").append(getName());
+        buf.append(", ").append(getState());
+        buf.append(", ").append(getClientId());
+        buf.append("}");
+        return buf.toString();
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        if(this == other) {
+            return true;
+        }
+        if( !(other instanceof JobRecord) ) {
+            return false;
+        }
+        final JobRecord that = (JobRecord) other;
+        return this.getId().equals(that.getId());
+    }
+    
+    @Override
+    public int hashCode() {
+        return this.getId().hashCode();
+    }
+    
+    
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    /**
+     * Descriptive name of the job.
+     */
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Class of the job, instantiated when the job is resumed.
+     */
+    public String getJobClass() {
+        return jobClass;
+    }
+    
+    public void setJobClass(String jobClass) {
+        this.jobClass = jobClass;
+    }
+    
+    public String getState() {
+        return state;
+    }
+    
+    public void setState(String state) {
+        this.state = state;
+    }
+    
+    /**
+     * Client id of the cluster member running the job.
+     */
+    public String getClientId() {
+        return clientId;
+    }
+    
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+    
+    public String getData() {
+        return data;
+    }
+    
+    public void setData(String data) {
+        this.data = data;
+    }
+    
+    public Date getCreated() {
+        return created;
+    }
+    
+    public void setCreated(Date created) {
+        this.created = created;
+    }
+    
+    /**
+     * Last time the running job showed signs of life, a running job without
+     * a recent heartbeat is considered crashed.
+     */
+    public Date getHeartbeat() {
+        return heartbeat;
+    }
+    
+    public void setHeartbeat(Date heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+    
+    public Date getFinished() {
+        return finished;
+    }
+    
+    public void setFinished(Date finished) {
+        this.finished = finished;
+    }
+    
+    /**
+     * Number of times the job has been started, including resumes.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+}
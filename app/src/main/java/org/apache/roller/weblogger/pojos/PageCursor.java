@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.pojos;
+
+import java.util.Date;
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Position in a time ordered listing, the time and id of the last item on
+ * the previous page.  Queries given a cursor seek directly to the items
+ * after it instead of counting past an offset, so deep pages are as cheap
+ * as the first one and don't shift when new items are added.
+ *
+ * The string form, used in urls, is the time in milliseconds and the id
+ * separated by an underscore.
+ */
+public final class PageCursor {
+
+    private final Date time;
+    private final String id;
+
+
+    public PageCursor(Date time, String id) {
+        if (time == null || id == null) {
+            throw new IllegalArgumentException("time and id are required");
+        }
+        this.time = new Date(time.getTime());
+        this.id = id;
+    }
+
+
+    /**
+     * Parse the string form of a cursor.
+     *
+     * @return the cursor, or null if the string is not a valid cursor.
+     */
+    public static PageCursor parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        int sep = value.indexOf('_');
+        if (sep < 1 || sep == value.length() - 1) {
+            return null;
+        }
+        String millis = value.substring(0, sep);
+        if (!StringUtils.isNumeric(millis) || millis.length() > 18) {
+            return null;
+        }
+        return new PageCursor(new Date(Long.parseLong(millis)), value.substring(sep + 1));
+    }
+
+
+    public Date getTime() {
+        return new Date(time.getTime());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof PageCursor)) {
+            return false;
+        }
+        PageCursor o = (PageCursor) other;
+        return time.equals(o.time) && id.equals(o.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * time.hashCode() + id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return time.getTime() + "_" + id;
+    }
+
+}
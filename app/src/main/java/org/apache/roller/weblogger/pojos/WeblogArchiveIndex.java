@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.pojos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+
+/**
+ * Which days of a weblog have published entries and how many, in the
+ * weblog's time zone.
+ *
+ * Days are kept as a sorted array of yyyymmdd numbers with a count for
+ * each, so calendars and archive navigation can find the days and months
+ * with entries without loading any entries.  An index is immutable, it is
+ * rebuilt when entries change.
+ *
+ * Entries published after the time the index is built for are left out,
+ * so no day or month links to entries which aren't live yet.  The index
+ * is outdated once the first of them goes live, see {@link #isCurrent}.
+ */
+public final class WeblogArchiveIndex {
+
+    private final TimeZone timeZone;
+
+    // yyyymmdd of each day with entries, ascending
+    private final int[] days;
+
+    // number of entries on each day
+    private final int[] counts;
+
+    private final int entryCount;
+
+    // publish time of the first entry left out, Long.MAX_VALUE if none
+    private final long nextPubTime;
+
+
+    /**
+     * @param timeZone the weblog time zone.
+     * @param pubTimes publish times of the published entries, in any order.
+     * @param now      time the index is built for, later entries are left out.
+     */
+    public WeblogArchiveIndex(TimeZone timeZone, Collection<? extends Date> pubTimes,
+            Date now) {
+        this.timeZone = timeZone;
+
+        Calendar cal = Calendar.getInstance(timeZone);
+        int[] keys = new int[pubTimes.size()];
+        int n = 0;
+        long next = Long.MAX_VALUE;
+        for (Date pubTime : pubTimes) {
+            if (pubTime == null) {
+                continue;
+            }
+            if (pubTime.after(now)) {
+                next = Math.min(next, pubTime.getTime());
+            } else {
+                cal.setTime(pubTime);
+                keys[n++] = dayKey(cal);
+            }
+        }
+        Arrays.sort(keys, 0, n);
+
+        int[] dayKeys = new int[n];
+        int[] dayCounts = new int[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (size > 0 && dayKeys[size - 1] == keys[i]) {
+                dayCounts[size - 1]++;
+            } else {
+                dayKeys[size] = keys[i];
+                dayCounts[size] = 1;
+                size++;
+            }
+        }
+        this.days = Arrays.copyOf(dayKeys, size);
+        this.counts = Arrays.copyOf(dayCounts, size);
+        this.entryCount = n;
+        this.nextPubTime = next;
+    }
+
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+
+    /**
+     * False once an entry left out of the index has gone live.
+     */
+    public boolean isCurrent(Date now) {
+        return now.getTime() < nextPubTime;
+    }
+
+
+    /**
+     * Number of published entries.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+
+    /**
+     * Number of entries on the day of the given date.
+     */
+    public int getDayCount(Date day) {
+        int i = Arrays.binarySearch(days, dayKey(day));
+        return (i >= 0) ? counts[i] : 0;
+    }
+
+
+    /**
+     * Number of entries in the month of the given date.
+     */
+    public int getMonthCount(Date month) {
+        int first = monthStart(month);
+        int count = 0;
+        for (int i = ceiling(first); i < days.length && days[i] < first + 100; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+
+    /**
+     * Days with entries in the month of the given date up to and including
+     * the day of the given end date, as noon of each day.
+     */
+    public List<Date> getDaysOfMonth(Date month, Date endDate) {
+        int first = monthStart(month);
+        int last = Math.min(first + 99, dayKey(endDate));
+        List<Date> result = new ArrayList<Date>();
+        for (int i = ceiling(first); i < days.length && days[i] <= last; i++) {
+            result.add(toDate(days[i], 12));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+
+    /**
+     * Noon of the last day with entries before the day of the given date,
+     * or null if there is none.
+     */
+    public Date getPrevDay(Date day) {
+        int i = ceiling(dayKey(day)) - 1;
+        return (i >= 0) ? toDate(days[i], 12) : null;
+    }
+
+
+    /**
+     * Noon of the first day with entries after the day of the given date,
+     * or null if there is none.
+     */
+    public Date getNextDay(Date day) {
+        int i = ceiling(dayKey(day) + 1);
+        return (i < days.length) ? toDate(days[i], 12) : null;
+    }
+
+
+    /**
+     * Start of the last month with entries before the month of the given
+     * date, or null if there is none.
+     */
+    public Date getPrevMonth(Date month) {
+        int i = ceiling(monthStart(month)) - 1;
+        return (i >= 0) ? toDate(days[i] / 100 * 100 + 1, 0) : null;
+    }
+
+
+    /**
+     * Start of the first month with entries after the month of the given
+     * date, or null if there is none.
+     */
+    public Date getNextMonth(Date month) {
+        int i = ceiling(monthStart(month) + 100);
+        return (i < days.length) ? toDate(days[i] / 100 * 100 + 1, 0) : null;
+    }
+
+
+    /**
+     * Index of the first day at or after the given key.
+     */
+    private int ceiling(int key) {
+        int i = Arrays.binarySearch(days, key);
+        return (i >= 0) ? i : -(i + 1);
+    }
+
+
+    private int dayKey(Date date) {
+        Calendar cal = Calendar.getInstance(timeZone);
+        cal.setTime(date);
+        return dayKey(cal);
+    }
+
+
+    // yyyymm00, below the first day of the month
+    private int monthStart(Date date) {
+        return dayKey(date) / 100 * 100;
+    }
+
+
+    private static int dayKey(Calendar cal) {
+        return cal.get(Calendar.YEAR) * 10000
+                + (cal.get(Calendar.MONTH) + 1) * 100
+                + cal.get(Calendar.DAY_OF_MONTH);
+    }
+
+
+    private Date toDate(int key, int hour) {
+        Calendar cal = Calendar.getInstance(timeZone);
+        cal.clear();
+        cal.set(key / 10000, key / 100 % 100 - 1, key % 100, hour, 0, 0);
+        return cal.getTime();
+    }
+
+}
@@ -107,6 +107,9 @@ public class WeblogEntry implements Serializable {
     private Set<WeblogEntryTag> tagSet = new HashSet<WeblogEntryTag>();
     private Set<WeblogEntryTag> removedTags = new HashSet<WeblogEntryTag>();
     private Set<WeblogEntryTag> addedTags = new HashSet<WeblogEntryTag>();
+
+    // approved comment count bulk loaded with the entry, or null to count on demand
+    private Integer commentCount = null;
     
     //----------------------------------------------------------- Construction
     
@@ -735,9 +738,20 @@ public class WeblogEntry implements Serializable {
     }
     
     public int getCommentCount() {
+        if (commentCount != null) {
+            return commentCount;
+        }
         List comments = getComments(true, true);
         return comments.size();
     }
+
+    /**
+     * Set a precomputed count of approved comments, or null to have
+     * getCommentCount() query for it.
+     */
+    public void setCommentCount(Integer commentCount) {
+        this.commentCount = commentCount;
+    }
     
     //------------------------------------------------------------------------
         
@@ -17,14 +17,19 @@
  */
 package org.apache.roller.weblogger.pojos;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 
 public class WeblogEntrySearchCriteria {
 
     public enum SortOrder {ASCENDING, DESCENDING}
     public enum SortBy {PUBLICATION_TIME, UPDATE_TIME}
+    // Associations which can be bulk loaded for all entries in the result
+    public enum Fetch {COMMENT_COUNTS, TAGS, CATEGORIES}
 
     // TODO: See if can switch from name of Category to Category object
 
@@ -52,8 +57,12 @@ public class WeblogEntrySearchCriteria {
     private String locale;
     // Offset into results for paging
     private int offset = 0;
+    // Last entry of the previous page, or null to page by offset
+    private PageCursor cursor;
 
     private int maxResults = -1;
+    // Associations to load up front for the whole result, instead of per entry
+    private Set<Fetch> fetch = EnumSet.noneOf(Fetch.class);
 
     public Weblog getWeblog() {
         return weblog;
@@ -151,6 +160,14 @@ public class WeblogEntrySearchCriteria {
         this.offset = offset;
     }
 
+    public PageCursor getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(PageCursor cursor) {
+        this.cursor = cursor;
+    }
+
     public int getMaxResults() {
         return maxResults;
     }
@@ -159,4 +176,13 @@ public class WeblogEntrySearchCriteria {
         this.maxResults = maxResults;
     }
 
+    public Set<Fetch> getFetch() {
+        return fetch;
+    }
+
+    public void setFetch(Fetch... fetch) {
+        this.fetch = fetch.length == 0
+                ? EnumSet.noneOf(Fetch.class) : EnumSet.copyOf(Arrays.asList(fetch));
+    }
+
 }
@@ -34,6 +34,7 @@ import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryTag;
 import org.apache.roller.weblogger.pojos.WeblogEntryTagComparator;
 import org.apache.roller.weblogger.util.HTMLSanitizer;
+import org.apache.roller.weblogger.util.cache.SurrogateKeys;
 
 
 /**
@@ -58,6 +59,8 @@ public final class WeblogEntryWrapper {
     // wrap the given pojo if it is not null
     public static WeblogEntryWrapper wrap(WeblogEntry toWrap, URLStrategy strat) {
         if(toWrap != null) {
+            // note the entry for the surrogate keys of the active render
+            SurrogateKeys.touch(toWrap);
             return new WeblogEntryWrapper(toWrap, strat);
         }
         return null;
@@ -44,6 +44,9 @@ import org.apache.roller.weblogger.business.startup.WebloggerStartup;
 import org.apache.roller.weblogger.ui.core.plugins.UIPluginManager;
 import org.apache.roller.weblogger.ui.core.plugins.UIPluginManagerImpl;
 import org.apache.roller.weblogger.ui.core.security.AutoProvision;
+import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheSnapshotManager;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheWarmer;
 import org.apache.roller.weblogger.util.cache.CacheManager;
 import org.apache.velocity.runtime.RuntimeSingleton;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
@@ -174,6 +177,16 @@ public class RollerContext extends ContextLoaderListener
             
             // Setup Velocity template engine
             setupVelocity();
+
+            // Resolve configured rendering models
+            ModelLoader.preloadModels();
+            
+            // Restore the rendering caches from the last snapshot and warm
+            // them once we are up, if enabled
+            if (WebloggerFactory.isBootstrapped()) {
+                CacheSnapshotManager.initialize(WebloggerFactory.getWeblogger().getThreadManager());
+                CacheWarmer.initialize(WebloggerFactory.getWeblogger().getThreadManager());
+            }
         } catch (WebloggerException ex) {
             log.fatal("Error initializing Roller Weblogger web tier", ex);
         }
@@ -185,6 +198,8 @@ public class RollerContext extends ContextLoaderListener
      * Responds to app-destroy event and triggers shutdown sequence.
      */
     public void contextDestroyed(ServletContextEvent sce) {        
+        CacheWarmer.shutdown();
+        CacheSnapshotManager.shutdown();
         WebloggerFactory.getWeblogger().shutdown();        
         // do we need a more generic mechanism for presentation layer shutdown?
         CacheManager.shutdown();
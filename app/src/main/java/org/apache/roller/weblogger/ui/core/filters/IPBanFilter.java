@@ -29,22 +29,52 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.util.IPBanList;
+import org.apache.roller.weblogger.util.RateLimiter;
 
 
 /**
  * Simple IP restriction filter.  Denied clients get a 404 reponse.
  *
+ * If ratelimit.enabled is set, clients are also limited to a number of
+ * requests a minute, see {@link RateLimiter}.  Limited clients get a 429
+ * response.  Searches are counted separately from comments and trackbacks,
+ * so searching doesn't use up a client's budget for posting comments.
+ *
  * @web.filter name="IPBanFilter"
  */
 public class IPBanFilter implements Filter {
     
     private static Log log = LogFactory.getLog(IPBanFilter.class);
     
+    // http status for clients over their rate, not in the servlet api
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    
+    private static final String SEARCH_SERVLET_PATH = "/roller-ui/rendering/search";
+    
+    // limiter for comments and trackbacks
+    private RateLimiter rateLimiter = null;
+    
+    // limiter for searches
+    private RateLimiter searchRateLimiter = null;
+    
     
     public void init(FilterConfig filterConfig) throws ServletException {
         
         log.info("INIT IPBanFilter");
+        
+        if (WebloggerConfig.getBooleanProperty("ratelimit.enabled")) {
+            int requestsPerMinute = WebloggerConfig.getIntProperty("ratelimit.requestsPerMinute", 30);
+            int burst = WebloggerConfig.getIntProperty("ratelimit.burst", 10);
+            int maxEntries = WebloggerConfig.getIntProperty("ratelimit.maxEntries", 10000);
+            
+            rateLimiter = new RateLimiter(requestsPerMinute, burst, maxEntries);
+            searchRateLimiter = new RateLimiter(
+                    WebloggerConfig.getIntProperty("ratelimit.search.requestsPerMinute", requestsPerMinute),
+                    WebloggerConfig.getIntProperty("ratelimit.search.burst", burst),
+                    maxEntries);
+        }
     }
     
     
@@ -54,11 +84,19 @@ public class IPBanFilter implements Filter {
         HttpServletRequest request = (HttpServletRequest) req;
         HttpServletResponse response = (HttpServletResponse) res;
         
+        RateLimiter limiter = SEARCH_SERVLET_PATH.equals(request.getServletPath())
+                ? searchRateLimiter : rateLimiter;
+        
         // check if client is allowed
         if(IPBanList.getInstance().isBanned(request.getRemoteAddr())) {
             log.debug("BANNED "+request.getRemoteAddr());
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
+        } else if(limiter != null && !limiter.tryAcquire(request.getRemoteAddr())) {
+            log.debug("LIMITED "+request.getRemoteAddr());
+            response.setHeader("Retry-After", Integer.toString(limiter.getRetryAfterSeconds()));
+            response.sendError(SC_TOO_MANY_REQUESTS);
+            return;
         } else {
             chain.doFilter(request, response);
         }
@@ -37,6 +37,7 @@ import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogArchiveIndex;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.util.DateUtil;
@@ -101,6 +102,45 @@ public class WeblogCalendarModel implements CalendarModel {
         Date startDate = DateUtil.getStartOfMonth(month,cal);
         Date endDate = DateUtil.getEndOfMonth(month,cal);
         
+        WeblogArchiveIndex index = getArchiveIndex(cat);
+        if (index != null) {
+            // the index knows the nearest months with entries
+            prevMonth = index.getPrevMonth(startDate);
+            nextMonth = index.getNextMonth(startDate);
+        } else {
+            initPrevNextMonths(startDate, endDate);
+        }
+        
+        // Fix for ROL-840 Don't include future entries
+        Date now = new Date();
+        if (endDate.after(now)) {
+        	endDate = now;
+        	nextMonth = null;
+        }
+        
+        loadWeblogEntries(startDate, endDate, cat);
+    }
+    
+    
+    /**
+     * The archive index of the weblog, or null if the calendar is limited to
+     * a category or locale which the index doesn't know about.
+     */
+    protected WeblogArchiveIndex getArchiveIndex(String catName) {
+        if (catName != null || locale != null) {
+            return null;
+        }
+        try {
+            return WebloggerFactory.getWeblogger().getWeblogEntryManager().getArchiveIndex(weblog);
+        } catch (WebloggerException e) {
+            log.error("ERROR getting archive index", e);
+            return null;
+        }
+    }
+    
+    
+    private void initPrevNextMonths(Date startDate, Date endDate) {
+        
         // Determine previous non-empty month
         // Get entries before startDate, using category restriction limit 1
         // Use entry's date as previous month
@@ -147,18 +187,21 @@ public class WeblogCalendarModel implements CalendarModel {
         } catch (WebloggerException e) {
             log.error("ERROR determining next non-empty month");
         }  
-        
-        // Fix for ROL-840 Don't include future entries
-        Date now = new Date();
-        if (endDate.after(now)) {
-        	endDate = now;
-        	nextMonth = null;
-        }
-        
-        loadWeblogEntries(startDate, endDate, cat);
     }
     
     protected void loadWeblogEntries(Date startDate, Date endDate, String catName) {
+        WeblogArchiveIndex index = getArchiveIndex(catName);
+        if (index != null) {
+            // only the days with entries are needed, not the entries
+            SimpleDateFormat formatter = DateUtil.get8charDateFormat();
+            formatter.setTimeZone(weblog.getTimeZoneInstance());
+            Map<Date, String> map = new HashMap<Date, String>();
+            for (Date entryDay : index.getDaysOfMonth(startDate, endDate)) {
+                map.put(entryDay, formatter.format(entryDay));
+            }
+            monthMap = map;
+            return;
+        }
         try {
             WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
             WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
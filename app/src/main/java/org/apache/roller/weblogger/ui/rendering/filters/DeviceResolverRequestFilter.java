@@ -22,16 +22,21 @@
 package org.apache.roller.weblogger.ui.rendering.filters;
 
 import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.ui.rendering.util.mobile.Device;
 import org.apache.roller.weblogger.ui.rendering.util.mobile.DeviceResolver;
 import org.apache.roller.weblogger.ui.rendering.util.mobile.DeviceUtils;
 import org.apache.roller.weblogger.ui.rendering.util.mobile.LiteDeviceResolver;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 /**
@@ -52,10 +57,17 @@ import org.springframework.web.filter.OncePerRequestFilter;
  * <url-pattern>/*</url-pattern> <dispatcher>REQUEST</dispatcher>
  * </filter-mapping>
  * 
+ * What user agents resolve to is kept in the cache.devicetype cache, unless
+ * cache.devicetype.enabled is false.
+ * 
  * @author Roy Clarkson
  */
 public class DeviceResolverRequestFilter extends OncePerRequestFilter {
 
+    // a unique identifier for the user agent cache, this is used as the
+    // prefix for roller config properties that apply to this cache
+    public static final String CACHE_ID = "cache.devicetype";
+
     private final DeviceResolver deviceResolver;
 
     /**
@@ -63,7 +75,7 @@ public class DeviceResolverRequestFilter extends OncePerRequestFilter {
      * {@link LiteDeviceResolver} implementation.
      */
     public DeviceResolverRequestFilter() {
-        this(new LiteDeviceResolver());
+        this(createDefaultResolver());
     }
 
     /**
@@ -89,4 +101,25 @@ public class DeviceResolverRequestFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private static DeviceResolver createDefaultResolver() {
+        LiteDeviceResolver resolver = new LiteDeviceResolver();
+        if (WebloggerConfig.getBooleanProperty(CACHE_ID + ".enabled", true)) {
+            Map<String, String> cacheProps = new HashMap<String, String>();
+            cacheProps.put("id", CACHE_ID);
+            Enumeration allProps = WebloggerConfig.keys();
+            String prop = null;
+            while (allProps.hasMoreElements()) {
+                prop = (String) allProps.nextElement();
+
+                // we are only interested in props for this cache
+                if (prop.startsWith(CACHE_ID + ".")) {
+                    cacheProps.put(prop.substring(CACHE_ID.length() + 1),
+                            WebloggerConfig.getProperty(prop));
+                }
+            }
+            resolver.setUserAgentCache(CacheManager.constructCache(null, cacheProps));
+        }
+        return resolver;
+    }
+
 }
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.filters;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.business.RequestQueryCache;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * Opens a request scoped query cache around weblog rendering so that
+ * repeated manager queries made by models, pagers and wrappers while
+ * rendering a single page are only issued once.
+ *
+ * @web.filter name="RequestQueryCacheFilter"
+ */
+public class RequestQueryCacheFilter implements Filter {
+
+    private static Log log = LogFactory.getLog(RequestQueryCacheFilter.class);
+
+    public static final String STATS_HEADER = "X-Roller-Query-Cache";
+
+    private static final boolean statsHeader =
+            WebloggerConfig.getBooleanProperty("cache.requestQueries.statsHeader");
+
+    private boolean enabled = true;
+
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        RequestQueryCache.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestQueryCache.end();
+        }
+    }
+
+
+    /**
+     * Add query cache statistics for the current request to the response,
+     * if enabled.  Must be called before the response is committed.
+     */
+    public static void setStatsHeader(HttpServletResponse response) {
+        if (statsHeader) {
+            RequestQueryCache cache = RequestQueryCache.getCurrent();
+            if (cache != null) {
+                response.setHeader(STATS_HEADER, cache.toString());
+            }
+        }
+    }
+
+
+    public void init(FilterConfig filterConfig) {
+        enabled = WebloggerConfig.getBooleanProperty("cache.requestQueries.enabled", true);
+        log.info("Request query cache enabled = " + enabled);
+    }
+
+    public void destroy() {}
+
+}
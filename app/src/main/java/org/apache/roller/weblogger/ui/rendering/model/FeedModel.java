@@ -18,21 +18,33 @@
 
 package org.apache.roller.weblogger.ui.rendering.model;
 
+import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.URLStrategy;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
+import org.apache.roller.weblogger.pojos.StaticTemplate;
+import org.apache.roller.weblogger.pojos.Template;
+import org.apache.roller.weblogger.pojos.TemplateRendition.TemplateLanguage;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 import org.apache.roller.weblogger.pojos.wrapper.WeblogWrapper;
+import org.apache.roller.weblogger.ui.rendering.Renderer;
+import org.apache.roller.weblogger.ui.rendering.RendererManager;
+import org.apache.roller.weblogger.ui.rendering.RenderingException;
+import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository;
 import org.apache.roller.weblogger.ui.rendering.pagers.CommentsPager;
 import org.apache.roller.weblogger.ui.rendering.pagers.MediaFilesPager;
 import org.apache.roller.weblogger.ui.rendering.pagers.Pager;
 import org.apache.roller.weblogger.ui.rendering.pagers.WeblogEntriesListPager;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogRequest;
+import org.apache.roller.weblogger.ui.rendering.util.cache.FeedEntryCache;
 import org.apache.roller.weblogger.util.URLUtilities;
 
 
@@ -43,9 +55,15 @@ public class FeedModel implements Model {
     
     private static int DEFAULT_ENTRIES = WebloggerRuntimeConfig.getIntProperty("site.newsfeeds.defaultEntries");
     
+    private static Log log = LogFactory.getLog(FeedModel.class);
+    
     private WeblogFeedRequest feedRequest = null;
     private URLStrategy urlStrategy = null;
     private Weblog weblog = null;
+    private Map initData = null;
+    
+    // models for rendering single feed items, created when first needed
+    private Map<String, Object> itemModel = null;
     
     
     public void init(Map initData) throws WebloggerException {
@@ -73,6 +91,8 @@ public class FeedModel implements Model {
         
         // extract weblog object
         weblog = feedRequest.getWeblog();
+        
+        this.initData = initData;
     }
     
     
@@ -145,6 +165,85 @@ public class FeedModel implements Model {
     public List getTags() {
         return feedRequest.getTags();
     }    
+    
+    
+    /**
+     * Render the items of an entries feed, in "atom" or "rss" format.
+     *
+     * Items are kept in the {@link FeedEntryCache}, so only entries which
+     * are new or changed since the last render are rendered again and the
+     * rest of the feed is put together from cached items.
+     */
+    public String renderEntries(List<WeblogEntryWrapper> entries, String format)
+            throws WebloggerException {
+        
+        if (!"atom".equals(format) && !"rss".equals(format)) {
+            throw new WebloggerException("Unknown feed format: " + format);
+        }
+        
+        FeedEntryCache cache = FeedEntryCache.getInstance();
+        String locale = feedRequest.getLocale();
+        Renderer renderer = null;
+        
+        StringBuilder items = new StringBuilder();
+        for (WeblogEntryWrapper entry : entries) {
+            long updateTime = (entry.getUpdateTime() != null) ? entry.getUpdateTime().getTime() : 0;
+            String handle = entry.getWebsite().getHandle();
+            
+            String item = cache.get(handle, entry.getId(), updateTime, format, locale);
+            if (item == null) {
+                if (renderer == null) {
+                    renderer = getItemRenderer(format);
+                }
+                item = renderItem(renderer, entry);
+                cache.put(handle, entry.getId(), updateTime, format, locale, item);
+            }
+            items.append(item);
+        }
+        return items.toString();
+    }
+    
+    
+    private Renderer getItemRenderer(String format) throws WebloggerException {
+        
+        if (itemModel == null) {
+            UtilitiesModel utils = new UtilitiesModel();
+            utils.init(initData);
+            URLModel url = new URLModel();
+            url.init(initData);
+            
+            itemModel = new HashMap<String, Object>();
+            itemModel.put(utils.getModelName(), utils);
+            itemModel.put(url.getModelName(), url);
+        }
+        
+        try {
+            Template template = new StaticTemplate("weblog-entry-" + format + ".vm",
+                    TemplateLanguage.VELOCITY);
+            return RendererManager.getRenderer(template,
+                    MobileDeviceRepository.DeviceType.standard);
+        } catch (Exception ex) {
+            throw new WebloggerException("Couldn't find renderer for " + format + " feed items", ex);
+        }
+    }
+    
+    
+    private String renderItem(Renderer renderer, WeblogEntryWrapper entry)
+            throws WebloggerException {
+        
+        log.debug("Rendering " + entry.getId());
+        
+        Map<String, Object> model = new HashMap<String, Object>(itemModel);
+        model.put("entry", entry);
+        
+        StringWriter out = new StringWriter();
+        try {
+            renderer.render(model, out);
+        } catch (RenderingException ex) {
+            throw new WebloggerException("Error rendering feed item for entry " + entry.getId(), ex);
+        }
+        return out.toString();
+    }
 
     public class FeedEntriesPager extends WeblogEntriesListPager {
         
@@ -155,7 +254,8 @@ public class FeedModel implements Model {
                     feedRequest.getLocale(), feedRequest.getType(),
                     feedRequest.getFormat(), null, null, null, false, true), 
                     feedRequest.getWeblog(), null, feedRequest.getWeblogCategoryName(), feedRequest.getTags(),
-                    feedRequest.getLocale(), -1, feedRequest.getPage(), DEFAULT_ENTRIES);
+                    feedRequest.getLocale(), -1, feedRequest.getPage(), feedRequest.getCursor(),
+                    DEFAULT_ENTRIES);
             this.feedRequest = feedRequest;
         }
         
@@ -187,7 +287,8 @@ public class FeedModel implements Model {
             super(urlStrategy, urlStrategy.getWeblogFeedURL(feedRequest.getWeblog(), 
                     feedRequest.getLocale(), feedRequest.getType(),
                     feedRequest.getFormat(), null, null,
-                    null, false, true), feedRequest.getWeblog(), -1, feedRequest.getPage(), DEFAULT_ENTRIES);
+                    null, false, true), feedRequest.getWeblog(), -1, feedRequest.getPage(),
+                    feedRequest.getCursor(), DEFAULT_ENTRIES);
             this.feedRequest = feedRequest;
         }
         
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.roller.weblogger.WebloggerException;
+
+
+/**
+ * Rendering model map which defers initialization of {@link LazyModel}s
+ * until they are first looked up.
+ *
+ * Velocity contexts read straight through to the map they wrap, so a model
+ * which is never referenced by a template is never initialized.
+ */
+public class LazyModelMap extends HashMap<String, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    // model name -> init data, for models which are not initialized yet
+    private final Map<String, Map> pending = new HashMap<String, Map>();
+
+
+    /**
+     * Add a model which will be initialized on first access.
+     */
+    void putLazy(Model model, Map initData) {
+        super.put(model.getModelName(), model);
+        pending.put(model.getModelName(), initData);
+    }
+
+
+    @Override
+    public Object get(Object key) {
+        Object value = super.get(key);
+        if (value != null && !pending.isEmpty()) {
+            Map initData = pending.remove(key);
+            if (initData != null) {
+                try {
+                    ModelLoader.initModel((Model) value, initData);
+                } catch (WebloggerException ex) {
+                    // treat an uninitialized model as missing
+                    super.remove(key);
+                    throw new IllegalStateException("Error initializing model: " + key, ex);
+                }
+            }
+        }
+        return value;
+    }
+
+
+    @Override
+    public Object put(String key, Object value) {
+        pending.remove(key);
+        return super.put(key, value);
+    }
+
+
+    @Override
+    public Object remove(Object key) {
+        pending.remove(key);
+        return super.remove(key);
+    }
+
+}
@@ -36,7 +36,7 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogRequest;
  * 
  * Implemented by calling hybrid JSP tag.
  */
-public class MenuModel implements Model {
+public class MenuModel implements LazyModel {
     
     private static Log logger = LogFactory.getLog(MenuModel.class);
     
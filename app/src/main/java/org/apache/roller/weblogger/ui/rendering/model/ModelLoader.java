@@ -18,20 +18,79 @@
 
 package org.apache.roller.weblogger.ui.rendering.model;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.util.Utilities;
 
 
 /**
  * Helps with model loading process.
+ *
+ * Model class names are resolved into constructors only once per distinct
+ * models string and kept in a registry, so rendering a page does not pay
+ * for Class.forName() and reflective lookups on every request.  The model
+ * sets configured in roller.properties are resolved up front by
+ * {@link #preloadModels()}.
+ *
+ * Models which implement {@link LazyModel} and are loaded into a
+ * {@link LazyModelMap} are only initialized when a template first asks for
+ * them.
  */
 public class ModelLoader {
-    
+
     private static Log log = LogFactory.getLog(ModelLoader.class);
-    
+
+    /** Model set properties resolved by preloadModels() */
+    private static final String[] MODEL_PROPERTIES = {
+        "rendering.pageModels",
+        "rendering.feedModels",
+        "rendering.searchModels",
+        "rendering.previewModels",
+        "rendering.siteModels"
+    };
+
+    // models string -> resolved model definitions
+    private static final ConcurrentMap<String, List<ModelDefinition>> registry =
+            new ConcurrentHashMap<String, List<ModelDefinition>>();
+
+    // model class name -> init statistics
+    private static final ConcurrentMap<String, ModelInitStats> stats =
+            new ConcurrentHashMap<String, ModelInitStats>();
+
+
+    // non-instantiable
+    private ModelLoader() {}
+
+
+    /**
+     * Resolve all of the model sets configured in roller.properties so that
+     * configuration errors show up at startup instead of on first render.
+     */
+    public static void preloadModels() {
+        for (String property : MODEL_PROPERTIES) {
+            String modelsString = WebloggerConfig.getProperty(property);
+            try {
+                List<ModelDefinition> models = resolve(modelsString, true);
+                log.info("Resolved " + models.size() + " models for " + property);
+            } catch (WebloggerException ex) {
+                log.error("Error resolving models for " + property, ex);
+            }
+        }
+    }
+
+
     /**
      * Convenience method to load a comma-separated list of page models.
      *
@@ -39,44 +98,217 @@ public class ModelLoader {
      * the Model instances.
      */
     public static void loadModels(String modelsString, Map<String, Object> modelMap,
-                                   Map initData, boolean fail) 
+                                   Map initData, boolean fail)
             throws WebloggerException {
-        
-        String[] models = Utilities.stringToStringArray(modelsString, ",");
+
+        List<ModelDefinition> models = resolve(modelsString, fail);
+        for (ModelDefinition definition : models) {
+            Model pageModel;
+            try {
+                pageModel = definition.newInstance();
+            } catch (WebloggerException ex) {
+                if(fail) {
+                    throw ex;
+                } else {
+                    log.warn(ex.getMessage());
+                    continue;
+                }
+            }
+
+            if (definition.isLazy() && modelMap instanceof LazyModelMap) {
+                ((LazyModelMap) modelMap).putLazy(pageModel, initData);
+                continue;
+            }
+
+            try {
+                initModel(pageModel, initData);
+                modelMap.put(pageModel.getModelName(), pageModel);
+            } catch (WebloggerException re) {
+                if(fail) {
+                    throw re;
+                } else {
+                    log.warn("Error initializing model: " + definition.getClassName());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Initialize a single model, keeping track of how long it took.
+     */
+    static void initModel(Model model, Map initData) throws WebloggerException {
+        long start = System.nanoTime();
+        try {
+            model.init(initData);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            getStats(model.getClass().getName()).record(elapsed);
+            if (log.isDebugEnabled()) {
+                log.debug("Initialized model " + model.getModelName()
+                        + " in " + (elapsed / 1000) + " microseconds");
+            }
+        }
+    }
+
+
+    /**
+     * Get init time statistics for all models initialized so far, keyed by
+     * model class name.
+     */
+    public static Map<String, ModelInitStats> getInitStats() {
+        return Collections.unmodifiableMap(
+                new TreeMap<String, ModelInitStats>(stats));
+    }
+
+
+    private static ModelInitStats getStats(String className) {
+        ModelInitStats modelStats = stats.get(className);
+        if (modelStats == null) {
+            ModelInitStats newStats = new ModelInitStats(className);
+            modelStats = stats.putIfAbsent(className, newStats);
+            if (modelStats == null) {
+                modelStats = newStats;
+            }
+        }
+        return modelStats;
+    }
+
+
+    /**
+     * Resolve a models string into model definitions, using the registry
+     * when the string has been seen before.
+     *
+     * Model sets with unresolvable classes are only registered when we are
+     * not failing on errors, in which case the bad classes are left out.
+     */
+    private static List<ModelDefinition> resolve(String modelsString, boolean fail)
+            throws WebloggerException {
+
+        if (modelsString == null) {
+            return Collections.emptyList();
+        }
+
+        List<ModelDefinition> models = registry.get(modelsString);
         if (models != null) {
-            for (String model : models) {
+            return models;
+        }
+
+        models = new ArrayList<ModelDefinition>();
+        String[] classNames = Utilities.stringToStringArray(modelsString, ",");
+        if (classNames != null) {
+            for (String className : classNames) {
                 try {
-                    Class modelClass = Class.forName(model);
-                    Model pageModel = (Model) modelClass.newInstance();
-                    pageModel.init(initData);
-                    modelMap.put(pageModel.getModelName(), pageModel);
-                } catch (WebloggerException re) {
-                    if(fail) {
-                        throw re;
-                    } else {
-                        log.warn("Error initializing model: " + model);
-                    }
-                } catch (ClassNotFoundException cnfe) {
-                    if(fail) {
-                        throw new WebloggerException("Error finding model: " + model, cnfe);
-                    } else {
-                        log.warn("Error finding model: " + model);
-                    }
-                } catch (InstantiationException ie) {
-                    if(fail) {
-                        throw new WebloggerException("Error instantiating model: " + model, ie);
-                    } else {
-                        log.warn("Error instantiating model: " + model);
-                    }
-                } catch (IllegalAccessException iae) {
+                    models.add(new ModelDefinition(className.trim()));
+                } catch (WebloggerException ex) {
                     if(fail) {
-                        throw new WebloggerException("Error accessing model: " + model, iae);
+                        throw ex;
                     } else {
-                        log.warn("Error accessing model: " + model);
+                        log.warn(ex.getMessage());
                     }
                 }
             }
         }
+
+        models = Collections.unmodifiableList(models);
+        registry.putIfAbsent(modelsString, models);
+        return models;
     }
-    
+
+
+    /**
+     * A model class resolved to its no-arg constructor.
+     */
+    private static class ModelDefinition {
+
+        private final String className;
+        private final Constructor<? extends Model> constructor;
+        private final boolean lazy;
+
+        ModelDefinition(String className) throws WebloggerException {
+            this.className = className;
+            try {
+                Class<? extends Model> modelClass =
+                        Class.forName(className).asSubclass(Model.class);
+                this.constructor = modelClass.getConstructor();
+                this.lazy = LazyModel.class.isAssignableFrom(modelClass);
+            } catch (ClassNotFoundException cnfe) {
+                throw new WebloggerException("Error finding model: " + className, cnfe);
+            } catch (ClassCastException cce) {
+                throw new WebloggerException("Class is not a model: " + className, cce);
+            } catch (NoSuchMethodException nsme) {
+                throw new WebloggerException("Error accessing model: " + className, nsme);
+            }
+        }
+
+        Model newInstance() throws WebloggerException {
+            try {
+                return constructor.newInstance();
+            } catch (InstantiationException ie) {
+                throw new WebloggerException("Error instantiating model: " + className, ie);
+            } catch (IllegalAccessException iae) {
+                throw new WebloggerException("Error accessing model: " + className, iae);
+            } catch (InvocationTargetException ite) {
+                throw new WebloggerException("Error instantiating model: " + className, ite);
+            }
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        boolean isLazy() {
+            return lazy;
+        }
+    }
+
+
+    /**
+     * Cumulative init time statistics for a single model class.
+     */
+    public static class ModelInitStats {
+
+        private final String modelClass;
+        private final AtomicLong initCount = new AtomicLong(0);
+        private final AtomicLong initTime = new AtomicLong(0);
+
+        ModelInitStats(String modelClass) {
+            this.modelClass = modelClass;
+        }
+
+        void record(long nanos) {
+            initCount.incrementAndGet();
+            initTime.addAndGet(nanos);
+        }
+
+        public String getModelClass() {
+            return modelClass;
+        }
+
+        public long getInitCount() {
+            return initCount.get();
+        }
+
+        /**
+         * Total time spent in init(), in microseconds.
+         */
+        public long getTotalInitTime() {
+            return initTime.get() / 1000;
+        }
+
+        /**
+         * Average time spent in init(), in microseconds.
+         */
+        public long getAverageInitTime() {
+            long count = initCount.get();
+            return (count > 0) ? getTotalInitTime() / count : 0;
+        }
+
+        @Override
+        public String toString() {
+            return modelClass + " inits=" + getInitCount()
+                    + " avg=" + getAverageInitTime() + "us";
+        }
+    }
+
 }
@@ -42,7 +42,7 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogRequest;
 /**
  * Model that provides access to planet aggregations, feeds and subscriptions.
  */
-public class PlanetModel implements Model {
+public class PlanetModel implements LazyModel {
     
     public static final String DEFAULT_PLANET_HANDLE = "default";   
     
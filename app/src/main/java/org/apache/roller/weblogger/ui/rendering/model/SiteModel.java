@@ -57,7 +57,7 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogRequest;
 /**
  * Page model that provides access to site-wide users, weblogs and entries.
  */
-public class SiteModel implements Model {
+public class SiteModel implements LazyModel {
     
     private static Log log = LogFactory.getLog(SiteModel.class);   
     
@@ -126,14 +126,7 @@ public class SiteModel implements Model {
                 null, null, null, tags, 0, false);
         }
         
-        return new WeblogEntriesListPager(
-            urlStrategy,
-            pagerUrl, null, null, null,
-            tags,
-            weblogRequest.getLocale(),
-            sinceDays,
-            pageNum, 
-            length);
+        return createEntriesPager(pagerUrl, null, null, null, sinceDays, length);
     }
     
        
@@ -183,15 +176,34 @@ public class SiteModel implements Model {
                 null, null, null, tags, 0, false);
         }
        
+        return createEntriesPager(pagerUrl, queryWeblog.getPojo(), user, cat, sinceDays, length);
+    }    
+    
+    
+    private Pager createEntriesPager(String pagerUrl, Weblog queryWeblog,
+            User user, String cat, int sinceDays, int length) {
+        
+        if (feedRequest != null) {
+            // feeds show a single pager, so they can seek with a cursor
+            return new WeblogEntriesListPager(
+                urlStrategy,
+                pagerUrl, queryWeblog, user, cat,
+                tags,
+                weblogRequest.getLocale(),
+                sinceDays,
+                pageNum,
+                feedRequest.getCursor(),
+                length);
+        }
         return new WeblogEntriesListPager(
             urlStrategy,
-            pagerUrl, queryWeblog.getPojo(), user, cat,
+            pagerUrl, queryWeblog, user, cat,
             tags,
             weblogRequest.getLocale(),
             sinceDays,
             pageNum, 
             length);
-    }    
+    }
     
     
     /*
@@ -214,6 +226,17 @@ public class SiteModel implements Model {
                 null, null, null, null, 0, false);
         }
         
+        if (feedRequest != null) {
+            // feeds show a single pager, so they can seek with a cursor
+            return new CommentsPager(
+                urlStrategy,
+                pagerUrl,
+                null,
+                sinceDays,
+                pageNum,
+                feedRequest.getCursor(),
+                length);
+        }
         return new CommentsPager(
             urlStrategy,
             pagerUrl,
@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.ui.rendering.pagers;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.roller.weblogger.business.URLStrategy;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.util.URLUtilities;
 
 
@@ -33,6 +34,12 @@ public abstract class AbstractPager implements Pager {
     private String url = null;
     private int page = 0;
     
+    // position after the previous page, or null to page by offset
+    private PageCursor cursor = null;
+    
+    // true if next links carry a cursor
+    private boolean seeking = false;
+    
     
     public AbstractPager(URLStrategy strat, String baseUrl, int pageNum) {
         
@@ -44,6 +51,26 @@ public abstract class AbstractPager implements Pager {
     }
     
     
+    /**
+     * Pager which seeks to its items using the cursor of the previous page,
+     * and adds the cursor of its own last item to the next link.  Only for
+     * urls showing a single pager, since there is one cursor parameter.
+     */
+    public AbstractPager(URLStrategy strat, String baseUrl, int pageNum, PageCursor cursor) {
+        
+        this(strat, baseUrl, pageNum, cursor, true);
+    }
+    
+    
+    protected AbstractPager(URLStrategy strat, String baseUrl, int pageNum,
+            PageCursor cursor, boolean seeking) {
+        
+        this(strat, baseUrl, pageNum);
+        this.cursor = cursor;
+        this.seeking = seeking;
+    }
+    
+    
     public String getHomeLink() {
         return url;
     }
@@ -59,6 +86,10 @@ public abstract class AbstractPager implements Pager {
             int nextPage = page + 1;
             Map params = new HashMap();
             params.put("page", ""+nextPage);
+            PageCursor nextCursor = seeking ? getNextCursor() : null;
+            if (nextCursor != null) {
+                params.put("cursor", nextCursor.toString());
+            }
             return createURL(url, params);
         }
         return null;
@@ -97,6 +128,15 @@ public abstract class AbstractPager implements Pager {
     }
     
     
+    /**
+     * Cursor of the last item on this page, or null if the pager can't
+     * seek.
+     */
+    protected PageCursor getNextCursor() {
+        return null;
+    }
+    
+    
     protected String createURL(String url, Map params) {
         
         return url + URLUtilities.getQueryString(params);
@@ -118,5 +158,9 @@ public abstract class AbstractPager implements Pager {
     public void setPage(int page) {
         this.page = page;
     }
+
+    public PageCursor getCursor() {
+        return cursor;
+    }
     
 }
@@ -26,8 +26,13 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogArchiveIndex;
 import org.apache.roller.util.DateUtil;
 import org.apache.roller.weblogger.business.URLStrategy;
 import org.apache.roller.weblogger.util.I18nMessages;
@@ -41,6 +46,8 @@ import org.apache.roller.weblogger.util.I18nMessages;
  */
 public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     
+    private static Log log = LogFactory.getLog(AbstractWeblogEntriesPager.class);
+    
     // message utils for doing i18n messages
     I18nMessages messageUtils = null;
     
@@ -116,6 +123,23 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     }
     
     
+    /**
+     * The archive index of the weblog, or null if the pager is limited to a
+     * category, tags or locale which the index doesn't know about.
+     */
+    WeblogArchiveIndex getArchiveIndex() {
+        if (catName != null || !tags.isEmpty() || locale != null) {
+            return null;
+        }
+        try {
+            return WebloggerFactory.getWeblogger().getWeblogEntryManager().getArchiveIndex(weblog);
+        } catch (WebloggerException e) {
+            log.error("ERROR: getting archive index", e);
+            return null;
+        }
+    }
+    
+    
     public String getHomeLink() {
         return createURL(0, 0, weblog, locale, pageLink, entryAnchor, dateString, catName, tags);
     }
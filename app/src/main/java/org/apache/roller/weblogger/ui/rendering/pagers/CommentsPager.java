@@ -30,6 +30,7 @@ import org.apache.roller.weblogger.business.Weblogger;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 import org.apache.roller.weblogger.pojos.Weblog;
@@ -64,7 +65,38 @@ public class CommentsPager extends AbstractPager {
             int            page,
             int            length) {
         
-        super(strat, baseUrl, page);
+        this(strat, baseUrl, weblog, sinceDays, page, null, false, length);
+    }
+    
+    
+    /**
+     * Pager which seeks to the comments after the given cursor, if any,
+     * instead of counting past the comments of earlier pages.
+     */
+    public CommentsPager(
+            URLStrategy    strat,
+            String         baseUrl,
+            Weblog         weblog,
+            int            sinceDays,
+            int            page,
+            PageCursor     cursor,
+            int            length) {
+        
+        this(strat, baseUrl, weblog, sinceDays, page, cursor, true, length);
+    }
+    
+    
+    private CommentsPager(
+            URLStrategy    strat,
+            String         baseUrl,
+            Weblog         weblog,
+            int            sinceDays,
+            int            page,
+            PageCursor     cursor,
+            boolean        seeking,
+            int            length) {
+        
+        super(strat, baseUrl, page, cursor, seeking);
         
         this.weblog = weblog;
         this.sinceDays = sinceDays;
@@ -101,6 +133,7 @@ public class CommentsPager extends AbstractPager {
                 csc.setStatus(ApprovalStatus.APPROVED);
                 csc.setReverseChrono(true);
                 csc.setOffset(offset);
+                csc.setCursor(getCursor());
                 csc.setMaxResults(length + 1);
 
                 List<WeblogEntryComment> commentsList = wmgr.getComments(csc);
@@ -130,6 +163,16 @@ public class CommentsPager extends AbstractPager {
         return more;
     }
     
+    
+    protected PageCursor getNextCursor() {
+        List<WeblogEntryCommentWrapper> items = getItems();
+        if (items.isEmpty()) {
+            return null;
+        }
+        WeblogEntryCommentWrapper last = items.get(items.size() - 1);
+        return new PageCursor(last.getPostTime(), last.getId());
+    }
+    
     /** Get last updated time from items in pager */
     public Date getLastUpdated() {
         if (lastUpdated == null) {
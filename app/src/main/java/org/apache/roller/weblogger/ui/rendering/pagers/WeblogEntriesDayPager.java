@@ -32,6 +32,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogArchiveIndex;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 import org.apache.roller.util.DateUtil;
@@ -83,25 +84,35 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
 
         Calendar cal = Calendar.getInstance(tz);
         
-        cal.setTime(day);
-        cal.add(Calendar.DAY_OF_MONTH, 1);
-        cal.set(Calendar.HOUR, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        nextDay = cal.getTime();
-        if (nextDay.after(getToday())) {
-            nextDay = null;
-        }
-        
-        cal.setTime(day);
-        cal.add(Calendar.DAY_OF_MONTH, -1);
-        cal.set(Calendar.HOUR, 23);
-        cal.set(Calendar.MINUTE, 59);
-        cal.set(Calendar.SECOND, 59);
-        prevDay = cal.getTime();
-        Date weblogInitialDate = weblog.getDateCreated() != null ? weblog.getDateCreated() : new Date(0);
-        if (DateUtil.getEndOfDay(prevDay,cal).before(weblogInitialDate)) {
-            prevDay = null;
+        WeblogArchiveIndex index = getArchiveIndex();
+        if (index != null) {
+            // link the nearest days with entries
+            nextDay = index.getNextDay(day);
+            if (nextDay != null && nextDay.after(getToday())) {
+                nextDay = null;
+            }
+            prevDay = index.getPrevDay(day);
+        } else {
+            cal.setTime(day);
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+            cal.set(Calendar.HOUR, 0);
+            cal.set(Calendar.MINUTE, 0);
+            cal.set(Calendar.SECOND, 0);
+            nextDay = cal.getTime();
+            if (nextDay.after(getToday())) {
+                nextDay = null;
+            }
+            
+            cal.setTime(day);
+            cal.add(Calendar.DAY_OF_MONTH, -1);
+            cal.set(Calendar.HOUR, 23);
+            cal.set(Calendar.MINUTE, 59);
+            cal.set(Calendar.SECOND, 59);
+            prevDay = cal.getTime();
+            Date weblogInitialDate = weblog.getDateCreated() != null ? weblog.getDateCreated() : new Date(0);
+            if (DateUtil.getEndOfDay(prevDay,cal).before(weblogInitialDate)) {
+                prevDay = null;
+            }
         }
     }
     
@@ -116,6 +127,13 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
         
         if (entries == null) {
             entries = new TreeMap<Date, List<WeblogEntryWrapper>>(Collections.reverseOrder());
+            
+            // nothing to load for a day without entries
+            WeblogArchiveIndex index = getArchiveIndex();
+            if (index != null && index.getDayCount(startDate) == 0) {
+                return entries;
+            }
+            
             try {
                 WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
                 wesc.setWeblog(weblog);
@@ -127,6 +145,9 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
                 wesc.setLocale(locale);
                 wesc.setOffset(offset);
                 wesc.setMaxResults(length+1);
+                wesc.setFetch(WeblogEntrySearchCriteria.Fetch.COMMENT_COUNTS,
+                        WeblogEntrySearchCriteria.Fetch.TAGS,
+                        WeblogEntrySearchCriteria.Fetch.CATEGORIES);
                 Map<Date, List<WeblogEntry>> mmap =
                         WebloggerFactory.getWeblogger().getWeblogEntryManager().getWeblogEntryObjectMap(wesc);
 
@@ -80,6 +80,9 @@ public class WeblogEntriesLatestPager extends AbstractWeblogEntriesPager {
                 wesc.setLocale(locale);
                 wesc.setOffset(offset);
                 wesc.setMaxResults(length+1);
+                wesc.setFetch(WeblogEntrySearchCriteria.Fetch.COMMENT_COUNTS,
+                        WeblogEntrySearchCriteria.Fetch.TAGS,
+                        WeblogEntrySearchCriteria.Fetch.CATEGORIES);
                 Map<Date, List<WeblogEntry>> mmap = WebloggerFactory.getWeblogger().getWeblogEntryManager().getWeblogEntryObjectMap(wesc);
 
                 // need to wrap pojos
@@ -27,6 +27,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.business.URLStrategy;
 import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.Weblog;
@@ -72,7 +73,48 @@ public class WeblogEntriesListPager extends AbstractPager {
             int            pageNum,
             int            length) {
         
-        super(strat, baseUrl, pageNum);
+        this(strat, baseUrl, queryWeblog, queryUser, queryCat, queryTags,
+                locale, sinceDays, pageNum, null, false, length);
+    }
+    
+    
+    /**
+     * Pager which seeks to the entries after the given cursor, if any,
+     * instead of counting past the entries of earlier pages.
+     */
+    public WeblogEntriesListPager(
+            URLStrategy    strat,
+            String         baseUrl,
+            Weblog         queryWeblog,
+            User           queryUser,
+            String         queryCat,
+            List<String>   queryTags,
+            String         locale,
+            int            sinceDays,
+            int            pageNum,
+            PageCursor     cursor,
+            int            length) {
+        
+        this(strat, baseUrl, queryWeblog, queryUser, queryCat, queryTags,
+                locale, sinceDays, pageNum, cursor, true, length);
+    }
+    
+    
+    private WeblogEntriesListPager(
+            URLStrategy    strat,
+            String         baseUrl,
+            Weblog         queryWeblog,
+            User           queryUser,
+            String         queryCat,
+            List<String>   queryTags,
+            String         locale,
+            int            sinceDays,
+            int            pageNum,
+            PageCursor     cursor,
+            boolean        seeking,
+            int            length) {
+        
+        super(strat, baseUrl, pageNum, cursor, seeking);
         
         // store the data
         this.queryWeblog = queryWeblog;
@@ -114,7 +156,11 @@ public class WeblogEntriesListPager extends AbstractPager {
                 wesc.setStatus(WeblogEntry.PubStatus.PUBLISHED);
                 wesc.setLocale(locale);
                 wesc.setOffset(offset);
+                wesc.setCursor(getCursor());
                 wesc.setMaxResults(length+1);
+                wesc.setFetch(WeblogEntrySearchCriteria.Fetch.COMMENT_COUNTS,
+                        WeblogEntrySearchCriteria.Fetch.TAGS,
+                        WeblogEntrySearchCriteria.Fetch.CATEGORIES);
                 List<WeblogEntry> rawEntries = WebloggerFactory.getWeblogger()
                         .getWeblogEntryManager().getWeblogEntries(wesc);
 
@@ -143,6 +189,16 @@ public class WeblogEntriesListPager extends AbstractPager {
     public boolean hasMoreItems() {
         return more;
     }
+    
+    
+    protected PageCursor getNextCursor() {
+        List<WeblogEntryWrapper> items = getItems();
+        if (items.isEmpty()) {
+            return null;
+        }
+        WeblogEntryWrapper last = items.get(items.size() - 1);
+        return new PageCursor(last.getPubTime(), last.getId());
+    }
 
     /** Get last updated time from items in pager */
     public Date getLastUpdated() {
@@ -26,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogArchiveIndex;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 import org.apache.roller.util.DateUtil;
@@ -77,20 +78,30 @@ public class WeblogEntriesMonthPager extends AbstractWeblogEntriesPager {
         
         Calendar cal = Calendar.getInstance(tz);
         
-        cal.setTime(month);
-        cal.add(Calendar.MONTH, 1);
-        nextMonth = cal.getTime();
-        if (nextMonth.after(getToday())) {
-            nextMonth = null;
-        }
-        
-        cal.setTime(month);
-        cal.add(Calendar.MONTH, -1);
-        prevMonth = cal.getTime();
-        Date endOfPrevMonth = DateUtil.getEndOfMonth(prevMonth,cal) ;
-        Date weblogInitialDate = weblog.getDateCreated() != null ? weblog.getDateCreated() : new Date(0);
-        if (endOfPrevMonth.before(weblogInitialDate)) {
-            prevMonth = null;
+        WeblogArchiveIndex index = getArchiveIndex();
+        if (index != null) {
+            // link the nearest months with entries
+            nextMonth = index.getNextMonth(month);
+            if (nextMonth != null && nextMonth.after(getToday())) {
+                nextMonth = null;
+            }
+            prevMonth = index.getPrevMonth(month);
+        } else {
+            cal.setTime(month);
+            cal.add(Calendar.MONTH, 1);
+            nextMonth = cal.getTime();
+            if (nextMonth.after(getToday())) {
+                nextMonth = null;
+            }
+            
+            cal.setTime(month);
+            cal.add(Calendar.MONTH, -1);
+            prevMonth = cal.getTime();
+            Date endOfPrevMonth = DateUtil.getEndOfMonth(prevMonth,cal) ;
+            Date weblogInitialDate = weblog.getDateCreated() != null ? weblog.getDateCreated() : new Date(0);
+            if (endOfPrevMonth.before(weblogInitialDate)) {
+                prevMonth = null;
+            }
         }
     }
     
@@ -106,6 +117,13 @@ public class WeblogEntriesMonthPager extends AbstractWeblogEntriesPager {
         
         if (entries == null) {
             entries = new TreeMap<Date, List<WeblogEntryWrapper>>(Collections.reverseOrder());
+            
+            // nothing to load for a month without entries
+            WeblogArchiveIndex index = getArchiveIndex();
+            if (index != null && index.getMonthCount(startDate) == 0) {
+                return entries;
+            }
+            
             try {
                 WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
                 wesc.setWeblog(weblog);
@@ -117,6 +135,9 @@ public class WeblogEntriesMonthPager extends AbstractWeblogEntriesPager {
                 wesc.setLocale(locale);
                 wesc.setOffset(offset);
                 wesc.setMaxResults(length+1);
+                wesc.setFetch(WeblogEntrySearchCriteria.Fetch.COMMENT_COUNTS,
+                        WeblogEntrySearchCriteria.Fetch.TAGS,
+                        WeblogEntrySearchCriteria.Fetch.CATEGORIES);
                 Map<Date, List<WeblogEntry>> mmap = WebloggerFactory.getWeblogger()
                         .getWeblogEntryManager().getWeblogEntryObjectMap(wesc);
 
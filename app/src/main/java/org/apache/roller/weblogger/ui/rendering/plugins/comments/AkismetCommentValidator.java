@@ -24,6 +24,7 @@ import java.io.OutputStreamWriter;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ResourceBundle;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -38,22 +39,48 @@ import org.apache.roller.weblogger.util.RollerMessages;
  * Roller startup config property comment.validator.akismet.apikey.
  * You can get a free personal use key by registering as a user at wordpress.com.
  * See Akismet site for API details (http://akismet.com/development/api/)
+ *
+ * The service URL may be overridden with comment.validator.akismet.url, e.g.
+ * to go through a proxy.  Connecting to and reading from the service times
+ * out after comment.validator.timeoutSecs.  When the service can't be asked
+ * comments count as spam, unless comment.validator.akismet.failOpen is set.
  */
-public class AkismetCommentValidator implements CommentValidator { 
+public class AkismetCommentValidator implements RemoteCommentValidator { 
     private static Log log = LogFactory.getLog(AkismetCommentValidator.class);    
     private ResourceBundle bundle = ResourceBundle.getBundle("ApplicationResources");
-    private String apikey;
+    private String serviceUrl;
+    private int timeout;
+    private boolean failOpen;
     
     /** Creates a new instance of AkismetCommentValidator */
     public AkismetCommentValidator() {
-        apikey = WebloggerConfig.getProperty("comment.validator.akismet.apikey");
+        this(WebloggerConfig.getProperty("comment.validator.akismet.apikey"),
+                WebloggerConfig.getProperty("comment.validator.akismet.url"),
+                WebloggerConfig.getIntProperty("comment.validator.timeoutSecs", 10)
+                        * RollerConstants.SEC_IN_MS);
+    }
+    
+    /** Creates a new instance of AkismetCommentValidator using the given service */
+    AkismetCommentValidator(String apikey, String serviceUrl, int timeout) {
+        this.serviceUrl = StringUtils.isNotEmpty(serviceUrl) ? serviceUrl
+                : "http://" + apikey + ".rest.akismet.com/1.1/comment-check";
+        this.timeout = timeout;
+        this.failOpen = WebloggerConfig.getBooleanProperty("comment.validator.akismet.failOpen", false);
     }
 
     public String getName() {
         return bundle.getString("comment.validator.akismetName");
     }
 
+    public boolean isFailOpen() {
+        return failOpen;
+    }
+
     public int validate(WeblogEntryComment comment, RollerMessages messages) {
+        return validate(comment, messages, System.currentTimeMillis() + timeout);
+    }
+
+    public int validate(WeblogEntryComment comment, RollerMessages messages, long deadline) {
         StringBuilder sb = new StringBuilder();
         sb.append("blog=").append(
             WebloggerFactory.getWeblogger().getUrlStrategy().getWeblogURL(comment.getWeblogEntry().getWebsite(), null, true)).append("&");
@@ -68,9 +95,13 @@ public class AkismetCommentValidator implements CommentValidator {
         sb.append("comment_content="     ).append(comment.getContent());
 
         try {
-            URL url = new URL("http://" + apikey + ".rest.akismet.com/1.1/comment-check");
+            URL url = new URL(serviceUrl);
             URLConnection conn = url.openConnection();
             conn.setDoOutput(true);
+            // don't keep waiting once nobody waits for the answer
+            int wait = (int) Math.max(1, Math.min(timeout, deadline - System.currentTimeMillis()));
+            conn.setConnectTimeout(wait);
+            conn.setReadTimeout(wait);
 
             conn.setRequestProperty("User_Agent", "Roller " + WebloggerFactory.getWeblogger().getVersion()); 
             conn.setRequestProperty("Content-type", "application/x-www-form-urlencoded;charset=utf8"); 
@@ -87,14 +118,18 @@ public class AkismetCommentValidator implements CommentValidator {
                 messages.addError("comment.validator.akismetMessage");
                 return 0;
             }
-            else {
+            else if ("false".equals(response)) {
                 return RollerConstants.PERCENT_100;
             }
+            else {
+                // e.g. "invalid" for a bad API key
+                log.error("Unexpected answer from Akismet: " + response);
+            }
         } catch (Exception e) {
             log.error("ERROR checking comment against Akismet", e);
         }
-        // interpreting error as spam: better safe than sorry?
-        return 0;
+        // no verdict, not cached so the service is asked again next time
+        return UNKNOWN;
     }
 }
 
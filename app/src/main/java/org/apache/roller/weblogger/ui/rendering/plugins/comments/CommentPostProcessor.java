@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.plugins.comments;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.runnable.ThreadManager;
+import org.apache.roller.weblogger.business.search.IndexManager;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.util.I18nMessages;
+import org.apache.roller.weblogger.util.MailUtil;
+import org.apache.roller.weblogger.util.RollerMessages;
+
+
+/**
+ * Runs the side effects of a newly saved comment, i.e. notification mail
+ * and re-indexing of its entry, on background workers after the comment
+ * has been committed.
+ *
+ * Each step runs on its own worker pool and reloads the comment by id in
+ * the worker's own session, so it only ever sees committed data and a
+ * comment deleted in the meantime is simply skipped.  Failed steps are
+ * retried after a delay, up to a configured number of attempts.  With
+ * comments.postProcessing.async=false the steps run on the calling thread.
+ */
+public class CommentPostProcessor {
+
+    private static Log log = LogFactory.getLog(CommentPostProcessor.class);
+
+    private final boolean async;
+    private final int maxAttempts;
+    private final long retryDelaySecs;
+    private final ScheduledExecutorService retryTimer;
+
+    private final AtomicLong scheduled = new AtomicLong(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong retried = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+
+
+    public CommentPostProcessor() {
+        this(WebloggerConfig.getBooleanProperty("comments.postProcessing.async", true),
+                WebloggerConfig.getIntProperty("comments.postProcessing.maxAttempts", 3),
+                WebloggerConfig.getIntProperty("comments.postProcessing.retryDelaySecs", 30));
+    }
+
+
+    CommentPostProcessor(boolean async, int maxAttempts, long retryDelaySecs) {
+        this.async = async;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelaySecs = Math.max(0, retryDelaySecs);
+        this.retryTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Roller comment retry timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        log.info("Comment post processing: async=" + async + ", maxAttempts="
+                + this.maxAttempts + ", retryDelaySecs=" + this.retryDelaySecs);
+    }
+
+
+    /**
+     * Schedule post processing of a comment which has just been saved and
+     * committed.
+     *
+     * @param comment The saved comment.
+     * @param messages Validation messages, included in the owner's mail.
+     * @param resources Messages used to build the notification mail.
+     * @param notifySubscribers True to notify subscribers of the entry too.
+     * @param reindex True to re-index the comment's entry.
+     */
+    public void process(WeblogEntryComment comment, RollerMessages messages,
+                        I18nMessages resources, boolean notifySubscribers,
+                        boolean reindex) {
+
+        String commentId = comment.getId();
+        run(new NotificationStep(commentId, messages, resources, notifySubscribers));
+        if (reindex) {
+            run(new IndexStep(commentId));
+        }
+    }
+
+
+    /**
+     * Stop retrying failed steps.
+     */
+    public void shutdown() {
+        retryTimer.shutdownNow();
+    }
+
+
+    public long getScheduledCount() {
+        return scheduled.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+
+    private void run(Step step) {
+        scheduled.incrementAndGet();
+        if (async) {
+            submit(step);
+        } else {
+            step.run();
+        }
+    }
+
+
+    private void submit(Step step) {
+        try {
+            WebloggerFactory.getWeblogger().getThreadManager()
+                    .executeInBackground(step.getPool(), step);
+        } catch (RejectedExecutionException ex) {
+            retry(step, ex);
+        }
+    }
+
+
+    private void retry(final Step step, Exception cause) {
+        if (!async || step.attempts >= maxAttempts || retryTimer.isShutdown()) {
+            failed.incrementAndGet();
+            log.error("Giving up on " + step + " after " + step.attempts + " attempts", cause);
+            return;
+        }
+
+        retried.incrementAndGet();
+        log.warn("Retrying " + step + " in " + retryDelaySecs + " seconds: " + cause);
+        try {
+            retryTimer.schedule(new Runnable() {
+                public void run() {
+                    submit(step);
+                }
+            }, retryDelaySecs, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException ex) {
+            failed.incrementAndGet();
+            log.error("Unable to retry " + step, cause);
+        }
+    }
+
+
+    /**
+     * A single post processing step for a comment.
+     */
+    private abstract class Step implements Runnable {
+
+        private final String commentId;
+        private int attempts = 0;
+
+        Step(String commentId) {
+            this.commentId = commentId;
+        }
+
+        abstract String getPool();
+
+        abstract void perform(WeblogEntryComment comment) throws WebloggerException;
+
+        public void run() {
+            attempts++;
+            Weblogger roller = WebloggerFactory.getWeblogger();
+            try {
+                WeblogEntryComment comment =
+                        roller.getWeblogEntryManager().getComment(commentId);
+                if (comment == null) {
+                    log.debug("Comment removed before " + this + ", skipping");
+                } else {
+                    perform(comment);
+                }
+                completed.incrementAndGet();
+            } catch (Exception ex) {
+                retry(this, ex);
+            } finally {
+                if (async) {
+                    // always release Roller session of worker threads
+                    roller.release();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + " for comment " + commentId;
+        }
+    }
+
+
+    /**
+     * Send notification mail to the weblog owner and subscribers.
+     */
+    private class NotificationStep extends Step {
+
+        private final RollerMessages messages;
+        private final I18nMessages resources;
+        private final boolean notifySubscribers;
+
+        NotificationStep(String commentId, RollerMessages messages,
+                         I18nMessages resources, boolean notifySubscribers) {
+            super(commentId);
+            this.messages = messages;
+            this.resources = resources;
+            this.notifySubscribers = notifySubscribers;
+        }
+
+        String getPool() {
+            return ThreadManager.MAIL_POOL;
+        }
+
+        void perform(WeblogEntryComment comment) throws WebloggerException {
+            MailUtil.sendEmailNotification(comment, messages, resources, notifySubscribers);
+        }
+    }
+
+
+    /**
+     * Re-index the comment's entry.
+     */
+    private class IndexStep extends Step {
+
+        IndexStep(String commentId) {
+            super(commentId);
+        }
+
+        String getPool() {
+            return ThreadManager.INDEXING_POOL;
+        }
+
+        void perform(WeblogEntryComment comment) throws WebloggerException {
+            WeblogEntry entry = comment.getWeblogEntry();
+            IndexManager manager = WebloggerFactory.getWeblogger().getIndexManager();
+
+            // remove entry before (re)adding it, or in case it isn't Published
+            manager.removeEntryIndexOperation(entry);
+
+            // if published, index the entry
+            if (entry.isPublished()) {
+                manager.addEntryIndexOperation(entry);
+            }
+        }
+    }
+
+}
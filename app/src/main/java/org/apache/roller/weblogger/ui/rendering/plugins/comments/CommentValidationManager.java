@@ -16,26 +16,68 @@
  * directory of this distribution.
  */
 
+
 package org.apache.roller.weblogger.ui.rendering.plugins.comments;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.runnable.ThreadManager;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.util.RollerMessages;
+import org.apache.roller.weblogger.util.RollerMessages.RollerMessage;
 import org.apache.roller.weblogger.util.Utilities;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 
 /**
  * Responsible for loading validators and using them to validate comments.
+ *
+ * Local validators run first, in the configured order.  Since a comment is
+ * only accepted when every validator is 100% confident, validation stops
+ * at the first validator which is not (when comment.validator.shortCircuit
+ * is enabled).  {@link RemoteCommentValidator}s then run concurrently on the
+ * validation worker pool and must all answer within
+ * comment.validator.timeoutSecs.  A validator which does not answer in time,
+ * fails or returns {@link RemoteCommentValidator#UNKNOWN} has no verdict,
+ * the comment then counts as spam unless the validator fails open.  Remote
+ * verdicts are cached by comment fingerprint and remote host for
+ * comment.validator.cache.timeoutSecs, unknown verdicts are not cached.
  */
 public class CommentValidationManager {
     private static Log log = LogFactory.getLog(CommentValidationManager.class);
     private List<CommentValidator> validators = new ArrayList<CommentValidator>();
+    
+    private final boolean shortCircuit;
+    private final long timeoutMillis;
+    private final Cache verdictCache;
+    
+    // validator name -> statistics
+    private final Map<String, ValidatorStats> stats =
+            Collections.synchronizedMap(new TreeMap<String, ValidatorStats>());
 
     public CommentValidationManager() {
+        this(WebloggerConfig.getBooleanProperty("comment.validator.shortCircuit", true),
+                WebloggerConfig.getIntProperty("comment.validator.timeoutSecs", 10),
+                WebloggerConfig.getIntProperty("comment.validator.cache.timeoutSecs", 3600),
+                WebloggerConfig.getIntProperty("comment.validator.cache.size", 5000));
         
         // instantiate the validators that are configured
         try {
@@ -45,7 +87,7 @@ public class CommentValidationManager {
                 try {
                     Class valClass = Class.forName(arrayVal);
                     CommentValidator val = (CommentValidator) valClass.newInstance();
-                    validators.add(val);
+                    addCommentValidator(val);
                     log.info("Configured CommentValidator: " + val.getName() + " / " + valClass.getName());
                 } catch (ClassNotFoundException cnfe) {
                     log.warn("Error finding comment validator: " + arrayVal);
@@ -62,11 +104,42 @@ public class CommentValidationManager {
         log.info("Configured " + validators.size() + " CommentValidators");
     }
     
+    /**
+     * Create a manager without any validators (testing purposes).
+     */
+    CommentValidationManager(boolean shortCircuit, int timeoutSecs,
+                             int cacheTimeoutSecs, int cacheSize) {
+        this.shortCircuit = shortCircuit;
+        this.timeoutMillis = Math.max(1, timeoutSecs) * (long) RollerConstants.SEC_IN_MS;
+        
+        if (cacheTimeoutSecs > 0 && cacheSize > 0) {
+            Map<String, String> cacheProps = new HashMap<String, String>();
+            cacheProps.put("id", "commentValidatorVerdicts");
+            cacheProps.put("size", "" + cacheSize);
+            cacheProps.put("timeout", "" + cacheTimeoutSecs);
+            
+            // handler is null cuz verdicts don't depend on other objects
+            this.verdictCache = CacheManager.constructCache(null, cacheProps);
+        } else {
+            this.verdictCache = null;
+        }
+    }
+    
     /**
      * Add validator to those managed by this manager (testing purposes).
      */
     public void addCommentValidator(CommentValidator val) {
         validators.add(val);
+        stats.put(val.getName(), new ValidatorStats(val.getName()));
+    }
+    
+    /**
+     * Get call statistics for all validators, keyed by validator name.
+     */
+    public Map<String, ValidatorStats> getStats() {
+        synchronized (stats) {
+            return Collections.unmodifiableMap(new TreeMap<String, ValidatorStats>(stats));
+        }
     }
     
     /**
@@ -75,18 +148,310 @@ public class CommentValidationManager {
      * @return Number indicating confidence that comment is valid (100 meaning 100%)
      */
     public int validateComment(WeblogEntryComment comment, RollerMessages messages) {
+        if (validators.isEmpty()) {
+            // When no validators: consider all comments valid
+            return RollerConstants.PERCENT_100;
+        }
+        
         int total = 0;
-        if (validators.size() > 0) {
-            for (CommentValidator val : validators) {
-                log.debug("Invoking comment validator "+val.getName());
-                total += val.validate(comment, messages);
+        List<RemoteCommentValidator> remote = new ArrayList<RemoteCommentValidator>();
+        
+        // local validators are cheap, run them first
+        for (CommentValidator val : validators) {
+            if (val instanceof RemoteCommentValidator) {
+                remote.add((RemoteCommentValidator) val);
+                continue;
             }
-            total = total / validators.size();
-        } else {
-            // When no validators: consider all comments valid
-            total = RollerConstants.PERCENT_100;
+            log.debug("Invoking comment validator "+val.getName());
+            long start = System.nanoTime();
+            int score = val.validate(comment, messages);
+            getStats(val).record(System.nanoTime() - start, score);
+            total += score;
+            
+            if (shortCircuit && score < RollerConstants.PERCENT_100) {
+                // comment can't be 100% valid anymore
+                log.debug("Comment validation stopped by " + val.getName());
+                return total / validators.size();
+            }
+        }
+        
+        if (!remote.isEmpty()) {
+            total += validateRemote(remote, comment, messages);
+        }
+        return total / validators.size();
+    }
+    
+    /**
+     * Run remote validators concurrently, returning the sum of their scores.
+     */
+    private int validateRemote(List<RemoteCommentValidator> remote,
+                               WeblogEntryComment comment,
+                               RollerMessages messages) {
+        
+        BlockingQueue<Verdict> verdicts = new LinkedBlockingQueue<Verdict>();
+        List<Future<?>> running = new ArrayList<Future<?>>();
+        List<RemoteCommentValidator> pending = new ArrayList<RemoteCommentValidator>();
+        
+        ThreadManager threadMgr = WebloggerFactory.getWeblogger().getThreadManager();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (RemoteCommentValidator val : remote) {
+            String key = getCacheKey(val, comment);
+            Verdict cached = (verdictCache != null) ? (Verdict) verdictCache.get(key) : null;
+            if (cached != null) {
+                getStats(val).recordCacheHit();
+                verdicts.add(cached);
+                continue;
+            }
+            
+            RemoteValidation task = new RemoteValidation(val, comment, key, deadline, verdicts);
+            try {
+                running.add(threadMgr.submit(ThreadManager.VALIDATION_POOL, task));
+            } catch (RejectedExecutionException ex) {
+                // pool is saturated, do the work ourselves
+                log.debug("Validation pool is full, running " + val.getName() + " inline");
+                task.call();
+            }
+            pending.add(val);
+        }
+        
+        int total = 0;
+        for (int i = 0; i < remote.size(); i++) {
+            Verdict verdict = null;
+            try {
+                long wait = deadline - System.currentTimeMillis();
+                verdict = (wait > 0) ? verdicts.poll(wait, TimeUnit.MILLISECONDS) : verdicts.poll();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            
+            if (verdict == null) {
+                // out of time, whoever hasn't answered yet has no verdict
+                for (RemoteCommentValidator val : pending) {
+                    log.warn("Timed out waiting for comment validator " + val.getName());
+                    getStats(val).recordTimeout();
+                    total += noVerdict(val, "comment.validator.timeoutMessage", messages);
+                }
+                break;
+            }
+            
+            pending.remove(verdict.getValidator());
+            int score;
+            if (verdict.getScore() == RemoteCommentValidator.UNKNOWN) {
+                log.warn("No verdict from comment validator " + verdict.getValidator().getName());
+                score = noVerdict(verdict.getValidator(), "comment.validator.noVerdictMessage", messages);
+            } else {
+                verdict.addErrorsTo(messages);
+                score = verdict.getScore();
+            }
+            total += score;
+            
+            if (shortCircuit && score < RollerConstants.PERCENT_100) {
+                log.debug("Comment validation stopped by " + verdict.getValidator().getName());
+                break;
+            }
+        }
+        
+        // nobody is waiting for the rest anymore
+        for (Future<?> future : running) {
+            future.cancel(true);
         }
         return total;
     }
     
+    /**
+     * Score of a remote validator which gave no verdict, as its policy says.
+     */
+    private static int noVerdict(RemoteCommentValidator val, String messageKey,
+                                 RollerMessages messages) {
+        if (val.isFailOpen()) {
+            return RollerConstants.PERCENT_100;
+        }
+        messages.addError(messageKey, val.getName());
+        return 0;
+    }
+    
+    private ValidatorStats getStats(CommentValidator val) {
+        ValidatorStats valStats = stats.get(val.getName());
+        if (valStats == null) {
+            valStats = new ValidatorStats(val.getName());
+            stats.put(val.getName(), valStats);
+        }
+        return valStats;
+    }
+    
+    /**
+     * Verdicts are cached per validator, remote host, entry and comment
+     * content.
+     */
+    private static String getCacheKey(CommentValidator val, WeblogEntryComment comment) {
+        StringBuilder content = new StringBuilder();
+        content.append(comment.getName()).append('\n');
+        content.append(comment.getEmail()).append('\n');
+        content.append(comment.getUrl()).append('\n');
+        content.append(comment.getContent());
+        
+        String entryId = (comment.getWeblogEntry() != null) ? comment.getWeblogEntry().getId() : null;
+        return val.getClass().getName() + ":" + comment.getRemoteHost() + ":"
+                + entryId + ":" + DigestUtils.sha1Hex(content.toString());
+    }
+    
+    
+    /**
+     * Runs a remote validator, caching its verdict unless it is unknown and
+     * handing it back through the given queue.
+     */
+    private class RemoteValidation implements Callable<Verdict> {
+        
+        private final RemoteCommentValidator validator;
+        private final WeblogEntryComment comment;
+        private final String cacheKey;
+        private final long deadline;
+        private final BlockingQueue<Verdict> verdicts;
+        
+        RemoteValidation(RemoteCommentValidator validator, WeblogEntryComment comment,
+                         String cacheKey, long deadline, BlockingQueue<Verdict> verdicts) {
+            this.validator = validator;
+            this.comment = comment;
+            this.cacheKey = cacheKey;
+            this.deadline = deadline;
+            this.verdicts = verdicts;
+        }
+        
+        public Verdict call() {
+            log.debug("Invoking comment validator "+validator.getName());
+            RollerMessages valMessages = new RollerMessages();
+            long start = System.nanoTime();
+            int score = RemoteCommentValidator.UNKNOWN;
+            try {
+                score = validator.validate(comment, valMessages, deadline);
+            } catch (RuntimeException ex) {
+                log.error("Error invoking comment validator " + validator.getName(), ex);
+            }
+            getStats(validator).record(System.nanoTime() - start, score);
+            
+            Verdict verdict = new Verdict(validator, score, valMessages);
+            if (verdictCache != null && score != RemoteCommentValidator.UNKNOWN) {
+                verdictCache.put(cacheKey, verdict);
+            }
+            verdicts.add(verdict);
+            return verdict;
+        }
+    }
+    
+    
+    /**
+     * Outcome of a single remote validation.
+     */
+    private static class Verdict {
+        
+        private final RemoteCommentValidator validator;
+        private final int score;
+        private final List<RollerMessage> errors = new ArrayList<RollerMessage>();
+        
+        Verdict(RemoteCommentValidator validator, int score, RollerMessages messages) {
+            this.validator = validator;
+            this.score = score;
+            for (Iterator it = messages.getErrors(); it.hasNext();) {
+                errors.add((RollerMessage) it.next());
+            }
+        }
+        
+        RemoteCommentValidator getValidator() {
+            return validator;
+        }
+        
+        int getScore() {
+            return score;
+        }
+        
+        void addErrorsTo(RollerMessages messages) {
+            for (RollerMessage error : errors) {
+                messages.addError(error.getKey(), error.getArgs());
+            }
+        }
+    }
+    
+    
+    /**
+     * Call statistics for a single validator.
+     */
+    public static class ValidatorStats {
+        
+        private final String name;
+        private final AtomicLong calls = new AtomicLong(0);
+        private final AtomicLong time = new AtomicLong(0);
+        private final AtomicLong spam = new AtomicLong(0);
+        private final AtomicLong cacheHits = new AtomicLong(0);
+        private final AtomicLong timeouts = new AtomicLong(0);
+        private final AtomicLong unknown = new AtomicLong(0);
+        
+        ValidatorStats(String name) {
+            this.name = name;
+        }
+        
+        void record(long nanos, int score) {
+            calls.incrementAndGet();
+            time.addAndGet(nanos);
+            if (score == RemoteCommentValidator.UNKNOWN) {
+                unknown.incrementAndGet();
+            } else if (score < RollerConstants.PERCENT_100) {
+                spam.incrementAndGet();
+            }
+        }
+        
+        void recordCacheHit() {
+            cacheHits.incrementAndGet();
+        }
+        
+        void recordTimeout() {
+            timeouts.incrementAndGet();
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public long getCallCount() {
+            return calls.get();
+        }
+        
+        /**
+         * Number of calls which scored below 100%.
+         */
+        public long getSpamCount() {
+            return spam.get();
+        }
+        
+        public long getCacheHitCount() {
+            return cacheHits.get();
+        }
+        
+        public long getTimeoutCount() {
+            return timeouts.get();
+        }
+        
+        /**
+         * Number of calls which gave no verdict.
+         */
+        public long getUnknownCount() {
+            return unknown.get();
+        }
+        
+        /**
+         * Average time spent in validate(), in milliseconds.
+         */
+        public long getAverageTime() {
+            long count = calls.get();
+            return (count > 0) ? TimeUnit.NANOSECONDS.toMillis(time.get() / count) : 0;
+        }
+        
+        @Override
+        public String toString() {
+            return name + " calls=" + getCallCount() + " spam=" + getSpamCount()
+                    + " cacheHits=" + getCacheHitCount() + " timeouts=" + getTimeoutCount()
+                    + " unknown=" + getUnknownCount()
+                    + " avg=" + getAverageTime() + "ms";
+        }
+    }
+    
 }
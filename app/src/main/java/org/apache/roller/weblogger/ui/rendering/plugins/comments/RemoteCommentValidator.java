@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.plugins.comments;
+
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.util.RollerMessages;
+
+
+/**
+ * Marks a comment validator which calls out to a remote service.
+ *
+ * Remote validators run concurrently with a timeout once all local
+ * validators have passed, and their verdicts are cached for a while so a
+ * comment posted again is not sent to the service again.  They must not
+ * rely on running on the request thread.
+ */
+public interface RemoteCommentValidator extends CommentValidator {
+    
+    /**
+     * Score to return when the service gave no answer, e.g. because it could
+     * not be reached.  Unknown verdicts are not cached, the comment then
+     * passes this validator only if it fails open.
+     */
+    int UNKNOWN = -1;
+    
+    
+    /**
+     * Validate a comment, giving up once the deadline has passed.
+     *
+     * @param deadline Time in milliseconds, as System.currentTimeMillis(),
+     *                 after which nobody waits for the answer anymore.
+     * @return Score as for validate(), or UNKNOWN.
+     */
+    int validate(WeblogEntryComment comment, RollerMessages messages, long deadline);
+    
+    
+    /**
+     * True if a comment passes this validator when there is no verdict,
+     * i.e. the service timed out, failed or answered UNKNOWN.  Otherwise
+     * the comment counts as spam.
+     */
+    boolean isFailOpen();
+    
+}
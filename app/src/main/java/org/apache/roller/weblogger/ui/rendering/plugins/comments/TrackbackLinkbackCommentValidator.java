@@ -31,9 +31,10 @@ import org.apache.roller.weblogger.util.RollerMessages;
 
 /**
  * Validates comment if comment's URL links back to the comment's entry,
- * intended for use with trackbacks only.
+ * intended for use with trackbacks only.  A linkback which can't be checked
+ * in time is no linkback, otherwise a stalling site would get through.
  */
-public class TrackbackLinkbackCommentValidator implements CommentValidator {
+public class TrackbackLinkbackCommentValidator implements RemoteCommentValidator {
     
     private ResourceBundle bundle = ResourceBundle.getBundle("ApplicationResources");
     
@@ -41,7 +42,15 @@ public class TrackbackLinkbackCommentValidator implements CommentValidator {
         return bundle.getString("comment.validator.trackbackLinkbackName");
     }
     
+    public boolean isFailOpen() {
+        return false;
+    }
+    
     public int validate(WeblogEntryComment comment, RollerMessages messages) {
+        return validate(comment, messages, System.currentTimeMillis() + LinkbackExtractor.TIMEOUT_MS);
+    }
+    
+    public int validate(WeblogEntryComment comment, RollerMessages messages, long deadline) {
         
         // linkback validation can be toggled at runtime, so check if it's enabled
         // if it's disabled then just return a score of 100
@@ -58,7 +67,8 @@ public class TrackbackLinkbackCommentValidator implements CommentValidator {
                     comment.getWeblogEntry().getWebsite(),
                     null,
                     comment.getWeblogEntry().getAnchor(),
-                    true));
+                    true),
+                    deadline);
         } catch (MalformedURLException ignored1) {
         } catch (IOException ignored2) {}
         
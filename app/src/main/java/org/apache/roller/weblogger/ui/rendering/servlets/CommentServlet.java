@@ -37,7 +37,6 @@ import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
-import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
@@ -45,13 +44,13 @@ import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.ui.rendering.plugins.comments.CommentAuthenticator;
+import org.apache.roller.weblogger.ui.rendering.plugins.comments.CommentPostProcessor;
 import org.apache.roller.weblogger.ui.rendering.plugins.comments.CommentValidationManager;
 import org.apache.roller.weblogger.ui.rendering.plugins.comments.DefaultCommentAuthenticator;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogCommentRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogEntryCommentForm;
 import org.apache.roller.weblogger.util.GenericThrottle;
 import org.apache.roller.weblogger.util.IPBanList;
-import org.apache.roller.weblogger.util.MailUtil;
 import org.apache.roller.weblogger.util.I18nMessages;
 import org.apache.roller.weblogger.util.RollerMessages;
 import org.apache.roller.weblogger.util.RollerMessages.RollerMessage;
@@ -77,6 +76,7 @@ public class CommentServlet extends HttpServlet {
 
     private CommentAuthenticator authenticator = null;
     private CommentValidationManager commentValidationManager = null;
+    private CommentPostProcessor commentPostProcessor = null;
     private GenericThrottle commentThrottle = null;
 
     /**
@@ -103,6 +103,9 @@ public class CommentServlet extends HttpServlet {
         // instantiate a comment validation manager for comment spam checking
         commentValidationManager = new CommentValidationManager();
 
+        // notifications and indexing run after the comment is saved
+        commentPostProcessor = new CommentPostProcessor();
+
         // are we doing throttling?
         if (WebloggerConfig.getBooleanProperty("comment.throttle.enabled")) {
 
@@ -147,6 +150,17 @@ public class CommentServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Shutdown.
+     */
+    @Override
+    public void destroy() {
+        if (commentPostProcessor != null) {
+            commentPostProcessor.shutdown();
+        }
+        super.destroy();
+    }
+
     /**
      * Handle incoming http GET requests.
      * 
@@ -381,31 +395,22 @@ public class CommentServlet extends HttpServlet {
                     mgr.saveComment(comment);
                     WebloggerFactory.getWeblogger().flush();
 
-                    // Send email notifications only to subscribers if comment
-                    // is 100% valid
-                    boolean notifySubscribers = (validationScore == RollerConstants.PERCENT_100);
-                    MailUtil.sendEmailNotification(comment, messages,
-                            messageUtils, notifySubscribers);
-
                     // only re-index/invalidate the cache if comment isn't
                     // moderated
-                    if (!weblog.getCommentModerationRequired()) {
-                        IndexManager manager = WebloggerFactory.getWeblogger()
-                                .getIndexManager();
-
-                        // remove entry before (re)adding it, or in case it
-                        // isn't Published
-                        manager.removeEntryIndexOperation(entry);
-
-                        // if published, index the entry
-                        if (entry.isPublished()) {
-                            manager.addEntryIndexOperation(entry);
-                        }
-
-                        // Clear all caches associated with comment
+                    boolean moderated = weblog.getCommentModerationRequired();
+                    if (!moderated) {
+                        // Clear all caches associated with comment right
+                        // away so the commenter sees their comment
                         CacheManager.invalidate(comment);
                     }
 
+                    // Send email notifications only to subscribers if comment
+                    // is 100% valid, both that and indexing happen in the
+                    // background
+                    boolean notifySubscribers = (validationScore == RollerConstants.PERCENT_100);
+                    commentPostProcessor.process(comment, messages,
+                            messageUtils, notifySubscribers, !moderated);
+
                     // comment was successful, clear the comment form
                     cf = new WeblogEntryCommentForm();
                 }
@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.ui.rendering.servlets;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -41,13 +42,18 @@ import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.util.cache.CachedContent;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
+import org.apache.roller.weblogger.ui.rendering.filters.RequestQueryCacheFilter;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
 import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository;
+import org.apache.roller.weblogger.ui.rendering.model.LazyModelMap;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.model.SearchResultsFeedModel;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheWarmer;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogFeedCache;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
+import org.apache.roller.weblogger.ui.rendering.util.RenderOutput;
+import org.apache.roller.weblogger.ui.rendering.util.SurrogateKeyHeaderUtil;
 
 
 /**
@@ -155,6 +161,11 @@ public class FeedServlet extends HttpServlet {
             cacheKey = weblogFeedCache.generateKey(feedRequest);
         }
 
+        // remember what is requested, for warming the cache later
+        CacheWarmer.record(isSiteWide ? SiteWideCache.CACHE_ID
+                : WeblogFeedCache.CACHE_ID, cacheKey, weblog.getHandle(),
+                null, request);
+
         // cached content checking
         CachedContent cachedContent;
         if (isSiteWide) {
@@ -167,8 +178,10 @@ public class FeedServlet extends HttpServlet {
         if (cachedContent != null) {
             log.debug("HIT " + cacheKey);
 
-            response.setContentLength(cachedContent.getContent().length);
-            response.getOutputStream().write(cachedContent.getContent());
+            SurrogateKeyHeaderUtil.setSurrogateKeyHeader(response,
+                    cachedContent.getSurrogateKeys());
+            response.setContentLength(cachedContent.getLength());
+            cachedContent.writeTo(response.getOutputStream());
             return;
 
         } else {
@@ -216,7 +229,7 @@ public class FeedServlet extends HttpServlet {
         }
 
         // looks like we need to render content
-        HashMap<String, Object> model = new HashMap<String, Object>();
+        Map<String, Object> model = new LazyModelMap();
         String pageId;
         try {
             // determine what template to render with
@@ -303,14 +316,20 @@ public class FeedServlet extends HttpServlet {
             return;
         }
 
+        // surrogate keys for what the feed shows, plus any entries rendered
+        Set<String> surrogateKeys = SurrogateKeyHeaderUtil.getWeblogKeys(
+                weblog.getHandle(), isSiteWide,
+                feedRequest.getWeblogCategoryName(), feedRequest.getTags());
+
         // render content. use default size of 24K for a standard page
-        CachedContent rendererOutput = new CachedContent(RollerConstants.TWENTYFOUR_KB_IN_BYTES);
+        RenderOutput rendererOutput = RenderOutput.open(response, true,
+                RollerConstants.TWENTYFOUR_KB_IN_BYTES, null);
+        SurrogateKeyHeaderUtil.begin();
         try {
             log.debug("Doing rendering");
-            renderer.render(model, rendererOutput.getCachedWriter());
+            renderer.render(model, rendererOutput.getWriter());
 
             // flush rendered output and close
-            rendererOutput.flush();
             rendererOutput.close();
         } catch (Exception e) {
             // bummer, error during rendering
@@ -318,24 +337,31 @@ public class FeedServlet extends HttpServlet {
 
             if (!response.isCommitted()) {
                 response.reset();
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
             }
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
+        } finally {
+            surrogateKeys = SurrogateKeyHeaderUtil.end(surrogateKeys);
         }
+        CachedContent renderedContent = rendererOutput.getContent();
+        renderedContent.setSurrogateKeys(surrogateKeys);
 
         // post rendering process
 
         // flush rendered content to response
-        log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        if (!rendererOutput.isStreaming()) {
+            log.debug("Flushing response output");
+            RequestQueryCacheFilter.setStatsHeader(response);
+            SurrogateKeyHeaderUtil.setSurrogateKeyHeader(response, surrogateKeys);
+            rendererOutput.send(response);
+        }
 
         // cache rendered content. only cache if user is not logged in?
         log.debug("PUT " + cacheKey);
         if (isSiteWide) {
-            siteWideCache.put(cacheKey, rendererOutput);
+            siteWideCache.put(cacheKey, renderedContent);
         } else {
-            weblogFeedCache.put(cacheKey, rendererOutput);
+            weblogFeedCache.put(cacheKey, renderedContent);
         }
 
         log.debug("Exiting");
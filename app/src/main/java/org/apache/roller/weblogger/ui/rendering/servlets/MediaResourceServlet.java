@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.ui.rendering.servlets;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Set;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -37,7 +38,9 @@ import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.pojos.MediaFile;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
+import org.apache.roller.weblogger.ui.rendering.util.SurrogateKeyHeaderUtil;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogMediaResourceRequest;
+import org.apache.roller.weblogger.util.cache.SurrogateKeys;
 
 /**
  * Serves media files uploaded by users.
@@ -112,6 +115,14 @@ public class MediaResourceServlet extends HttpServlet {
                     resourceRequest.getDeviceType());
         }
 
+        // media changes invalidate the weblog, so tag with both
+        if (SurrogateKeyHeaderUtil.isEnabled()) {
+            Set<String> surrogateKeys = SurrogateKeyHeaderUtil.getWeblogKeys(
+                    weblog.getHandle(), false, null, null);
+            surrogateKeys.add(SurrogateKeys.media(mediaFile.getId()));
+            SurrogateKeyHeaderUtil.setSurrogateKeyHeader(response, surrogateKeys);
+        }
+
         // set the content type based on whatever is in our web.xml mime defs
         if (resourceRequest.isThumbnail()) {
             response.setContentType("image/png");
@@ -39,16 +39,22 @@ import org.apache.roller.weblogger.pojos.WeblogTheme;
 import org.apache.roller.weblogger.ui.core.RollerContext;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
+import org.apache.roller.weblogger.ui.rendering.filters.RequestQueryCacheFilter;
+import org.apache.roller.weblogger.ui.rendering.model.LazyModelMap;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.util.InvalidRequestException;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
+import org.apache.roller.weblogger.ui.rendering.util.RenderOutput;
+import org.apache.roller.weblogger.ui.rendering.util.SurrogateKeyHeaderUtil;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogEntryCommentForm;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheWarmer;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogPageCache;
 import org.apache.roller.weblogger.util.BlacklistChecker;
 import org.apache.roller.weblogger.util.I18nMessages;
 import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.SurrogateKeys;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -61,6 +67,7 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -232,6 +239,13 @@ public class PageServlet extends HttpServlet {
                 && request.getAttribute("skipCache") == null
                 && request.getParameter("skipCache") == null) {
 
+            // remember what is requested, for warming the cache later
+            if (!pageRequest.isLoggedIn()) {
+                CacheWarmer.record(isSiteWide ? SiteWideCache.CACHE_ID
+                        : WeblogPageCache.CACHE_ID, cacheKey,
+                        weblog.getHandle(), pageRequest.getDeviceType(), request);
+            }
+
             CachedContent cachedContent;
             if (isSiteWide) {
                 cachedContent = (CachedContent) siteWideCache.get(cacheKey);
@@ -245,14 +259,19 @@ public class PageServlet extends HttpServlet {
 
                 // allow for hit counting
                 if (!isSiteWide
+                        && !CacheWarmer.isWarmup(request)
                         && (pageRequest.isWebsitePageHit() || pageRequest
                                 .isOtherPageHit())) {
                     this.processHit(weblog);
                 }
 
-                response.setContentLength(cachedContent.getContent().length);
+                if (!pageRequest.isLoggedIn()) {
+                    SurrogateKeyHeaderUtil.setSurrogateKeyHeader(response,
+                            cachedContent.getSurrogateKeys());
+                }
+                response.setContentLength(cachedContent.getLength());
                 response.setContentType(cachedContent.getContentType());
-                response.getOutputStream().write(cachedContent.getContent());
+                cachedContent.writeTo(response.getOutputStream());
                 return;
             } else {
                 log.debug("MISS " + cacheKey);
@@ -409,6 +428,7 @@ public class PageServlet extends HttpServlet {
 
         // allow for hit counting
         if (!isSiteWide
+                && !CacheWarmer.isWarmup(request)
                 && (pageRequest.isWebsitePageHit() || pageRequest
                         .isOtherPageHit())) {
             this.processHit(weblog);
@@ -435,7 +455,7 @@ public class PageServlet extends HttpServlet {
             }
         }
 
-        HashMap<String, Object> model = new HashMap<String, Object>();
+        Map<String, Object> model = new LazyModelMap();
         try {
             PageContext pageContext = JspFactory.getDefaultFactory()
                     .getPageContext(this, request, response, "", false,
@@ -499,15 +519,29 @@ public class PageServlet extends HttpServlet {
             return;
         }
 
-        // render content
-        CachedContent rendererOutput = new CachedContent(
+        // surrogate keys for what the page shows, plus any entries rendered
+        Set<String> surrogateKeys = SurrogateKeyHeaderUtil.getWeblogKeys(
+                weblog.getHandle(), isSiteWide,
+                pageRequest.getWeblogCategoryName(), pageRequest.getTags());
+        if (SurrogateKeyHeaderUtil.isEnabled() && page.getId() != null) {
+            surrogateKeys.add(SurrogateKeys.template(page.getId()));
+        }
+
+        // render content, straight to the response if it won't be cached
+        boolean cacheable = (!this.excludeOwnerPages || !pageRequest.isLoggedIn())
+                && request.getAttribute("skipCache") == null;
+        RenderOutput rendererOutput = RenderOutput.open(response, cacheable,
                 RollerConstants.TWENTYFOUR_KB_IN_BYTES, contentType);
+        if (rendererOutput.isStreaming() && !pageRequest.isLoggedIn()) {
+            // headers go out first, so only the keys known before rendering
+            SurrogateKeyHeaderUtil.setSurrogateKeyHeader(response, surrogateKeys);
+        }
+        SurrogateKeyHeaderUtil.begin();
         try {
             log.debug("Doing rendering");
-            renderer.render(model, rendererOutput.getCachedWriter());
+            renderer.render(model, rendererOutput.getWriter());
 
             // flush rendered output and close
-            rendererOutput.flush();
             rendererOutput.close();
         } catch (Exception e) {
             // bummer, error during rendering
@@ -515,28 +549,36 @@ public class PageServlet extends HttpServlet {
 
             if (!response.isCommitted()) {
                 response.reset();
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
             }
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
+        } finally {
+            surrogateKeys = SurrogateKeyHeaderUtil.end(surrogateKeys);
         }
 
         // post rendering process
         // flush rendered content to response
-        log.debug("Flushing response output");
-        response.setContentType(contentType);
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        if (!rendererOutput.isStreaming()) {
+            log.debug("Flushing response output");
+            response.setContentType(contentType);
+            RequestQueryCacheFilter.setStatsHeader(response);
+            if (!pageRequest.isLoggedIn()) {
+                SurrogateKeyHeaderUtil.setSurrogateKeyHeader(response, surrogateKeys);
+            }
+            rendererOutput.send(response);
+        }
 
         // cache rendered content. only cache if user is not logged in?
-        if ((!this.excludeOwnerPages || !pageRequest.isLoggedIn())
-                && request.getAttribute("skipCache") == null) {
+        if (cacheable) {
             log.debug("PUT " + cacheKey);
+            CachedContent renderedContent = rendererOutput.getContent();
+            renderedContent.setSurrogateKeys(surrogateKeys);
 
             // put it in the right cache
             if (isSiteWide) {
-                siteWideCache.put(cacheKey, rendererOutput);
+                siteWideCache.put(cacheKey, renderedContent);
             } else {
-                weblogPageCache.put(cacheKey, rendererOutput);
+                weblogPageCache.put(cacheKey, renderedContent);
             }
         } else {
             log.debug("SKIPPED " + cacheKey);
@@ -21,6 +21,8 @@ package org.apache.roller.weblogger.ui.rendering.servlets;
 import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -47,7 +49,9 @@ import org.apache.roller.weblogger.ui.rendering.model.UtilitiesModel;
 import org.apache.roller.weblogger.ui.rendering.util.cache.PlanetCache;
 import org.apache.roller.weblogger.ui.rendering.util.PlanetRequest;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
+import org.apache.roller.weblogger.ui.rendering.util.SurrogateKeyHeaderUtil;
 import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.SurrogateKeys;
 
 /**
  * Planet Roller RSS feed.
@@ -117,13 +121,24 @@ public class PlanetFeedServlet extends HttpServlet {
         ModDateHeaderUtil.setLastModifiedHeader(response,
                 lastModified.getTime(), planetRequest.getDeviceType());
 
+        // planet content only changes when feeds are refreshed
+        if (SurrogateKeyHeaderUtil.isEnabled()) {
+            Set<String> surrogateKeys = new LinkedHashSet<String>();
+            surrogateKeys.add(SurrogateKeys.ALL);
+            surrogateKeys.add(SurrogateKeys.PLANET);
+            if (request.getParameter("group") != null) {
+                surrogateKeys.add(SurrogateKeys.planet(request.getParameter("group")));
+            }
+            SurrogateKeyHeaderUtil.setSurrogateKeyHeader(response, surrogateKeys);
+        }
+
         // cached content checking
         String cacheKey = PlanetCache.CACHE_ID + ":"
                 + this.generateKey(planetRequest);
         CachedContent entry = (CachedContent) planetCache.get(cacheKey);
         if (entry != null) {
-            response.setContentLength(entry.getContent().length);
-            response.getOutputStream().write(entry.getContent());
+            response.setContentLength(entry.getLength());
+            entry.writeTo(response.getOutputStream());
             return;
         }
 
@@ -234,8 +249,8 @@ public class PlanetFeedServlet extends HttpServlet {
         // post rendering process
         // flush rendered content to response
         log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        response.setContentLength(rendererOutput.getLength());
+        rendererOutput.writeTo(response.getOutputStream());
 
         // cache rendered content.
         this.planetCache.put(cacheKey, rendererOutput);
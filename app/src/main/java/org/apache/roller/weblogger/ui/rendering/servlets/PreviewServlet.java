@@ -33,9 +33,11 @@ import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.ui.core.RollerContext;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
+import org.apache.roller.weblogger.ui.rendering.filters.RequestQueryCacheFilter;
+import org.apache.roller.weblogger.ui.rendering.model.LazyModelMap;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPreviewRequest;
-import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.ui.rendering.util.RenderOutput;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -206,7 +208,7 @@ public class PreviewServlet extends HttpServlet {
         }
         
         // looks like we need to render content
-        Map model = new HashMap();
+        Map model = new LazyModelMap();
         try {
             PageContext pageContext = JspFactory.getDefaultFactory().getPageContext(
                     this, request, response,"", false, RollerConstants.EIGHT_KB_IN_BYTES, true);
@@ -259,14 +261,14 @@ public class PreviewServlet extends HttpServlet {
             return;
         }
         
-        // render content
-        CachedContent rendererOutput = new CachedContent(RollerConstants.TWENTYFOUR_KB_IN_BYTES);
+        // render content, previews are never cached so it may be streamed
+        RenderOutput rendererOutput = RenderOutput.open(response, false,
+                RollerConstants.TWENTYFOUR_KB_IN_BYTES, contentType);
         try {
             log.debug("Doing rendering");
-            renderer.render(model, rendererOutput.getCachedWriter());
+            renderer.render(model, rendererOutput.getWriter());
             
             // flush rendered output and close
-            rendererOutput.flush();
             rendererOutput.close();
         } catch(Exception e) {
             // bummer, error during rendering
@@ -274,8 +276,8 @@ public class PreviewServlet extends HttpServlet {
             
             if (!response.isCommitted()) {
                 response.reset();
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
             }
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
         
@@ -283,10 +285,13 @@ public class PreviewServlet extends HttpServlet {
         // post rendering process
         
         // flush rendered content to response
-        log.debug("Flushing response output");
-        response.setContentType(contentType);
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        if (!rendererOutput.isStreaming()) {
+            log.debug("Flushing response output");
+            response.setContentType(contentType);
+            RequestQueryCacheFilter.setStatsHeader(response);
+            rendererOutput.send(response);
+            rendererOutput.release();
+        }
         
         log.debug("Exiting");
     }
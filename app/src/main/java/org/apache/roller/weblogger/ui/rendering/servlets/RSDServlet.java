@@ -156,8 +156,9 @@ public class RSDServlet extends HttpServlet {
 
         // flush rendered content to response
         log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        response.setContentLength(rendererOutput.getLength());
+        rendererOutput.writeTo(response.getOutputStream());
+        rendererOutput.release();
 
         log.debug("Exiting");
     }
@@ -43,7 +43,9 @@ import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogTheme;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
+import org.apache.roller.weblogger.ui.rendering.filters.RequestQueryCacheFilter;
 import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository;
+import org.apache.roller.weblogger.ui.rendering.model.LazyModelMap;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogSearchRequest;
@@ -173,7 +175,7 @@ public class SearchServlet extends HttpServlet {
         response.setContentType("text/html; charset=utf-8");
 
         // looks like we need to render content
-        Map model = new HashMap();
+        Map model = new LazyModelMap();
         try {
             PageContext pageContext = JspFactory.getDefaultFactory()
                     .getPageContext(this, request, response, "", false, RollerConstants.EIGHT_KB_IN_BYTES,
@@ -266,8 +268,10 @@ public class SearchServlet extends HttpServlet {
 
         // flush rendered content to response
         log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        RequestQueryCacheFilter.setStatsHeader(response);
+        response.setContentLength(rendererOutput.getLength());
+        rendererOutput.writeTo(response.getOutputStream());
+        rendererOutput.release();
 
         log.debug("Exiting");
     }
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+
+
+/**
+ * Where a renderer writes its output: into a buffer which is sent once
+ * rendering is done, straight to the response, or both.
+ *
+ * Output which won't be cached, e.g. pages for logged in editors and
+ * previews, is streamed to the response if rendering.output.stream is set,
+ * so big pages are neither held in memory nor held back until rendered.
+ * Output which will be cached is sent while it is captured if
+ * rendering.output.tee is set.  Streamed responses have no Content-Length
+ * and their headers are set before rendering, so they carry no query stats
+ * and no surrogate keys of what the render touched.  For that reason
+ * cached output is always buffered when surrogate keys are enabled.
+ *
+ * A render which fails after output was sent can only be cut short, the
+ * servlets check isCommitted() before sending an error.
+ */
+public final class RenderOutput {
+
+    private static Log log = LogFactory.getLog(RenderOutput.class);
+
+    private static final boolean streamUncached =
+            WebloggerConfig.getBooleanProperty("rendering.output.stream", true);
+
+    private static final boolean teeCached =
+            WebloggerConfig.getBooleanProperty("rendering.output.tee", false);
+
+    // captured content, null if only streamed
+    private final CachedContent content;
+
+    // writer for streamed only output
+    private final PrintWriter streamWriter;
+
+
+    private RenderOutput(CachedContent content, PrintWriter streamWriter) {
+        this.content = content;
+        this.streamWriter = streamWriter;
+    }
+
+
+    /**
+     * Output which is only buffered, to be sent with send() afterwards.
+     */
+    public static RenderOutput buffer(int size, String contentType) {
+        return new RenderOutput(new CachedContent(size, contentType), null);
+    }
+
+
+    /**
+     * Output for a response, streamed or buffered as configured.  If the
+     * output is streamed the content type is set here, any other headers
+     * must be set before the renderer writes.
+     *
+     * @param cacheable true if the content will be cached.
+     */
+    public static RenderOutput open(HttpServletResponse response,
+            boolean cacheable, int size, String contentType) throws IOException {
+
+        if (cacheable) {
+            if (!teeCached || SurrogateKeyHeaderUtil.isEnabled()) {
+                return buffer(size, contentType);
+            }
+            setContentType(response, contentType);
+            return new RenderOutput(new CachedContent(size, contentType,
+                    response.getOutputStream()), null);
+
+        } else {
+            if (!streamUncached) {
+                return buffer(size, contentType);
+            }
+            setContentType(response, contentType);
+            return new RenderOutput(null, new PrintWriter(
+                    new OutputStreamWriter(response.getOutputStream(), "UTF-8")));
+        }
+    }
+
+
+    private static void setContentType(HttpServletResponse response, String contentType) {
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+    }
+
+
+    /**
+     * The writer to render into.
+     */
+    public PrintWriter getWriter() {
+        return (streamWriter != null) ? streamWriter : content.getCachedWriter();
+    }
+
+
+    /**
+     * True if the output goes to the response while rendering.
+     */
+    public boolean isStreaming() {
+        return streamWriter != null || content.isTee();
+    }
+
+
+    /**
+     * The captured content, or null if the output was only streamed.
+     */
+    public CachedContent getContent() {
+        return content;
+    }
+
+
+    /**
+     * Done rendering, flush what is left to the response or the buffer.
+     */
+    public void close() throws IOException {
+        if (streamWriter != null) {
+            streamWriter.flush();
+            if (streamWriter.checkError()) {
+                log.debug("Error streaming output, client probably went away");
+            }
+        } else {
+            content.close();
+        }
+    }
+
+
+    /**
+     * Send buffered content with its length.  Does nothing if the output
+     * was already streamed.
+     */
+    public void send(HttpServletResponse response) throws IOException {
+        if (!isStreaming()) {
+            response.setContentLength(content.getLength());
+            content.writeTo(response.getOutputStream());
+        }
+    }
+
+
+    /**
+     * Give the buffers back once the content was sent, if it won't be
+     * cached.
+     */
+    public void release() {
+        if (content != null) {
+            content.release();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.cache.SurrogateKeys;
+
+
+/**
+ * Utility class to localize the surrogate key header logic, which lets an
+ * HTTP cache in front of Roller purge responses by what they show.
+ *
+ * Servlets start collecting keys before rendering, and set the keys from
+ * the request plus whatever the render touched on the response.  Nothing
+ * is collected or sent unless cache.surrogate.enabled is set.
+ */
+public final class SurrogateKeyHeaderUtil {
+
+    private static final boolean enabled =
+            WebloggerConfig.getBooleanProperty("cache.surrogate.enabled");
+
+    private static final String header =
+            WebloggerConfig.getProperty("cache.surrogate.header", "Surrogate-Key");
+
+    private static final int maxKeys =
+            WebloggerConfig.getIntProperty("cache.surrogate.maxKeys", 200);
+
+    private static final int maxAge =
+            WebloggerConfig.getIntProperty("cache.surrogate.maxAge", 0);
+
+
+    // non-instantiable
+    private SurrogateKeyHeaderUtil() {
+    }
+
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Keys for a weblog response, optionally limited to a category or tags.
+     */
+    public static Set<String> getWeblogKeys(String handle, boolean siteWide,
+            String category, List<String> tags) {
+
+        if (!enabled) {
+            return Collections.emptySet();
+        }
+
+        Set<String> keys = new LinkedHashSet<String>();
+        keys.add(SurrogateKeys.ALL);
+        keys.add(SurrogateKeys.weblog(handle));
+        if (siteWide) {
+            keys.add(SurrogateKeys.SITE);
+        }
+        if (category != null) {
+            keys.add(SurrogateKeys.category(handle, category));
+        }
+        if (tags != null) {
+            for (String tag : tags) {
+                keys.add(SurrogateKeys.tag(handle, tag));
+            }
+        }
+        return keys;
+    }
+
+
+    /**
+     * Start collecting the keys touched by a render on this thread.
+     */
+    public static void begin() {
+        if (enabled) {
+            SurrogateKeys.begin();
+        }
+    }
+
+
+    /**
+     * Stop collecting and return the given keys followed by the collected
+     * ones.  Must be called after begin(), also when rendering fails.
+     */
+    public static Set<String> end(Collection<String> keys) {
+
+        if (!enabled) {
+            return Collections.emptySet();
+        }
+
+        Set<String> allKeys = new LinkedHashSet<String>(keys);
+        allKeys.addAll(SurrogateKeys.end());
+        return allKeys;
+    }
+
+
+    /**
+     * Set the surrogate key header, and a Surrogate-Control header if a max
+     * age is configured.
+     *
+     * Headers have limited size, so only the first cache.surrogate.maxKeys
+     * keys are sent.  Keys from the request come first and any change which
+     * affects a dropped entry key also purges the weblog key.
+     */
+    public static void setSurrogateKeyHeader(HttpServletResponse response,
+            Collection<String> keys) {
+
+        if (!enabled || keys == null || keys.isEmpty()) {
+            return;
+        }
+
+        StringBuilder value = new StringBuilder();
+        int count = 0;
+        for (String key : keys) {
+            if (count++ == maxKeys) {
+                break;
+            }
+            if (value.length() > 0) {
+                value.append(' ');
+            }
+            value.append(key);
+        }
+        response.setHeader(header, value.toString());
+
+        if (maxAge > 0) {
+            response.setHeader("Surrogate-Control", "max-age=" + maxAge);
+        }
+    }
+
+}
@@ -28,6 +28,7 @@ import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.util.URLUtilities;
 import org.apache.roller.weblogger.util.Utilities;
@@ -53,6 +54,7 @@ public class WeblogFeedRequest extends WeblogRequest {
     private String weblogCategoryName = null;
     private List   tags = null;
     private int    page = 0;
+    private PageCursor cursor = null;
     private boolean excerpts = false;
     private String term = null;
     
@@ -146,6 +148,11 @@ public class WeblogFeedRequest extends WeblogRequest {
             }
         }     
         
+        // position after the previous page, for seeking instead of counting
+        if(request.getParameter("cursor") != null) {
+            this.cursor = PageCursor.parse(request.getParameter("cursor"));
+        }
+        
         if(request.getParameter("q") != null &&
                 request.getParameter("q").trim().length() > 0) {
             this.term = URLUtilities.decode(request.getParameter("q"));
@@ -232,6 +239,16 @@ public class WeblogFeedRequest extends WeblogRequest {
         this.page = page;
     }
 
+
+    public PageCursor getCursor() {
+        return cursor;
+    }
+
+
+    public void setCursor(PageCursor cursor) {
+        this.cursor = cursor;
+    }
+
     public String getTerm() {
         return term;
     }
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.WeblogManager;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.runnable.Job;
+import org.apache.roller.weblogger.business.runnable.ThreadManager;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.util.cache.CacheSnapshot;
+import org.apache.roller.weblogger.util.cache.CacheSnapshot.Record;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+
+
+/**
+ * Saves the weblog page, weblog feed, site-wide and planet caches to a
+ * {@link CacheSnapshot} and fills them from it on startup, so a restarted
+ * server doesn't have to render everything again.
+ *
+ * Snapshots are saved to cache.snapshot.file every cache.snapshot.interval
+ * minutes and on shutdown, newest content first and at most
+ * cache.snapshot.maxSize MB of it.  On startup weblog page and feed content
+ * is only restored if its weblog has not changed since it was rendered,
+ * site-wide content only if no weblog has, and planet content expires as
+ * usual from when it was rendered.
+ */
+public final class CacheSnapshotManager {
+    
+    private static Log log = LogFactory.getLog(CacheSnapshotManager.class);
+    
+    private static CacheSnapshotManager instance = null;
+    
+    private final CacheSnapshot snapshot;
+    private final long maxBytes;
+    
+    
+    CacheSnapshotManager(File file, long maxBytes) {
+        this.snapshot = new CacheSnapshot(file);
+        this.maxBytes = maxBytes;
+    }
+    
+    
+    /**
+     * Restore the caches from the last snapshot and schedule saving, if
+     * cache.snapshot.enabled is set.
+     */
+    public static synchronized void initialize(ThreadManager threadManager) {
+        
+        if (instance != null || !WebloggerConfig.getBooleanProperty("cache.snapshot.enabled")) {
+            return;
+        }
+        
+        String fileName = WebloggerConfig.getProperty("cache.snapshot.file");
+        if (StringUtils.isBlank(fileName)) {
+            log.warn("No cache.snapshot.file set, cache snapshots disabled");
+            return;
+        }
+        
+        final CacheSnapshotManager manager = new CacheSnapshotManager(new File(fileName),
+                WebloggerConfig.getIntProperty("cache.snapshot.maxSize", 64) * 1024L * 1024L);
+        try {
+            manager.restore(WebloggerFactory.getWeblogger().getWeblogManager());
+        } finally {
+            WebloggerFactory.getWeblogger().release();
+        }
+        
+        threadManager.scheduleJob("CacheSnapshotManager", new Job() {
+            public void execute() {
+                manager.save();
+            }
+            public void input(Map<String, Object> input) {
+                // no-op
+            }
+            public Map<String, Object> output() {
+                return null;
+            }
+        }, Math.max(1, WebloggerConfig.getIntProperty("cache.snapshot.interval", 15)), TimeUnit.MINUTES);
+        
+        instance = manager;
+    }
+    
+    
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.save();
+            instance = null;
+        }
+    }
+    
+    
+    /**
+     * Save the caches, logging any error.
+     */
+    void save() {
+        
+        List<Record> records = new ArrayList<Record>();
+        addRecords(records, WeblogPageCache.CACHE_ID, WeblogPageCache.getInstance().getContents());
+        addRecords(records, WeblogFeedCache.CACHE_ID, WeblogFeedCache.getInstance().getContents());
+        addRecords(records, SiteWideCache.CACHE_ID, SiteWideCache.getInstance().getContents());
+        addRecords(records, PlanetCache.CACHE_ID, PlanetCache.getInstance().getContents());
+        
+        // newest first, it is the most likely to still be valid
+        Collections.sort(records, new Comparator<Record>() {
+            public int compare(Record a, Record b) {
+                long x = a.getTimeCreated();
+                long y = b.getTimeCreated();
+                return (x < y) ? 1 : ((x == y) ? 0 : -1);
+            }
+        });
+        
+        long start = System.currentTimeMillis();
+        try {
+            int count = snapshot.write(records, maxBytes);
+            log.info("Saved " + count + " of " + records.size() + " cached items to "
+                    + snapshot.getFile() + " in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException ex) {
+            log.warn("Error saving cache snapshot to " + snapshot.getFile(), ex);
+        }
+    }
+    
+    
+    private static void addRecords(List<Record> records, String cacheId,
+            Map<String, CachedContent> contents) {
+        for (Map.Entry<String, CachedContent> entry : contents.entrySet()) {
+            records.add(new Record(cacheId, entry.getKey(), entry.getValue()));
+        }
+    }
+    
+    
+    /**
+     * Restore the caches from the last snapshot, skipping content which has
+     * changed since.
+     *
+     * @return The number of items restored.
+     */
+    int restore(WeblogManager weblogManager) {
+        
+        long start = System.currentTimeMillis();
+        CacheSnapshot.Snapshot saved;
+        try {
+            saved = snapshot.read();
+        } catch (IOException ex) {
+            log.warn("Error reading cache snapshot from " + snapshot.getFile(), ex);
+            return 0;
+        }
+        
+        Map<String, Long> weblogModified = new HashMap<String, Long>();
+        Long siteModified = null;
+        int restored = 0;
+        
+        for (Record record : saved.getRecords()) {
+            try {
+                String cacheId = record.getCacheId();
+                if (WeblogPageCache.CACHE_ID.equals(cacheId)
+                        || WeblogFeedCache.CACHE_ID.equals(cacheId)) {
+                    
+                    String handle = getWeblogHandle(record.getKey());
+                    Long modified = weblogModified.get(handle);
+                    if (modified == null) {
+                        Weblog weblog = handle == null ? null : weblogManager.getWeblogByHandle(handle);
+                        modified = (weblog == null) ? Long.MAX_VALUE : weblog.getLastModified().getTime();
+                        weblogModified.put(handle, modified);
+                    }
+                    if (record.getTimeCreated() < modified) {
+                        continue;
+                    }
+                    if (WeblogPageCache.CACHE_ID.equals(cacheId)) {
+                        WeblogPageCache.getInstance().restore(record.getKey(), record.getContent());
+                    } else {
+                        WeblogFeedCache.getInstance().restore(record.getKey(), record.getContent());
+                    }
+                    
+                } else if (SiteWideCache.CACHE_ID.equals(cacheId)) {
+                    
+                    if (siteModified == null) {
+                        Date modified = weblogManager.getLastModified();
+                        siteModified = (modified == null) ? 0 : modified.getTime();
+                    }
+                    if (record.getTimeCreated() < siteModified) {
+                        continue;
+                    }
+                    SiteWideCache.getInstance().restore(record.getKey(), record.getContent());
+                    
+                } else if (PlanetCache.CACHE_ID.equals(cacheId)) {
+                    
+                    PlanetCache.getInstance().restore(record.getKey(), record.getContent());
+                    
+                } else {
+                    continue;
+                }
+                restored++;
+            } catch (WebloggerException ex) {
+                log.warn("Error checking cache snapshot, restored " + restored + " items", ex);
+                break;
+            }
+        }
+        
+        log.info("Restored " + restored + " of " + saved.getRecords().size() + " cached items from "
+                + snapshot.getFile() + " in " + (System.currentTimeMillis() - start) + " ms");
+        return restored;
+    }
+    
+    
+    /**
+     * The weblog of a weblog page or feed cache key, which start with
+     * the cache id and handle, e.g. "cache.weblogpage:foo/en".
+     */
+    static String getWeblogHandle(String key) {
+        int start = key.indexOf(':');
+        if (start < 0) {
+            return null;
+        }
+        int end = key.indexOf('/', start + 1);
+        return key.substring(start + 1, (end < 0) ? key.length() : end);
+    }
+    
+}
@@ -0,0 +1,653 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.business.runnable.Job;
+import org.apache.roller.weblogger.business.runnable.ThreadManager;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository;
+import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository.DeviceType;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+
+
+/**
+ * Warms the weblog page, feed and site-wide caches with what visitors
+ * request most, after a restart and after a weblog changes.
+ *
+ * The servlets record each cacheable request against its cache key.  The
+ * cache.warmup.size most requested keys are saved to cache.warmup.file every
+ * cache.warmup.saveInterval minutes and on shutdown, and requested again
+ * once the next startup has completed.  When a weblog changes, its
+ * cache.warmup.perWeblog most requested keys are requested again at the
+ * next check, every cache.warmup.interval seconds.
+ *
+ * Warmup requests go over HTTP to cache.warmup.baseUrl, the site url by
+ * default, on the 'warmup' worker pool, so the size of that pool caps how
+ * many pages render at once.  A response slower than cache.warmup.slowRequest
+ * milliseconds, usually a sign of a busy database, pauses all warmup for as
+ * long as that response took.  Warmup requests are not counted as hits.
+ * Pages are cached per device type, so the device type of a request is
+ * recorded with its key and passed as deviceType parameter when warming.
+ */
+public final class CacheWarmer implements CacheHandler {
+    
+    private static Log log = LogFactory.getLog(CacheWarmer.class);
+    
+    // request header marking our own requests, with a per-run token as value
+    static final String WARMUP_HEADER = "X-Roller-Warmup";
+    
+    private static CacheWarmer instance = null;
+    
+    private final int trackSize;
+    private final int maxKeys;
+    private final int perWeblog;
+    private final long slowRequest;
+    private final String token = UUID.randomUUID().toString();
+    
+    // requested cache keys, by cache id and key
+    private final ConcurrentHashMap<String, HotKey> hotKeys = new ConcurrentHashMap<String, HotKey>();
+    
+    // weblogs changed since the last check
+    private final Set<String> changedWeblogs =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean siteChanged = false;
+    
+    // keys queued or being requested
+    private final Set<String> pending =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
+    private final AtomicLong pausedUntil = new AtomicLong(0);
+    private final AtomicLong warmed = new AtomicLong(0);
+    private final AtomicLong failures = new AtomicLong(0);
+    
+    // set when started
+    private ThreadManager threadManager = null;
+    private HttpClient client = null;
+    private String baseUrl = null;
+    private File file = null;
+    
+    
+    CacheWarmer(int trackSize, int maxKeys, int perWeblog, long slowRequest) {
+        this.trackSize = Math.max(1, trackSize);
+        this.maxKeys = Math.max(1, maxKeys);
+        this.perWeblog = Math.max(1, perWeblog);
+        this.slowRequest = slowRequest;
+    }
+    
+    
+    /**
+     * Start tracking and warming, if cache.warmup.enabled is set.  The saved
+     * keys are requested at the first check, once startup has completed.
+     */
+    public static synchronized void initialize(ThreadManager threadManager) {
+        
+        if (instance != null || !WebloggerConfig.getBooleanProperty("cache.warmup.enabled")) {
+            return;
+        }
+        
+        final CacheWarmer warmer = new CacheWarmer(
+                WebloggerConfig.getIntProperty("cache.warmup.trackSize", 5000),
+                WebloggerConfig.getIntProperty("cache.warmup.size", 500),
+                WebloggerConfig.getIntProperty("cache.warmup.perWeblog", 20),
+                WebloggerConfig.getIntProperty("cache.warmup.slowRequest", 2000));
+        
+        warmer.threadManager = threadManager;
+        warmer.baseUrl = WebloggerConfig.getProperty("cache.warmup.baseUrl");
+        if (StringUtils.isBlank(warmer.baseUrl)) {
+            warmer.baseUrl = WebloggerRuntimeConfig.getAbsoluteContextURL();
+        }
+        warmer.baseUrl = StringUtils.removeEnd(warmer.baseUrl.trim(), "/");
+        
+        int timeout = WebloggerConfig.getIntProperty("cache.warmup.timeout", 30);
+        MultiThreadedHttpConnectionManager connections = new MultiThreadedHttpConnectionManager();
+        connections.getParams().setDefaultMaxConnectionsPerHost(
+                WebloggerConfig.getIntProperty("threads." + ThreadManager.WARMUP_POOL + ".size", 2));
+        connections.getParams().setConnectionTimeout(timeout * RollerConstants.SEC_IN_MS);
+        connections.getParams().setSoTimeout(timeout * RollerConstants.SEC_IN_MS);
+        warmer.client = new HttpClient(connections);
+        
+        String fileName = WebloggerConfig.getProperty("cache.warmup.file");
+        if (StringUtils.isNotBlank(fileName)) {
+            warmer.file = new File(fileName);
+            warmer.load(warmer.file);
+        }
+        
+        CacheManager.registerHandler(warmer);
+        
+        final int saveEvery = Math.max(1, WebloggerConfig.getIntProperty("cache.warmup.saveInterval", 10) * 60
+                / Math.max(1, WebloggerConfig.getIntProperty("cache.warmup.interval", 30)));
+        threadManager.scheduleJob("CacheWarmer", new Job() {
+            private boolean started = false;
+            private int runs = 0;
+            public void execute() {
+                if (!started) {
+                    started = true;
+                    warmer.warm(warmer.getHotKeys(null, warmer.maxKeys));
+                } else {
+                    warmer.warmChanged();
+                }
+                if (++runs % saveEvery == 0) {
+                    warmer.save();
+                }
+            }
+            public void input(Map<String, Object> input) {
+                // no-op
+            }
+            public Map<String, Object> output() {
+                return null;
+            }
+        }, Math.max(1, WebloggerConfig.getIntProperty("cache.warmup.interval", 30)), TimeUnit.SECONDS);
+        
+        instance = warmer;
+        log.info("Cache warmup started, " + warmer.hotKeys.size() + " keys loaded, base url = " + warmer.baseUrl);
+    }
+    
+    
+    /**
+     * Get the running warmer, or null if warmup is not enabled.
+     */
+    public static CacheWarmer getInstance() {
+        return instance;
+    }
+    
+    
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.save();
+            ((MultiThreadedHttpConnectionManager) instance.client.getHttpConnectionManager()).shutdown();
+            instance = null;
+        }
+    }
+    
+    
+    /**
+     * Record a request for a cacheable page or feed, if warmup is enabled.
+     *
+     * @param cacheId The id of the cache holding the content.
+     * @param key The cache key.
+     * @param weblogHandle The weblog the content belongs to.
+     * @param deviceType The device type the content is cached for, or null
+     *                   if it is the same for all devices.
+     * @param request The request, which is requested again when warming.
+     */
+    public static void record(String cacheId, String key, String weblogHandle,
+            DeviceType deviceType, HttpServletRequest request) {
+        
+        CacheWarmer warmer = instance;
+        if (warmer == null || warmer.isWarmupRequest(request)) {
+            return;
+        }
+        
+        StringBuilder url = new StringBuilder(request.getServletPath());
+        if (request.getPathInfo() != null) {
+            url.append(request.getPathInfo());
+        }
+        if (request.getQueryString() != null) {
+            url.append('?').append(request.getQueryString());
+        }
+        warmer.track(cacheId, key, weblogHandle, deviceType, url.toString());
+    }
+    
+    
+    /**
+     * True if the request was made by the warmer, such requests should not
+     * count as hits.
+     */
+    public static boolean isWarmup(HttpServletRequest request) {
+        CacheWarmer warmer = instance;
+        return warmer != null && warmer.isWarmupRequest(request);
+    }
+    
+    
+    private boolean isWarmupRequest(HttpServletRequest request) {
+        return token.equals(request.getHeader(WARMUP_HEADER));
+    }
+    
+    
+    /**
+     * Count a request for a key.
+     */
+    void track(String cacheId, String key, String weblogHandle,
+            DeviceType deviceType, String url) {
+        
+        String id = cacheId + ":" + key;
+        HotKey hot = hotKeys.get(id);
+        if (hot == null) {
+            // keys, handles and urls are saved one per line, tab separated
+            if (StringUtils.containsAny(id + weblogHandle + url, "\t\r\n")) {
+                return;
+            }
+            if (hotKeys.size() >= trackSize && !decay()) {
+                return;
+            }
+            hot = new HotKey(cacheId, key, weblogHandle, deviceType, url, 0);
+            HotKey existing = hotKeys.putIfAbsent(id, hot);
+            if (existing != null) {
+                hot = existing;
+            }
+        }
+        hot.hits.incrementAndGet();
+    }
+    
+    
+    /**
+     * Halve all counts and forget the keys which drop to zero, so keys which
+     * were popular a long time ago make way for new ones.
+     *
+     * @return true if there is room for a new key afterwards.
+     */
+    private synchronized boolean decay() {
+        
+        if (hotKeys.size() < trackSize) {
+            return true;
+        }
+        for (HotKey hot : hotKeys.values()) {
+            long hits;
+            do {
+                hits = hot.hits.get();
+            } while (!hot.hits.compareAndSet(hits, hits / 2));
+            if (hits / 2 == 0) {
+                hotKeys.remove(hot.getId());
+            }
+        }
+        return hotKeys.size() < trackSize;
+    }
+    
+    
+    /**
+     * Get the most requested keys, most requested first.
+     *
+     * @param weblogHandle Only keys of this weblog, or null for all.
+     * @param max The maximum number of keys.
+     */
+    List<HotKey> getHotKeys(String weblogHandle, int max) {
+        
+        List<HotKey> keys = new ArrayList<HotKey>();
+        for (HotKey hot : hotKeys.values()) {
+            if (weblogHandle == null || weblogHandle.equals(hot.weblogHandle)) {
+                keys.add(hot);
+            }
+        }
+        Collections.sort(keys, HOTTEST_FIRST);
+        return keys.size() > max ? keys.subList(0, max) : keys;
+    }
+    
+    
+    /**
+     * Get the most requested keys of the weblogs, and the site-wide weblog,
+     * which changed since the last call.
+     */
+    List<HotKey> getChangedKeys() {
+        
+        List<HotKey> keys = new ArrayList<HotKey>();
+        List<String> weblogs = new ArrayList<String>(changedWeblogs);
+        changedWeblogs.removeAll(weblogs);
+        for (String handle : weblogs) {
+            keys.addAll(getHotKeys(handle, perWeblog));
+        }
+        if (siteChanged) {
+            siteChanged = false;
+            List<HotKey> siteKeys = new ArrayList<HotKey>();
+            for (HotKey hot : getHotKeys(null, maxKeys)) {
+                if (SiteWideCache.CACHE_ID.equals(hot.cacheId) && !weblogs.contains(hot.weblogHandle)) {
+                    siteKeys.add(hot);
+                }
+            }
+            keys.addAll(siteKeys.size() > perWeblog ? siteKeys.subList(0, perWeblog) : siteKeys);
+        }
+        return keys;
+    }
+    
+    
+    private void warmChanged() {
+        List<HotKey> keys = getChangedKeys();
+        if (!keys.isEmpty()) {
+            warm(keys);
+        }
+    }
+    
+    
+    /**
+     * Queue requests for the keys on the warmup pool.  Keys which are already
+     * queued are skipped, as are all keys once the queue is full.
+     */
+    private void warm(List<HotKey> keys) {
+        
+        log.debug("Warming " + keys.size() + " keys");
+        
+        for (final HotKey hot : keys) {
+            if (!pending.add(hot.getId())) {
+                continue;
+            }
+            try {
+                threadManager.executeInBackground(ThreadManager.WARMUP_POOL, new Runnable() {
+                    public void run() {
+                        try {
+                            fetch(hot);
+                        } finally {
+                            pending.remove(hot.getId());
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                pending.remove(hot.getId());
+                log.debug("Warmup queue full, skipping " + (keys.size() - keys.indexOf(hot)) + " keys");
+                break;
+            }
+        }
+    }
+    
+    
+    private void fetch(HotKey hot) {
+        
+        try {
+            long wait = pausedUntil.get() - System.currentTimeMillis();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+            
+            GetMethod get = new GetMethod(baseUrl + hot.getUrl());
+            get.setFollowRedirects(false);
+            get.setRequestHeader(WARMUP_HEADER, token);
+            long start = System.currentTimeMillis();
+            try {
+                int status = client.executeMethod(get);
+                get.getResponseBody();
+                long time = System.currentTimeMillis() - start;
+                
+                if (status == 404 || status == 410) {
+                    // gone, no point warming it again
+                    hotKeys.remove(hot.getId());
+                } else if (status >= 500) {
+                    failures.incrementAndGet();
+                    pause(Math.max(time, slowRequest));
+                } else {
+                    warmed.incrementAndGet();
+                }
+                if (time > slowRequest) {
+                    log.debug("Slow warmup of " + hot.getUrl() + " (" + time + " ms), pausing");
+                    pause(time);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("WARM " + hot.getUrl() + " = " + status + " in " + time + " ms");
+                }
+            } finally {
+                get.releaseConnection();
+            }
+        } catch (IOException ex) {
+            failures.incrementAndGet();
+            pause(slowRequest);
+            log.debug("Error warming " + hot.getUrl() + ": " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    
+    /**
+     * Hold back all warmup requests for at least the given time.
+     */
+    private void pause(long millis) {
+        long until = System.currentTimeMillis() + millis;
+        long current;
+        do {
+            current = pausedUntil.get();
+        } while (current < until && !pausedUntil.compareAndSet(current, until));
+    }
+    
+    
+    /**
+     * Save the most requested keys, one per line.
+     */
+    void save(File to) throws IOException {
+        
+        File dir = to.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        
+        // write next to it and move it in place, so a crash never leaves half a file
+        File tmp = new File(to.getPath() + ".tmp");
+        Writer out = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+        try {
+            for (HotKey hot : getHotKeys(null, maxKeys)) {
+                out.write(hot.hits.get() + "\t" + hot.cacheId + "\t" + hot.weblogHandle
+                        + "\t" + hot.key + "\t" + hot.url + "\t" + hot.deviceType + "\n");
+            }
+        } finally {
+            out.close();
+        }
+        if (to.exists() && !to.delete() || !tmp.renameTo(to)) {
+            throw new IOException("Unable to replace " + to);
+        }
+    }
+    
+    
+    private void save() {
+        if (file != null) {
+            try {
+                save(file);
+            } catch (IOException ex) {
+                log.warn("Error saving cache warmup keys to " + file, ex);
+            }
+        }
+    }
+    
+    
+    /**
+     * Load keys saved earlier, skipping lines which make no sense.  Lines
+     * saved before device types were recorded are for standard devices.
+     */
+    void load(File from) {
+        
+        if (!from.exists()) {
+            return;
+        }
+        
+        try {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(from), "UTF-8"));
+            try {
+                String line;
+                while ((line = in.readLine()) != null && hotKeys.size() < trackSize) {
+                    String[] fields = line.split("\t");
+                    if (fields.length < 5 || fields.length > 6
+                            || !StringUtils.isNumeric(fields[0])) {
+                        continue;
+                    }
+                    DeviceType deviceType = null;
+                    if (fields.length == 6 && !"null".equals(fields[5])) {
+                        try {
+                            deviceType = DeviceType.valueOf(fields[5]);
+                        } catch (IllegalArgumentException ex) {
+                            continue;
+                        }
+                    }
+                    HotKey hot = new HotKey(fields[1], fields[3], fields[2], deviceType,
+                            fields[4], Long.parseLong(fields[0]));
+                    hotKeys.put(hot.getId(), hot);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            log.warn("Error loading cache warmup keys from " + from, ex);
+        }
+    }
+    
+    
+    private void weblogChanged(Weblog weblog, boolean siteWide) {
+        if (weblog != null) {
+            changedWeblogs.add(weblog.getHandle());
+        }
+        if (siteWide) {
+            siteChanged = true;
+        }
+    }
+    
+    
+    public void invalidate(WeblogEntry entry) {
+        weblogChanged(entry.getWebsite(), true);
+    }
+    
+    public void invalidate(Weblog website) {
+        weblogChanged(website, true);
+    }
+    
+    public void invalidate(WeblogBookmark bookmark) {
+        weblogChanged(bookmark.getWebsite(), false);
+    }
+    
+    public void invalidate(WeblogBookmarkFolder folder) {
+        weblogChanged(folder.getWeblog(), false);
+    }
+    
+    public void invalidate(WeblogEntryComment comment) {
+        if (comment.getWeblogEntry() != null) {
+            weblogChanged(comment.getWeblogEntry().getWebsite(), false);
+        }
+    }
+    
+    public void invalidate(User user) {
+        // ignored
+    }
+    
+    public void invalidate(WeblogCategory category) {
+        weblogChanged(category.getWeblog(), false);
+    }
+    
+    public void invalidate(WeblogTemplate template) {
+        weblogChanged(template.getWeblog(), false);
+    }
+    
+    
+    /**
+     * Number of keys warmed so far.
+     */
+    public long getWarmed() {
+        return warmed.get();
+    }
+    
+    /**
+     * Number of warmup requests which failed.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+    
+    /**
+     * Number of keys being tracked.
+     */
+    public int getTracked() {
+        return hotKeys.size();
+    }
+    
+    
+    private static final Comparator<HotKey> HOTTEST_FIRST = new Comparator<HotKey>() {
+        public int compare(HotKey a, HotKey b) {
+            long x = a.hits.get();
+            long y = b.hits.get();
+            return (x < y) ? 1 : ((x == y) ? 0 : -1);
+        }
+    };
+    
+    
+    /**
+     * A requested cache key and how to request it again.
+     */
+    static final class HotKey {
+        
+        private final String cacheId;
+        private final String key;
+        private final String weblogHandle;
+        private final DeviceType deviceType;
+        private final String url;
+        private final AtomicLong hits;
+        
+        HotKey(String cacheId, String key, String weblogHandle, DeviceType deviceType,
+                String url, long hits) {
+            this.cacheId = cacheId;
+            this.key = key;
+            this.weblogHandle = weblogHandle;
+            this.deviceType = deviceType;
+            this.url = url;
+            this.hits = new AtomicLong(hits);
+        }
+        
+        String getId() {
+            return cacheId + ":" + key;
+        }
+        
+        /**
+         * The url to request, asking for the recorded device type unless
+         * the recorded request did so already.
+         */
+        String getUrl() {
+            if (deviceType == null || url.matches(".*[?&]"
+                    + MobileDeviceRepository.USER_AGENT_PARAMETER + "=.*")) {
+                return url;
+            }
+            return url + (url.indexOf('?') < 0 ? '?' : '&')
+                    + MobileDeviceRepository.USER_AGENT_PARAMETER + "=" + deviceType;
+        }
+        
+        long getHits() {
+            return hits.get();
+        }
+    }
+    
+}
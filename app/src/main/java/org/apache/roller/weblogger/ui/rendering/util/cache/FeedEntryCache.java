@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+
+
+/**
+ * Cache for the rendered items of entry feeds, so a feed only renders the
+ * entries which changed since it was last rendered and reuses the rest.
+ *
+ * An item only shows the entry, its category, tags and creator.  Items are
+ * keyed by the entry update time, which changes whenever an entry is
+ * saved, so edited entries are rendered again without any invalidation.
+ * Weblog changes, e.g. to its settings or plugins, invalidate the items of
+ * that weblog.  Category and user changes, which are rare, invalidate all
+ * items.
+ */
+public final class FeedEntryCache implements CacheHandler {
+
+    private static Log log = LogFactory.getLog(FeedEntryCache.class);
+
+    // a unique identifier for this cache, this is used as the prefix for
+    // roller config properties that apply to this cache
+    public static final String CACHE_ID = "cache.feedentry";
+
+    // keep cached content
+    private boolean cacheEnabled = true;
+    private Cache contentCache = null;
+
+    // part of every key, so bumping it invalidates all items at once
+    private final AtomicLong generation = new AtomicLong(0);
+
+    // same for the items of a weblog, by weblog handle
+    private final ConcurrentHashMap<String, AtomicLong> weblogGenerations =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    // reference to our singleton instance
+    private static FeedEntryCache singletonInstance = new FeedEntryCache();
+
+
+    private FeedEntryCache() {
+
+        cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled");
+
+        Map<String, String> cacheProps = new HashMap<String, String>();
+        cacheProps.put("id", CACHE_ID);
+        Enumeration allProps = WebloggerConfig.keys();
+        String prop = null;
+        while(allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if(prop.startsWith(CACHE_ID+".")) {
+                cacheProps.put(prop.substring(CACHE_ID.length()+1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+
+        log.info(cacheProps);
+
+        if(cacheEnabled) {
+            contentCache = CacheManager.constructCache(this, cacheProps);
+        } else {
+            log.warn("Caching has been DISABLED");
+        }
+    }
+
+
+    public static FeedEntryCache getInstance() {
+        return singletonInstance;
+    }
+
+
+    public boolean isEnabled() {
+        return cacheEnabled;
+    }
+
+
+    /**
+     * Get the rendered item for an entry in the given feed format.
+     *
+     * @param weblogHandle The handle of the entry's weblog.
+     * @param entryId The entry id.
+     * @param updateTime The time the entry was last saved.
+     * @param format The feed format, e.g. atom.
+     * @param locale The locale of the feed request, or null.
+     */
+    public String get(String weblogHandle, String entryId, long updateTime,
+            String format, String locale) {
+
+        if (!cacheEnabled) {
+            return null;
+        }
+
+        String key = generateKey(weblogHandle, entryId, updateTime, format, locale);
+        String item = (String) contentCache.get(key);
+        if (item == null) {
+            log.debug("MISS "+key);
+        } else {
+            log.debug("HIT "+key);
+        }
+        return item;
+    }
+
+
+    public void put(String weblogHandle, String entryId, long updateTime,
+            String format, String locale, String item) {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        String key = generateKey(weblogHandle, entryId, updateTime, format, locale);
+        contentCache.put(key, item);
+        log.debug("PUT "+key);
+    }
+
+
+    public void clear() {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        contentCache.clear();
+        generation.incrementAndGet();
+    }
+
+
+    /**
+     * Generate a cache key of the form ...
+     *
+     * <entry id>/<update time>/<format>[/locale]/<generation>/<weblog generation>
+     */
+    String generateKey(String weblogHandle, String entryId, long updateTime,
+            String format, String locale) {
+
+        StringBuilder key = new StringBuilder();
+        key.append(entryId).append('/').append(updateTime);
+        key.append('/').append(format);
+        if (locale != null) {
+            key.append('/').append(locale);
+        }
+        key.append('/').append(generation.get());
+        AtomicLong weblogGeneration = weblogGenerations.get(weblogHandle);
+        key.append('/').append(weblogGeneration != null ? weblogGeneration.get() : 0);
+        return key.toString();
+    }
+
+
+    /**
+     * An entry has changed.  Its update time changed too, so old items
+     * are simply never looked up again.
+     */
+    public void invalidate(WeblogEntry entry) {
+        // ignored
+    }
+
+
+    /**
+     * A weblog has changed, its settings and plugins affect its items.
+     */
+    public void invalidate(Weblog website) {
+
+        if (!cacheEnabled || website.getHandle() == null) {
+            return;
+        }
+
+        AtomicLong weblogGeneration = weblogGenerations.get(website.getHandle());
+        if (weblogGeneration == null) {
+            weblogGeneration = new AtomicLong(0);
+            AtomicLong existing = weblogGenerations.putIfAbsent(website.getHandle(), weblogGeneration);
+            if (existing != null) {
+                weblogGeneration = existing;
+            }
+        }
+        weblogGeneration.incrementAndGet();
+    }
+
+
+    public void invalidate(WeblogBookmark bookmark) {
+        // ignored
+    }
+
+
+    public void invalidate(WeblogBookmarkFolder folder) {
+        // ignored
+    }
+
+
+    public void invalidate(WeblogEntryComment comment) {
+        // ignored
+    }
+
+
+    /**
+     * A user has changed, screen names are shown in items.
+     */
+    public void invalidate(User user) {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        generation.incrementAndGet();
+    }
+
+
+    /**
+     * A category has changed, category names are shown in items.
+     */
+    public void invalidate(WeblogCategory category) {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        generation.incrementAndGet();
+    }
+
+
+    public void invalidate(WeblogTemplate template) {
+        // ignored
+    }
+
+}
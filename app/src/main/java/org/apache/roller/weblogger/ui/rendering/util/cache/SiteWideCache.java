@@ -45,7 +45,9 @@ import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
 import org.apache.roller.weblogger.util.cache.CacheHandler;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.CachedContent;
 import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
+import org.apache.roller.weblogger.util.cache.RestorableCacheSupport;
 
 
 /**
@@ -143,6 +145,24 @@ public final class SiteWideCache implements CacheHandler {
     }
     
     
+    /**
+     * Get the cached content, for saving in a snapshot.
+     */
+    public Map<String, CachedContent> getContents() {
+        return RestorableCacheSupport.getContents(contentCache);
+    }
+    
+    
+    /**
+     * Put back content restored from a snapshot.
+     */
+    public void restore(String key, CachedContent content) {
+        if (RestorableCacheSupport.restore(contentCache, key, content, false)) {
+            log.debug("RESTORE "+key);
+        }
+    }
+    
+    
     public void clear() {
         
         if (!cacheEnabled) {
@@ -321,6 +341,14 @@ public final class SiteWideCache implements CacheHandler {
           key.append("/tags/").append(Utilities.stringArrayToString(tags,"+"));
         }       
         
+        // later pages are separate responses
+        if(feedRequest.getPage() > 0) {
+            key.append("/page=").append(feedRequest.getPage());
+        }
+        if(feedRequest.getCursor() != null) {
+            key.append("/cursor=").append(feedRequest.getCursor());
+        }
+        
         return key.toString();
     }
     
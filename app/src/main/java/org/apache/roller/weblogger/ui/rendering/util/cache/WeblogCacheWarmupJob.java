@@ -44,7 +44,8 @@ import org.apache.roller.weblogger.util.cache.CachedContent;
  * over all weblogs in the system and rendering a set of their content to put
  * in the caches for later use.
  *
- * Currently only supports warming up the feed cache.
+ * Currently only supports warming up the feed cache.  See {@link CacheWarmer}
+ * for warming the most requested pages and feeds.
  */
 public class WeblogCacheWarmupJob implements Job {
     
@@ -32,7 +32,9 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.CachedContent;
 import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
+import org.apache.roller.weblogger.util.cache.RestorableCacheSupport;
 
 
 /**
@@ -136,6 +138,24 @@ public final class WeblogFeedCache {
     }
     
     
+    /**
+     * Get the cached content, for saving in a snapshot.
+     */
+    public Map<String, CachedContent> getContents() {
+        return RestorableCacheSupport.getContents(contentCache);
+    }
+    
+    
+    /**
+     * Put back content restored from a snapshot.
+     */
+    public void restore(String key, CachedContent content) {
+        if (RestorableCacheSupport.restore(contentCache, key, content, true)) {
+            log.debug("RESTORE "+key);
+        }
+    }
+    
+    
     public void clear() {
         
         if (!cacheEnabled) {
@@ -151,7 +171,7 @@ public final class WeblogFeedCache {
      * Generate a cache key from a parsed weblog feed request.
      * This generates a key of the form ...
      *
-     * <handle>/<type>/<format>/<term>[/category][/language][/excerpts]
+     * <handle>/<type>/<format>/<term>[/category][/language][/excerpts][/page][/cursor]
      *
      * examples ...
      *
@@ -197,6 +217,13 @@ public final class WeblogFeedCache {
         
         if(feedRequest.isExcerpts()) {
             key.append("/excerpts");
+        }        
+        // later pages are separate responses
+        if(feedRequest.getPage() > 0) {
+            key.append("/page=").append(feedRequest.getPage());
+        }
+        if(feedRequest.getCursor() != null) {
+            key.append("/cursor=").append(feedRequest.getCursor());
         }
         
         return key.toString();
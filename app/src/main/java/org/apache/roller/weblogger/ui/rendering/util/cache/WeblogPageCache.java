@@ -32,7 +32,9 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.CachedContent;
 import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
+import org.apache.roller.weblogger.util.cache.RestorableCacheSupport;
 
 
 /**
@@ -136,6 +138,24 @@ public final class WeblogPageCache {
     }
     
     
+    /**
+     * Get the cached content, for saving in a snapshot.
+     */
+    public Map<String, CachedContent> getContents() {
+        return RestorableCacheSupport.getContents(contentCache);
+    }
+    
+    
+    /**
+     * Put back content restored from a snapshot.
+     */
+    public void restore(String key, CachedContent content) {
+        if (RestorableCacheSupport.restore(contentCache, key, content, true)) {
+            log.debug("RESTORE "+key);
+        }
+    }
+    
+    
     public void clear() {
         
         if (!cacheEnabled) {
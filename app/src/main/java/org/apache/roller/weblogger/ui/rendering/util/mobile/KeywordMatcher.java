@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.util.mobile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Finds which of a set of keywords occur in a text with a single pass over
+ * the text, rather than one <code>String.contains</code> per keyword.
+ *
+ * Each keyword carries flags and matching returns the flags of all keywords
+ * found.  Keywords are compiled into an Aho-Corasick automaton with a full
+ * transition table, so each character of the text costs a table lookup.
+ * Matching is case sensitive, like <code>String.contains</code>. Instances
+ * are immutable and thread safe.
+ */
+final class KeywordMatcher {
+
+	// sorted distinct characters of all keywords, class n is alphabet[n-1]
+	// and class 0 is any other character
+	private final char[] alphabet;
+	private final int[] asciiClasses = new int[128];
+	private final int width;
+
+	// next state for each state and character class
+	private final int[] transitions;
+
+	// flags of the keywords ending at each state, including shorter ones
+	private final int[] outputs;
+
+	private KeywordMatcher(Map<String, Integer> keywords) {
+
+		TreeSet<Character> chars = new TreeSet<Character>();
+		for (String keyword : keywords.keySet()) {
+			for (int i = 0; i < keyword.length(); i++) {
+				chars.add(keyword.charAt(i));
+			}
+		}
+		alphabet = new char[chars.size()];
+		int n = 0;
+		for (Character c : chars) {
+			alphabet[n++] = c;
+			if (c < asciiClasses.length) {
+				asciiClasses[c] = n;
+			}
+		}
+		width = alphabet.length + 1;
+
+		// build the trie
+		List<Map<Integer, Integer>> children = new ArrayList<Map<Integer, Integer>>();
+		List<Integer> flags = new ArrayList<Integer>();
+		children.add(new HashMap<Integer, Integer>());
+		flags.add(0);
+		for (Map.Entry<String, Integer> keyword : keywords.entrySet()) {
+			int state = 0;
+			String text = keyword.getKey();
+			for (int i = 0; i < text.length(); i++) {
+				int cls = classOf(text.charAt(i));
+				Integer next = children.get(state).get(cls);
+				if (next == null) {
+					next = children.size();
+					children.add(new HashMap<Integer, Integer>());
+					flags.add(0);
+					children.get(state).put(cls, next);
+				}
+				state = next;
+			}
+			flags.set(state, flags.get(state) | keyword.getValue());
+		}
+
+		// turn it into a table, breadth first so the state a failed match
+		// falls back to is always complete before it is used
+		int states = children.size();
+		transitions = new int[states * width];
+		outputs = new int[states];
+		int[] fallback = new int[states];
+		int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		outputs[0] = flags.get(0);
+		queue[tail++] = 0;
+		while (head < tail) {
+			int state = queue[head++];
+			for (int cls = 1; cls < width; cls++) {
+				Integer child = children.get(state).get(cls);
+				int fallbackNext = state == 0 ? 0 : transitions[fallback[state] * width + cls];
+				if (child == null) {
+					transitions[state * width + cls] = fallbackNext;
+				} else {
+					transitions[state * width + cls] = child;
+					fallback[child] = fallbackNext;
+					outputs[child] = flags.get(child) | outputs[fallbackNext];
+					queue[tail++] = child;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the flags of all keywords occurring in the text, or 0 if none do.
+	 */
+	int match(String text) {
+		int state = 0;
+		int found = outputs[0];
+		for (int i = 0; i < text.length(); i++) {
+			state = transitions[state * width + classOf(text.charAt(i))];
+			found |= outputs[state];
+		}
+		return found;
+	}
+
+	private int classOf(char c) {
+		if (c < asciiClasses.length) {
+			return asciiClasses[c];
+		}
+		int index = Arrays.binarySearch(alphabet, c);
+		return index < 0 ? 0 : index + 1;
+	}
+
+	/**
+	 * Collects keywords and their flags.  A keyword added more than once
+	 * carries all of the flags it was added with.
+	 */
+	static final class Builder {
+
+		private final Map<String, Integer> keywords = new LinkedHashMap<String, Integer>();
+
+		Builder add(Collection<String> words, int flag) {
+			for (String word : words) {
+				add(word, flag);
+			}
+			return this;
+		}
+
+		Builder add(String word, int flag) {
+			Integer flags = keywords.get(word);
+			keywords.put(word, flags == null ? flag : flags | flag);
+			return this;
+		}
+
+		KeywordMatcher build() {
+			return new KeywordMatcher(keywords);
+		}
+	}
+
+}
@@ -23,8 +23,11 @@ package org.apache.roller.weblogger.ui.rendering.util.mobile;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
+import org.apache.roller.weblogger.util.cache.Cache;
 
 /**
  * A "lightweight" device resolver algorithm based on Wordpress's Mobile pack.
@@ -42,6 +45,9 @@ import javax.servlet.http.HttpServletRequest;
  * "http://googlewebmastercentral.blogspot.com/2011/03/mo-better-to-also-detect-mobile-user.html"
  * >Google's recommendations</a>.
  *
+ * All keyword lists are matched in a single pass over the UA string, and what
+ * a UA string resolves to may be cached with {@link #setUserAgentCache}.
+ *
  * @author Keith Donald
  * @author Roy Clarkson
  * @author Scott Rossillo
@@ -53,6 +59,25 @@ public class LiteDeviceResolver implements DeviceResolver {
 	private final List<String> tabletUserAgentKeywords = new ArrayList<String>();
 	private final List<String> normalUserAgentKeywords = new ArrayList<String>();
 
+	// keyword flags for the compiled matcher
+	private static final int NORMAL = 1;
+	private static final int TABLET = 2;
+	private static final int MOBILE = 4;
+	private static final int ANDROID = 8;
+	private static final int SILK = 16;
+	private static final int MOBILE_WORD = 32;
+
+	private volatile KeywordMatcher keywordMatcher;
+	private volatile Set<String> mobileUserAgentPrefixSet;
+	private volatile Cache userAgentCache;
+
+	/**
+	 * What a user agent resolves to without looking at other headers.
+	 */
+	enum UserAgentType {
+		NORMAL, TABLET, MOBILE, UNKNOWN
+	}
+
 	public LiteDeviceResolver() {
 		init();
 	}
@@ -64,57 +89,32 @@ public class LiteDeviceResolver implements DeviceResolver {
 
 	public Device resolveDevice(HttpServletRequest request) {
 		String userAgent = request.getHeader("User-Agent");
-		// UserAgent keyword detection of Normal devices
+		UserAgentType type = UserAgentType.UNKNOWN;
 		if (userAgent != null) {
-			userAgent = userAgent.toLowerCase();
-			for (String keyword : normalUserAgentKeywords) {
-				if (userAgent.contains(keyword)) {
-					return resolveFallback(request);
-				}
-			}
+			type = resolveUserAgent(userAgent);
+		}
+		// UserAgent keyword detection of Normal devices
+		if (type == UserAgentType.NORMAL) {
+			return resolveFallback(request);
 		}
 		// UserAgent keyword detection of Tablet devices
-		if (userAgent != null) {
-			userAgent = userAgent.toLowerCase();
-			// Android special case
-			if (userAgent.contains("android") && !userAgent.contains("mobile")) {
-				return LiteDevice.TABLET_INSTANCE;
-			}
-			// Kindle Fire special case
-			if (userAgent.contains("silk") && !userAgent.contains("mobile")) {
-				return LiteDevice.TABLET_INSTANCE;
-			}
-			for (String keyword : tabletUserAgentKeywords) {
-				if (userAgent.contains(keyword)) {
-					return LiteDevice.TABLET_INSTANCE;
-				}
-			}
+		if (type == UserAgentType.TABLET) {
+			return LiteDevice.TABLET_INSTANCE;
+		}
+		// UserAgent prefix and keyword detection of Mobile devices
+		if (type == UserAgentType.MOBILE) {
+			return LiteDevice.MOBILE_INSTANCE;
 		}
 		// UAProf detection
 		if (request.getHeader("x-wap-profile") != null
 				|| request.getHeader("Profile") != null) {
 			return LiteDevice.MOBILE_INSTANCE;
 		}
-		// User-Agent prefix detection
-		if (userAgent != null && userAgent.length() >= 4) {
-			String prefix = userAgent.substring(0, 4).toLowerCase();
-			if (mobileUserAgentPrefixes.contains(prefix)) {
-				return LiteDevice.MOBILE_INSTANCE;
-			}
-		}
 		// Accept-header based detection
 		String accept = request.getHeader("Accept");
 		if (accept != null && accept.contains("wap")) {
 			return LiteDevice.MOBILE_INSTANCE;
 		}
-		// UserAgent keyword detection for Mobile devices
-		if (userAgent != null) {
-			for (String keyword : mobileUserAgentKeywords) {
-				if (userAgent.contains(keyword)) {
-					return LiteDevice.MOBILE_INSTANCE;
-				}
-			}
-		}
 		// OperaMini special case
 		@SuppressWarnings("rawtypes")
 		Enumeration headers = request.getHeaderNames();
@@ -127,6 +127,82 @@ public class LiteDeviceResolver implements DeviceResolver {
 		return resolveFallback(request);
 	}
 
+	/**
+	 * Set a cache of user agents to what they resolve to. User agent strings
+	 * repeat a lot, so this saves matching most of them again.
+	 */
+	public void setUserAgentCache(Cache userAgentCache) {
+		this.userAgentCache = userAgentCache;
+	}
+
+	/**
+	 * What the User-Agent header alone tells about a device. The other
+	 * headers are only looked at when this is UNKNOWN, since they can only
+	 * turn an otherwise normal device into a mobile one.
+	 */
+	UserAgentType resolveUserAgent(String userAgent) {
+		Cache cache = userAgentCache;
+		if (cache != null) {
+			UserAgentType type = (UserAgentType) cache.get(userAgent);
+			if (type == null) {
+				type = matchUserAgent(userAgent);
+				cache.put(userAgent, type);
+			}
+			return type;
+		}
+		return matchUserAgent(userAgent);
+	}
+
+	private UserAgentType matchUserAgent(String userAgent) {
+		String lowerCaseUserAgent = userAgent.toLowerCase();
+		int found = getKeywordMatcher().match(lowerCaseUserAgent);
+		if ((found & NORMAL) != 0) {
+			return UserAgentType.NORMAL;
+		}
+		// Android and Kindle Fire special cases
+		if ((found & (ANDROID | SILK)) != 0 && (found & MOBILE_WORD) == 0) {
+			return UserAgentType.TABLET;
+		}
+		if ((found & TABLET) != 0) {
+			return UserAgentType.TABLET;
+		}
+		if (lowerCaseUserAgent.length() >= 4
+				&& mobileUserAgentPrefixSet.contains(lowerCaseUserAgent.substring(0, 4))) {
+			return UserAgentType.MOBILE;
+		}
+		if ((found & MOBILE) != 0) {
+			return UserAgentType.MOBILE;
+		}
+		return UserAgentType.UNKNOWN;
+	}
+
+	/**
+	 * Compile the keyword lists on first use, so anything subclasses or the
+	 * constructors add to them after init() is included. Later changes to
+	 * the lists are not seen.
+	 */
+	private KeywordMatcher getKeywordMatcher() {
+		KeywordMatcher matcher = keywordMatcher;
+		if (matcher == null) {
+			synchronized (this) {
+				matcher = keywordMatcher;
+				if (matcher == null) {
+					mobileUserAgentPrefixSet = new HashSet<String>(getMobileUserAgentPrefixes());
+					matcher = new KeywordMatcher.Builder()
+							.add(getNormalUserAgentKeywords(), NORMAL)
+							.add(getTabletUserAgentKeywords(), TABLET)
+							.add(getMobileUserAgentKeywords(), MOBILE)
+							.add("android", ANDROID)
+							.add("silk", SILK)
+							.add("mobile", MOBILE_WORD)
+							.build();
+					keywordMatcher = matcher;
+				}
+			}
+		}
+		return matcher;
+	}
+
 	// subclassing hooks
 	/**
 	 * List of user agent prefixes that identify mobile devices. Used primarily
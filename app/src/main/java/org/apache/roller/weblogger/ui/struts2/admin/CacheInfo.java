@@ -18,22 +18,28 @@
 
 package org.apache.roller.weblogger.ui.struts2.admin;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.runnable.WorkerPool;
 import org.apache.roller.weblogger.pojos.GlobalPermission;
 import org.apache.roller.weblogger.ui.struts2.util.UIAction;
 import org.apache.roller.weblogger.util.cache.CacheManager;
 
 
 /**
- * Action for displaying rendering cache info.
+ * Action for displaying rendering cache info and worker pool stats.
  */
 public class CacheInfo extends UIAction {
     
     // map of stats to display
     private Map stats = Collections.EMPTY_MAP;
     
+    // worker pools to display
+    private Collection<WorkerPool> workerPools = Collections.emptyList();
+    
     // cache which we would clear when clear() is called
     private String cache = null;
     
@@ -57,6 +63,7 @@ public class CacheInfo extends UIAction {
     public void myPrepare() {
         Map cacheStats = CacheManager.getStats();
         setStats(cacheStats);
+        setWorkerPools(WebloggerFactory.getWeblogger().getThreadManager().getWorkerPools());
     }
     
     
@@ -96,6 +103,14 @@ public class CacheInfo extends UIAction {
         this.stats = stats;
     }
 
+    public Collection<WorkerPool> getWorkerPools() {
+        return workerPools;
+    }
+
+    public void setWorkerPools(Collection<WorkerPool> workerPools) {
+        this.workerPools = workerPools;
+    }
+
     public String getCache() {
         return cache;
     }
@@ -31,6 +31,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.business.runnable.CommentModerationJob;
 import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.GlobalPermission;
 import org.apache.roller.weblogger.pojos.Weblog;
@@ -69,6 +70,9 @@ public class GlobalCommentManagement extends UIAction implements ServletRequestA
     // indicates number of comments that would be deleted by bulk removal
     // a non-zero value here indicates bulk removal is a valid option
     private int bulkDeleteCount = 0;
+    
+    // id of a running bulk delete job, if any
+    private String bulkJobId = null;
 
     // work around checkbox issue in cases where user inadvertently does a
     // GET on the GlobalConfig!save URL and thus sets all checkboxes to false
@@ -190,10 +194,10 @@ public class GlobalCommentManagement extends UIAction implements ServletRequestA
             csc.setStatus(getBean().getStatus());
             csc.setReverseChrono(true);
 
-            List allMatchingComments = wmgr.getComments(csc);
+            long matchingCount = wmgr.getCommentCount(csc);
 
-            if(allMatchingComments.size() > COUNT) {
-                setBulkDeleteCount(allMatchingComments.size());
+            if(matchingCount > COUNT) {
+                setBulkDeleteCount((int) matchingCount);
             }
             
         } catch (WebloggerException ex) {
@@ -207,20 +211,24 @@ public class GlobalCommentManagement extends UIAction implements ServletRequestA
     
     /**
      * Bulk delete all comments matching query criteria.
+     *
+     * Comments are deleted by a background job, the comments page shows its
+     * progress until it is done.
      */
     public String delete() {
         
         try {
-            WeblogEntryManager wmgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
-            int deleted = wmgr.removeMatchingComments(
-                    null,
-                    null,
-                    getBean().getSearchString(),
-                    getBean().getStartDate(),
-                    getBean().getEndDate(),
-                    getBean().getStatus());
+            CommentSearchCriteria csc = new CommentSearchCriteria();
+            csc.setSearchText(getBean().getSearchString());
+            csc.setStartDate(getBean().getStartDate());
+            csc.setEndDate(getBean().getEndDate());
+            csc.setStatus(getBean().getStatus());
             
-            addMessage("commentManagement.deleteSuccess",Integer.toString(deleted));
+            CommentModerationJob job = CommentModerationJob.start(
+                    WebloggerFactory.getWeblogger(), csc, null);
+            setBulkJobId(job.getId());
+            
+            addMessage("commentManagement.bulkDeleteStarted");
             
             // reset form and load fresh comments list
             setBean(new GlobalCommentManagementBean());
@@ -348,6 +356,18 @@ public class GlobalCommentManagement extends UIAction implements ServletRequestA
     public void setBulkDeleteCount(int bulkDeleteCount) {
         this.bulkDeleteCount = bulkDeleteCount;
     }
+    
+    public String getBulkJobId() {
+        return bulkJobId;
+    }
+    
+    public void setBulkJobId(String bulkJobId) {
+        this.bulkJobId = bulkJobId;
+    }
+    
+    public CommentModerationJob getBulkJob() {
+        return CommentModerationJob.getJob(bulkJobId);
+    }
 
     public WeblogEntryComment getFirstComment() {
         return firstComment;
@@ -33,6 +33,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.business.runnable.CommentModerationJob;
 import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
@@ -79,6 +80,9 @@ public class Comments extends UIAction {
     // a non-zero value here indicates bulk removal is a valid option
     private int bulkDeleteCount = 0;
 
+    // id of a running bulk delete job, if any
+    private String bulkJobId = null;
+
     public Comments() {
         this.actionName = "comments";
         this.desiredMenu = "editor";
@@ -201,9 +205,9 @@ public class Comments extends UIAction {
             csc.setStatus(getBean().getStatus());
             csc.setReverseChrono(true);
 
-            List<WeblogEntryComment> allMatchingComments = wmgr.getComments(csc);
-            if (allMatchingComments.size() > COUNT) {
-                setBulkDeleteCount(allMatchingComments.size());
+            long matchingCount = wmgr.getCommentCount(csc);
+            if (matchingCount > COUNT) {
+                setBulkDeleteCount((int) matchingCount);
             }
 
         } catch (WebloggerException ex) {
@@ -216,48 +220,25 @@ public class Comments extends UIAction {
 
     /**
      * Bulk delete all comments matching query criteria.
+     *
+     * Comments are deleted by a background job, the comments page shows its
+     * progress until it is done.
      */
     public String delete() {
 
         try {
-            WeblogEntryManager wmgr = WebloggerFactory.getWeblogger()
-                    .getWeblogEntryManager();
+            CommentSearchCriteria csc = new CommentSearchCriteria();
+            csc.setWeblog(getActionWeblog());
+            csc.setSearchText(getBean().getSearchString());
+            csc.setStartDate(getBean().getStartDate());
+            csc.setEndDate(getBean().getEndDate());
+            csc.setStatus(getBean().getStatus());
 
-            // if search is enabled, we will need to re-index all entries with
-            // comments that have been deleted, so build a list of those entries
-            Set<WeblogEntry> reindexEntries = new HashSet<WeblogEntry>();
-            if (WebloggerConfig.getBooleanProperty("search.enabled")) {
-
-                CommentSearchCriteria csc = new CommentSearchCriteria();
-                csc.setWeblog(getActionWeblog());
-                csc.setEntry(getQueryEntry());
-                csc.setSearchText(getBean().getSearchString());
-                csc.setStartDate(getBean().getStartDate());
-                csc.setEndDate(getBean().getEndDate());
-                csc.setStatus(getBean().getStatus());
-                csc.setReverseChrono(true);
-
-                List<WeblogEntryComment> targetted = wmgr.getComments(csc);
-                for (WeblogEntryComment comment : targetted) {
-                    reindexEntries.add(comment.getWeblogEntry());
-                }
-            }
+            CommentModerationJob job = CommentModerationJob.start(
+                    WebloggerFactory.getWeblogger(), csc, null);
+            setBulkJobId(job.getId());
 
-            int deleted = wmgr.removeMatchingComments(getActionWeblog(), null,
-                    getBean().getSearchString(), getBean().getStartDate(),
-                    getBean().getEndDate(), getBean().getStatus());
-
-            // if we've got entries to reindex then do so
-            if (!reindexEntries.isEmpty()) {
-                IndexManager imgr = WebloggerFactory.getWeblogger()
-                        .getIndexManager();
-                for (WeblogEntry entry : reindexEntries) {
-                    imgr.addEntryReIndexOperation(entry);
-                }
-            }
-
-            addMessage("commentManagement.deleteSuccess",
-                    Integer.toString(deleted));
+            addMessage("commentManagement.bulkDeleteStarted");
 
             // reset form and load fresh comments list
             setBean(new CommentsBean());
@@ -452,6 +433,26 @@ public class Comments extends UIAction {
         this.bulkDeleteCount = bulkDeleteCount;
     }
 
+    public String getBulkJobId() {
+        return bulkJobId;
+    }
+
+    public void setBulkJobId(String bulkJobId) {
+        this.bulkJobId = bulkJobId;
+    }
+
+    /**
+     * Bulk delete job started from this weblog's comments page, if any.
+     */
+    public CommentModerationJob getBulkJob() {
+        CommentModerationJob job = CommentModerationJob.getJob(bulkJobId);
+        if (job != null && job.getWeblog() != null
+                && job.getWeblog().getId().equals(getActionWeblog().getId())) {
+            return job;
+        }
+        return null;
+    }
+
     public WeblogEntryComment getFirstComment() {
         return firstComment;
     }
@@ -19,11 +19,16 @@
 package org.apache.roller.weblogger.util;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.PrintWriter;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.config.WebloggerConfig;
@@ -32,19 +37,25 @@ import org.apache.roller.weblogger.config.WebloggerConfig;
 /**
  * Represents a list of banned ip addresses.
  *
- * This base implementation gets its list from a file on the filesystem.  We
- * are also aware of when the file changes via some outside source and we will
- * automatically re-read the file and update the list when that happens.
+ * This base implementation gets its list from a file on the filesystem, one
+ * address or CIDR range (e.g. 10.1.0.0/16 or 2001:db8::/32) per line.  The
+ * file is checked for changes every ipbanlist.reloadInterval seconds in the
+ * background and reloaded when it changed, so checking an address never
+ * touches the filesystem or takes a lock.
  */
 public final class IPBanList {
     
     private static Log log = LogFactory.getLog(IPBanList.class);
     
-    // set of ips that are banned, use a set to ensure uniqueness
-    private Set bannedIps = new HashSet();
+    // ranges that are banned, replaced as a whole on reload
+    private volatile IPRangeSet bannedIps = IPRangeSet.EMPTY;
+    
+    // lines of the file, to rebuild the ranges when an ip is added
+    private List<String> bannedLines = new ArrayList<String>();
     
     // file listing the ips that are banned
-    private ModifiedFile bannedIpsFile = null;
+    private File bannedIpsFile = null;
+    private long lastModified = 0;
     
     // reference to our singleton instance
     private static IPBanList instance = null;
@@ -63,11 +74,28 @@ public final class IPBanList {
         // load up set of denied ips
         String banIpsFilePath = WebloggerConfig.getProperty("ipbanlist.file");
         if(banIpsFilePath != null) {
-            ModifiedFile banIpsFile = new ModifiedFile(banIpsFilePath);
+            File banIpsFile = new File(banIpsFilePath);
             
             if(banIpsFile.exists() && banIpsFile.canRead()) {
                 this.bannedIpsFile = banIpsFile;
                 this.loadBannedIps();
+                
+                int interval = WebloggerConfig.getIntProperty("ipbanlist.reloadInterval", 30);
+                if (interval > 0) {
+                    ScheduledExecutorService reloader =
+                            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "IPBanList-reloader");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    reloader.scheduleWithFixedDelay(new Runnable() {
+                        public void run() {
+                            loadBannedIpsIfChanged();
+                        }
+                    }, interval, interval, TimeUnit.SECONDS);
+                }
             }
         }
     }
@@ -80,27 +108,16 @@ public final class IPBanList {
     
     
     public boolean isBanned(String ip) {
-        
-        // update the banned ips list if needed
-        this.loadBannedIpsIfNeeded(false);
-        
-        if(ip != null) {
-            return this.bannedIps.contains(ip);
-        } else {
-            return false;
-        }
+        return ip != null && this.bannedIps.contains(ip);
     }
     
     
     public void addBannedIp(String ip) {
         
-        if(ip == null) {
+        if(ip == null || !IPRangeSet.isValidRange(ip)) {
             return;
         }
         
-        // update the banned ips list if needed
-        this.loadBannedIpsIfNeeded(false);
-        
         if(!this.bannedIps.contains(ip) && 
                 (bannedIpsFile != null && bannedIpsFile.canWrite())) {
             
@@ -110,10 +127,11 @@ public final class IPBanList {
                     PrintWriter out = new PrintWriter(new FileWriter(this.bannedIpsFile, true));
                     out.println(ip);
                     out.close();
-                    this.bannedIpsFile.clearChanged();
+                    this.lastModified = this.bannedIpsFile.lastModified();
                     
-                    // add to Set
-                    this.bannedIps.add(ip);
+                    // add to ranges
+                    this.bannedLines.add(ip);
+                    this.bannedIps = IPRangeSet.build(this.bannedLines);
                 }
                 
                 log.debug("ADDED "+ip);
@@ -125,14 +143,11 @@ public final class IPBanList {
     
     
     /**
-     * Check if the banned ips file has changed and needs to be reloaded.
+     * Reload the banned ips file if it changed since it was last loaded.
      */
-    private void loadBannedIpsIfNeeded(boolean forceLoad) {
+    private synchronized void loadBannedIpsIfChanged() {
         
-        if(bannedIpsFile != null && 
-                (bannedIpsFile.hasChanged() || forceLoad)) {
-            
-            // need to reload
+        if(bannedIpsFile != null && bannedIpsFile.lastModified() != lastModified) {
             this.loadBannedIps();
         }
     }
@@ -147,23 +162,26 @@ public final class IPBanList {
         if(bannedIpsFile != null) {
             
             try {
-                HashSet newBannedIpList = new HashSet();
+                long modified = this.bannedIpsFile.lastModified();
+                List<String> lines = new ArrayList<String>();
                 
-                // TODO: optimize this
                 BufferedReader in = new BufferedReader(new FileReader(this.bannedIpsFile));
-                
-                String ip = null;
-                while((ip = in.readLine()) != null) {
-                    newBannedIpList.add(ip);
+                try {
+                    String ip = null;
+                    while((ip = in.readLine()) != null) {
+                        lines.add(ip);
+                    }
+                } finally {
+                    in.close();
                 }
                 
-                in.close();
+                // list updated, remember when
+                IPRangeSet ranges = IPRangeSet.build(lines);
+                this.bannedLines = lines;
+                this.bannedIps = ranges;
+                this.lastModified = modified;
                 
-                // list updated, reset modified file
-                this.bannedIps = newBannedIpList;
-                this.bannedIpsFile.clearChanged();
-                
-                log.info(this.bannedIps.size()+" banned ips loaded");
+                log.info(ranges.size()+" banned ips and ranges loaded");
             } catch(Exception ex) {
                log.error("Error loading banned ips from file", ex);
             }
@@ -171,26 +189,4 @@ public final class IPBanList {
         }
     }
     
-    
-    // a simple extension to the File class which tracks if the file has 
-    // changed since the last time we checked
-    private class ModifiedFile extends java.io.File {
-        
-        private long myLastModified = 0;
-        
-        public ModifiedFile(String filePath) {
-            super(filePath);
-            
-            this.myLastModified = lastModified();
-        }
-
-        public boolean hasChanged() {
-            return lastModified() != myLastModified;
-        }
-        
-        public void clearChanged() {
-            myLastModified = lastModified();
-        }
-    }
-    
 }
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+
+
+/**
+ * An immutable set of IPv4 and IPv6 address ranges, for fast lookups of
+ * the ranges containing an address.
+ *
+ * Ranges are given in CIDR notation, e.g. 192.168.0.0/16 or 2001:db8::/32,
+ * or as single addresses.  They are kept in a binary trie on the bits of
+ * the address, so a lookup takes at most one step per address bit however
+ * many ranges there are.  Sets never change once built and may be shared
+ * between threads freely.
+ */
+public final class IPRangeSet {
+
+    public static final IPRangeSet EMPTY = new IPRangeSet(new Node(), new Node(), 0);
+
+    private final Node ipv4;
+    private final Node ipv6;
+    private final int size;
+
+
+    private IPRangeSet(Node ipv4, Node ipv6, int size) {
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+        this.size = size;
+    }
+
+
+    /**
+     * Build a set from ranges, skipping blank lines, lines starting with #
+     * and anything which is not an address or range.
+     */
+    public static IPRangeSet build(Collection<String> ranges) {
+        Node ipv4 = new Node();
+        Node ipv6 = new Node();
+        int size = 0;
+        for (String range : ranges) {
+            Range parsed = parseRange(range);
+            if (parsed != null) {
+                add(parsed.bytes.length == 4 ? ipv4 : ipv6, parsed.bytes, parsed.prefix);
+                size++;
+            }
+        }
+        return new IPRangeSet(ipv4, ipv6, size);
+    }
+
+
+    /**
+     * True if the address is in one of the ranges.  Host names and invalid
+     * addresses are never contained.
+     */
+    public boolean contains(String ip) {
+        byte[] bytes = parseAddress(ip);
+        if (bytes == null) {
+            return false;
+        }
+        Node node = bytes.length == 4 ? ipv4 : ipv6;
+        for (int bit = 0; bit < bytes.length * 8; bit++) {
+            if (node.terminal) {
+                return true;
+            }
+            node = node.children[bitAt(bytes, bit)];
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.terminal;
+    }
+
+
+    /**
+     * Number of ranges in the set.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * True if the string is an address or range this set accepts.
+     */
+    public static boolean isValidRange(String range) {
+        return parseRange(range) != null;
+    }
+
+
+    private static void add(Node root, byte[] bytes, int prefix) {
+        Node node = root;
+        for (int bit = 0; bit < prefix; bit++) {
+            if (node.terminal) {
+                // a wider range already covers this one
+                return;
+            }
+            int b = bitAt(bytes, bit);
+            if (node.children[b] == null) {
+                node.children[b] = new Node();
+            }
+            node = node.children[b];
+        }
+        node.terminal = true;
+    }
+
+
+    private static int bitAt(byte[] bytes, int bit) {
+        return (bytes[bit >> 3] >> (7 - (bit & 7))) & 1;
+    }
+
+
+    private static Range parseRange(String range) {
+        if (range == null) {
+            return null;
+        }
+        String value = range.trim();
+        if (value.length() == 0 || value.startsWith("#")) {
+            return null;
+        }
+        int slash = value.indexOf('/');
+        byte[] bytes = parseAddress(slash < 0 ? value : value.substring(0, slash));
+        if (bytes == null) {
+            return null;
+        }
+        int prefix = bytes.length * 8;
+        if (slash >= 0) {
+            try {
+                prefix = Integer.parseInt(value.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (prefix < 0 || prefix > bytes.length * 8) {
+                return null;
+            }
+        }
+        return new Range(bytes, prefix);
+    }
+
+
+    /**
+     * Parse an address literal, without ever doing a name lookup.  IPv4
+     * mapped IPv6 addresses come back as IPv4 addresses.
+     */
+    private static byte[] parseAddress(String ip) {
+        if (ip == null || ip.length() == 0) {
+            return null;
+        }
+        String value = ip.trim();
+        if (value.startsWith("[") && value.endsWith("]")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        if (value.indexOf(':') < 0) {
+            return parseIPv4(value);
+        }
+        // only hex digits, colons, dots and a zone are left to InetAddress
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%') {
+                value = value.substring(0, i);
+                break;
+            }
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+                return null;
+            }
+        }
+        try {
+            return InetAddress.getByName(value).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+
+    private static byte[] parseIPv4(String value) {
+        byte[] bytes = new byte[4];
+        int part = 0;
+        int octet = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : '.';
+            if (c == '.') {
+                if (octet < 0 || part == 4) {
+                    return null;
+                }
+                bytes[part++] = (byte) octet;
+                octet = -1;
+            } else if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return part == 4 ? bytes : null;
+    }
+
+
+    private static class Node {
+        private final Node[] children = new Node[2];
+        private boolean terminal = false;
+    }
+
+
+    private static class Range {
+        private final byte[] bytes;
+        private final int prefix;
+
+        Range(byte[] bytes, int prefix) {
+            this.bytes = bytes;
+            this.prefix = prefix;
+        }
+    }
+
+}
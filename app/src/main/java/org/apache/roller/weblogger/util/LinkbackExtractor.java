@@ -22,12 +22,15 @@ import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.io.FeedException;
 import com.rometools.rome.io.SyndFeedInput;
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.Arrays;
 import java.util.List;
 
@@ -40,6 +43,7 @@ import javax.swing.text.html.HTMLEditorKit.ParserCallback;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
 
 
 /**
@@ -61,10 +65,14 @@ public class LinkbackExtractor
     private String     mRequestURL    = null;
     private String     mRequestURLWWW = null;
     private String     mRefererURL;
+    private long       mDeadline;
 
     private static final int MAX_EXCERPT_CHARS = 500;
     private static final int DESIRED_TITLE_LENGTH = 50;
 
+    /** Time allowed for fetching the referring page and its feed */
+    public static final int TIMEOUT_MS = 30 * RollerConstants.SEC_IN_MS;
+
     //------------------------------------------------------------------------
     /**
      * Extract referring page title, excerpt, and permalink.
@@ -73,6 +81,21 @@ public class LinkbackExtractor
      * @param requestURL
      */
     public LinkbackExtractor(String refererURL, String requestURL) throws IOException {
+        this(refererURL, requestURL, System.currentTimeMillis() + TIMEOUT_MS);
+    }
+
+    //------------------------------------------------------------------------
+    /**
+     * Extract referring page title, excerpt, and permalink, giving up on
+     * fetching once the deadline has passed.  Nothing is extracted then.
+     * 
+     * @param refererURL
+     * @param requestURL
+     * @param deadline Time in milliseconds, as System.currentTimeMillis().
+     */
+    public LinkbackExtractor(String refererURL, String requestURL, long deadline)
+            throws IOException {
+        mDeadline = deadline;
         try {
             extractByParsingHtml(refererURL, requestURL);
             if (mRssLink != null) {
@@ -87,8 +110,7 @@ public class LinkbackExtractor
 
     //------------------------------------------------------------------------
     private void extractByParsingHtml(String refererURL, String requestURL) throws IOException {
-        URL url = new URL(refererURL);
-        InputStream is = url.openStream();
+        InputStream is = openStream(refererURL);
 
         mRefererURL = refererURL;
 
@@ -146,7 +168,7 @@ public class LinkbackExtractor
             throws FeedException, IOException {
         SyndFeedInput feedInput = new SyndFeedInput();       
         SyndFeed feed = feedInput.build(
-            new InputStreamReader(new URL(rssLink).openStream()));
+            new InputStreamReader(openStream(rssLink)));
         String feedTitle = feed.getTitle();
 
         int count = 0;
@@ -222,6 +244,43 @@ public class LinkbackExtractor
         mPermalink = permalink;
     }
 
+    //------------------------------------------------------------------------
+    /**
+     * Open a stream to the given URL, giving up on unresponsive sites and on
+     * sites which are still sending when the deadline has passed.
+     */
+    private InputStream openStream(String urlString) throws IOException
+    {
+        URLConnection conn = new URL(urlString).openConnection();
+        int wait = (int) Math.min(TIMEOUT_MS, remaining());
+        conn.setConnectTimeout(wait);
+        conn.setReadTimeout(wait);
+        return new FilterInputStream(conn.getInputStream()) {
+            public int read() throws IOException {
+                remaining();
+                return super.read();
+            }
+            public int read(byte[] b, int off, int len) throws IOException {
+                remaining();
+                return super.read(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * Time left until the deadline, in milliseconds.
+     * 
+     * @throws SocketTimeoutException If the deadline has passed.
+     */
+    private long remaining() throws SocketTimeoutException
+    {
+        long remaining = mDeadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("Linkback deadline passed");
+        }
+        return remaining;
+    }
+
     /////////////////////////////////////////////////////////////////////////
 
     /**
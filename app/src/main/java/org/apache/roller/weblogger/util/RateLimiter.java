@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Token bucket rate limiting per client.
+ *
+ * Each client may make requestsPerMinute requests a minute, with bursts of
+ * up to burst requests.  A bucket is kept as the single time at which it
+ * will be full again (the "virtual scheduling" form of a token bucket), so
+ * taking a token is one compare and set and never blocks.
+ *
+ * At most maxEntries clients are tracked.  When the table is full, clients
+ * whose buckets have refilled are dropped, and if that frees nothing new
+ * clients are let through untracked rather than blocking everybody.
+ */
+public class RateLimiter {
+    
+    private static Log log = LogFactory.getLog(RateLimiter.class);
+    
+    // nanoseconds per token
+    private final long interval;
+    
+    // how far ahead of now a bucket may be scheduled, the burst size
+    private final long tolerance;
+    
+    private final int maxEntries;
+    
+    // time each client's bucket is full again, by client id
+    private final ConcurrentMap<String, AtomicLong> buckets;
+    
+    private final AtomicBoolean sweeping = new AtomicBoolean(false);
+    private final AtomicLong untracked = new AtomicLong(0);
+    
+    
+    public RateLimiter(int requestsPerMinute, int burst, int maxEntries) {
+        this.interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, requestsPerMinute);
+        this.tolerance = interval * Math.max(1, burst);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.buckets = new ConcurrentHashMap<String, AtomicLong>(Math.min(this.maxEntries, 1024));
+    }
+    
+    
+    /**
+     * Take a token for a request from the client.
+     *
+     * @return true if the request is allowed, false if the client is over
+     *         its rate.
+     */
+    public boolean tryAcquire(String clientId) {
+        return tryAcquire(clientId, System.nanoTime());
+    }
+    
+    
+    boolean tryAcquire(String clientId, long now) {
+        
+        if (clientId == null) {
+            return true;
+        }
+        
+        AtomicLong bucket = buckets.get(clientId);
+        if (bucket == null) {
+            if (buckets.size() >= maxEntries && !sweep(now)) {
+                untracked.incrementAndGet();
+                return true;
+            }
+            AtomicLong created = new AtomicLong(now);
+            bucket = buckets.putIfAbsent(clientId, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        
+        while (true) {
+            long full = bucket.get();
+            long start = (full - now > 0) ? full : now;
+            long next = start + interval;
+            if (next - now > tolerance) {
+                log.debug("LIMITED " + clientId);
+                return false;
+            }
+            if (bucket.compareAndSet(full, next)) {
+                return true;
+            }
+        }
+    }
+    
+    
+    /**
+     * Seconds until a limited client gets its next token.
+     */
+    public int getRetryAfterSeconds() {
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(interval + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+    
+    
+    /**
+     * Number of clients tracked.
+     */
+    public int size() {
+        return buckets.size();
+    }
+    
+    
+    /**
+     * Number of requests let through untracked because the table was full.
+     */
+    public long getUntracked() {
+        return untracked.get();
+    }
+    
+    
+    /**
+     * Drop the clients whose buckets are full again.
+     *
+     * @return true if there is room for a new client.
+     */
+    private boolean sweep(long now) {
+        if (sweeping.compareAndSet(false, true)) {
+            try {
+                int before = buckets.size();
+                Iterator<Map.Entry<String, AtomicLong>> it = buckets.entrySet().iterator();
+                while (it.hasNext()) {
+                    if (it.next().getValue().get() - now <= 0) {
+                        it.remove();
+                    }
+                }
+                log.debug("Dropped " + (before - buckets.size()) + " idle clients");
+            } finally {
+                sweeping.set(false);
+            }
+        }
+        return buckets.size() < maxEntries;
+    }
+    
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * A pool of fixed size byte segments which rendered content is written into,
+ * so renders reuse the same few buffers instead of growing a new one each.
+ *
+ * Segments are cache.segments.size bytes, at most cache.segments.poolSize
+ * free segments are kept.  Segments which end up in a cache are owned by the
+ * cache and never come back, only those of content which was thrown away
+ * and the unused tails of cached content are released.
+ */
+public final class ByteSegmentPool {
+
+    private static Log log = LogFactory.getLog(ByteSegmentPool.class);
+
+    private static final ByteSegmentPool instance = new ByteSegmentPool(
+            WebloggerConfig.getIntProperty("cache.segments.size", RollerConstants.FOUR_KB_IN_BYTES),
+            WebloggerConfig.getIntProperty("cache.segments.poolSize", 1024));
+
+    private final int segmentSize;
+    private final BlockingQueue<byte[]> free;
+
+    private final AtomicLong allocated = new AtomicLong(0);
+    private final AtomicLong reused = new AtomicLong(0);
+
+
+    ByteSegmentPool(int segmentSize, int poolSize) {
+        this.segmentSize = Math.max(RollerConstants.ONE_KB_IN_BYTES, segmentSize);
+        this.free = new ArrayBlockingQueue<byte[]>(Math.max(1, poolSize));
+        log.debug("Segment size = " + this.segmentSize + ", pool size = " + poolSize);
+    }
+
+
+    public static ByteSegmentPool getInstance() {
+        return instance;
+    }
+
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+
+    /**
+     * Get a segment, its content is whatever was in it before.
+     */
+    public byte[] acquire() {
+        byte[] segment = free.poll();
+        if (segment == null) {
+            allocated.incrementAndGet();
+            return new byte[segmentSize];
+        }
+        reused.incrementAndGet();
+        return segment;
+    }
+
+
+    /**
+     * Give back a segment which is no longer used anywhere.  Segments of
+     * another size are ignored.
+     */
+    public void release(byte[] segment) {
+        if (segment != null && segment.length == segmentSize) {
+            free.offer(segment);
+        }
+    }
+
+
+    /**
+     * Number of free segments in the pool.
+     */
+    public int getFree() {
+        return free.size();
+    }
+
+
+    /**
+     * Number of segments allocated because the pool was empty.
+     */
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+
+    /**
+     * Number of segments taken from the pool.
+     */
+    public long getReused() {
+        return reused.get();
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * An invalidation of a cached object, as sent to the other members of a
+ * cluster by the {@link CacheInvalidationBus}.
+ *
+ * An invalidation names the changed object by type and id, plus the id of
+ * the weblog it belongs to so that a receiver which can't find the object
+ * anymore can invalidate its weblog instead.
+ */
+public final class CacheInvalidation {
+    
+    private static Log log = LogFactory.getLog(CacheInvalidation.class);
+    
+    public enum Type { ENTRY, WEBLOG, BOOKMARK, FOLDER, COMMENT, USER, CATEGORY, TEMPLATE, CLEAR }
+    
+    /** Invalidation of everything */
+    public static final CacheInvalidation CLEAR_ALL = new CacheInvalidation(Type.CLEAR, null, null);
+    
+    private final Type type;
+    private final String id;
+    private final String weblogId;
+    
+    
+    public CacheInvalidation(Type type, String id, String weblogId) {
+        this.type = type;
+        this.id = id;
+        this.weblogId = weblogId;
+    }
+    
+    
+    /**
+     * Encode invalidations as a message, one invalidation per line.
+     */
+    public static String encode(Collection<CacheInvalidation> invalidations) {
+        StringBuilder buf = new StringBuilder();
+        for (CacheInvalidation invalidation : invalidations) {
+            buf.append(invalidation.type.name()).append(' ');
+            buf.append(StringUtils.defaultString(invalidation.id, "-")).append(' ');
+            buf.append(StringUtils.defaultString(invalidation.weblogId, "-")).append('\n');
+        }
+        return buf.toString();
+    }
+    
+    
+    /**
+     * Decode a message made by {@link #encode}, lines which can't be decoded
+     * are skipped.
+     */
+    public static List<CacheInvalidation> decode(String message) {
+        List<CacheInvalidation> invalidations = new ArrayList<CacheInvalidation>();
+        if (message == null) {
+            return invalidations;
+        }
+        for (String line : StringUtils.split(message, '\n')) {
+            String[] parts = StringUtils.split(line.trim(), ' ');
+            if (parts.length != 3) {
+                log.warn("Ignoring bad cache invalidation: " + line);
+                continue;
+            }
+            try {
+                invalidations.add(new CacheInvalidation(Type.valueOf(parts[0]),
+                        "-".equals(parts[1]) ? null : parts[1],
+                        "-".equals(parts[2]) ? null : parts[2]));
+            } catch (IllegalArgumentException ex) {
+                log.warn("Ignoring bad cache invalidation: " + line);
+            }
+        }
+        return invalidations;
+    }
+    
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public String getWeblogId() {
+        return weblogId;
+    }
+    
+    //------------------------------------------------------- Good citizenship
+    
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof CacheInvalidation)) {
+            return false;
+        }
+        CacheInvalidation o = (CacheInvalidation) other;
+        return type == o.type && StringUtils.equals(id, o.id)
+                && StringUtils.equals(weblogId, o.weblogId);
+    }
+    
+    @Override
+    public int hashCode() {
+        return type.hashCode() * 31 + ((id != null) ? id.hashCode() : 0);
+    }
+    
+    @Override
+    public String toString() {
+        return type + " " + id + " (weblog " + weblogId + ")";
+    }
+    
+}
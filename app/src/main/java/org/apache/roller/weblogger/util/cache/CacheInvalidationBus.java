@@ -0,0 +1,416 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.runnable.Job;
+import org.apache.roller.weblogger.business.runnable.ThreadManager;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+
+
+/**
+ * Sends cache invalidations to the other members of a cluster and applies
+ * the invalidations they send.
+ *
+ * The bus registers itself as a CacheHandler, so every invalidation made
+ * through the CacheManager is queued for the other members.  Queued
+ * invalidations are de-duplicated and sent as one message at intervals of
+ * cache.cluster.interval milliseconds, a burst of more than
+ * cache.cluster.maxBatch invalidations is sent as a single clear of all
+ * caches.  Received invalidations are replayed on the local CacheManager
+ * after looking up the invalidated objects.
+ *
+ * The bus is only started when a transport is configured with the
+ * cache.cluster.transport property.
+ */
+public final class CacheInvalidationBus implements CacheHandler, CacheInvalidationTransport.Receiver {
+    
+    private static Log log = LogFactory.getLog(CacheInvalidationBus.class);
+    
+    private static CacheInvalidationBus instance = null;
+    
+    private final String nodeId;
+    private final CacheInvalidationTransport transport;
+    private final int maxBatch;
+    
+    // invalidations waiting to be sent, in order
+    private final Set<CacheInvalidation> pending = new LinkedHashSet<CacheInvalidation>();
+    
+    // set while we apply received invalidations, so they are not sent back
+    private final ThreadLocal<Boolean> applying = new ThreadLocal<Boolean>();
+    
+    private final AtomicLong sent = new AtomicLong(0);
+    private final AtomicLong messagesSent = new AtomicLong(0);
+    private final AtomicLong received = new AtomicLong(0);
+    private final AtomicLong messagesReceived = new AtomicLong(0);
+    
+    
+    CacheInvalidationBus(String nodeId, CacheInvalidationTransport transport, int maxBatch) {
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+    
+    
+    /**
+     * Start the bus with the configured transport, if there is one, and
+     * schedule sending and polling with the given thread manager.
+     */
+    public static synchronized void initialize(ThreadManager threadManager) {
+        
+        String transportClass = WebloggerConfig.getProperty("cache.cluster.transport");
+        if (instance != null || StringUtils.isBlank(transportClass)) {
+            return;
+        }
+        
+        CacheInvalidationTransport transport;
+        try {
+            transport = (CacheInvalidationTransport) Class.forName(transportClass.trim()).newInstance();
+        } catch (ClassCastException cce) {
+            log.error("It appears that your transport does not implement "+
+                    "the CacheInvalidationTransport interface", cce);
+            return;
+        } catch (Exception e) {
+            log.error("Unable to instantiate cache invalidation transport ["+transportClass+"]", e);
+            return;
+        }
+        
+        // unique for each run of each member, since the client id may not be
+        String nodeId = WebloggerConfig.getProperty("tasks.clientId", "roller") + "-"
+                + UUID.randomUUID().toString().substring(0, 8);
+        final CacheInvalidationBus bus = new CacheInvalidationBus(nodeId, transport,
+                WebloggerConfig.getIntProperty("cache.cluster.maxBatch", 1000));
+        try {
+            transport.start(nodeId, bus);
+        } catch (IOException ex) {
+            log.error("Unable to start cache invalidation transport ["+transportClass+"]", ex);
+            return;
+        }
+        
+        CacheManager.registerHandler(bus);
+        int interval = WebloggerConfig.getIntProperty("cache.cluster.interval", 1000);
+        threadManager.scheduleJob("CacheInvalidationBus", new Job() {
+            public void execute() {
+                bus.flush();
+            }
+            public void input(Map<String, Object> input) {
+                // no-op
+            }
+            public Map<String, Object> output() {
+                return null;
+            }
+        }, Math.max(10, interval), TimeUnit.MILLISECONDS);
+        
+        instance = bus;
+        log.info("Cache invalidation bus started, node id = " + nodeId
+                + ", transport = " + transportClass);
+    }
+    
+    
+    /**
+     * Get the running bus, or null if there is none.
+     */
+    public static CacheInvalidationBus getInstance() {
+        return instance;
+    }
+    
+    
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.flush();
+            instance.transport.shutdown();
+            instance = null;
+        }
+    }
+    
+    
+    /**
+     * Send the queued invalidations, then pick up those of other members.
+     */
+    public void flush() {
+        
+        List<CacheInvalidation> batch;
+        synchronized (pending) {
+            batch = new ArrayList<CacheInvalidation>(pending);
+            pending.clear();
+        }
+        
+        if (!batch.isEmpty()) {
+            int count = batch.size();
+            if (count > maxBatch) {
+                log.debug("Coalescing " + count + " invalidations into a clear");
+                batch = Collections.singletonList(CacheInvalidation.CLEAR_ALL);
+            }
+            try {
+                transport.publish(CacheInvalidation.encode(batch));
+                sent.addAndGet(count);
+                messagesSent.incrementAndGet();
+            } catch (IOException ex) {
+                log.warn("Error sending cache invalidations, will retry", ex);
+                synchronized (pending) {
+                    batch.addAll(pending);
+                    pending.clear();
+                    pending.addAll(batch);
+                }
+            }
+        }
+        
+        transport.poll();
+    }
+    
+    
+    /**
+     * Apply the invalidations of another member.
+     */
+    public void receive(String origin, String message) {
+        
+        if (nodeId.equals(origin)) {
+            return;
+        }
+        
+        List<CacheInvalidation> invalidations = CacheInvalidation.decode(message);
+        messagesReceived.incrementAndGet();
+        received.addAndGet(invalidations.size());
+        if (log.isDebugEnabled()) {
+            log.debug("Received " + invalidations.size() + " invalidations from " + origin);
+        }
+        
+        applying.set(Boolean.TRUE);
+        try {
+            for (CacheInvalidation invalidation : invalidations) {
+                apply(invalidation);
+            }
+        } catch (WebloggerException ex) {
+            log.warn("Error applying cache invalidations from " + origin + ", clearing caches", ex);
+            CacheManager.clear();
+        } finally {
+            applying.remove();
+            WebloggerFactory.getWeblogger().release();
+        }
+    }
+    
+    
+    private void apply(CacheInvalidation invalidation) throws WebloggerException {
+        
+        Weblogger roller = WebloggerFactory.getWeblogger();
+        String id = invalidation.getId();
+        
+        switch (invalidation.getType()) {
+            case ENTRY:
+                WeblogEntry entry = roller.getWeblogEntryManager().getWeblogEntry(id);
+                if (entry != null) {
+                    CacheManager.invalidate(entry);
+                    return;
+                }
+                break;
+            case WEBLOG:
+                Weblog weblog = roller.getWeblogManager().getWeblog(id);
+                if (weblog != null) {
+                    CacheManager.invalidate(weblog);
+                    return;
+                }
+                break;
+            case BOOKMARK:
+                WeblogBookmark bookmark = roller.getBookmarkManager().getBookmark(id);
+                if (bookmark != null) {
+                    CacheManager.invalidate(bookmark);
+                    return;
+                }
+                break;
+            case FOLDER:
+                WeblogBookmarkFolder folder = roller.getBookmarkManager().getFolder(id);
+                if (folder != null) {
+                    CacheManager.invalidate(folder);
+                    return;
+                }
+                break;
+            case COMMENT:
+                WeblogEntryComment comment = roller.getWeblogEntryManager().getComment(id);
+                if (comment != null) {
+                    CacheManager.invalidate(comment);
+                    return;
+                }
+                break;
+            case USER:
+                User user = roller.getUserManager().getUser(id);
+                if (user != null) {
+                    CacheManager.invalidate(user);
+                }
+                // users don't belong to a weblog
+                return;
+            case CATEGORY:
+                WeblogCategory category = roller.getWeblogEntryManager().getWeblogCategory(id);
+                if (category != null) {
+                    CacheManager.invalidate(category);
+                    return;
+                }
+                break;
+            case TEMPLATE:
+                WeblogTemplate template = roller.getWeblogManager().getTemplate(id);
+                if (template != null) {
+                    CacheManager.invalidate(template);
+                    return;
+                }
+                break;
+            default:
+                CacheManager.clear();
+                return;
+        }
+        
+        // the object is gone, invalidate the weblog it belonged to
+        Weblog weblog = (invalidation.getWeblogId() != null)
+                ? roller.getWeblogManager().getWeblog(invalidation.getWeblogId()) : null;
+        if (weblog != null) {
+            CacheManager.invalidate(weblog);
+        } else {
+            CacheManager.clear();
+        }
+    }
+    
+    
+    private void queue(CacheInvalidation invalidation) {
+        if (isApplying()) {
+            return;
+        }
+        synchronized (pending) {
+            pending.add(invalidation);
+        }
+    }
+    
+    
+    /**
+     * True while this thread applies invalidations received from another
+     * member, which that member has already acted on.
+     */
+    boolean isApplying() {
+        return applying.get() != null;
+    }
+    
+    
+    /**
+     * Clear all caches of the other members.
+     */
+    void clear() {
+        queue(CacheInvalidation.CLEAR_ALL);
+    }
+    
+    
+    private static String getId(Weblog weblog) {
+        return (weblog != null) ? weblog.getId() : null;
+    }
+    
+    
+    public void invalidate(WeblogEntry entry) {
+        queue(new CacheInvalidation(CacheInvalidation.Type.ENTRY, entry.getId(),
+                getId(entry.getWebsite())));
+    }
+    
+    public void invalidate(Weblog website) {
+        queue(new CacheInvalidation(CacheInvalidation.Type.WEBLOG, website.getId(),
+                website.getId()));
+    }
+    
+    public void invalidate(WeblogBookmark bookmark) {
+        queue(new CacheInvalidation(CacheInvalidation.Type.BOOKMARK, bookmark.getId(),
+                getId(bookmark.getWebsite())));
+    }
+    
+    public void invalidate(WeblogBookmarkFolder folder) {
+        queue(new CacheInvalidation(CacheInvalidation.Type.FOLDER, folder.getId(),
+                getId(folder.getWeblog())));
+    }
+    
+    public void invalidate(WeblogEntryComment comment) {
+        WeblogEntry entry = comment.getWeblogEntry();
+        queue(new CacheInvalidation(CacheInvalidation.Type.COMMENT, comment.getId(),
+                (entry != null) ? getId(entry.getWebsite()) : null));
+    }
+    
+    public void invalidate(User user) {
+        queue(new CacheInvalidation(CacheInvalidation.Type.USER, user.getId(), null));
+    }
+    
+    public void invalidate(WeblogCategory category) {
+        queue(new CacheInvalidation(CacheInvalidation.Type.CATEGORY, category.getId(),
+                getId(category.getWeblog())));
+    }
+    
+    public void invalidate(WeblogTemplate template) {
+        queue(new CacheInvalidation(CacheInvalidation.Type.TEMPLATE, template.getId(),
+                getId(template.getWeblog())));
+    }
+    
+    
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    /**
+     * Number of invalidations sent to other members.
+     */
+    public long getSent() {
+        return sent.get();
+    }
+    
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+    
+    /**
+     * Number of invalidations received from other members.
+     */
+    public long getReceived() {
+        return received.get();
+    }
+    
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+    
+    public int getPending() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+    
+}
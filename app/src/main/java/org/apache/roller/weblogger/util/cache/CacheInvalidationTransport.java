@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+
+
+/**
+ * Carries cache invalidation messages between the members of a cluster.
+ *
+ * Implementations are configured with the cache.cluster.transport property
+ * and need a public no-arg constructor.  Messages published by a member must
+ * reach the receivers of all other members; a member may also receive its
+ * own messages, those are ignored by the {@link CacheInvalidationBus}.
+ */
+public interface CacheInvalidationTransport {
+    
+    /**
+     * Start the transport.
+     *
+     * @param nodeId Unique id of this cluster member, sent as the origin of
+     *               published messages.
+     * @param receiver Receiver for messages from other members.
+     */
+    void start(String nodeId, Receiver receiver) throws IOException;
+    
+    
+    /**
+     * Send a message to the other members.
+     */
+    void publish(String message) throws IOException;
+    
+    
+    /**
+     * Pick up messages from the other members, for transports which have to
+     * poll for them.  Called by the bus at intervals.
+     */
+    void poll();
+    
+    
+    /**
+     * Stop the transport and release its resources.
+     */
+    void shutdown();
+    
+    
+    /**
+     * Receives messages published by cluster members.
+     */
+    interface Receiver {
+        
+        void receive(String origin, String message);
+    }
+    
+}
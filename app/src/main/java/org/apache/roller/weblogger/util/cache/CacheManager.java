@@ -194,9 +194,9 @@ public final class CacheManager {
      * to object invalidations without necessarily having to create a cache.
      *
      * An example would be a handler designed to notify other machines in a 
-     * cluster when an object has been invalidated, or possibly the search
-     * index management classes are interested in knowing when objects are
-     * invalidated.
+     * cluster when an object has been invalidated, like the
+     * {@link CacheInvalidationBus}, or possibly the search index management
+     * classes are interested in knowing when objects are invalidated.
      */
     public static void registerHandler(CacheHandler handler) {
 
@@ -280,12 +280,23 @@ public final class CacheManager {
 
     
     /**
-     * Flush the entire cache system.
+     * Flush the entire cache system, on all members of a cluster and in the
+     * HTTP cache in front of us.
      */
     public static void clear() {
         for (Cache cache : caches.values()) {
             cache.clear();
         }
+        
+        CacheInvalidationBus bus = CacheInvalidationBus.getInstance();
+        if (bus != null) {
+            bus.clear();
+        }
+        
+        SurrogateKeyPurgeHandler purgeHandler = SurrogateKeyPurgeHandler.getInstance();
+        if (purgeHandler != null) {
+            purgeHandler.clear();
+        }
     }
     
     
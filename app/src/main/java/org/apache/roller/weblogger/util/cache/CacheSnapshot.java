@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * A file holding cached content, so caches can be filled again quickly after
+ * a restart.
+ *
+ * The file starts with a magic number and the time it was written, followed
+ * by one record per entry: its length and CRC32, then the cache id, key,
+ * time the content was created, content type, surrogate keys and the content
+ * bytes.  Records are only ever appended, and a snapshot is written next to
+ * the file and moved in place once complete.  When reading, the file is
+ * memory mapped and reading stops at the first record which is cut short or
+ * fails its checksum.
+ */
+public final class CacheSnapshot {
+    
+    private static Log log = LogFactory.getLog(CacheSnapshot.class);
+    
+    private static final int MAGIC = 0x52435331;
+    
+    private final File file;
+    
+    
+    public CacheSnapshot(File file) {
+        this.file = file;
+    }
+    
+    
+    public File getFile() {
+        return file;
+    }
+    
+    
+    /**
+     * Write the records, up to maxBytes of content in total.
+     *
+     * @return The number of records written.
+     */
+    public int write(Iterable<Record> records, long maxBytes) throws IOException {
+        
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        
+        File tmp = new File(file.getPath() + ".tmp");
+        int count = 0;
+        long bytes = 0;
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(System.currentTimeMillis());
+            
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            CRC32 crc = new CRC32();
+            for (Record record : records) {
+                if (bytes + record.content.length > maxBytes) {
+                    continue;
+                }
+                body.reset();
+                try {
+                    record.writeTo(new DataOutputStream(body));
+                } catch (UTFDataFormatException ex) {
+                    log.debug("Key too long to save, skipping " + record.key);
+                    continue;
+                }
+                crc.reset();
+                crc.update(body.toByteArray());
+                out.writeInt(body.size());
+                out.writeInt((int) crc.getValue());
+                body.writeTo(out);
+                bytes += record.content.length;
+                count++;
+            }
+        } catch (IOException ex) {
+            out.close();
+            tmp.delete();
+            throw ex;
+        }
+        out.close();
+        
+        if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+        return count;
+    }
+    
+    
+    /**
+     * Read the records, or nothing if there is no snapshot.
+     */
+    public Snapshot read() throws IOException {
+        
+        if (!file.exists()) {
+            return new Snapshot(0, Collections.<Record>emptyList());
+        }
+        
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+                log.warn("Not a cache snapshot, ignoring " + file);
+                return new Snapshot(0, Collections.<Record>emptyList());
+            }
+            long timeWritten = buffer.getLong();
+            
+            List<Record> records = new ArrayList<Record>();
+            CRC32 crc = new CRC32();
+            try {
+                while (buffer.hasRemaining()) {
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (length < 0 || length > buffer.remaining()) {
+                        log.warn("Cache snapshot " + file + " is cut short after " + records.size() + " records");
+                        break;
+                    }
+                    byte[] body = new byte[length];
+                    buffer.get(body);
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != checksum) {
+                        log.warn("Cache snapshot " + file + " is damaged after " + records.size() + " records");
+                        break;
+                    }
+                    records.add(Record.readFrom(new DataInputStream(new ByteArrayInputStream(body))));
+                }
+            } catch (BufferUnderflowException ex) {
+                log.warn("Cache snapshot " + file + " is cut short after " + records.size() + " records");
+            }
+            return new Snapshot(timeWritten, records);
+        } finally {
+            in.close();
+        }
+    }
+    
+    
+    /**
+     * The records read from a snapshot file.
+     */
+    public static final class Snapshot {
+        
+        private final long timeWritten;
+        private final List<Record> records;
+        
+        Snapshot(long timeWritten, List<Record> records) {
+            this.timeWritten = timeWritten;
+            this.records = records;
+        }
+        
+        /**
+         * When the snapshot was written, or 0 if there was none.
+         */
+        public long getTimeWritten() {
+            return timeWritten;
+        }
+        
+        public List<Record> getRecords() {
+            return records;
+        }
+    }
+    
+    
+    /**
+     * A cached content and the cache and key it belongs to.
+     */
+    public static final class Record {
+        
+        private final String cacheId;
+        private final String key;
+        private final long timeCreated;
+        private final String contentType;
+        private final Set<String> surrogateKeys;
+        private final byte[] content;
+        
+        public Record(String cacheId, String key, CachedContent content) {
+            this(cacheId, key, content.getTimeCreated(), content.getContentType(),
+                    content.getSurrogateKeys(), content.getContent());
+        }
+        
+        private Record(String cacheId, String key, long timeCreated, String contentType,
+                Set<String> surrogateKeys, byte[] content) {
+            this.cacheId = cacheId;
+            this.key = key;
+            this.timeCreated = timeCreated;
+            this.contentType = contentType;
+            this.surrogateKeys = surrogateKeys;
+            this.content = content;
+        }
+        
+        public String getCacheId() {
+            return cacheId;
+        }
+        
+        public String getKey() {
+            return key;
+        }
+        
+        public long getTimeCreated() {
+            return timeCreated;
+        }
+        
+        /**
+         * Get the content, closed for writing.
+         */
+        public CachedContent getContent() {
+            CachedContent cachedContent = new CachedContent(content, contentType, timeCreated);
+            cachedContent.setSurrogateKeys(surrogateKeys);
+            return cachedContent;
+        }
+        
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(cacheId);
+            out.writeUTF(key);
+            out.writeLong(timeCreated);
+            out.writeBoolean(contentType != null);
+            if (contentType != null) {
+                out.writeUTF(contentType);
+            }
+            out.writeInt(surrogateKeys.size());
+            for (String surrogateKey : surrogateKeys) {
+                out.writeUTF(surrogateKey);
+            }
+            out.writeInt(content.length);
+            out.write(content);
+            out.flush();
+        }
+        
+        private static Record readFrom(DataInputStream in) throws IOException {
+            String cacheId = in.readUTF();
+            String key = in.readUTF();
+            long timeCreated = in.readLong();
+            String contentType = in.readBoolean() ? in.readUTF() : null;
+            int keyCount = in.readInt();
+            Set<String> surrogateKeys = Collections.emptySet();
+            if (keyCount > 0) {
+                surrogateKeys = new LinkedHashSet<String>();
+                for (int i = 0; i < keyCount; i++) {
+                    surrogateKeys.add(in.readUTF());
+                }
+            }
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            return new Record(cacheId, key, timeCreated, contentType, surrogateKeys, content);
+        }
+    }
+    
+}
@@ -1,71 +1,152 @@
 
 package org.apache.roller.weblogger.util.cache;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.roller.util.RollerConstants;
 
 
 /**
  * A utility class for storing cached content written to a java.io.Writer.
+ *
+ * Content is encoded as UTF-8 into segments from the {@link ByteSegmentPool}
+ * as it is written, so it grows without copying.  Once closed the segments
+ * don't change and are written out one by one.
  */
 public class CachedContent implements Serializable {
     
     private static Log log = LogFactory.getLog(CachedContent.class);
     
-    // the byte array we use to maintain the cached content
-    private byte[] content = new byte[0];
+    private static final byte[][] NO_SEGMENTS = new byte[0][];
+    private static final int[] NO_LENGTHS = new int[0];
+    
+    // the segments we use to maintain the cached content, and their lengths
+    private byte[][] segments = NO_SEGMENTS;
+    private int[] lengths = NO_LENGTHS;
+    private int length = 0;
     
     // content-type of data in byte array
     private String contentType = null;
     
-    // Use a byte array output stream to cached the output bytes
-    private transient ByteArrayOutputStream outstream = null;
+    // surrogate keys the content was tagged with
+    private Set<String> surrogateKeys = Collections.emptySet();
+    
+    // when rendering started, the content shows no changes made after this
+    private long timeCreated = System.currentTimeMillis();
+    
+    // Use a segmented writer to cache the output bytes
+    private transient SegmentedWriter segmentedWriter = null;
     
     // The PrintWriter that users will be writing to
     private transient PrintWriter cachedWriter = null;
     
+    // true if written content also goes to another stream
+    private transient boolean tee = false;
     
+    
+    /**
+     * @param size expected size of the content, unused now that content
+     *             grows a segment at a time
+     */
     public CachedContent(int size) {
-        
-        // construct output stream
-        if(size > 0) {
-            this.outstream = new ByteArrayOutputStream(size);
-        } else {
-            this.outstream = new ByteArrayOutputStream(RollerConstants.EIGHT_KB_IN_BYTES);
-        }
-        
-        // construct writer from output stream
-        try {
-            this.cachedWriter =
-                    new PrintWriter(new OutputStreamWriter(this.outstream, "UTF-8"));
-        } catch(UnsupportedEncodingException e) {
-            // shouldn't be possible, java always supports utf-8
-            throw new RuntimeException("Encoding problem", e);
-        }
+        this(size, null, null);
     }
     
     public CachedContent(int size, String contentType) {
-        this(size);
+        this(size, contentType, null);
+    }
+    
+    /**
+     * Content which is also written to the given stream as it is written,
+     * e.g. to a response, so it can be sent while it is being cached.
+     * Writes to the stream pass through the writer unbuffered.
+     */
+    public CachedContent(int size, String contentType, OutputStream tee) {
         this.contentType = contentType;
+        this.segmentedWriter = new SegmentedWriter(ByteSegmentPool.getInstance(), tee);
+        this.cachedWriter = new PrintWriter(this.segmentedWriter);
+        this.tee = (tee != null);
+    }
+    
+    /**
+     * Content which was rendered before, e.g. restored from a cache snapshot.
+     * It is closed for further writing.
+     */
+    public CachedContent(byte[] content, String contentType, long timeCreated) {
+        this.segments = new byte[][] {content};
+        this.lengths = new int[] {content.length};
+        this.length = content.length;
+        this.contentType = contentType;
+        this.timeCreated = timeCreated;
     }
     
     
     /**
      * Get the content cached in this object as a byte array.  If you convert
      * this back to a string yourself, be sure to re-encode in "UTF-8".
+     * This copies segmented content, use writeTo() to send it.
      *
      * NOTE: the content is only a representation of the data written to the
      *       enclosed Writer up until the last call to flush().
      */
     public byte[] getContent() {
-        return this.content;
+        
+        byte[][] segs = this.segments;
+        int[] lens = this.lengths;
+        if(this.segmentedWriter != null) {
+            segs = this.segmentedWriter.getSegments();
+            lens = this.segmentedWriter.getLengths();
+        }
+        
+        if(segs.length == 1 && segs[0].length == lens[0]) {
+            return segs[0];
+        }
+        
+        int total = 0;
+        for(int len : lens) {
+            total += len;
+        }
+        byte[] bytes = new byte[total];
+        int pos = 0;
+        for(int i = 0; i < segs.length; i++) {
+            System.arraycopy(segs[i], 0, bytes, pos, lens[i]);
+            pos += lens[i];
+        }
+        return bytes;
+    }
+    
+    
+    /**
+     * Get the length of the content in bytes.
+     */
+    public int getLength() {
+        if(this.segmentedWriter != null) {
+            return this.segmentedWriter.size();
+        }
+        return this.length;
+    }
+    
+    
+    /**
+     * Write the content to the given stream, a segment at a time.
+     *
+     * @throws IllegalStateException if called before close()
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        
+        if(this.segmentedWriter != null) {
+            throw new IllegalStateException("Cannot writeTo() before a close()!");
+        }
+        
+        for(int i = 0; i < this.segments.length; i++) {
+            out.write(this.segments[i], 0, this.lengths[i]);
+        }
     }
     
     
@@ -77,7 +158,7 @@ public class CachedContent implements Serializable {
      */
     public String getContentAsString() {
         try {
-            return new String(this.content,"UTF-8");
+            return new String(getContent(),"UTF-8");
         } catch (UnsupportedEncodingException uex) {
             // shouldn't ever happen - violates Java Spec.
             throw new RuntimeException(uex);
@@ -90,27 +171,50 @@ public class CachedContent implements Serializable {
     }
     
     
+    /**
+     * True if the content is also written to another stream.
+     */
+    public boolean isTee() {
+        return tee;
+    }
+    
+    
     public String getContentType() {
         return contentType;
     }
     
     
+    public long getTimeCreated() {
+        return timeCreated;
+    }
+    
+    
+    public Set<String> getSurrogateKeys() {
+        return surrogateKeys;
+    }
+    
+    
+    public void setSurrogateKeys(Set<String> surrogateKeys) {
+        this.surrogateKeys = surrogateKeys;
+    }
+    
+    
     /**
      * Called to flush any output in the cached Writer to
-     * the cached content for more permanent storage.
+     * the cached content for more permanent storage, and to the tee stream
+     * if there is one.
      *
      * @throws IllegalStateException if calling flush() after a close()
      */
     public void flush() {
         
-        if(this.outstream == null) {
+        if(this.segmentedWriter == null) {
             throw new IllegalStateException("Cannot flush() after a close()!");
         }
         
         this.cachedWriter.flush();
-        this.content = this.outstream.toByteArray();
         
-        log.debug("FLUSHED "+this.content.length);
+        log.debug("FLUSHED "+this.segmentedWriter.size());
     }
     
     
@@ -125,13 +229,35 @@ public class CachedContent implements Serializable {
             this.cachedWriter = null;
         }
         
-        if(this.outstream != null) {
-            this.content = this.outstream.toByteArray();
-            this.outstream.close();
-            this.outstream = null;
+        if(this.segmentedWriter != null) {
+            this.segmentedWriter.close();
+            this.segments = this.segmentedWriter.getSegments();
+            this.lengths = this.segmentedWriter.getLengths();
+            this.length = this.segmentedWriter.size();
+            this.segmentedWriter = null;
         }
         
         log.debug("CLOSED");
     }
     
+    
+    /**
+     * Give the segments back to the pool once the content has been sent
+     * and is not cached anywhere.  The content is empty afterwards.
+     */
+    public void release() {
+        
+        if(this.segmentedWriter != null) {
+            throw new IllegalStateException("Cannot release() before a close()!");
+        }
+        
+        ByteSegmentPool pool = ByteSegmentPool.getInstance();
+        for(byte[] segment : this.segments) {
+            pool.release(segment);
+        }
+        this.segments = NO_SEGMENTS;
+        this.lengths = NO_LENGTHS;
+        this.length = 0;
+    }
+    
 }
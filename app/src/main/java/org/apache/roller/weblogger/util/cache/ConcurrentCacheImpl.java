@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.roller.util.RollerConstants;
+
+
+/**
+ * A bounded cache which never blocks readers, for small values which are
+ * looked up on every request.
+ *
+ * Unlike the {@link LRUCacheImpl} no access order is kept.  Once the cache
+ * is full a quarter of the entries, in no particular order, are dropped to
+ * make room.  Entries which are used a lot are simply put back soon after,
+ * so this works well when lookups favor a small set of keys.
+ */
+public class ConcurrentCacheImpl implements RestorableCache {
+    
+    private final String id;
+    private final int maxsize;
+    private final Map<String, Object> cache;
+    
+    // for metrics
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong puts = new AtomicLong(0);
+    private final AtomicLong removes = new AtomicLong(0);
+    private volatile Date startTime = new Date();
+    
+    
+    protected ConcurrentCacheImpl(String id, int maxsize) {
+        
+        this.id = id;
+        this.maxsize = Math.max(1, maxsize);
+        this.cache = new ConcurrentHashMap<String, Object>(this.maxsize * 4 / 3 + 1);
+    }
+    
+    
+    public String getId() {
+        return this.id;
+    }
+    
+    
+    /**
+     * Store an entry in the cache, making room first if the cache is full.
+     */
+    public void put(String key, Object value) {
+        
+        if (cache.size() >= maxsize && !cache.containsKey(key)) {
+            evict();
+        }
+        this.cache.put(key, value);
+        puts.incrementAndGet();
+    }
+    
+    
+    /**
+     * Store an entry in the cache, entries don't expire so the time is ignored.
+     */
+    public void put(String key, Object value, long timeCached) {
+        put(key, value);
+    }
+    
+    
+    public Map<String, Object> getEntries() {
+        return new HashMap<String, Object>(cache);
+    }
+    
+    
+    /**
+     * Retrieve an entry from the cache.
+     */
+    public Object get(String key) {
+        
+        Object obj = this.cache.get(key);
+        
+        // for metrics
+        if(obj == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        
+        return obj;
+    }
+    
+    
+    public void remove(String key) {
+        
+        this.cache.remove(key);
+        removes.incrementAndGet();
+    }
+    
+    
+    public void clear() {
+        
+        this.cache.clear();
+        
+        // clear metrics
+        hits.set(0);
+        misses.set(0);
+        puts.set(0);
+        removes.set(0);
+        startTime = new Date();
+    }
+    
+    
+    /**
+     * Number of entries in the cache.
+     */
+    public int size() {
+        return cache.size();
+    }
+    
+    
+    public Map<String, Object> getStats() {
+        
+        double hitCount = hits.get();
+        double missCount = misses.get();
+        double removeCount = removes.get();
+        
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("startTime", this.startTime);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("puts", (double) puts.get());
+        stats.put("removes", removeCount);
+        
+        // calculate efficiency
+        if((missCount - removeCount) > 0) {
+            double efficiency = hitCount / (missCount + hitCount);
+            stats.put("efficiency", efficiency * RollerConstants.PERCENT_100);
+        }
+        
+        return stats;
+    }
+    
+    
+    /**
+     * Drop about a quarter of the entries.  Threads evicting at the same
+     * time may drop a few more, which does no harm.
+     */
+    private void evict() {
+        int target = maxsize - Math.max(1, maxsize / 4);
+        Iterator<String> keys = cache.keySet().iterator();
+        while (cache.size() > target && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+    
+}
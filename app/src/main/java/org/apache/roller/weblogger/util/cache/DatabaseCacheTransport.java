@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.util.UUIDGenerator;
+import org.apache.roller.weblogger.business.startup.WebloggerStartup;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * Cache invalidation transport which shares messages through the
+ * roller_cacheevent table of the Roller database.
+ *
+ * Published messages are inserted with the database's clock as their event
+ * time, so the members of a cluster don't need synchronized clocks.  Each
+ * poll reads the messages newer than the newest one seen, less an overlap
+ * of cache.cluster.db.overlap seconds to catch messages which committed
+ * late; messages read twice are recognized by id.  Messages older than
+ * cache.cluster.db.retention minutes are purged.
+ *
+ * Plain JDBC is used so that publishing never touches the persistence
+ * session of the thread which made the invalidation.
+ */
+public class DatabaseCacheTransport implements CacheInvalidationTransport {
+    
+    private static Log log = LogFactory.getLog(DatabaseCacheTransport.class);
+    
+    // purge old messages once every this many polls
+    private static final int PURGE_POLLS = 100;
+    
+    private final long overlap;
+    private final long retention;
+    
+    private String nodeId = null;
+    private Receiver receiver = null;
+    
+    // event time of the newest message seen
+    private Timestamp newest = new Timestamp(0);
+    
+    // ids of recently seen messages -> event time
+    private final Map<String, Long> seen = new LinkedHashMap<String, Long>();
+    
+    private int polls = 0;
+    
+    
+    public DatabaseCacheTransport() {
+        this.overlap = WebloggerConfig.getIntProperty("cache.cluster.db.overlap", 10)
+                * (long) RollerConstants.SEC_IN_MS;
+        this.retention = WebloggerConfig.getIntProperty("cache.cluster.db.retention", 60)
+                * (long) RollerConstants.MIN_IN_MS;
+    }
+    
+    
+    public synchronized void start(String nodeId, Receiver receiver) throws IOException {
+        this.nodeId = nodeId;
+        this.receiver = receiver;
+        
+        // start from the newest message already there
+        Connection con = null;
+        try {
+            con = getConnection();
+            PreparedStatement stmt = con.prepareStatement(
+                    "select max(eventtime) from roller_cacheevent");
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next() && rs.getTimestamp(1) != null) {
+                newest = rs.getTimestamp(1);
+            }
+            rs.close();
+            stmt.close();
+        } catch (SQLException ex) {
+            throw new IOException("Error reading cache events", ex);
+        } finally {
+            close(con);
+        }
+    }
+    
+    
+    public void publish(String message) throws IOException {
+        Connection con = null;
+        try {
+            con = getConnection();
+            PreparedStatement stmt = con.prepareStatement(
+                    "insert into roller_cacheevent (id, origin, eventtime, events) "
+                    + "values (?, ?, CURRENT_TIMESTAMP, ?)");
+            stmt.setString(1, UUIDGenerator.generateUUID());
+            stmt.setString(2, nodeId);
+            stmt.setString(3, message);
+            stmt.executeUpdate();
+            stmt.close();
+        } catch (SQLException ex) {
+            throw new IOException("Error saving cache event", ex);
+        } finally {
+            close(con);
+        }
+    }
+    
+    
+    public synchronized void poll() {
+        Connection con = null;
+        try {
+            con = getConnection();
+            
+            long since = newest.getTime() - overlap;
+            PreparedStatement stmt = con.prepareStatement(
+                    "select id, origin, eventtime, events from roller_cacheevent "
+                    + "where eventtime > ? order by eventtime");
+            stmt.setTimestamp(1, new Timestamp(since));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String id = rs.getString(1);
+                Timestamp eventTime = rs.getTimestamp(3);
+                if (eventTime.after(newest)) {
+                    newest = eventTime;
+                }
+                if (seen.put(id, eventTime.getTime()) == null && !nodeId.equals(rs.getString(2))) {
+                    receiver.receive(rs.getString(2), rs.getString(4));
+                }
+            }
+            rs.close();
+            stmt.close();
+            
+            // forget messages which are out of the overlap
+            long cutoff = newest.getTime() - overlap;
+            for (Iterator<Long> it = seen.values().iterator(); it.hasNext();) {
+                if (it.next() <= cutoff) {
+                    it.remove();
+                }
+            }
+            
+            if (++polls % PURGE_POLLS == 0) {
+                stmt = con.prepareStatement("delete from roller_cacheevent where eventtime < ?");
+                stmt.setTimestamp(1, new Timestamp(newest.getTime() - retention));
+                int purged = stmt.executeUpdate();
+                stmt.close();
+                log.debug("Purged " + purged + " old cache events");
+            }
+            
+        } catch (SQLException ex) {
+            log.warn("Error polling cache events", ex);
+        } finally {
+            close(con);
+        }
+    }
+    
+    
+    public void shutdown() {
+        // no-op
+    }
+    
+    
+    private Connection getConnection() throws SQLException {
+        Connection con = WebloggerStartup.getDatabaseProvider().getConnection();
+        con.setAutoCommit(true);
+        return con;
+    }
+    
+    
+    private static void close(Connection con) {
+        if (con != null) {
+            try {
+                con.close();
+            } catch (SQLException ex) {
+                log.debug("Error closing connection", ex);
+            }
+        }
+    }
+    
+}
@@ -46,6 +46,15 @@ public class ExpiringCacheEntry implements Serializable {
     }
     
     
+    /**
+     * An entry cached at the given time, e.g. one restored from a snapshot.
+     */
+    public ExpiringCacheEntry(Object value, long timeout, long timeCached) {
+        this(value, timeout);
+        this.timeCached = timeCached;
+    }
+    
+    
     public long getTimeCached() {
         return this.timeCached;
     }
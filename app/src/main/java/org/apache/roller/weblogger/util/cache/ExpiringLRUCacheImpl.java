@@ -18,6 +18,8 @@
 
 package org.apache.roller.weblogger.util.cache;
 
+import java.util.Iterator;
+import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -65,6 +67,20 @@ public class ExpiringLRUCacheImpl extends LRUCacheImpl {
     }
     
     
+    /**
+     * Store an entry in the cache which expires a timeout after the given
+     * time, rather than after now.
+     */
+    @Override
+    public synchronized void put(String key, Object value, long timeCached) {
+        
+        ExpiringCacheEntry entry = new ExpiringCacheEntry(value, this.timeout, timeCached);
+        if (!entry.hasExpired()) {
+            super.put(key, entry);
+        }
+    }
+    
+    
     /**
      * Retrieve an entry from the cache.
      *
@@ -96,4 +112,24 @@ public class ExpiringLRUCacheImpl extends LRUCacheImpl {
         return value;
     }
     
+    
+    /**
+     * Get the entries which have not expired yet.
+     */
+    @Override
+    public synchronized Map<String, Object> getEntries() {
+        
+        Map<String, Object> entries = super.getEntries();
+        for (Iterator<Map.Entry<String, Object>> it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Object> entry = it.next();
+            Object value = ((ExpiringCacheEntry) entry.getValue()).getValue();
+            if (value == null) {
+                it.remove();
+            } else {
+                entry.setValue(value);
+            }
+        }
+        return entries;
+    }
+    
 }
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.SimpleHttpConnectionManager;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.Utilities;
+
+
+/**
+ * Purges surrogate keys by sending a request to each configured HTTP cache,
+ * with the keys to purge in a header.
+ *
+ * The caches are listed in cache.surrogate.purge.urls, the request method
+ * is cache.surrogate.purge.method (PURGE by default) and the keys are sent
+ * space separated in the cache.surrogate.header header, at most
+ * cache.surrogate.purge.maxKeys per request.  Most caches need a little
+ * configuration to accept key based purges this way.
+ */
+public class HttpSurrogateKeyPurger implements SurrogateKeyPurger {
+
+    private static Log log = LogFactory.getLog(HttpSurrogateKeyPurger.class);
+
+    private final String[] urls;
+    private final String method;
+    private final String header;
+    private final String token;
+    private final int maxKeys;
+
+    private final HttpClient client;
+
+
+    public HttpSurrogateKeyPurger() {
+        String urlList = WebloggerConfig.getProperty("cache.surrogate.purge.urls");
+        this.urls = StringUtils.isBlank(urlList) ? new String[0]
+                : Utilities.stringToStringArray(urlList, ",");
+        this.method = WebloggerConfig.getProperty("cache.surrogate.purge.method", "PURGE");
+        this.header = WebloggerConfig.getProperty("cache.surrogate.header", "Surrogate-Key");
+        this.token = WebloggerConfig.getProperty("cache.surrogate.purge.token");
+        this.maxKeys = Math.max(1, WebloggerConfig.getIntProperty("cache.surrogate.purge.maxKeys", 100));
+
+        int timeout = WebloggerConfig.getIntProperty("cache.surrogate.purge.timeout", 10);
+        this.client = new HttpClient(new SimpleHttpConnectionManager(true));
+        client.getHttpConnectionManager().getParams().setConnectionTimeout(timeout * RollerConstants.SEC_IN_MS);
+        client.getHttpConnectionManager().getParams().setSoTimeout(timeout * RollerConstants.SEC_IN_MS);
+
+        if (urls.length == 0) {
+            log.warn("No urls set in cache.surrogate.purge.urls, nothing will be purged");
+        }
+    }
+
+
+    /**
+     * Send the keys to every cache.  All caches are tried before the first
+     * error is rethrown.
+     */
+    public void purge(Collection<String> keys) throws IOException {
+
+        List<String> keyList = new ArrayList<String>(keys);
+        IOException failure = null;
+
+        for (String url : urls) {
+            for (int i = 0; i < keyList.size(); i += maxKeys) {
+                List<String> chunk = keyList.subList(i, Math.min(keyList.size(), i + maxKeys));
+                try {
+                    send(url.trim(), StringUtils.join(chunk, ' '));
+                } catch (IOException ex) {
+                    log.warn("Error purging " + chunk.size() + " keys from " + url + ": " + ex.getMessage());
+                    if (failure == null) {
+                        failure = ex;
+                    }
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+
+    private void send(String url, String keys) throws IOException {
+
+        HttpMethodBase request = new PurgeMethod(url, method);
+        request.setRequestHeader(header, keys);
+        if (StringUtils.isNotBlank(token)) {
+            request.setRequestHeader("Authorization", token);
+        }
+
+        try {
+            int statusCode = client.executeMethod(request);
+            if (statusCode >= 300) {
+                throw new IOException("purge returned " + statusCode + " " + request.getStatusText());
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("PURGE " + url + " [" + keys + "] = " + statusCode);
+            }
+        } finally {
+            request.releaseConnection();
+        }
+    }
+
+
+    public void shutdown() {
+        ((SimpleHttpConnectionManager) client.getHttpConnectionManager()).shutdown();
+    }
+
+
+    /**
+     * A request with an arbitrary method name, HttpClient has no PURGE.
+     */
+    private static class PurgeMethod extends HttpMethodBase {
+
+        private final String name;
+
+        PurgeMethod(String url, String name) {
+            super(url);
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+}
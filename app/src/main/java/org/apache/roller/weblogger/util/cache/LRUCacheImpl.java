@@ -29,7 +29,7 @@ import org.apache.roller.util.RollerConstants;
 /**
  * A simple LRU Cache.
  */
-public class LRUCacheImpl implements Cache {
+public class LRUCacheImpl implements RestorableCache {
     
     private String id = null;
     private Map cache = null;
@@ -89,6 +89,27 @@ public class LRUCacheImpl implements Cache {
     }
     
     
+    /**
+     * Store an entry in the cache, entries don't expire so the time is ignored.
+     */
+    public void put(String key, Object value, long timeCached) {
+        put(key, value);
+    }
+    
+    
+    public synchronized Map<String, Object> getEntries() {
+        
+        Map<String, Object> entries = new HashMap<String, Object>();
+        synchronized(this.cache) {
+            for (Object o : this.cache.entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                entries.put((String) entry.getKey(), entry.getValue());
+            }
+        }
+        return entries;
+    }
+    
+    
     public synchronized void remove(String key) {
         
         this.cache.remove(key);
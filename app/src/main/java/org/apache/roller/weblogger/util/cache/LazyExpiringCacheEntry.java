@@ -54,6 +54,15 @@ public class LazyExpiringCacheEntry implements Serializable {
     }
     
     
+    /**
+     * An entry cached at the given time, e.g. one restored from a snapshot.
+     */
+    public LazyExpiringCacheEntry(Object item, long timeCached) {
+        this.value = item;
+        this.timeCached = timeCached;
+    }
+    
+    
     /**
      * Retrieve the value of this cache entry if it is still "fresh".
      *
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Stand-in purger which only remembers and logs the purged keys, for tests
+ * and for trying out surrogate keys without an HTTP cache.
+ */
+public class LocalSurrogateKeyPurger implements SurrogateKeyPurger {
+
+    private static Log log = LogFactory.getLog(LocalSurrogateKeyPurger.class);
+
+    // purged keys, one list per purge
+    private final List<List<String>> purges = new ArrayList<List<String>>();
+
+
+    public synchronized void purge(Collection<String> keys) {
+        log.debug("PURGE " + keys);
+        purges.add(new ArrayList<String>(keys));
+    }
+
+
+    public void shutdown() {
+        // no-op
+    }
+
+
+    /**
+     * All keys purged so far, in order.
+     */
+    public synchronized List<String> getPurgedKeys() {
+        List<String> keys = new ArrayList<String>();
+        for (List<String> purge : purges) {
+            keys.addAll(purge);
+        }
+        return keys;
+    }
+
+
+    public synchronized int getPurgeCount() {
+        return purges.size();
+    }
+
+
+    public synchronized void reset() {
+        purges.clear();
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * Cache invalidation transport which sends messages as UDP multicast
+ * datagrams to the group and port set by cache.cluster.multicast.group and
+ * cache.cluster.multicast.port.
+ *
+ * Delivery is not guaranteed, so cache timeouts should stay short enough to
+ * cover a lost datagram.  Messages which don't fit in a datagram are sent as
+ * a clear of all caches.
+ */
+public class MulticastCacheTransport implements CacheInvalidationTransport {
+    
+    private static Log log = LogFactory.getLog(MulticastCacheTransport.class);
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    // keep datagrams well below the usual UDP limit
+    private static final int MAX_DATAGRAM = 8192;
+    
+    private final InetAddress group;
+    private final int port;
+    private final int ttl;
+    
+    private String nodeId = null;
+    private MulticastSocket socket = null;
+    private Thread listener = null;
+    
+    
+    public MulticastCacheTransport() throws IOException {
+        this.group = InetAddress.getByName(
+                WebloggerConfig.getProperty("cache.cluster.multicast.group", "239.255.27.1"));
+        this.port = WebloggerConfig.getIntProperty("cache.cluster.multicast.port", 45566);
+        this.ttl = WebloggerConfig.getIntProperty("cache.cluster.multicast.ttl", 1);
+    }
+    
+    
+    public synchronized void start(String nodeId, final Receiver receiver) throws IOException {
+        this.nodeId = nodeId;
+        
+        socket = new MulticastSocket(port);
+        socket.setTimeToLive(ttl);
+        socket.joinGroup(group);
+        
+        listener = new Thread("CacheInvalidationListener") {
+            public void run() {
+                byte[] buffer = new byte[MAX_DATAGRAM];
+                while (!isInterrupted()) {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    try {
+                        socket.receive(packet);
+                    } catch (SocketException ex) {
+                        // socket closed by shutdown()
+                        break;
+                    } catch (IOException ex) {
+                        log.warn("Error receiving cache invalidations", ex);
+                        continue;
+                    }
+                    
+                    // datagrams are "<origin>\n<message>"
+                    String data = new String(packet.getData(), 0, packet.getLength(), UTF8);
+                    int split = data.indexOf('\n');
+                    if (split > 0) {
+                        try {
+                            receiver.receive(data.substring(0, split), data.substring(split + 1));
+                        } catch (RuntimeException ex) {
+                            log.error("Error applying cache invalidations", ex);
+                        }
+                    }
+                }
+            }
+        };
+        listener.setDaemon(true);
+        listener.start();
+    }
+    
+    
+    public void publish(String message) throws IOException {
+        byte[] data = (nodeId + "\n" + message).getBytes(UTF8);
+        if (data.length > MAX_DATAGRAM) {
+            data = (nodeId + "\n" + CacheInvalidation.encode(
+                    Collections.singletonList(CacheInvalidation.CLEAR_ALL))).getBytes(UTF8);
+        }
+        socket.send(new DatagramPacket(data, data.length, group, port));
+    }
+    
+    
+    public void poll() {
+        // no-op, datagrams are received by our listener thread
+    }
+    
+    
+    public synchronized void shutdown() {
+        if (listener != null) {
+            listener.interrupt();
+        }
+        if (socket != null) {
+            try {
+                socket.leaveGroup(group);
+            } catch (IOException ex) {
+                log.debug("Error leaving multicast group", ex);
+            }
+            socket.close();
+        }
+    }
+    
+}
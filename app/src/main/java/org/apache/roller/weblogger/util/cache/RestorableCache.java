@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Map;
+
+
+/**
+ * A cache whose entries can be listed and put back later, so they can be
+ * saved in a {@link CacheSnapshot} and restored after a restart.
+ */
+public interface RestorableCache extends Cache {
+    
+    /**
+     * get a copy of the entries which have not expired, as they were put.
+     */
+    Map<String, Object> getEntries();
+    
+    
+    /**
+     * put an item back in the cache as if it was put at the given time.
+     */
+    void put(String key, Object value, long timeCached);
+    
+}
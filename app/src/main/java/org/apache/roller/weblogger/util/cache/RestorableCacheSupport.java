@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Lists and puts back the {@link CachedContent} of a rendering cache, for
+ * saving it in a {@link CacheSnapshot}.  Caches which are not a
+ * {@link RestorableCache} have nothing to list and ignore what is put back.
+ */
+public final class RestorableCacheSupport {
+    
+    private RestorableCacheSupport() {
+        // static methods only
+    }
+    
+    
+    /**
+     * Get the cached content of a cache, unwrapping lazy expiring entries.
+     *
+     * @param cache The cache, or null if caching is disabled.
+     */
+    public static Map<String, CachedContent> getContents(Cache cache) {
+        
+        Map<String, CachedContent> contents = new HashMap<String, CachedContent>();
+        if (!(cache instanceof RestorableCache)) {
+            return contents;
+        }
+        
+        for (Map.Entry<String, Object> entry : ((RestorableCache) cache).getEntries().entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof LazyExpiringCacheEntry) {
+                value = ((LazyExpiringCacheEntry) value).getValue(0);
+            }
+            if (value instanceof CachedContent) {
+                contents.put(entry.getKey(), (CachedContent) value);
+            }
+        }
+        return contents;
+    }
+    
+    
+    /**
+     * Put back content restored from a snapshot, as cached when it was
+     * created.
+     *
+     * @param cache The cache, or null if caching is disabled.
+     * @param lazy True to wrap the content in a LazyExpiringCacheEntry, as
+     *             the cache's own puts do.
+     * @return True if the content was put back.
+     */
+    public static boolean restore(Cache cache, String key, CachedContent content,
+            boolean lazy) {
+        
+        if (!(cache instanceof RestorableCache)) {
+            return false;
+        }
+        
+        Object value = lazy ? new LazyExpiringCacheEntry(content, content.getTimeCreated()) : content;
+        ((RestorableCache) cache).put(key, value, content.getTimeCreated());
+        return true;
+    }
+    
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * A writer which encodes to UTF-8 straight into pooled segments, and
+ * optionally also to another stream as it goes.
+ *
+ * Encoders are kept per thread and reused.  Segments may end a few bytes
+ * short when a character didn't fit, so each has its own length.  Once
+ * closed the last segment is trimmed to its length and the pooled one is
+ * released, the others stay with the content.
+ */
+final class SegmentedWriter extends Writer {
+
+    private static Log log = LogFactory.getLog(SegmentedWriter.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // an idle encoder per thread, taken while a writer is open
+    private static final ThreadLocal<CharsetEncoder> encoders = new ThreadLocal<CharsetEncoder>();
+
+    private final ByteSegmentPool pool;
+    private final List<byte[]> segments = new ArrayList<byte[]>();
+    private final List<Integer> lengths = new ArrayList<Integer>();
+
+    // the segment being written
+    private ByteBuffer current;
+
+    // bytes of finished segments
+    private int finishedLength = 0;
+
+    private CharsetEncoder encoder;
+
+    // a high surrogate waiting for the low one in the next write
+    private char pendingHigh;
+    private boolean hasPendingHigh = false;
+
+    private final char[] single = new char[1];
+
+    private OutputStream tee;
+    private int teePosition = 0;
+
+    private boolean closed = false;
+
+
+    SegmentedWriter(ByteSegmentPool pool, OutputStream tee) {
+        this.pool = pool;
+        this.tee = tee;
+
+        encoder = encoders.get();
+        if (encoder == null) {
+            encoder = UTF8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        } else {
+            encoders.remove();
+            encoder.reset();
+        }
+
+        current = ByteBuffer.wrap(pool.acquire());
+        segments.add(current.array());
+    }
+
+
+    @Override
+    public void write(int c) throws IOException {
+        single[0] = (char) c;
+        write(single, 0, 1);
+    }
+
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        if (hasPendingHigh) {
+            char[] joined = new char[len + 1];
+            joined[0] = pendingHigh;
+            System.arraycopy(cbuf, off, joined, 1, len);
+            hasPendingHigh = false;
+            encode(CharBuffer.wrap(joined), false);
+        } else {
+            encode(CharBuffer.wrap(cbuf, off, len), false);
+        }
+    }
+
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        if (hasPendingHigh) {
+            hasPendingHigh = false;
+            encode(CharBuffer.wrap(pendingHigh + str.substring(off, off + len)), false);
+        } else {
+            encode(CharBuffer.wrap(str, off, off + len), false);
+        }
+    }
+
+
+    private void encode(CharBuffer in, boolean endOfInput) throws IOException {
+
+        while (true) {
+            CoderResult result = encoder.encode(in, current, endOfInput);
+            if (result.isOverflow()) {
+                nextSegment();
+            } else {
+                break;
+            }
+        }
+        writeTee();
+
+        // only an unpaired high surrogate at the end is left over
+        if (in.hasRemaining()) {
+            pendingHigh = in.get();
+            hasPendingHigh = true;
+        }
+    }
+
+
+    private void nextSegment() {
+        writeTee();
+        finishedLength += current.position();
+        lengths.add(current.position());
+        current = ByteBuffer.wrap(pool.acquire());
+        segments.add(current.array());
+        teePosition = 0;
+    }
+
+
+    private void writeTee() {
+        if (tee != null && current.position() > teePosition) {
+            try {
+                tee.write(current.array(), teePosition, current.position() - teePosition);
+            } catch (IOException e) {
+                // keep writing the content so it can still be cached
+                log.debug("Stopped writing to tee: " + e.getMessage());
+                tee = null;
+            }
+            teePosition = current.position();
+        }
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        if (tee != null) {
+            try {
+                tee.flush();
+            } catch (IOException e) {
+                log.debug("Stopped writing to tee: " + e.getMessage());
+                tee = null;
+            }
+        }
+    }
+
+
+    /**
+     * Finish encoding.  Leaves the tee stream open, that is for whoever
+     * supplied it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        // an unpaired high surrogate is replaced
+        CharBuffer rest = CharBuffer.wrap(hasPendingHigh ? new char[] {pendingHigh} : new char[0]);
+        hasPendingHigh = false;
+        encode(rest, true);
+        while (encoder.flush(current).isOverflow()) {
+            nextSegment();
+        }
+        writeTee();
+        flush();
+
+        encoders.set(encoder);
+        encoder = null;
+
+        // trim the last segment, the pooled one can be used again
+        byte[] last = current.array();
+        segments.set(segments.size() - 1, copy(last, current.position()));
+        lengths.add(current.position());
+        finishedLength += current.position();
+        pool.release(last);
+        current = null;
+
+        closed = true;
+    }
+
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+    }
+
+
+    private static byte[] copy(byte[] bytes, int length) {
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, 0, copy, 0, length);
+        return copy;
+    }
+
+
+    /**
+     * Number of bytes written so far.
+     */
+    int size() {
+        return closed ? finishedLength : finishedLength + current.position();
+    }
+
+
+    /**
+     * The segments written so far, the last one is copied while open.
+     */
+    byte[][] getSegments() {
+        byte[][] result = segments.toArray(new byte[segments.size()][]);
+        if (!closed) {
+            result[result.length - 1] = copy(current.array(), current.position());
+        }
+        return result;
+    }
+
+
+    /**
+     * The length of each segment in getSegments().
+     */
+    int[] getLengths() {
+        int[] result = new int[segments.size()];
+        for (int i = 0; i < lengths.size(); i++) {
+            result[i] = lengths.get(i);
+        }
+        if (!closed) {
+            result[result.length - 1] = current.position();
+        }
+        return result;
+    }
+
+}
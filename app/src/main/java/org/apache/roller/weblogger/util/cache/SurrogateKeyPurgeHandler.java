@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.business.runnable.Job;
+import org.apache.roller.weblogger.business.runnable.ThreadManager;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+
+
+/**
+ * Purges the surrogate keys of invalidated objects from the HTTP cache in
+ * front of Roller.
+ *
+ * The purges follow what our own caches do: nearly any change invalidates
+ * all pages of the weblog, and entry or weblog changes also invalidate the
+ * site-wide weblog.  Comment changes may be limited to the pages which
+ * showed the entry by setting cache.surrogate.purge.commentsByEntry.
+ *
+ * Keys are queued and purged in the background at intervals of
+ * cache.surrogate.purge.interval milliseconds, more than
+ * cache.surrogate.purge.maxBatch keys at once are purged as a single
+ * {@link SurrogateKeys#ALL}.  Invalidations received from other cluster
+ * members are not purged again, the member making the change purges.
+ */
+public final class SurrogateKeyPurgeHandler implements CacheHandler {
+
+    private static Log log = LogFactory.getLog(SurrogateKeyPurgeHandler.class);
+
+    private static SurrogateKeyPurgeHandler instance = null;
+
+    private final SurrogateKeyPurger purger;
+    private final boolean commentsByEntry;
+    private final int maxBatch;
+
+    // keys waiting to be purged, in order
+    private final Set<String> pending = new LinkedHashSet<String>();
+
+    private final AtomicLong purged = new AtomicLong(0);
+    private final AtomicLong failures = new AtomicLong(0);
+
+
+    SurrogateKeyPurgeHandler(SurrogateKeyPurger purger, boolean commentsByEntry, int maxBatch) {
+        this.purger = purger;
+        this.commentsByEntry = commentsByEntry;
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+
+    /**
+     * Start purging with the configured purger, if surrogate keys are
+     * enabled, and schedule purging with the given thread manager.
+     */
+    public static synchronized void initialize(ThreadManager threadManager) {
+
+        if (instance != null || !WebloggerConfig.getBooleanProperty("cache.surrogate.enabled")) {
+            return;
+        }
+
+        String purgerClass = WebloggerConfig.getProperty("cache.surrogate.purger",
+                HttpSurrogateKeyPurger.class.getName());
+        SurrogateKeyPurger purger;
+        try {
+            purger = (SurrogateKeyPurger) Class.forName(purgerClass.trim()).newInstance();
+        } catch (ClassCastException cce) {
+            log.error("It appears that your purger does not implement "+
+                    "the SurrogateKeyPurger interface", cce);
+            return;
+        } catch (Exception e) {
+            log.error("Unable to instantiate surrogate key purger ["+purgerClass+"]", e);
+            return;
+        }
+
+        final SurrogateKeyPurgeHandler handler = new SurrogateKeyPurgeHandler(purger,
+                WebloggerConfig.getBooleanProperty("cache.surrogate.purge.commentsByEntry"),
+                WebloggerConfig.getIntProperty("cache.surrogate.purge.maxBatch", 1000));
+
+        CacheManager.registerHandler(handler);
+        int interval = WebloggerConfig.getIntProperty("cache.surrogate.purge.interval", 1000);
+        threadManager.scheduleJob("SurrogateKeyPurgeHandler", new Job() {
+            public void execute() {
+                handler.flush();
+            }
+            public void input(Map<String, Object> input) {
+                // no-op
+            }
+            public Map<String, Object> output() {
+                return null;
+            }
+        }, Math.max(10, interval), TimeUnit.MILLISECONDS);
+
+        instance = handler;
+        log.info("Surrogate key purging started, purger = " + purgerClass);
+    }
+
+
+    /**
+     * Get the running handler, or null if surrogate keys are not enabled.
+     */
+    public static SurrogateKeyPurgeHandler getInstance() {
+        return instance;
+    }
+
+
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.flush();
+            instance.purger.shutdown();
+            instance = null;
+        }
+    }
+
+
+    /**
+     * Purge the queued keys.
+     */
+    public void flush() {
+
+        List<String> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<String>(pending);
+            pending.clear();
+        }
+
+        if (batch.size() > maxBatch || batch.contains(SurrogateKeys.ALL)) {
+            log.debug("Coalescing " + batch.size() + " keys into a purge of all");
+            batch = Collections.singletonList(SurrogateKeys.ALL);
+        }
+
+        try {
+            purger.purge(batch);
+            purged.addAndGet(batch.size());
+        } catch (IOException ex) {
+            failures.incrementAndGet();
+            log.warn("Error purging surrogate keys, will retry", ex);
+            synchronized (pending) {
+                List<String> retry = new ArrayList<String>(batch);
+                retry.addAll(pending);
+                pending.clear();
+                pending.addAll(retry);
+            }
+        }
+    }
+
+
+    /**
+     * Queue keys for purging, e.g. for content which changes without going
+     * through the CacheManager.
+     */
+    public void purge(String... keys) {
+        CacheInvalidationBus bus = CacheInvalidationBus.getInstance();
+        if (bus != null && bus.isApplying()) {
+            return;
+        }
+        synchronized (pending) {
+            Collections.addAll(pending, keys);
+        }
+    }
+
+
+    /**
+     * Purge everything.
+     */
+    void clear() {
+        purge(SurrogateKeys.ALL);
+    }
+
+
+    private void purgeWeblog(Weblog weblog) {
+        if (weblog != null) {
+            purge(SurrogateKeys.weblog(weblog.getHandle()));
+        }
+    }
+
+
+    public void invalidate(WeblogEntry entry) {
+        purge(SurrogateKeys.entry(entry.getId()), SurrogateKeys.SITE);
+        purgeWeblog(entry.getWebsite());
+    }
+
+    public void invalidate(Weblog website) {
+        purge(SurrogateKeys.SITE);
+        purgeWeblog(website);
+    }
+
+    public void invalidate(WeblogBookmark bookmark) {
+        purgeWeblog(bookmark.getWebsite());
+    }
+
+    public void invalidate(WeblogBookmarkFolder folder) {
+        purgeWeblog(folder.getWeblog());
+    }
+
+    public void invalidate(WeblogEntryComment comment) {
+        WeblogEntry entry = comment.getWeblogEntry();
+        if (entry == null) {
+            return;
+        }
+        if (commentsByEntry) {
+            purge(SurrogateKeys.entry(entry.getId()));
+        } else {
+            purgeWeblog(entry.getWebsite());
+        }
+    }
+
+    public void invalidate(User user) {
+        // ignored
+    }
+
+    public void invalidate(WeblogCategory category) {
+        purgeWeblog(category.getWeblog());
+    }
+
+    public void invalidate(WeblogTemplate template) {
+        purge(SurrogateKeys.template(template.getId()));
+        purgeWeblog(template.getWeblog());
+    }
+
+
+    /**
+     * Number of keys purged so far.
+     */
+    public long getPurged() {
+        return purged.get();
+    }
+
+    /**
+     * Number of purges which failed and were retried.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+}
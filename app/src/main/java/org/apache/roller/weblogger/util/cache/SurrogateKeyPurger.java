@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.util.Collection;
+
+
+/**
+ * Purges the responses tagged with surrogate keys from an HTTP cache.
+ *
+ * Implementations are configured with the cache.surrogate.purger property
+ * and need a public no-arg constructor.
+ */
+public interface SurrogateKeyPurger {
+
+    /**
+     * Purge all responses tagged with any of the given keys.
+     */
+    void purge(Collection<String> keys) throws IOException;
+
+
+    /**
+     * Release any resources held by the purger.
+     */
+    void shutdown();
+
+}
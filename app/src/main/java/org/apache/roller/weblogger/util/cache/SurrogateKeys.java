@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+
+
+/**
+ * Names the surrogate keys which rendered responses are tagged with, so an
+ * HTTP cache in front of Roller can purge all responses for a key at once.
+ *
+ * Besides the key names this keeps a per-thread collector, started by the
+ * rendering servlets, which picks up the entries a render touched.
+ */
+public final class SurrogateKeys {
+
+    /** Key on every tagged response. */
+    public static final String ALL = "all";
+
+    /** Key on responses of the site-wide weblog, which aggregate all weblogs. */
+    public static final String SITE = "site";
+
+    /** Key on all planet responses. */
+    public static final String PLANET = "planet";
+
+    // keys collected during the current render, if one is active
+    private static final ThreadLocal<Set<String>> collected = new ThreadLocal<Set<String>>();
+
+
+    // non-instantiable
+    private SurrogateKeys() {}
+
+
+    public static String weblog(String handle) {
+        return "weblog:" + encode(handle);
+    }
+
+    public static String entry(String id) {
+        return "entry:" + id;
+    }
+
+    public static String category(String handle, String name) {
+        return "category:" + encode(handle) + "/" + encode(name);
+    }
+
+    public static String tag(String handle, String tag) {
+        return "tag:" + encode(handle) + "/" + encode(tag);
+    }
+
+    public static String template(String id) {
+        return "template:" + id;
+    }
+
+    public static String media(String id) {
+        return "media:" + id;
+    }
+
+    public static String planet(String group) {
+        return (group == null) ? PLANET : PLANET + ":" + encode(group);
+    }
+
+
+    /**
+     * Start collecting keys for a render on this thread.
+     */
+    public static void begin() {
+        collected.set(new LinkedHashSet<String>());
+    }
+
+
+    /**
+     * Add a key to the render active on this thread, if there is one.
+     */
+    public static void add(String key) {
+        Set<String> keys = collected.get();
+        if (keys != null) {
+            keys.add(key);
+        }
+    }
+
+
+    /**
+     * Note that the active render touched the given entry.
+     */
+    public static void touch(WeblogEntry entry) {
+        if (entry != null && entry.getId() != null && collected.get() != null) {
+            add(entry(entry.getId()));
+        }
+    }
+
+
+    /**
+     * Stop collecting keys on this thread and return what was collected.
+     */
+    public static Set<String> end() {
+        Set<String> keys = collected.get();
+        collected.remove();
+        if (keys == null) {
+            return Collections.emptySet();
+        }
+        return keys;
+    }
+
+
+    /**
+     * Keys are separated by spaces in headers, so anything which is not
+     * safe in a url is escaped.
+     */
+    private static String encode(String value) {
+        if (value == null) {
+            return "-";
+        }
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            // shouldn't happen, java always supports utf-8
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
@@ -50,6 +50,7 @@ import org.apache.roller.weblogger.business.Weblogger;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
@@ -175,10 +176,14 @@ public class EntryCollection {
             if (!RollerAtomHandler.canView(user, website)) {
                 throw new AtomNotAuthorizedException("Not authorized to access website: " + handle);
             }
+            // next links carry the last entry of the page, so that deep
+            // pages seek instead of counting past all earlier entries
+            PageCursor cursor = PageCursor.parse(areq.getParameter("after"));
             WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
             wesc.setWeblog(website);
             wesc.setSortBy(WeblogEntrySearchCriteria.SortBy.UPDATE_TIME);
             wesc.setOffset(start);
+            wesc.setCursor(cursor);
             wesc.setMaxResults(max + 1);
             List<WeblogEntry> entries = roller.getWeblogEntryManager().getWeblogEntries(wesc);
             Feed feed = new Feed();
@@ -193,11 +198,13 @@ public class EntryCollection {
             feed.setAlternateLinks(Collections.singletonList(link));
 
             List<Entry> atomEntries = new ArrayList<Entry>();
+            WeblogEntry last = null;
             int count = 0;
             for (WeblogEntry rollerEntry : entries) {
                 if (count++ >= MAX_ENTRIES) {
                     break;
                 }
+                last = rollerEntry;
                 Entry entry = createAtomEntry(rollerEntry);
                 atomEntries.add(entry);
                 if (count == 1) {
@@ -208,15 +215,15 @@ public class EntryCollection {
             List<Link> links = new ArrayList<Link>();
             if (entries.size() > max) {
                 // add next link
-                int nextOffset = start + max;
+                PageCursor next = new PageCursor(last.getUpdateTime(), last.getId());
                 String url = atomURL+"/"
-                        + website.getHandle() + "/entries/" + nextOffset;
+                        + website.getHandle() + "/entries?after=" + next;
                 Link nextLink = new Link();
                 nextLink.setRel("next");
                 nextLink.setHref(url);
                 links.add(nextLink);
             }
-            if (start > 0) {
+            if (start > 0 && cursor == null) {
                 // add previous link
                 int prevOffset = start > max ? start - max : 0;
                 String url = atomURL+"/"
@@ -36,13 +36,9 @@ import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
-import java.util.Set;
-import java.util.SortedSet;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
 import java.util.UUID;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -56,6 +52,7 @@ import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.pojos.MediaFile;
 import org.apache.roller.weblogger.pojos.MediaFileDirectory;
+import org.apache.roller.weblogger.pojos.PageCursor;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.util.RollerMessages;
@@ -287,34 +284,27 @@ public class MediaCollection {
                 log.debug("Fetching root resource collection from weblog " + handle);
                 dir = fmgr.getDefaultMediaFileDirectory(website);
             }
-            Set<MediaFile> files = dir.getMediaFiles();
-
-            SortedSet sortedSet = new TreeSet(new Comparator() {
-                public int compare(Object o1, Object o2) {
-                    MediaFile f1 = (MediaFile)o1;
-                    MediaFile f2 = (MediaFile)o2;
-                    if (f1.getLastModified() < f2.getLastModified()) {
-                        return 1;
-                    }
-                    else if (f1.getLastModified() == f2.getLastModified()) {
-                        return 0;
-                    }
-                    else {
-                        return -1;
-                    }
-                }
-            });
-                                    
-            if (files != null && start < files.size()) {
-                for (MediaFile mf : files) {
-                    sortedSet.add(mf);
-                }
+
+            // next links carry the last file of the page, so that deep
+            // pages seek instead of sorting the whole directory
+            PageCursor cursor = PageCursor.parse(areq.getParameter("after"));
+            List<MediaFile> files;
+            if (cursor != null || start == 0) {
+                files = fmgr.getMediaFiles(dir, cursor, max + 1);
+            } else {
+                files = offsetPage(dir, start, max + 1);
+            }
+
+            if (!files.isEmpty()) {
                 int count = 0;
-                MediaFile[] sortedResources =
-                   (MediaFile[])sortedSet.toArray(new MediaFile[sortedSet.size()]);
+                MediaFile last = null;
                 List atomEntries = new ArrayList();
-                for (int i=start; i<(start + max) && i<(sortedResources.length); i++) {
-                    Entry entry = createAtomResourceEntry(website, sortedResources[i]);
+                for (MediaFile mf : files) {
+                    if (count == max) {
+                        break;
+                    }
+                    last = mf;
+                    Entry entry = createAtomResourceEntry(website, mf);
                     atomEntries.add(entry);
                     if (count == 0) {
                         // first entry is most recent
@@ -324,17 +314,17 @@ public class MediaCollection {
                 }
 
                 List otherLinks = new ArrayList();
-                if (start + count < files.size()) {
+                if (files.size() > max) {
                     // add next link
-                    int nextOffset = start + max;
+                    PageCursor next = new PageCursor(last.getLastUpdated(), last.getId());
                     String url = atomURL
-                        +"/"+ website.getHandle() + "/resources/" + path + nextOffset;
+                        +"/"+ website.getHandle() + "/resources/" + path + "?after=" + next;
                     Link nextLink = new Link();
                     nextLink.setRel("next");
                     nextLink.setHref(url);
                     otherLinks.add(nextLink);
                 }
-                if (start > 0) {
+                if (start > 0 && cursor == null) {
                     // add previous link
                     int prevOffset = start > max ? start - max : 0;
                     String url = atomURL
@@ -363,6 +353,28 @@ public class MediaCollection {
     }
     
     
+    /**
+     * Page of files at an offset, for the offset urls of older clients.
+     * Seeks page by page from the first file.
+     */
+    private List<MediaFile> offsetPage(MediaFileDirectory dir, int start, int max)
+            throws WebloggerException {
+        MediaFileManager fmgr = roller.getMediaFileManager();
+        PageCursor cursor = null;
+        int skipped = 0;
+        while (skipped < start) {
+            List<MediaFile> skip = fmgr.getMediaFiles(dir, cursor, Math.min(MAX_ENTRIES, start - skipped));
+            if (skip.isEmpty()) {
+                return skip;
+            }
+            MediaFile last = skip.get(skip.size() - 1);
+            cursor = new PageCursor(last.getLastUpdated(), last.getId());
+            skipped += skip.size();
+        }
+        return fmgr.getMediaFiles(dir, cursor, max);
+    }
+
+
     public void putMedia(AtomRequest areq) throws AtomException {
        String[] pathInfo = StringUtils.split(areq.getPathInfo(),"/");
        String contentType = areq.getContentType();
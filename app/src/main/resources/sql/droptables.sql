@@ -15,6 +15,7 @@
 -- directory of this distribution.
 
 -- planet tables
+drop table rag_group_entry;
 drop table rag_entry;
 drop table rag_group_subscription;
 drop table rag_subscription;
@@ -27,6 +28,8 @@ drop table newsfeed;
 drop table roller_properties;
 drop table roller_audit_log;
 drop table roller_tasklock;
+drop table roller_jobrecord;
+drop table roller_cacheevent;
 
 -- supplemental services tables
 drop table pingqueueentry;
@@ -49,3 +49,35 @@
         <br>
     </s:if>
 </s:iterator>
+
+<s:if test="!workerPools.isEmpty">
+    <p class="subtitle"><s:text name="cacheInfo.workerPools" />
+
+    <table cellspacing="3" border="1">
+        <tr>
+            <th><s:text name="cacheInfo.pool.name" /></th>
+            <th><s:text name="cacheInfo.pool.active" /></th>
+            <th><s:text name="cacheInfo.pool.queue" /></th>
+            <th><s:text name="cacheInfo.pool.submitted" /></th>
+            <th><s:text name="cacheInfo.pool.completed" /></th>
+            <th><s:text name="cacheInfo.pool.failed" /></th>
+            <th><s:text name="cacheInfo.pool.rejected" /></th>
+            <th><s:text name="cacheInfo.pool.queueTime" /></th>
+            <th><s:text name="cacheInfo.pool.runTime" /></th>
+        </tr>
+
+        <s:iterator id="pool" value="workerPools">
+            <tr>
+                <td><s:property value="#pool.name"/></td>
+                <td><s:property value="#pool.activeCount"/> / <s:property value="#pool.size"/></td>
+                <td><s:property value="#pool.queueDepth"/> / <s:property value="#pool.queueSize"/></td>
+                <td><s:property value="#pool.submittedCount"/></td>
+                <td><s:property value="#pool.completedCount"/></td>
+                <td><s:property value="#pool.failedCount"/></td>
+                <td><s:property value="#pool.rejectedCount"/></td>
+                <td><s:property value="#pool.averageQueueTime"/></td>
+                <td><s:property value="#pool.averageRunTime"/></td>
+            </tr>
+        </s:iterator>
+    </table>
+</s:if>
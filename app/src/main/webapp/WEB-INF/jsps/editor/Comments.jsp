@@ -51,8 +51,9 @@
 </s:if>
     function bulkDelete() {
         if (window.confirm('<s:text name="commentManagement.confirmBulkDelete"><s:param value="bulkDeleteCount" /></s:text>')) {
-            document.commentQueryForm.method.value = "bulkDelete";
-            document.commentQueryForm.submit();
+            var form = document.getElementById('commentsQuery');
+            form.action = '<s:url action="%{#mainAction}!delete" />';
+            form.submit();
         }
     }
 </script>
@@ -174,6 +175,48 @@
         </div> <%-- class="tablenav" --%>
 
 
+<%-- ============================================================= --%>
+<%-- Bulk comment delete progress --%>
+<%-- ============================================================= --%>
+
+        <s:if test="bulkJob != null">
+            <p id="bulkJobProgress">
+                <s:if test="bulkJob.state.name() == 'COMPLETED'">
+                    <s:text name="commentManagement.bulkDeleteDone">
+                        <s:param value="bulkJob.processed" />
+                        <s:param value="bulkJob.weblogCount" />
+                    </s:text>
+                </s:if>
+                <s:elseif test="bulkJob.state.name() == 'FAILED'">
+                    <s:text name="commentManagement.bulkDeleteFailed">
+                        <s:param value="bulkJob.processed" />
+                    </s:text>
+                </s:elseif>
+                <s:else>
+                    <s:url var="bulkJobUrl" action="%{#mainAction}" escapeAmp="false">
+                        <s:if test="actionName == 'comments'">
+                            <s:param name="weblog" value="%{actionWeblog.handle}" />
+                        </s:if>
+                        <s:param name="bulkJobId" value="bulkJobId" />
+                    </s:url>
+                    <s:text name="commentManagement.bulkDeleteProgress">
+                        <s:param value="bulkJob.processed" />
+                        <s:param value="bulkJob.total" />
+                        <s:param value="bulkJob.percentComplete" />
+                    </s:text>
+                    <a href='<s:property value="#bulkJobUrl" />'>
+                        <s:text name="commentManagement.bulkDeleteRefresh" />
+                    </a>
+                    <script>
+                        setTimeout(function() {
+                            window.location.href = '<s:property value="#bulkJobUrl" escapeHtml="false" escapeJavaScript="true" />';
+                        }, 5000);
+                    </script>
+                </s:else>
+            </p>
+        </s:if>
+
+
 <%-- ============================================================= --%>
 <%-- Bulk comment delete link --%>
 <%-- ============================================================= --%>
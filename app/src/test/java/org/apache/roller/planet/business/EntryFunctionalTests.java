@@ -17,6 +17,7 @@
 package org.apache.roller.planet.business;
 
 import java.util.Date;
+import java.util.List;
 import junit.framework.TestCase;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -26,6 +27,7 @@ import org.apache.roller.planet.pojos.PlanetGroup;
 import org.apache.roller.planet.pojos.Subscription;
 import org.apache.roller.weblogger.TestUtils;
 import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.PageCursor;
 
 
 /**
@@ -109,6 +111,37 @@ public class EntryFunctionalTests extends TestCase {
     }
     
     
+    public void testEntriesByCursor() throws Exception {
+        
+        PlanetManager mgr = WebloggerFactory.getWeblogger().getPlanetManager();
+        PlanetGroup group = mgr.getGroupById(testGroup1.getId());
+        List<SubscriptionEntry> all = mgr.getEntries(group, 0, 10);
+        assertEquals(3, all.size());
+        
+        // first page, then the page after its last entry
+        List<SubscriptionEntry> page = mgr.getEntries(group, (PageCursor) null, 2);
+        assertEquals(2, page.size());
+        assertEquals(all.get(0).getId(), page.get(0).getId());
+        SubscriptionEntry last = page.get(1);
+        page = mgr.getEntries(group, new PageCursor(last.getPubTime(), last.getId()), 2);
+        assertEquals(1, page.size());
+        assertEquals(all.get(2).getId(), page.get(0).getId());
+        
+        // pages past the in memory head
+        assertEquals(1, mgr.getEntries(group, 2, 1000).size());
+        
+        // removing a subscription from the group removes its entries
+        Subscription sub = mgr.getSubscriptionById(testSub2.getId());
+        group.getSubscriptions().remove(sub);
+        sub.getGroups().remove(group);
+        mgr.saveGroup(group);
+        TestUtils.endSession(true);
+        
+        group = mgr.getGroupById(testGroup1.getId());
+        assertEquals(1, mgr.getEntries(group, 0, 10).size());
+    }
+    
+    
     public void testDeleteEntries() throws Exception {
         
         PlanetManager mgr = WebloggerFactory.getWeblogger().getPlanetManager();
@@ -124,6 +157,7 @@ public class EntryFunctionalTests extends TestCase {
         // verify
         sub = mgr.getSubscriptionById(testSub2.getId());
         assertEquals(0, sub.getEntries().size());
+        assertEquals(1, mgr.getEntries(mgr.getGroupById(testGroup1.getId()), 0, 10).size());
     }
     
 }
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.planet.tasks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.roller.planet.pojos.PlanetGroup;
+import org.apache.velocity.VelocityContext;
+
+
+/**
+ * Test incremental generation of static planet files.
+ */
+public class PlanetGeneratorTest extends TestCase {
+
+    private File templateDir;
+    private File outputDir;
+    private PlanetGroup group1;
+    private PlanetGroup group2;
+
+
+    public void setUp() throws Exception {
+        templateDir = Files.createTempDirectory("planet-templates").toFile();
+        outputDir = Files.createTempDirectory("planet-output").toFile();
+
+        write("control.vm", "#foreach($g in $groups)"
+                + "$generator.parse(\"group.vm\", \"${g.handle}/index.html\", \"group\", $g)"
+                + "#end$generator.parse(\"main.vm\", \"index.html\")");
+        write("group.vm", "#if($run == 3)$boom.fail()#end$group.handle $run");
+        write("main.vm", "main $run");
+
+        group1 = new PlanetGroup(null, "one", "One", null);
+        group2 = new PlanetGroup(null, "two", "Two", null);
+    }
+
+
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(templateDir);
+        FileUtils.deleteDirectory(outputDir);
+    }
+
+
+    public void testIncrementalGeneration() throws Exception {
+
+        // first run renders everything
+        generate(1, group1.getId(), group2.getId());
+        assertEquals("one 1", read("one/index.html"));
+        assertEquals("two 1", read("two/index.html"));
+        assertEquals("main 1", read("index.html"));
+
+        // only the changed group is rendered again
+        PlanetGenerator generator = generate(2, group1.getId());
+        assertEquals("one 2", read("one/index.html"));
+        assertEquals("two 1", read("two/index.html"));
+        assertEquals("main 2", read("index.html"));
+        assertEquals(1, generator.getSkipped());
+        assertEquals(Collections.singleton("one"), generator.getGroupTimes().keySet());
+
+        // a failed render keeps the previous file
+        try {
+            generate(3, group1.getId());
+            fail("render should have failed");
+        } catch (Exception expected) {
+            // expected
+        }
+        assertEquals("one 2", read("one/index.html"));
+        assertFalse(new File(outputDir, "one/index.html.tmp").exists());
+    }
+
+
+    private PlanetGenerator generate(int run, String... changed) throws Exception {
+        VelocityContext context = new VelocityContext();
+        context.put("groups", Arrays.asList(group1, group2));
+        context.put("run", run);
+        context.put("boom", new Boom());
+
+        PlanetGenerator generator = new PlanetGenerator(new HashSet<String>(Arrays.asList(changed)));
+        generator.setVelocityEngine(GeneratePlanetTask.getEngine(templateDir.getAbsolutePath()));
+        generator.setOutputEncoding("UTF-8");
+        generator.setInputEncoding("UTF-8");
+        generator.setOutputPath(outputDir.getAbsolutePath());
+        generator.setTemplatePath(templateDir.getAbsolutePath());
+        try {
+            generator.parse("control.vm", context);
+        } finally {
+            generator.shutdown();
+        }
+        return generator;
+    }
+
+
+    private void write(String name, String content) throws Exception {
+        FileUtils.writeStringToFile(new File(templateDir, name), content, "UTF-8");
+    }
+
+
+    private String read(String name) throws Exception {
+        return FileUtils.readFileToString(new File(outputDir, name), "UTF-8");
+    }
+
+
+    public static class Boom {
+        public String fail() {
+            throw new IllegalStateException("boom");
+        }
+    }
+
+}
@@ -33,6 +33,7 @@ import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 import org.apache.roller.weblogger.pojos.Weblog;
 
 
@@ -202,6 +203,46 @@ public class CommentTest extends TestCase {
     }
     
     
+    /**
+     * Test bulk loading of comment counts through an entry fetch plan.
+     */
+    public void testFetchCommentCounts() throws Exception {
+        
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        
+        testEntry = TestUtils.getManagedWeblogEntry(testEntry);
+        WeblogEntryComment comment1 = TestUtils.setupComment("comment1", testEntry);
+        WeblogEntryComment comment2 = TestUtils.setupComment("comment2", testEntry);
+        WeblogEntryComment comment3 = TestUtils.setupComment("comment3", testEntry);
+        comment3.setStatus(ApprovalStatus.PENDING);
+        mgr.saveComment(comment3);
+        TestUtils.endSession(true);
+        
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(TestUtils.getManagedWebsite(testWeblog));
+        wesc.setFetch(WeblogEntrySearchCriteria.Fetch.COMMENT_COUNTS,
+                WeblogEntrySearchCriteria.Fetch.TAGS,
+                WeblogEntrySearchCriteria.Fetch.CATEGORIES);
+        List<WeblogEntry> entries = mgr.getWeblogEntries(wesc);
+        assertEquals(1, entries.size());
+        
+        // only approved comments are counted
+        WeblogEntry entry = entries.get(0);
+        assertEquals(2, entry.getCommentCount());
+        assertEquals(entry.getComments().size(), entry.getCommentCount());
+        assertNotNull(entry.getCategory());
+        assertEquals(0, entry.getTags().size());
+        
+        // counts are dropped when comments change
+        TestUtils.teardownComment(comment1.getId());
+        assertEquals(1, TestUtils.getManagedWeblogEntry(testEntry).getCommentCount());
+        
+        TestUtils.teardownComment(comment2.getId());
+        TestUtils.teardownComment(comment3.getId());
+        TestUtils.endSession(true);
+    }
+    
+    
     /**
      * Test that when deleting parent objects of a comment that everything
      * down the chain is properly deleted as well.  i.e. deleting an entry
@@ -18,20 +18,27 @@
 package org.apache.roller.weblogger.business;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.TestUtils;
 import org.apache.roller.weblogger.business.search.IndexManagerImpl;
+import org.apache.roller.weblogger.business.search.operations.AddCommentOperation;
 import org.apache.roller.weblogger.business.search.operations.AddEntryOperation;
 import org.apache.roller.weblogger.business.search.operations.SearchOperation;
 import org.apache.roller.weblogger.business.search.IndexManager;
+import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -157,4 +164,98 @@ public class IndexManagerTest extends TestCase {
         imgr.executeIndexOperationNow(search3);
         assertEquals(0, search3.getResultsCount());
     }    
+
+    public void testCommentSearch() throws Exception {
+        WeblogEntryManager wem = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        IndexManager imgr = WebloggerFactory.getWeblogger().getIndexManager();
+
+        // wait for any startup rebuild to finish
+        for (int i = 0; i < 30 && !imgr.isCommentIndexAvailable(); i++) {
+            Thread.sleep(RollerConstants.SEC_IN_MS);
+        }
+        assertTrue(imgr.isCommentIndexAvailable());
+
+        WeblogEntry entry = TestUtils.setupWeblogEntry("commentSearch",
+                testWeblog, testUser);
+        TestUtils.endSession(true);
+
+        long now = System.currentTimeMillis();
+        WeblogEntryComment c1 = saveComment(entry,
+                "Spock reports strange sensor readings", ApprovalStatus.APPROVED, now - 60000);
+        WeblogEntryComment c2 = saveComment(entry,
+                "Strange new worlds await the Enterprise", ApprovalStatus.PENDING, now);
+        WeblogEntryComment c3 = saveComment(entry,
+                "Kirk puts Boss Oxmyx in his place", ApprovalStatus.APPROVED, now);
+        TestUtils.endSession(true);
+
+        for (WeblogEntryComment comment : new WeblogEntryComment[] {c1, c2, c3}) {
+            imgr.executeIndexOperationNow(new AddCommentOperation((IndexManagerImpl) imgr,
+                    wem.getComment(comment.getId())));
+        }
+
+        CommentSearchCriteria csc = new CommentSearchCriteria();
+        csc.setWeblog(testWeblog);
+        csc.setSearchText("strange");
+        csc.setReverseChrono(true);
+        assertEquals(2, imgr.countComments(csc));
+        assertEquals(2, wem.getCommentCount(csc));
+        List<WeblogEntryComment> comments = wem.getComments(csc);
+        assertEquals(2, comments.size());
+        assertEquals(c2.getId(), comments.get(0).getId());
+        assertEquals(c1.getId(), comments.get(1).getId());
+
+        csc.setStatus(ApprovalStatus.APPROVED);
+        comments = wem.getComments(csc);
+        assertEquals(1, comments.size());
+        assertEquals(c1.getId(), comments.get(0).getId());
+
+        csc.setStatus(null);
+        csc.setStartDate(new Timestamp(now - 1000));
+        assertEquals(1, wem.getCommentCount(csc));
+        assertEquals(c2.getId(), wem.getComments(csc).get(0).getId());
+
+        // bulk jobs walk the same matches in id order, a chunk at a time
+        csc.setStartDate(null);
+        List<String> expected = new ArrayList<String>();
+        Collections.addAll(expected, c1.getId(), c2.getId());
+        Collections.sort(expected);
+        List<String> walked = new ArrayList<String>();
+        List<String> chunk = wem.getCommentIds(csc, null, 1);
+        while (!chunk.isEmpty()) {
+            walked.addAll(chunk);
+            chunk = wem.getCommentIds(csc, chunk.get(chunk.size() - 1), 1);
+        }
+        assertEquals(expected, walked);
+
+        // "range" is a substring of "strange" but not a word of either
+        csc.setSearchText("range");
+        assertEquals(0, wem.getCommentCount(csc));
+        assertTrue(wem.getCommentIds(csc, null, 10).isEmpty());
+
+        // counts without search text come from the database
+        CommentSearchCriteria all = new CommentSearchCriteria();
+        all.setWeblog(testWeblog);
+        assertEquals(3, wem.getCommentCount(all));
+
+        TestUtils.teardownComment(c1.getId());
+        TestUtils.teardownComment(c2.getId());
+        TestUtils.teardownComment(c3.getId());
+        TestUtils.teardownWeblogEntry(entry.getId());
+        TestUtils.endSession(true);
+    }
+
+    private WeblogEntryComment saveComment(WeblogEntry entry, String content,
+            ApprovalStatus status, long postTime) throws Exception {
+        WeblogEntryComment comment = new WeblogEntryComment();
+        comment.setName("test");
+        comment.setEmail("test");
+        comment.setUrl("test");
+        comment.setRemoteHost("foofoo");
+        comment.setContent(content);
+        comment.setPostTime(new Timestamp(postTime));
+        comment.setWeblogEntry(TestUtils.getManagedWeblogEntry(entry));
+        comment.setStatus(status);
+        WebloggerFactory.getWeblogger().getWeblogEntryManager().saveComment(comment);
+        return comment;
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+
+
+/**
+ * Test request scoped query memoization.
+ */
+public class RequestQueryCacheTest extends TestCase {
+
+    public static Log log = LogFactory.getLog(RequestQueryCacheTest.class);
+
+    User testUser = null;
+    Weblog testWeblog = null;
+
+
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+
+        testUser = TestUtils.setupUser("queryCacheTestUser");
+        testWeblog = TestUtils.setupWeblog("queryCacheTestWeblog", testUser);
+        TestUtils.setupWeblogEntry("queryCacheTestEntry", testWeblog, testUser);
+        TestUtils.endSession(true);
+    }
+
+    public void tearDown() throws Exception {
+        RequestQueryCache.clear();
+        TestUtils.teardownWeblog(testWeblog.getId());
+        TestUtils.teardownUser(testUser.getUserName());
+        TestUtils.endSession(true);
+    }
+
+
+    public void testMemoizedQueries() throws Exception {
+        Weblog weblog = TestUtils.getManagedWebsite(testWeblog);
+
+        RequestQueryCache cache = RequestQueryCache.begin();
+        try {
+            WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+            List<WeblogCategory> cats = mgr.getWeblogCategories(weblog);
+            assertSame(cats, mgr.getWeblogCategories(weblog));
+            assertEquals(1, mgr.getEntryCount(weblog));
+            assertEquals(1, mgr.getEntryCount(weblog));
+
+            // equal criteria share a result, different criteria don't
+            assertSame(mgr.getWeblogEntries(criteria(weblog, 10)),
+                    mgr.getWeblogEntries(criteria(weblog, 10)));
+            mgr.getWeblogEntries(criteria(weblog, 5));
+
+            assertEquals(4, cache.getQueries());
+            assertEquals(3, cache.getMemoized());
+        } finally {
+            RequestQueryCache.end();
+        }
+        assertNull(RequestQueryCache.getCurrent());
+    }
+
+
+    public void testWriteClearsResults() throws Exception {
+        Weblog weblog = TestUtils.getManagedWebsite(testWeblog);
+
+        RequestQueryCache cache = RequestQueryCache.begin();
+        try {
+            WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+            mgr.getCommentCount(weblog);
+            mgr.release();
+            mgr.getCommentCount(weblog);
+
+            assertEquals(2, cache.getQueries());
+            assertEquals(0, cache.getMemoized());
+        } finally {
+            RequestQueryCache.end();
+        }
+    }
+
+
+    public void testNoScope() throws Exception {
+        assertFalse(Proxy.isProxyClass(
+                WebloggerFactory.getWeblogger().getWeblogManager().getClass()));
+
+        // nested scopes share the outer one
+        RequestQueryCache outer = RequestQueryCache.begin();
+        WeblogManager mgr = WebloggerFactory.getWeblogger().getWeblogManager();
+        assertTrue(Proxy.isProxyClass(mgr.getClass()));
+        assertSame(outer, RequestQueryCache.begin());
+        RequestQueryCache.end();
+        assertSame(outer, RequestQueryCache.getCurrent());
+        RequestQueryCache.end();
+        assertNull(RequestQueryCache.getCurrent());
+
+        // a proxy used after its scope ended is a plain pass through
+        mgr.getWeblogCount();
+        mgr.getWeblogCount();
+        assertEquals(0, outer.getQueries());
+        assertEquals(0, outer.getMemoized());
+    }
+
+
+    private static WeblogEntrySearchCriteria criteria(Weblog weblog, int max) {
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(weblog);
+        wesc.setStatus(WeblogEntry.PubStatus.PUBLISHED);
+        wesc.setMaxResults(max);
+        return wesc;
+    }
+
+}
@@ -23,6 +23,8 @@ import java.io.StringWriter;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -33,6 +35,8 @@ import junit.framework.TestSuite;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.pojos.PageCursor;
+import org.apache.roller.weblogger.pojos.WeblogArchiveIndex;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.TagStat;
 import org.apache.roller.weblogger.pojos.User;
@@ -584,6 +588,166 @@ public class WeblogEntryTest extends TestCase {
     }
         
 
+    /**
+     * Test that paging with cursors returns the same entries as paging with
+     * offsets, also when entries share a publication time.
+     */
+    public void testGetEntriesByCursor() throws Exception {
+
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        testUser = TestUtils.getManagedUser(testUser);
+        Timestamp time = new Timestamp(System.currentTimeMillis() - 60000);
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 5; i++) {
+            WeblogEntry entry = TestUtils.setupWeblogEntry("cursor" + i, testWeblog, testUser);
+            // three entries published at the same time
+            entry.setPubTime(new Timestamp(time.getTime() - (i < 3 ? 0 : i * 1000)));
+            mgr.saveWeblogEntry(entry);
+            ids.add(entry.getId());
+        }
+        TestUtils.endSession(true);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        wesc.setWeblog(testWeblog);
+        List<WeblogEntry> all = mgr.getWeblogEntries(wesc);
+        assertEquals(5, all.size());
+
+        // walk the pages, seeking past the last entry of each
+        List<WeblogEntry> paged = new ArrayList<WeblogEntry>();
+        PageCursor cursor = null;
+        for (int page = 0; page < 3; page++) {
+            wesc = new WeblogEntrySearchCriteria();
+            wesc.setWeblog(testWeblog);
+            wesc.setCursor(cursor);
+            wesc.setMaxResults(2);
+            List<WeblogEntry> entries = mgr.getWeblogEntries(wesc);
+            paged.addAll(entries);
+
+            wesc.setCursor(null);
+            wesc.setOffset(page * 2);
+            assertEquals(mgr.getWeblogEntries(wesc), entries);
+
+            WeblogEntry last = entries.get(entries.size() - 1);
+            cursor = PageCursor.parse(new PageCursor(last.getPubTime(), last.getId()).toString());
+        }
+        assertEquals(all, paged);
+
+        for (String id : ids) {
+            TestUtils.teardownWeblogEntry(id);
+        }
+        TestUtils.endSession(true);
+    }
+
+
+    /**
+     * Test that the archive index counts published entries by day in the
+     * weblog time zone and follows entry changes.
+     */
+    public void testArchiveIndex() throws Exception {
+
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        testUser = TestUtils.getManagedUser(testUser);
+        Calendar cal = Calendar.getInstance(testWeblog.getTimeZoneInstance());
+
+        int[][] dates = {{2020, 2, 5}, {2020, 2, 5}, {2020, 2, 20}, {2020, 5, 1}, {2020, 3, 10}};
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < dates.length; i++) {
+            WeblogEntry entry = TestUtils.setupWeblogEntry("archive" + i, testWeblog, testUser);
+            cal.clear();
+            cal.set(dates[i][0], dates[i][1], dates[i][2], 9 + i, 0);
+            entry.setPubTime(new Timestamp(cal.getTimeInMillis()));
+            if (i == 4) {
+                entry.setStatus(PubStatus.DRAFT);
+            }
+            mgr.saveWeblogEntry(entry);
+            ids.add(entry.getId());
+        }
+        TestUtils.endSession(true);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogArchiveIndex index = mgr.getArchiveIndex(testWeblog);
+        assertEquals(4, index.getEntryCount());
+        assertSame(index, mgr.getArchiveIndex(testWeblog));
+
+        cal.clear();
+        cal.set(2020, 2, 5, 23, 59);
+        Date march5 = cal.getTime();
+        assertEquals(2, index.getDayCount(march5));
+        assertEquals(3, index.getMonthCount(march5));
+
+        // days as noon, like the entry maps
+        cal.clear();
+        cal.set(2020, 2, 5, 12, 0);
+        Date noon5 = cal.getTime();
+        cal.set(2020, 2, 20, 12, 0);
+        Date noon20 = cal.getTime();
+        assertEquals(Arrays.asList(noon5, noon20), index.getDaysOfMonth(march5, new Date()));
+        assertEquals(Arrays.asList(noon5), index.getDaysOfMonth(march5, march5));
+
+        // the draft month is skipped
+        cal.clear();
+        cal.set(2020, 3, 15);
+        Date april = cal.getTime();
+        assertEquals(0, index.getMonthCount(april));
+        cal.clear();
+        cal.set(2020, 2, 1);
+        assertEquals(cal.getTime(), index.getPrevMonth(april));
+        cal.set(2020, 5, 1);
+        assertEquals(cal.getTime(), index.getNextMonth(april));
+        assertEquals(noon20, index.getNextDay(march5));
+        assertEquals(noon5, index.getPrevDay(noon20));
+        assertNull(index.getPrevDay(march5));
+
+        // publishing the draft rebuilds the index
+        WeblogEntry draft = mgr.getWeblogEntry(ids.get(4));
+        draft.setStatus(PubStatus.PUBLISHED);
+        mgr.saveWeblogEntry(draft);
+        TestUtils.endSession(true);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        index = mgr.getArchiveIndex(testWeblog);
+        assertEquals(5, index.getEntryCount());
+        assertEquals(1, index.getMonthCount(april));
+
+        // an entry published for later today isn't linked before it is live
+        testUser = TestUtils.getManagedUser(testUser);
+        WeblogEntry later = TestUtils.setupWeblogEntry("archiveLater", testWeblog, testUser);
+        later.setPubTime(new Timestamp(System.currentTimeMillis() + 2000));
+        mgr.saveWeblogEntry(later);
+        ids.add(later.getId());
+        TestUtils.endSession(true);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        index = mgr.getArchiveIndex(testWeblog);
+        assertEquals(5, index.getEntryCount());
+        assertEquals(0, index.getDayCount(later.getPubTime()));
+        assertTrue(index.isCurrent(new Date()));
+        cal.clear();
+        cal.set(2020, 5, 1);
+        assertNull(index.getNextMonth(cal.getTime()));
+
+        // once it is, the index is rebuilt
+        Thread.sleep(2500);
+        assertFalse(index.isCurrent(new Date()));
+        index = mgr.getArchiveIndex(testWeblog);
+        assertEquals(6, index.getEntryCount());
+        assertEquals(1, index.getDayCount(later.getPubTime()));
+
+        for (String id : ids) {
+            TestUtils.teardownWeblogEntry(id);
+        }
+        TestUtils.endSession(true);
+
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        assertEquals(0, mgr.getArchiveIndex(testWeblog).getEntryCount());
+    }
+
+
     public void testRemoveEntryTagCascading() throws Exception {
 
         WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business.runnable;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
+import org.apache.roller.weblogger.pojos.JobRecord;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
+
+
+/**
+ * Test chunked and resumable bulk comment moderation.
+ */
+public class CommentModerationJobTest extends TestCase {
+
+    private User testUser = null;
+    private Weblog testWeblog = null;
+    private WeblogEntry testEntry = null;
+
+
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+
+        testUser = TestUtils.setupUser("commentModerationUser");
+        testWeblog = TestUtils.setupWeblog("commentModerationWeblog", testUser);
+        testEntry = TestUtils.setupWeblogEntry("commentModerationEntry",
+                testWeblog, testUser);
+        TestUtils.endSession(true);
+    }
+
+    public void tearDown() throws Exception {
+        TestUtils.teardownWeblog(testWeblog.getId());
+        TestUtils.teardownUser(testUser.getUserName());
+        TestUtils.endSession(true);
+    }
+
+
+    public void testDeleteAndUpdateInChunks() throws Exception {
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        for (int i = 0; i < 5; i++) {
+            saveComment("buy cheap pills " + i);
+        }
+        saveComment("nice post");
+        saveComment("thanks for writing this");
+        TestUtils.endSession(true);
+
+        CommentSearchCriteria csc = new CommentSearchCriteria();
+        csc.setWeblog(testWeblog);
+        csc.setSearchText("cheap pills");
+        waitForIndex(csc, 5);
+
+        // delete with chunks smaller than the number of matches
+        CommentModerationJob job = new CommentModerationJob(
+                WebloggerFactory.getWeblogger(), csc, null, 2);
+        job.execute();
+        TestUtils.endSession(true);
+
+        assertEquals(CommentModerationJob.State.COMPLETED, job.getState());
+        assertEquals(5, job.getProcessed());
+        assertEquals(1, job.getWeblogCount());
+        assertEquals(100, job.getPercentComplete());
+
+        CommentSearchCriteria all = new CommentSearchCriteria();
+        all.setWeblog(testWeblog);
+        assertEquals(2, mgr.getComments(all).size());
+
+        // mark the rest as spam
+        job = new CommentModerationJob(WebloggerFactory.getWeblogger(), all,
+                ApprovalStatus.SPAM, 1);
+        job.execute();
+        TestUtils.endSession(true);
+
+        assertEquals(CommentModerationJob.State.COMPLETED, job.getState());
+        assertEquals(2, job.getProcessed());
+
+        all.setStatus(ApprovalStatus.SPAM);
+        assertEquals(2, mgr.getCommentCount(all));
+        all.setStatus(ApprovalStatus.APPROVED);
+        assertEquals(0, mgr.getCommentCount(all));
+    }
+
+
+    public void testRemoveMatchingComments() throws Exception {
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        saveComment("deleteme 1");
+        saveComment("deleteme 2");
+        saveComment("saveme");
+        TestUtils.endSession(true);
+
+        CommentSearchCriteria csc = new CommentSearchCriteria();
+        csc.setWeblog(testWeblog);
+        csc.setSearchText("deleteme");
+        waitForIndex(csc, 2);
+
+        int deleted = mgr.removeMatchingComments(testWeblog, null, "deleteme",
+                null, null, null);
+        TestUtils.endSession(true);
+        assertEquals(2, deleted);
+
+        CommentSearchCriteria all = new CommentSearchCriteria();
+        all.setWeblog(testWeblog);
+        assertEquals(1, mgr.getCommentCount(all));
+    }
+
+
+    public void testResumeAfterInterrupt() throws Exception {
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        for (int i = 0; i < 5; i++) {
+            saveComment("resume me " + i);
+        }
+        TestUtils.endSession(true);
+
+        CommentSearchCriteria csc = new CommentSearchCriteria();
+        csc.setWeblog(testWeblog);
+        csc.setSearchText("resume me");
+        waitForIndex(csc, 5);
+
+        // interrupt the job after its first chunk
+        CommentModerationJob job = new CommentModerationJob(
+                WebloggerFactory.getWeblogger(), csc, null, 2);
+        final int[] checkpoints = new int[1];
+        job.setCheckpointer(new ResumableJob.Checkpointer() {
+            public void checkpoint() {
+                checkpoints[0]++;
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            job.execute();
+        } finally {
+            Thread.interrupted();
+        }
+        TestUtils.endSession(true);
+
+        assertFalse(job.isFinished());
+        assertEquals(1, checkpoints[0]);
+        assertEquals(2, job.getProcessed());
+
+        CommentSearchCriteria all = new CommentSearchCriteria();
+        all.setWeblog(testWeblog);
+        assertEquals(3, mgr.getCommentCount(all));
+
+        // resume from the saved state
+        CommentModerationJob resumed = new CommentModerationJob();
+        resumed.input(new HashMap<String, Object>(job.output()));
+        resumed.execute();
+        TestUtils.endSession(true);
+
+        assertEquals(CommentModerationJob.State.COMPLETED, resumed.getState());
+        assertEquals(5, resumed.getProcessed());
+        assertEquals(1, resumed.getWeblogCount());
+        assertEquals(0, mgr.getCommentCount(all));
+    }
+
+
+    public void testSubmitJob() throws Exception {
+        ThreadManager tmgr = WebloggerFactory.getWeblogger().getThreadManager();
+
+        saveComment("submitted 1");
+        saveComment("submitted 2");
+        TestUtils.endSession(true);
+
+        CommentSearchCriteria csc = new CommentSearchCriteria();
+        csc.setWeblog(testWeblog);
+        CommentModerationJob job = CommentModerationJob.start(
+                WebloggerFactory.getWeblogger(), csc, ApprovalStatus.SPAM);
+        TestUtils.endSession(true);
+        assertNotNull(job.getId());
+        assertSame(job, CommentModerationJob.getJob(job.getId()));
+
+        // wait for the job record to be completed
+        JobRecord record = null;
+        for (int i = 0; i < 100; i++) {
+            record = tmgr.getJobRecord(job.getId());
+            TestUtils.endSession(true);
+            if (JobRecord.State.COMPLETED.name().equals(record.getState())) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(JobRecord.State.COMPLETED.name(), record.getState());
+        assertEquals(1, record.getAttempts());
+        assertNotNull(record.getFinished());
+        assertEquals("2", record.getDataMap().get("processed"));
+        assertEquals(CommentModerationJob.State.COMPLETED, job.getState());
+    }
+
+
+    public void testFailedJobs() throws Exception {
+        ThreadManager tmgr = WebloggerFactory.getWeblogger().getThreadManager();
+
+        // a job which throws is marked failed rather than resumed forever
+        String id = tmgr.submitJob("FailingJob", new FailingJob());
+        TestUtils.endSession(true);
+        JobRecord record = waitForFinish(tmgr, id);
+        assertEquals(JobRecord.State.FAILED.name(), record.getState());
+        assertEquals(1, record.getAttempts());
+        assertTrue(record.getLastError().contains("boom"));
+
+        // a job which was started too often is given up
+        record = new JobRecord("FailingJob", FailingJob.class.getName());
+        record.setAttempts(3);
+        tmgr.saveJobRecord(record);
+        TestUtils.endSession(true);
+        ((ThreadManagerImpl) tmgr).resumeJobs();
+        record = waitForFinish(tmgr, record.getId());
+        assertEquals(JobRecord.State.FAILED.name(), record.getState());
+        assertEquals(3, record.getAttempts());
+        assertEquals("Gave up after 3 attempts", record.getLastError());
+    }
+
+
+    /**
+     * Wait for comments saved in the background to be searchable.
+     */
+    private void waitForIndex(CommentSearchCriteria csc, long expected) throws Exception {
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        for (int i = 0; i < 100 && mgr.getCommentCount(csc) != expected; i++) {
+            Thread.sleep(100);
+        }
+        TestUtils.endSession(true);
+        assertEquals(expected, mgr.getCommentCount(csc));
+    }
+
+
+    private JobRecord waitForFinish(ThreadManager tmgr, String id) throws Exception {
+        JobRecord record = null;
+        for (int i = 0; i < 100; i++) {
+            record = tmgr.getJobRecord(id);
+            TestUtils.endSession(true);
+            if (record.getFinished() != null) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        return record;
+    }
+
+
+    private void saveComment(String content) throws Exception {
+        WeblogEntryComment comment = new WeblogEntryComment();
+        comment.setName("test");
+        comment.setEmail("test");
+        comment.setUrl("test");
+        comment.setRemoteHost("foofoo");
+        comment.setContent(content);
+        comment.setPostTime(new Timestamp(System.currentTimeMillis()));
+        comment.setWeblogEntry(TestUtils.getManagedWeblogEntry(testEntry));
+        comment.setStatus(ApprovalStatus.APPROVED);
+        WebloggerFactory.getWeblogger().getWeblogEntryManager().saveComment(comment);
+    }
+
+
+    /**
+     * Job which always throws.
+     */
+    public static class FailingJob implements ResumableJob {
+
+        public void execute() {
+            throw new IllegalStateException("boom");
+        }
+
+        public void input(Map<String, Object> input) {
+        }
+
+        public Map<String, Object> output() {
+            return Collections.emptyMap();
+        }
+
+        public void setCheckpointer(Checkpointer checkpointer) {
+        }
+
+        public boolean isFinished() {
+            return false;
+        }
+
+        public String getError() {
+            return null;
+        }
+    }
+
+}
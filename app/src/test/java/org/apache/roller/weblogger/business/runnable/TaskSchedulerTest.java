@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business.runnable;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.TestUtils;
+
+
+/**
+ * Test run time calculations and the delay queue of the TaskScheduler.
+ */
+public class TaskSchedulerTest extends TestCase {
+
+    private TimeZone defaultTimeZone = null;
+
+
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+    }
+
+    public void tearDown() throws Exception {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+
+    public void testFirstRunTime() throws Exception {
+        RollerTask task = new StubTask("immediate", 5);
+        long now = time(2026, Calendar.JUNE, 10, 12, 0);
+
+        // never run or overdue, run as soon as allowed
+        assertEquals(now, TaskScheduler.getFirstRunTime(task, new Date(0), now));
+        assertEquals(now, TaskScheduler.getFirstRunTime(task, null, now));
+
+        // ran recently, wait for the interval
+        long lastRun = now - 2 * RollerConstants.MIN_IN_MS;
+        assertEquals(lastRun + 5 * RollerConstants.MIN_IN_MS,
+                TaskScheduler.getFirstRunTime(task, new Date(lastRun), now));
+    }
+
+
+    public void testFirstRunTimeDaily() throws Exception {
+        RollerTask task = new StubTask("startOfDay", 1440);
+        long yesterday = time(2026, Calendar.JUNE, 9, 0, 0);
+        long today = time(2026, Calendar.JUNE, 10, 0, 0);
+        long tomorrow = time(2026, Calendar.JUNE, 11, 0, 0);
+
+        // missed run, but still early in the day
+        long now = today + RollerConstants.MIN_IN_MS;
+        assertEquals(now, TaskScheduler.getFirstRunTime(task, new Date(yesterday), now));
+
+        // missed run late in the day, wait for tomorrow
+        now = today + 10 * RollerConstants.HOUR_IN_MS;
+        assertEquals(tomorrow, TaskScheduler.getFirstRunTime(task, new Date(yesterday), now));
+        assertEquals(tomorrow, TaskScheduler.getFirstRunTime(task, new Date(0), now));
+
+        // ran today already
+        assertEquals(tomorrow, TaskScheduler.getFirstRunTime(task, new Date(today), now));
+    }
+
+
+    public void testNextRunTime() throws Exception {
+        RollerTask task = new StubTask("immediate", 1);
+        long last = time(2026, Calendar.JUNE, 10, 12, 0);
+
+        // on time, next run is one interval later
+        long[] next = TaskScheduler.getNextRunTime(task, last, last + 20 * RollerConstants.SEC_IN_MS);
+        assertEquals(last + RollerConstants.MIN_IN_MS, next[0]);
+        assertEquals(0, next[1]);
+
+        // overran, skip to the first scheduled time after now
+        next = TaskScheduler.getNextRunTime(task, last, last + 210 * RollerConstants.SEC_IN_MS);
+        assertEquals(last + 4 * RollerConstants.MIN_IN_MS, next[0]);
+        assertEquals(3, next[1]);
+    }
+
+
+    public void testNextRunTimeAcrossDaylightSaving() throws Exception {
+        RollerTask daily = new StubTask("startOfDay", 1440);
+
+        // 23 hour day, clocks go forward on March 8th 2026
+        long last = time(2026, Calendar.MARCH, 8, 0, 0);
+        long[] next = TaskScheduler.getNextRunTime(daily, last, last + RollerConstants.MIN_IN_MS);
+        assertEquals(time(2026, Calendar.MARCH, 9, 0, 0), next[0]);
+        assertEquals(0, next[1]);
+
+        // 25 hour day, clocks go back on November 1st 2026
+        last = time(2026, Calendar.NOVEMBER, 1, 0, 0);
+        next = TaskScheduler.getNextRunTime(daily, last, last + RollerConstants.MIN_IN_MS);
+        assertEquals(time(2026, Calendar.NOVEMBER, 2, 0, 0), next[0]);
+    }
+
+
+    public void testScheduledRunsInOrder() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(Collections.<RollerTask>emptyList(), 0);
+
+        final StringBuffer order = new StringBuffer();
+        final CountDownLatch done = new CountDownLatch(1);
+        scheduler.scheduleRunnable("slow", new Runnable() {
+            public void run() {
+                order.append("slow,");
+                done.countDown();
+            }
+        }, 500, TimeUnit.MILLISECONDS);
+        scheduler.scheduleRunnable("fast", new Runnable() {
+            public void run() {
+                order.append("fast,");
+            }
+        }, 150, TimeUnit.MILLISECONDS);
+
+        Thread thread = new Thread(scheduler, "TaskSchedulerTest");
+        thread.start();
+        try {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown();
+            thread.interrupt();
+        }
+
+        // fast runs a few times before slow runs once
+        assertTrue(order.toString().startsWith("fast,fast,"));
+        assertTrue(order.toString().contains("slow,"));
+
+        TaskStats fast = null;
+        for (TaskStats stats : scheduler.getStats()) {
+            if ("fast".equals(stats.getName())) {
+                fast = stats;
+            }
+        }
+        assertNotNull(fast);
+        assertTrue(fast.getRuns() >= 2);
+        assertEquals(0, fast.getFailures());
+    }
+
+
+    private static long time(int year, int month, int day, int hour, int minute) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(year, month, day, hour, minute);
+        return cal.getTimeInMillis();
+    }
+
+
+    /**
+     * Task which only provides a schedule.
+     */
+    private static class StubTask extends RollerTask {
+
+        private final String startTimeDesc;
+        private final int interval;
+
+        StubTask(String startTimeDesc, int interval) {
+            this.startTimeDesc = startTimeDesc;
+            this.interval = interval;
+        }
+
+        public String getClientId() {
+            return "test";
+        }
+
+        public Date getStartTime(Date currentTime) {
+            return getAdjustedTime(currentTime, startTimeDesc);
+        }
+
+        public String getStartTimeDesc() {
+            return startTimeDesc;
+        }
+
+        public int getInterval() {
+            return interval;
+        }
+
+        public int getLeaseTime() {
+            return 1;
+        }
+
+        public void run() {
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+
+package org.apache.roller.weblogger.business.runnable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import junit.framework.TestCase;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+
+
+/**
+ * Test worker pools and the thread manager's foreground execution.
+ */
+public class WorkerPoolTest extends TestCase {
+
+    public void setUp() throws Exception {
+        // setup weblogger
+        TestUtils.setupWeblogger();
+    }
+
+
+    public void testPoolStats() throws Exception {
+        WorkerPool pool = new WorkerPool("test", 1, 1);
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            Runnable blocker = new Runnable() {
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            };
+
+            // one running, one queued, the third is rejected
+            Future<?> running = pool.submit(blocker);
+            Future<?> queued = pool.submit(blocker);
+            try {
+                pool.submit(blocker);
+                fail("Expected full queue to reject task");
+            } catch (RejectedExecutionException expected) {
+                // expected
+            }
+            assertEquals(1, pool.getRejectedCount());
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+
+            assertEquals(2, pool.getSubmittedCount());
+            assertEquals(2, pool.getCompletedCount());
+            assertEquals(0, pool.getFailedCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+
+    public void testForegroundCompletesPromptly() throws Exception {
+        ThreadManager threadMgr = WebloggerFactory.getWeblogger().getThreadManager();
+
+        final boolean[] ran = new boolean[1];
+        long start = System.currentTimeMillis();
+        threadMgr.executeInForeground(ThreadManager.DEFAULT_POOL, new Runnable() {
+            public void run() {
+                ran[0] = true;
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(ran[0]);
+        // no more waiting for a polling interval to notice completion
+        assertTrue("Foreground task took " + elapsed + "ms", elapsed < 500);
+    }
+
+
+    public void testForegroundTimeout() throws Exception {
+        ThreadManager threadMgr = WebloggerFactory.getWeblogger().getThreadManager();
+
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        try {
+            threadMgr.executeInForeground(ThreadManager.DEFAULT_POOL, new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException ex) {
+                        interrupted.countDown();
+                    }
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+            fail("Expected foreground task to time out");
+        } catch (TimeoutException expected) {
+            // expected
+        }
+
+        // the timed out task is cancelled
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+
+    public void testExceptionPropagation() throws Exception {
+        ThreadManager threadMgr = WebloggerFactory.getWeblogger().getThreadManager();
+
+        try {
+            threadMgr.executeInForeground(ThreadManager.DEFAULT_POOL, new Runnable() {
+                public void run() {
+                    throw new IllegalArgumentException("boom");
+                }
+            }, 0, TimeUnit.MILLISECONDS);
+            fail("Expected exception from foreground task");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("boom", expected.getMessage());
+        }
+
+        Future<String> future = threadMgr.submit(ThreadManager.PINGS_POOL, new Callable<String>() {
+            public String call() throws Exception {
+                throw new Exception("checked");
+            }
+        });
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected exception from submitted task");
+        } catch (ExecutionException expected) {
+            assertEquals("checked", expected.getCause().getMessage());
+        }
+    }
+
+}
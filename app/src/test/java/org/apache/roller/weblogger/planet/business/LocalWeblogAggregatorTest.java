@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.planet.business;
+
+import java.util.Date;
+import junit.framework.TestCase;
+import org.apache.roller.planet.business.PlanetManager;
+import org.apache.roller.planet.pojos.Subscription;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+
+
+/**
+ * Test aggregation of local weblogs.
+ */
+public class LocalWeblogAggregatorTest extends TestCase {
+
+    private User testUser = null;
+    private Weblog testWeblog = null;
+    private String subId = null;
+
+
+    @Override
+    public void setUp() throws Exception {
+
+        TestUtils.setupWeblogger();
+
+        testUser = TestUtils.setupUser("localAggregatorTestUser");
+        testWeblog = TestUtils.setupWeblog("localAggregatorTestWeblog", testUser);
+        TestUtils.setupWeblogEntry("localAggregatorEntry", testWeblog, testUser);
+
+        Subscription sub = new Subscription();
+        sub.setTitle("old title");
+        sub.setFeedURL(LocalWeblogAggregator.FEED_URL_PREFIX + testWeblog.getHandle());
+        sub.setSiteURL("http://example.com");
+        sub.setLastUpdated(new Date(0));
+        WebloggerFactory.getWeblogger().getPlanetManager().saveSubscription(sub);
+        subId = sub.getId();
+        TestUtils.endSession(true);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+
+        PlanetManager pmgr = WebloggerFactory.getWeblogger().getPlanetManager();
+        pmgr.deleteSubscription(pmgr.getSubscriptionById(subId));
+        TestUtils.endSession(true);
+
+        TestUtils.teardownWeblog(testWeblog.getId());
+        TestUtils.teardownUser(testUser.getUserName());
+        TestUtils.endSession(true);
+    }
+
+
+    public void testUpdate() throws Exception {
+
+        PlanetManager pmgr = WebloggerFactory.getWeblogger().getPlanetManager();
+
+        // the new weblog is aggregated
+        assertTrue(new LocalWeblogAggregator().update() > 0);
+        TestUtils.endSession(true);
+
+        Subscription sub = pmgr.getSubscriptionById(subId);
+        assertEquals(testWeblog.getName(), sub.getTitle());
+        assertEquals(1, sub.getEntries().size());
+        assertEquals("localAggregatorEntry", sub.getEntries().iterator().next().getTitle());
+        TestUtils.endSession(true);
+
+        // unchanged weblogs are skipped
+        assertEquals(0, new LocalWeblogAggregator().update());
+        TestUtils.endSession(true);
+
+        // a new entry changes the weblog
+        testWeblog = TestUtils.getManagedWebsite(testWeblog);
+        WeblogEntry entry = TestUtils.setupWeblogEntry("localAggregatorEntry2", testWeblog, testUser);
+        entry.getWebsite().setLastModified(new Date(System.currentTimeMillis() + 1000));
+        WebloggerFactory.getWeblogger().getWeblogManager().saveWeblog(entry.getWebsite());
+        TestUtils.endSession(true);
+
+        assertEquals(1, new LocalWeblogAggregator().update());
+        TestUtils.endSession(true);
+        assertEquals(2, pmgr.getSubscriptionById(subId).getEntries().size());
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.apache.roller.weblogger.WebloggerException;
+
+
+/**
+ * Test ModelLoader.
+ */
+public class ModelLoaderTest extends TestCase {
+
+    private static final String MODELS =
+            ConfigModel.class.getName() + "," + CountingLazyModel.class.getName();
+
+
+    public void testLoadModels() throws Exception {
+        Map<String, Object> models = new HashMap<String, Object>();
+        ModelLoader.loadModels(MODELS, models, new HashMap(), true);
+
+        assertTrue(models.get("config") instanceof ConfigModel);
+        assertTrue(models.get("counting") instanceof CountingLazyModel);
+
+        // lazy models are initialized right away in a plain map
+        assertEquals(1, ((CountingLazyModel) models.get("counting")).inits);
+    }
+
+
+    public void testLazyModelMap() throws Exception {
+        Map<String, Object> models = new LazyModelMap();
+        ModelLoader.loadModels(MODELS, models, new HashMap(), true);
+
+        assertTrue(models.containsKey("counting"));
+
+        CountingLazyModel model = (CountingLazyModel) models.get("counting");
+        assertEquals(1, model.inits);
+
+        // only initialized once
+        models.get("counting");
+        assertEquals(1, model.inits);
+    }
+
+
+    public void testBadModels() throws Exception {
+        String badModels = "org.apache.roller.NoSuchModel," + ConfigModel.class.getName();
+
+        try {
+            ModelLoader.loadModels(badModels, new HashMap<String, Object>(), new HashMap(), true);
+            fail("Expected exception for unknown model class");
+        } catch (WebloggerException expected) {
+            // expected
+        }
+
+        // when not failing the bad model is skipped
+        Map<String, Object> models = new HashMap<String, Object>();
+        ModelLoader.loadModels(badModels, models, new HashMap(), false);
+        assertEquals(1, models.size());
+        assertNotNull(models.get("config"));
+    }
+
+
+    public void testInitStats() throws Exception {
+        ModelLoader.loadModels(MODELS, new HashMap<String, Object>(), new HashMap(), true);
+
+        ModelLoader.ModelInitStats stats =
+                ModelLoader.getInitStats().get(CountingLazyModel.class.getName());
+        assertNotNull(stats);
+        assertTrue(stats.getInitCount() > 0);
+    }
+
+
+    /**
+     * Lazy model which counts how often it is initialized.
+     */
+    public static class CountingLazyModel implements LazyModel {
+
+        private int inits = 0;
+
+        public String getModelName() {
+            return "counting";
+        }
+
+        public void init(Map params) throws WebloggerException {
+            inits++;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.plugins.comments;
+
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.util.I18nMessages;
+import org.apache.roller.weblogger.util.RollerMessages;
+
+
+/**
+ * Test background post processing of comments.
+ */
+public class CommentPostProcessorTest extends TestCase {
+
+    public static Log log = LogFactory.getLog(CommentPostProcessorTest.class);
+
+    User testUser = null;
+    Weblog testWeblog = null;
+    WeblogEntry testEntry = null;
+
+
+    public void setUp() throws Exception {
+        // setup weblogger
+        TestUtils.setupWeblogger();
+
+        try {
+            testUser = TestUtils.setupUser("postProcessorTestUser");
+            testWeblog = TestUtils.setupWeblog("postProcessorTestWeblog", testUser);
+            testEntry = TestUtils.setupWeblogEntry("postProcessorTestEntry", testWeblog, testUser);
+            TestUtils.endSession(true);
+        } catch (Exception ex) {
+            log.error(ex);
+            throw new Exception("Test setup failed", ex);
+        }
+    }
+
+    public void tearDown() throws Exception {
+        try {
+            TestUtils.teardownWeblogEntry(testEntry.getId());
+            TestUtils.teardownWeblog(testWeblog.getId());
+            TestUtils.teardownUser(testUser.getUserName());
+            TestUtils.endSession(true);
+        } catch (Exception ex) {
+            log.error(ex);
+            throw new Exception("Test teardown failed", ex);
+        }
+    }
+
+
+    public void testBackgroundProcessing() throws Exception {
+        WeblogEntryComment comment = TestUtils.setupComment("processed comment", testEntry);
+        TestUtils.endSession(true);
+
+        CommentPostProcessor processor = new CommentPostProcessor(true, 3, 1);
+        try {
+            processor.process(comment, new RollerMessages(),
+                    I18nMessages.getMessages("en"), true, true);
+            assertEquals(2, processor.getScheduledCount());
+
+            waitForSteps(processor, 2);
+            assertEquals(2, processor.getCompletedCount());
+            assertEquals(0, processor.getFailedCount());
+        } finally {
+            processor.shutdown();
+            TestUtils.teardownComment(comment.getId());
+            TestUtils.endSession(true);
+        }
+    }
+
+
+    public void testRemovedCommentIsSkipped() throws Exception {
+        WeblogEntryComment comment = TestUtils.setupComment("removed comment", testEntry);
+        TestUtils.endSession(true);
+        TestUtils.teardownComment(comment.getId());
+        TestUtils.endSession(true);
+
+        CommentPostProcessor processor = new CommentPostProcessor(false, 3, 1);
+        try {
+            processor.process(comment, new RollerMessages(),
+                    I18nMessages.getMessages("en"), false, true);
+
+            // runs inline, nothing left to do for a comment which is gone
+            assertEquals(2, processor.getCompletedCount());
+            assertEquals(0, processor.getRetriedCount());
+            assertEquals(0, processor.getFailedCount());
+        } finally {
+            processor.shutdown();
+        }
+    }
+
+
+    private void waitForSteps(CommentPostProcessor processor, int steps)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (processor.getCompletedCount() + processor.getFailedCount() < steps
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+}
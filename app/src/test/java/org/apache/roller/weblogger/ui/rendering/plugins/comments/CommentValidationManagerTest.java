@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.plugins.comments;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.util.RollerMessages;
+
+
+/**
+ * Test comment validation, using a local stand-in for the Akismet service.
+ */
+public class CommentValidationManagerTest extends TestCase {
+
+    private HttpServer akismet = null;
+    private final AtomicInteger akismetCalls = new AtomicInteger(0);
+
+    // what the stand-in answers, and how long it takes to do so
+    private volatile String akismetAnswer = "false";
+    private volatile long akismetDelay = 0;
+
+
+    public void setUp() throws Exception {
+        // setup weblogger
+        TestUtils.setupWeblogger();
+
+        akismet = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        akismet.createContext("/1.1/comment-check", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                akismetCalls.incrementAndGet();
+                InputStream in = exchange.getRequestBody();
+                while (in.read() != -1) {
+                    // drain request
+                }
+                try {
+                    Thread.sleep(akismetDelay);
+                } catch (InterruptedException ignored) {
+                }
+                byte[] body = akismetAnswer.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        akismet.start();
+    }
+
+    public void tearDown() throws Exception {
+        akismet.stop(0);
+    }
+
+
+    public void testShortCircuit() throws Exception {
+        CommentValidationManager manager = new CommentValidationManager(true, 5, 0, 0);
+        CountingValidator spam = new CountingValidator("spam", 0, 0);
+        CountingValidator never = new CountingValidator("never", RollerConstants.PERCENT_100, 0);
+        manager.addCommentValidator(spam);
+        manager.addCommentValidator(never);
+
+        int score = manager.validateComment(createComment("short circuit"), new RollerMessages());
+        assertTrue(score < RollerConstants.PERCENT_100);
+        assertEquals(1, spam.calls.get());
+        assertEquals(0, never.calls.get());
+    }
+
+
+    public void testRemoteVerdictCached() throws Exception {
+        CommentValidationManager manager = new CommentValidationManager(true, 5, 60, 100);
+        manager.addCommentValidator(createAkismet(5000));
+
+        WeblogEntryComment comment = createComment("cached ham");
+        assertEquals(RollerConstants.PERCENT_100, manager.validateComment(comment, new RollerMessages()));
+        assertEquals(RollerConstants.PERCENT_100, manager.validateComment(comment, new RollerMessages()));
+
+        // second validation is answered from the cache
+        assertEquals(1, akismetCalls.get());
+        CommentValidationManager.ValidatorStats stats =
+                manager.getStats().values().iterator().next();
+        assertEquals(1, stats.getCallCount());
+        assertEquals(1, stats.getCacheHitCount());
+
+        // different content is a different verdict
+        manager.validateComment(createComment("other ham"), new RollerMessages());
+        assertEquals(2, akismetCalls.get());
+    }
+
+
+    public void testRemoteSpam() throws Exception {
+        akismetAnswer = "true";
+        CommentValidationManager manager = new CommentValidationManager(true, 5, 60, 100);
+        manager.addCommentValidator(createAkismet(5000));
+
+        RollerMessages messages = new RollerMessages();
+        assertEquals(0, manager.validateComment(createComment("spam"), messages));
+        assertEquals(1, messages.getErrorCount());
+    }
+
+
+    public void testRemoteTimeout() throws Exception {
+        akismetDelay = 3000;
+        CommentValidationManager manager = new CommentValidationManager(true, 1, 60, 100);
+        manager.addCommentValidator(createAkismet(5000));
+
+        RollerMessages messages = new RollerMessages();
+        long start = System.currentTimeMillis();
+        int score = manager.validateComment(createComment("slow"), messages);
+        long elapsed = System.currentTimeMillis() - start;
+
+        // no answer is no verdict, Akismet fails closed by default
+        assertEquals(0, score);
+        assertTrue("Validation took " + elapsed + "ms", elapsed < 2500);
+        assertEquals(1, messages.getErrorCount());
+        assertEquals(1, manager.getStats().values().iterator().next().getTimeoutCount());
+    }
+
+
+    public void testRemoteFailOpen() throws Exception {
+        CommentValidationManager manager = new CommentValidationManager(true, 1, 0, 0);
+        manager.addCommentValidator(new CountingRemoteValidator("open", 3000, true));
+
+        RollerMessages messages = new RollerMessages();
+        assertEquals(RollerConstants.PERCENT_100,
+                manager.validateComment(createComment("slow but open"), messages));
+        assertEquals(0, messages.getErrorCount());
+    }
+
+
+    public void testRemoteDeadline() throws Exception {
+        CommentValidationManager manager = new CommentValidationManager(true, 1, 0, 0);
+        CountingRemoteValidator remote = new CountingRemoteValidator("remote", 0, false);
+        manager.addCommentValidator(remote);
+
+        long start = System.currentTimeMillis();
+        manager.validateComment(createComment("deadline"), new RollerMessages());
+
+        // validator is told when the manager stops waiting
+        assertTrue(remote.deadline >= start + 1000);
+        assertTrue(remote.deadline <= System.currentTimeMillis() + 1000);
+    }
+
+
+    public void testRemoteErrorNotCached() throws Exception {
+        akismetAnswer = "invalid";
+        CommentValidationManager manager = new CommentValidationManager(true, 5, 60, 100);
+        manager.addCommentValidator(createAkismet(5000));
+
+        WeblogEntryComment comment = createComment("outage");
+        RollerMessages messages = new RollerMessages();
+        assertEquals(0, manager.validateComment(comment, messages));
+        assertEquals(1, messages.getErrorCount());
+
+        // service is back, its answer is used
+        akismetAnswer = "false";
+        assertEquals(RollerConstants.PERCENT_100, manager.validateComment(comment, new RollerMessages()));
+        assertEquals(2, akismetCalls.get());
+        CommentValidationManager.ValidatorStats stats =
+                manager.getStats().values().iterator().next();
+        assertEquals(1, stats.getUnknownCount());
+        assertEquals(0, stats.getSpamCount());
+    }
+
+
+    public void testRemoteValidatorsRunConcurrently() throws Exception {
+        CommentValidationManager manager = new CommentValidationManager(true, 5, 0, 0);
+        CountingValidator local = new CountingValidator("local", RollerConstants.PERCENT_100, 0);
+        manager.addCommentValidator(new CountingRemoteValidator("remote1", 500, false));
+        manager.addCommentValidator(local);
+        manager.addCommentValidator(new CountingRemoteValidator("remote2", 500, false));
+
+        long start = System.currentTimeMillis();
+        int score = manager.validateComment(createComment("concurrent"), new RollerMessages());
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(RollerConstants.PERCENT_100, score);
+        assertEquals(1, local.calls.get());
+        assertTrue("Validation took " + elapsed + "ms", elapsed < 950);
+    }
+
+
+    private AkismetCommentValidator createAkismet(int timeout) {
+        return new AkismetCommentValidator("testkey", "http://127.0.0.1:"
+                + akismet.getAddress().getPort() + "/1.1/comment-check", timeout);
+    }
+
+    private WeblogEntryComment createComment(String content) {
+        Weblog weblog = new Weblog();
+        weblog.setHandle("validationtest");
+
+        WeblogEntry entry = new WeblogEntry();
+        entry.setWebsite(weblog);
+        entry.setAnchor("validation_test");
+
+        WeblogEntryComment comment = new WeblogEntryComment();
+        comment.setWeblogEntry(entry);
+        comment.setName("tester");
+        comment.setEmail("tester@example.com");
+        comment.setRemoteHost("127.0.0.1");
+        comment.setContent(content);
+        return comment;
+    }
+
+
+    /**
+     * Local validator which returns a fixed score.
+     */
+    private static class CountingValidator implements CommentValidator {
+
+        final AtomicInteger calls = new AtomicInteger(0);
+        private final String name;
+        private final int score;
+        private final long delay;
+
+        CountingValidator(String name, int score, long delay) {
+            this.name = name;
+            this.score = score;
+            this.delay = delay;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int validate(WeblogEntryComment comment, RollerMessages messages) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ignored) {
+            }
+            return score;
+        }
+    }
+
+
+    /**
+     * Slow remote validator which finds everything valid.
+     */
+    private static class CountingRemoteValidator extends CountingValidator
+            implements RemoteCommentValidator {
+
+        private final boolean failOpen;
+        volatile long deadline = 0;
+
+        CountingRemoteValidator(String name, long delay, boolean failOpen) {
+            super(name, RollerConstants.PERCENT_100, delay);
+            this.failOpen = failOpen;
+        }
+
+        public int validate(WeblogEntryComment comment, RollerMessages messages, long deadline) {
+            this.deadline = deadline;
+            return validate(comment, messages);
+        }
+
+        public boolean isFailOpen() {
+            return failOpen;
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.io.File;
+import junit.framework.TestCase;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WeblogManager;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+
+
+/**
+ * Test saving the rendering caches and restoring what is still valid.
+ */
+public class CacheSnapshotManagerTest extends TestCase {
+
+    public static Log log = LogFactory.getLog(CacheSnapshotManagerTest.class);
+
+    private User testUser = null;
+    private Weblog testWeblog = null;
+    private File file = null;
+
+
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+
+        try {
+            testUser = TestUtils.setupUser("snapshotTestUser");
+            testWeblog = TestUtils.setupWeblog("snapshotTestWeblog", testUser);
+            TestUtils.endSession(true);
+        } catch (Exception ex) {
+            log.error(ex);
+            throw new Exception("Test setup failed", ex);
+        }
+
+        file = File.createTempFile("snapshot", ".dat");
+        file.delete();
+        clearCaches();
+    }
+
+
+    public void tearDown() throws Exception {
+        clearCaches();
+        file.delete();
+        try {
+            TestUtils.teardownWeblog(testWeblog.getId());
+            TestUtils.teardownUser(testUser.getUserName());
+            TestUtils.endSession(true);
+        } catch (Exception ex) {
+            log.error(ex);
+            throw new Exception("Test teardown failed", ex);
+        }
+    }
+
+
+    public void testSaveRestore() throws Exception {
+        WeblogManager mgr = WebloggerFactory.getWeblogger().getWeblogManager();
+        String handle = testWeblog.getHandle();
+        String pageKey = WeblogPageCache.CACHE_ID + ":" + handle + "/en";
+        String feedKey = WeblogFeedCache.CACHE_ID + ":" + handle + "/entries/atom";
+        long lastModified = testWeblog.getLastModified().getTime();
+
+        Thread.sleep(10);
+        WeblogPageCache.getInstance().put(pageKey, content("page"));
+        WeblogFeedCache.getInstance().put(feedKey, content("feed"));
+        SiteWideCache.getInstance().put("cache.sitewide:page/front", content("site"));
+        PlanetCache.getInstance().put("cache.planet:planet/default", content("planet"));
+
+        CacheSnapshotManager manager = new CacheSnapshotManager(file, 1024 * 1024);
+        manager.save();
+        clearCaches();
+
+        // nothing changed
+        assertEquals(4, manager.restore(mgr));
+        CachedContent page = (CachedContent) WeblogPageCache.getInstance().get(pageKey, lastModified);
+        assertEquals("page", page.getContentAsString());
+        assertNotNull(WeblogFeedCache.getInstance().get(feedKey, lastModified));
+        assertNotNull(SiteWideCache.getInstance().get("cache.sitewide:page/front"));
+        assertNotNull(PlanetCache.getInstance().get("cache.planet:planet/default"));
+
+        // a changed weblog also changes the site
+        Thread.sleep(10);
+        mgr.saveWeblog(TestUtils.getManagedWebsite(testWeblog));
+        TestUtils.endSession(true);
+        clearCaches();
+
+        assertEquals(1, manager.restore(mgr));
+        assertNull(WeblogPageCache.getInstance().get(pageKey, 0));
+        assertNull(SiteWideCache.getInstance().get("cache.sitewide:page/front"));
+        assertNotNull(PlanetCache.getInstance().get("cache.planet:planet/default"));
+    }
+
+
+    public void testWeblogHandle() throws Exception {
+        assertEquals("foo", CacheSnapshotManager.getWeblogHandle("cache.weblogpage:foo/en"));
+        assertEquals("foo", CacheSnapshotManager.getWeblogHandle("cache.weblogpage:foo"));
+        assertNull(CacheSnapshotManager.getWeblogHandle("foo"));
+    }
+
+
+    private static CachedContent content(String text) throws Exception {
+        CachedContent content = new CachedContent(16, "text/plain");
+        content.getCachedWriter().print(text);
+        content.close();
+        return content;
+    }
+
+
+    private static void clearCaches() {
+        WeblogPageCache.getInstance().clear();
+        WeblogFeedCache.getInstance().clear();
+        SiteWideCache.getInstance().clear();
+        PlanetCache.getInstance().clear();
+    }
+
+}
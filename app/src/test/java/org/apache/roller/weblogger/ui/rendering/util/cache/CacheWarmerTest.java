@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository.DeviceType;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheWarmer.HotKey;
+
+
+/**
+ * Test tracking and saving of the keys to warm.
+ */
+public class CacheWarmerTest extends TestCase {
+
+    private CacheWarmer warmer;
+
+
+    public void setUp() throws Exception {
+        warmer = new CacheWarmer(4, 3, 1, 2000);
+    }
+
+
+    public void testTracking() throws Exception {
+        track("a", "blog1", 6);
+        track("b", "blog1", 5);
+        track("c", "blog2", 1);
+        assertEquals(3, warmer.getTracked());
+
+        assertEquals(urls("/a", "/b", "/c"), urls(warmer.getHotKeys(null, 10)));
+        assertEquals(urls("/a"), urls(warmer.getHotKeys("blog1", 1)));
+
+        // keys with tabs or newlines can't be saved, so are not tracked
+        warmer.track(WeblogPageCache.CACHE_ID, "d", "blog1", null, "/d\t");
+        assertEquals(3, warmer.getTracked());
+
+        // once full, counts are halved and rare keys dropped
+        track("d", "blog2", 1);
+        track("e", "blog2", 1);
+        assertEquals(urls("/a", "/b", "/e"), urls(warmer.getHotKeys(null, 10)));
+        assertEquals(3, warmer.getHotKeys(null, 1).get(0).getHits());
+    }
+
+
+    public void testChangedKeys() throws Exception {
+        Weblog blog1 = new Weblog();
+        blog1.setHandle("blog1");
+        WeblogEntry entry = new WeblogEntry();
+        entry.setWebsite(blog1);
+        WeblogTemplate template = new WeblogTemplate();
+        template.setWeblog(blog1);
+
+        track("a", "blog1", 3);
+        track("b", "blog1", 5);
+        warmer.track(SiteWideCache.CACHE_ID, "s", "front", null, "/s");
+
+        assertTrue(warmer.getChangedKeys().isEmpty());
+
+        // template changes only affect the weblog
+        warmer.invalidate(template);
+        assertEquals(urls("/b"), urls(warmer.getChangedKeys()));
+        assertTrue(warmer.getChangedKeys().isEmpty());
+
+        // entry changes also affect the site-wide weblog
+        warmer.invalidate(entry);
+        assertEquals(urls("/b", "/s"), urls(warmer.getChangedKeys()));
+    }
+
+
+    public void testSaveLoad() throws Exception {
+        track("a", "blog1", 3);
+        track("b", "blog1", 5);
+        track("c", "blog2", 1);
+        track("d", "blog2", 2);
+
+        File file = File.createTempFile("warmup", ".txt");
+        file.deleteOnExit();
+        warmer.save(file);
+
+        // only the most requested keys are saved
+        CacheWarmer loaded = new CacheWarmer(4, 3, 1, 2000);
+        loaded.load(file);
+        assertEquals(3, loaded.getTracked());
+        assertEquals(urls("/b", "/a", "/d"), urls(loaded.getHotKeys(null, 10)));
+        assertEquals(5, loaded.getHotKeys(null, 1).get(0).getHits());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+
+    public void testDeviceType() throws Exception {
+        warmer.track(WeblogPageCache.CACHE_ID, "m", "blog1", DeviceType.mobile, "/m?q=1");
+        warmer.track(WeblogPageCache.CACHE_ID, "s", "blog1", DeviceType.standard, "/s");
+        warmer.track(WeblogPageCache.CACHE_ID, "p", "blog1", DeviceType.mobile,
+                "/p?deviceType=mobile");
+        List<String> expected = urls("/m?q=1&deviceType=mobile", "/p?deviceType=mobile",
+                "/s?deviceType=standard");
+        List<String> actual = urls(warmer.getHotKeys(null, 10));
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+
+        // device types survive a restart
+        File file = File.createTempFile("warmup", ".txt");
+        file.deleteOnExit();
+        warmer.save(file);
+        CacheWarmer loaded = new CacheWarmer(4, 3, 1, 2000);
+        loaded.load(file);
+        actual = urls(loaded.getHotKeys(null, 10));
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+
+    private void track(String key, String handle, int times) {
+        for (int i = 0; i < times; i++) {
+            warmer.track(WeblogPageCache.CACHE_ID, key, handle, null, "/" + key);
+        }
+    }
+
+
+    private static List<String> urls(String... urls) {
+        List<String> list = new ArrayList<String>();
+        for (String url : urls) {
+            list.add(url);
+        }
+        return list;
+    }
+
+
+    private static List<String> urls(List<HotKey> keys) {
+        List<String> list = new ArrayList<String>();
+        for (HotKey hot : keys) {
+            list.add(hot.getUrl());
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import junit.framework.TestCase;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+
+
+/**
+ * Test the feed item cache.
+ */
+public class FeedEntryCacheTest extends TestCase {
+
+    private FeedEntryCache cache = FeedEntryCache.getInstance();
+
+
+    public void setUp() throws Exception {
+        cache.clear();
+    }
+
+
+    public void testGetPut() throws Exception {
+        assertTrue(cache.isEnabled());
+        assertNull(cache.get("blog1", "e1", 1000, "atom", null));
+
+        cache.put("blog1", "e1", 1000, "atom", null, "<entry/>");
+        assertEquals("<entry/>", cache.get("blog1", "e1", 1000, "atom", null));
+
+        // items differ by format and locale
+        assertNull(cache.get("blog1", "e1", 1000, "rss", null));
+        assertNull(cache.get("blog1", "e1", 1000, "atom", "de"));
+
+        // a saved entry has a new update time
+        assertNull(cache.get("blog1", "e1", 2000, "atom", null));
+    }
+
+
+    public void testInvalidate() throws Exception {
+        cache.put("blog1", "e1", 1000, "rss", null, "<item/>");
+
+        // category names are part of items
+        cache.invalidate(new WeblogCategory());
+        assertNull(cache.get("blog1", "e1", 1000, "rss", null));
+
+        // weblog settings and plugins are part of the weblog's items only
+        cache.put("blog1", "e1", 1000, "rss", null, "<item/>");
+        cache.put("blog2", "e2", 1000, "rss", null, "<item/>");
+        Weblog blog1 = new Weblog();
+        blog1.setHandle("blog1");
+        cache.invalidate(blog1);
+        assertNull(cache.get("blog1", "e1", 1000, "rss", null));
+        assertEquals("<item/>", cache.get("blog2", "e2", 1000, "rss", null));
+
+        cache.put("blog1", "e1", 1000, "rss", null, "<item/>");
+        cache.clear();
+        assertNull(cache.get("blog1", "e1", 1000, "rss", null));
+    }
+
+}
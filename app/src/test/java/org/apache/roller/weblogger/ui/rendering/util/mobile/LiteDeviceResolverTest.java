@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.ui.rendering.util.mobile;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.apache.roller.weblogger.ui.rendering.util.mobile.LiteDeviceResolver.UserAgentType;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.ConcurrentCacheFactoryImpl;
+
+
+/**
+ * Test user agent resolution and caching.
+ */
+public class LiteDeviceResolverTest extends TestCase {
+
+    private static final String DESKTOP =
+            "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/33.0 Safari/537.36";
+    private static final String IPHONE =
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 7_0 like Mac OS X) AppleWebKit/537.51 Mobile/11A465";
+    private static final String IPAD =
+            "Mozilla/5.0 (iPad; CPU OS 7_0 like Mac OS X) AppleWebKit/537.51";
+    private static final String ANDROID_TABLET =
+            "Mozilla/5.0 (Linux; Android 4.4; Nexus 7 Build/KOT49H) AppleWebKit/537.36";
+    private static final String ANDROID_PHONE =
+            "Mozilla/5.0 (Linux; Android 4.4; Nexus 5 Build/KOT49H) Chrome/33.0 Mobile Safari/537.36";
+
+
+    public void testMatcher() throws Exception {
+        KeywordMatcher matcher = new KeywordMatcher.Builder()
+                .add(Arrays.asList("he", "she", "hers"), 1)
+                .add("his", 2)
+                .add("she", 4)
+                .build();
+
+        assertEquals(0, matcher.match(""));
+        assertEquals(0, matcher.match("xyz"));
+        assertEquals(1, matcher.match("ahe"));
+        assertEquals(5, matcher.match("ushers"));
+        assertEquals(3, matcher.match("this hers"));
+        assertEquals(0, matcher.match("HE"));
+        assertEquals(2, matcher.match("éhisé"));
+    }
+
+
+    public void testUserAgents() throws Exception {
+        LiteDeviceResolver resolver = new LiteDeviceResolver();
+
+        assertEquals(UserAgentType.UNKNOWN, resolver.resolveUserAgent(DESKTOP));
+        assertEquals(UserAgentType.MOBILE, resolver.resolveUserAgent(IPHONE));
+        assertEquals(UserAgentType.TABLET, resolver.resolveUserAgent(IPAD));
+        assertEquals(UserAgentType.TABLET, resolver.resolveUserAgent(ANDROID_TABLET));
+        assertEquals(UserAgentType.MOBILE, resolver.resolveUserAgent(ANDROID_PHONE));
+        assertEquals(UserAgentType.MOBILE, resolver.resolveUserAgent("Nokia6230/2.0"));
+        assertEquals(UserAgentType.UNKNOWN, resolver.resolveUserAgent("Nok"));
+
+        // normal keywords override everything else
+        resolver = new LiteDeviceResolver(Arrays.asList("nexus"));
+        assertEquals(UserAgentType.NORMAL, resolver.resolveUserAgent(ANDROID_PHONE));
+        assertEquals(UserAgentType.MOBILE, resolver.resolveUserAgent(IPHONE));
+    }
+
+
+    public void testCache() throws Exception {
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("id", "cache.devicetype.test");
+        props.put("size", "4");
+        props.put("factory", ConcurrentCacheFactoryImpl.class.getName());
+        Cache cache = CacheManager.constructCache(null, props);
+
+        LiteDeviceResolver resolver = new LiteDeviceResolver();
+        resolver.setUserAgentCache(cache);
+
+        assertEquals(UserAgentType.MOBILE, resolver.resolveUserAgent(IPHONE));
+        assertEquals(UserAgentType.MOBILE, resolver.resolveUserAgent(IPHONE));
+        assertEquals(UserAgentType.UNKNOWN, resolver.resolveUserAgent(DESKTOP));
+        assertEquals(UserAgentType.UNKNOWN, resolver.resolveUserAgent(DESKTOP));
+        assertEquals(UserAgentType.MOBILE, cache.get(IPHONE));
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(3.0, stats.get("hits"));
+        assertEquals(2.0, stats.get("misses"));
+
+        // stays within its size
+        for (int i = 0; i < 10; i++) {
+            resolver.resolveUserAgent(DESKTOP + " " + i);
+        }
+        int size = 0;
+        for (int i = 0; i < 10; i++) {
+            if (cache.get(DESKTOP + " " + i) != null) {
+                size++;
+            }
+        }
+        assertTrue(size > 0 && size <= 4);
+    }
+
+}
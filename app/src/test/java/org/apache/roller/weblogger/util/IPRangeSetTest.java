@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+
+/**
+ * Test ip range matching.
+ */
+public class IPRangeSetTest extends TestCase {
+
+    public void testRanges() throws Exception {
+        IPRangeSet ranges = IPRangeSet.build(Arrays.asList(
+                "# spam bots",
+                "",
+                "10.1.0.0/16",
+                "192.168.1.7",
+                "2001:db8::/32",
+                "not.an.ip",
+                "10.0.0.0/33"));
+        assertEquals(3, ranges.size());
+
+        assertTrue(ranges.contains("10.1.0.1"));
+        assertTrue(ranges.contains("10.1.255.255"));
+        assertFalse(ranges.contains("10.2.0.1"));
+        assertTrue(ranges.contains("192.168.1.7"));
+        assertFalse(ranges.contains("192.168.1.8"));
+        assertTrue(ranges.contains("2001:db8:1::5"));
+        assertTrue(ranges.contains("[2001:DB8::1]"));
+        assertFalse(ranges.contains("2001:db9::1"));
+
+        // mapped ipv4 addresses match ipv4 ranges
+        assertTrue(ranges.contains("::ffff:10.1.2.3"));
+
+        // garbage and host names never match
+        assertFalse(ranges.contains(null));
+        assertFalse(ranges.contains("10.1.0"));
+        assertFalse(ranges.contains("10.1.0.256"));
+        assertFalse(ranges.contains("localhost"));
+
+        assertFalse(IPRangeSet.EMPTY.contains("10.1.0.1"));
+        assertTrue(IPRangeSet.build(Arrays.asList("0.0.0.0/0")).contains("8.8.8.8"));
+    }
+
+}
@@ -18,6 +18,12 @@
 
 package org.apache.roller.weblogger.util;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -75,6 +81,44 @@ public class LinkbackExtractorTest extends TestCase {
         // todo: le.getPermalink() and le.getExcerpt() working
     }
     
+    public void testDeadline() throws Exception {
+        // site which keeps sending a page linking back, slowly
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    out.write("<html><p><a href=\"http://example.com/entry\">x</a></p>".getBytes("UTF-8"));
+                    for (int i = 0; i < 25; i++) {
+                        out.write(' ');
+                        out.flush();
+                        Thread.sleep(200);
+                    }
+                    out.write("</html>".getBytes("UTF-8"));
+                } catch (InterruptedException ignored) {
+                } catch (IOException ignored) {
+                    // client gave up
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        try {
+            long start = System.currentTimeMillis();
+            LinkbackExtractor le = new LinkbackExtractor(
+                    "http://127.0.0.1:" + server.getAddress().getPort() + "/",
+                    "http://example.com/entry", start + 1000);
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertNull(le.getExcerpt());
+            assertTrue("Extraction took " + elapsed + "ms", elapsed < 2500);
+        } finally {
+            server.stop(0);
+        }
+    }
+    
     public static Test suite() {
         return new TestSuite(LinkbackExtractorTest.class);
     }
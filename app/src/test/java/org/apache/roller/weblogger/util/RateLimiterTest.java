@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+
+/**
+ * Test token bucket rate limiting.
+ */
+public class RateLimiterTest extends TestCase {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+
+    public void testBurstThenReject() throws Exception {
+        RateLimiter limiter = new RateLimiter(60, 3, 100);
+
+        assertTrue(limiter.tryAcquire("a", 0));
+        assertTrue(limiter.tryAcquire("a", 0));
+        assertTrue(limiter.tryAcquire("a", 0));
+        assertFalse(limiter.tryAcquire("a", 0));
+        assertFalse(limiter.tryAcquire("a", SECOND / 2));
+
+        // other clients have their own buckets
+        assertTrue(limiter.tryAcquire("b", 0));
+        assertEquals(2, limiter.size());
+    }
+
+
+    public void testRefill() throws Exception {
+        RateLimiter limiter = new RateLimiter(60, 3, 100);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("a", 0));
+        }
+        assertFalse(limiter.tryAcquire("a", 0));
+
+        // one token a second
+        assertTrue(limiter.tryAcquire("a", SECOND));
+        assertFalse(limiter.tryAcquire("a", SECOND));
+
+        // a full burst once the bucket has refilled, but no more
+        long later = 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("a", later));
+        }
+        assertFalse(limiter.tryAcquire("a", later));
+    }
+
+
+    public void testRetryAfter() throws Exception {
+        assertEquals(1, new RateLimiter(60, 1, 1).getRetryAfterSeconds());
+        assertEquals(2, new RateLimiter(30, 1, 1).getRetryAfterSeconds());
+        assertEquals(60, new RateLimiter(1, 1, 1).getRetryAfterSeconds());
+
+        // rounded up, and never less than a second
+        assertEquals(9, new RateLimiter(7, 1, 1).getRetryAfterSeconds());
+        assertEquals(1, new RateLimiter(6000, 1, 1).getRetryAfterSeconds());
+    }
+
+
+    public void testUntrackedClients() throws Exception {
+        RateLimiter limiter = new RateLimiter(60, 1, 1);
+
+        // clients without an id are never limited
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(null, 0));
+        }
+        assertEquals(0, limiter.size());
+
+        // clients which don't fit in the table are let through
+        assertTrue(limiter.tryAcquire("a", 0));
+        assertFalse(limiter.tryAcquire("a", 0));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("b", 0));
+        }
+        assertEquals(1, limiter.size());
+        assertEquals(5, limiter.getUntracked());
+    }
+
+
+    public void testSweep() throws Exception {
+        RateLimiter limiter = new RateLimiter(60, 2, 2);
+        assertTrue(limiter.tryAcquire("a", 0));
+        assertTrue(limiter.tryAcquire("b", 0));
+        assertTrue(limiter.tryAcquire("b", 0));
+
+        // table is full and nobody has refilled yet
+        assertTrue(limiter.tryAcquire("c", 0));
+        assertEquals(1, limiter.getUntracked());
+        assertEquals(2, limiter.size());
+
+        // a has refilled after a second, b not until two
+        assertTrue(limiter.tryAcquire("c", SECOND));
+        assertEquals(2, limiter.size());
+        assertEquals(1, limiter.getUntracked());
+
+        // b is still tracked, with the one token it got back
+        assertTrue(limiter.tryAcquire("b", SECOND));
+        assertFalse(limiter.tryAcquire("b", SECOND));
+    }
+
+
+    public void testConcurrentAcquire() throws Exception {
+        final RateLimiter limiter = new RateLimiter(60, 50, 100);
+        final AtomicInteger allowed = new AtomicInteger(0);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int j = 0; j < 100; j++) {
+                        if (limiter.tryAcquire("a", 0)) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // no token is handed out twice
+        assertEquals(50, allowed.get());
+    }
+
+}
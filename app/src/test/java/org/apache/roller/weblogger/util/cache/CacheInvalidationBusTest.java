@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+
+
+/**
+ * Test the cluster cache invalidation bus and its database transport.
+ */
+public class CacheInvalidationBusTest extends TestCase {
+
+    private User testUser = null;
+    private Weblog testWeblog = null;
+
+
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+
+        testUser = TestUtils.setupUser("cacheBusUser");
+        testWeblog = TestUtils.setupWeblog("cacheBusWeblog", testUser);
+        TestUtils.endSession(true);
+    }
+
+    public void tearDown() throws Exception {
+        TestUtils.teardownWeblog(testWeblog.getId());
+        TestUtils.teardownUser(testUser.getUserName());
+        TestUtils.endSession(true);
+    }
+
+
+    public void testEncodeDecode() throws Exception {
+        List<CacheInvalidation> invalidations = Arrays.asList(
+                new CacheInvalidation(CacheInvalidation.Type.ENTRY, "e1", "w1"),
+                new CacheInvalidation(CacheInvalidation.Type.USER, "u1", null),
+                CacheInvalidation.CLEAR_ALL);
+
+        String message = CacheInvalidation.encode(invalidations);
+        assertEquals(invalidations, CacheInvalidation.decode(message));
+
+        // bad lines are skipped
+        assertEquals(1, CacheInvalidation.decode("BOGUS x y\nWEBLOG w1 w1\nshort").size());
+    }
+
+
+    public void testCoalescing() throws Exception {
+        RecordingTransport transport = new RecordingTransport();
+        CacheInvalidationBus bus = new CacheInvalidationBus("node1", transport, 3);
+
+        // repeated invalidations of the same object are sent once
+        bus.invalidate(testWeblog);
+        bus.invalidate(testWeblog);
+        bus.invalidate(testWeblog);
+        assertEquals(1, bus.getPending());
+        bus.flush();
+        assertEquals(1, transport.published.size());
+        assertEquals(1, CacheInvalidation.decode(transport.published.get(0)).size());
+        assertEquals(0, bus.getPending());
+        assertEquals(1, transport.polls);
+
+        // nothing to send, but still poll
+        bus.flush();
+        assertEquals(1, transport.published.size());
+        assertEquals(2, transport.polls);
+
+        // too many at once becomes a clear
+        for (int i = 0; i < 4; i++) {
+            bus.invalidate(new User());
+        }
+        bus.clear();
+        bus.flush();
+        assertEquals(2, transport.published.size());
+        assertEquals(Arrays.asList(CacheInvalidation.CLEAR_ALL),
+                CacheInvalidation.decode(transport.published.get(1)));
+    }
+
+
+    public void testReceive() throws Exception {
+        CountingHandler handler = new CountingHandler();
+        CacheManager.registerHandler(handler);
+
+        CacheInvalidationBus bus = new CacheInvalidationBus("node1", new RecordingTransport(), 100);
+
+        // our own messages are ignored
+        String message = CacheInvalidation.encode(Arrays.asList(new CacheInvalidation(
+                CacheInvalidation.Type.WEBLOG, testWeblog.getId(), testWeblog.getId())));
+        bus.receive("node1", message);
+        assertEquals(0, handler.weblogs.size());
+
+        bus.receive("node2", message);
+        assertEquals(1, handler.weblogs.size());
+        assertEquals(testWeblog.getHandle(), handler.weblogs.get(0));
+
+        // a deleted entry invalidates its weblog
+        bus.receive("node2", CacheInvalidation.encode(Arrays.asList(new CacheInvalidation(
+                CacheInvalidation.Type.ENTRY, "no-such-entry", testWeblog.getId()))));
+        assertEquals(2, handler.weblogs.size());
+        assertEquals(2, bus.getReceived());
+    }
+
+
+    public void testDatabaseTransport() throws Exception {
+        RecordingReceiver receiver1 = new RecordingReceiver();
+        RecordingReceiver receiver2 = new RecordingReceiver();
+
+        DatabaseCacheTransport transport1 = new DatabaseCacheTransport();
+        DatabaseCacheTransport transport2 = new DatabaseCacheTransport();
+        transport1.start("node1", receiver1);
+        transport2.start("node2", receiver2);
+
+        transport1.publish("WEBLOG w1 w1\n");
+        transport1.publish("ENTRY e1 w1\n");
+
+        transport2.poll();
+        assertEquals(Arrays.asList("node1:WEBLOG w1 w1\n", "node1:ENTRY e1 w1\n"),
+                receiver2.messages);
+
+        // each message is only delivered once, and never back to its origin
+        transport2.poll();
+        transport1.poll();
+        assertEquals(2, receiver2.messages.size());
+        assertEquals(0, receiver1.messages.size());
+
+        transport2.publish("USER u1 -\n");
+        transport1.poll();
+        assertEquals(Arrays.asList("node2:USER u1 -\n"), receiver1.messages);
+    }
+
+
+    /**
+     * Transport which keeps published messages in memory.
+     */
+    private static class RecordingTransport implements CacheInvalidationTransport {
+
+        private final List<String> published = new ArrayList<String>();
+        private int polls = 0;
+
+        public void start(String nodeId, Receiver receiver) {
+        }
+
+        public void publish(String message) {
+            published.add(message);
+        }
+
+        public void poll() {
+            polls++;
+        }
+
+        public void shutdown() {
+        }
+    }
+
+
+    private static class RecordingReceiver implements CacheInvalidationTransport.Receiver {
+
+        private final List<String> messages = new ArrayList<String>();
+
+        public void receive(String origin, String message) {
+            messages.add(origin + ":" + message);
+        }
+    }
+
+
+    /**
+     * Handler which records the handles of invalidated weblogs.
+     */
+    private static class CountingHandler implements CacheHandler {
+
+        private final List<String> weblogs = new ArrayList<String>();
+
+        public void invalidate(WeblogEntry entry) {
+        }
+
+        public void invalidate(Weblog website) {
+            weblogs.add(website.getHandle());
+        }
+
+        public void invalidate(WeblogBookmark bookmark) {
+        }
+
+        public void invalidate(WeblogBookmarkFolder folder) {
+        }
+
+        public void invalidate(WeblogEntryComment comment) {
+        }
+
+        public void invalidate(User user) {
+        }
+
+        public void invalidate(WeblogCategory category) {
+        }
+
+        public void invalidate(WeblogTemplate template) {
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.roller.weblogger.util.cache.CacheSnapshot.Record;
+
+
+/**
+ * Test writing and reading cache snapshots.
+ */
+public class CacheSnapshotTest extends TestCase {
+
+    private File file;
+
+
+    public void setUp() throws Exception {
+        file = File.createTempFile("snapshot", ".dat");
+        file.delete();
+    }
+
+
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+
+    public void testWriteRead() throws Exception {
+        CacheSnapshot snapshot = new CacheSnapshot(file);
+        assertEquals(0, snapshot.read().getRecords().size());
+
+        CachedContent page = new CachedContent("<html/>".getBytes("UTF-8"), "text/html", 1000);
+        page.setSurrogateKeys(new LinkedHashSet<String>(Arrays.asList("all", "weblog:foo")));
+        CachedContent feed = new CachedContent("<feed/>".getBytes("UTF-8"), null, 2000);
+
+        assertEquals(2, snapshot.write(Arrays.asList(
+                new Record("cache.weblogpage", "cache.weblogpage:foo/en", page),
+                new Record("cache.weblogfeed", "cache.weblogfeed:foo/entries/atom", feed)), 100));
+
+        CacheSnapshot.Snapshot read = snapshot.read();
+        assertTrue(read.getTimeWritten() > 0);
+        List<Record> records = read.getRecords();
+        assertEquals(2, records.size());
+
+        Record record = records.get(0);
+        assertEquals("cache.weblogpage", record.getCacheId());
+        assertEquals("cache.weblogpage:foo/en", record.getKey());
+        assertEquals(1000, record.getTimeCreated());
+        assertEquals("<html/>", record.getContent().getContentAsString());
+        assertEquals("text/html", record.getContent().getContentType());
+        assertEquals(Arrays.asList("all", "weblog:foo"),
+                Arrays.asList(record.getContent().getSurrogateKeys().toArray()));
+
+        record = records.get(1);
+        assertNull(record.getContent().getContentType());
+        assertTrue(record.getContent().getSurrogateKeys().isEmpty());
+        assertEquals(2000, record.getContent().getTimeCreated());
+
+        // content beyond the size limit is left out
+        assertEquals(1, snapshot.write(Arrays.asList(
+                new Record("cache.weblogpage", "a", page),
+                new Record("cache.weblogpage", "b", page)), 10));
+        assertEquals(1, snapshot.read().getRecords().size());
+    }
+
+
+    public void testDamaged() throws Exception {
+        CacheSnapshot snapshot = new CacheSnapshot(file);
+        CachedContent page = new CachedContent("<html/>".getBytes("UTF-8"), "text/html", 1000);
+        snapshot.write(Arrays.asList(
+                new Record("cache.weblogpage", "a", page),
+                new Record("cache.weblogpage", "b", page)), 100);
+
+        // a changed byte fails the checksum of the last record
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            raf.write('x');
+        } finally {
+            raf.close();
+        }
+        assertEquals(Arrays.asList("a"), keys(snapshot.read().getRecords()));
+
+        // so does a cut
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+        assertEquals(Arrays.asList("a"), keys(snapshot.read().getRecords()));
+    }
+
+
+    private static List<String> keys(List<Record> records) {
+        String[] keys = new String[records.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = records.get(i).getKey();
+        }
+        return Arrays.asList(keys);
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+
+/**
+ * Test writing, teeing and pooling cached content.
+ */
+public class CachedContentTest extends TestCase {
+
+    public void testContent() throws Exception {
+        CachedContent content = new CachedContent(16, "text/html");
+        assertFalse(content.isTee());
+
+        content.getCachedWriter().print("héllo");
+        content.flush();
+        assertEquals("héllo", content.getContentAsString());
+
+        content.getCachedWriter().print(" world");
+        content.close();
+        assertEquals("héllo world", content.getContentAsString());
+        assertEquals(12, content.getContent().length);
+        assertEquals("text/html", content.getContentType());
+    }
+
+
+    public void testTee() throws Exception {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        CachedContent content = new CachedContent(16, null, response);
+        assertTrue(content.isTee());
+
+        content.getCachedWriter().print("first");
+        content.flush();
+        assertEquals("first", response.toString("UTF-8"));
+
+        content.getCachedWriter().print(" second");
+        content.close();
+        assertEquals("first second", response.toString("UTF-8"));
+        assertEquals("first second", content.getContentAsString());
+    }
+
+
+    public void testTeeFailure() throws Exception {
+        CachedContent content = new CachedContent(16, null, new OutputStream() {
+            public void write(int b) throws IOException {
+                throw new IOException("client went away");
+            }
+        });
+
+        // the content is still captured for caching
+        content.getCachedWriter().print("first");
+        content.flush();
+        content.getCachedWriter().print(" second");
+        content.close();
+        assertEquals("first second", content.getContentAsString());
+    }
+
+
+    public void testSegments() throws Exception {
+        // multi byte characters across many segment boundaries
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("a\u00e9\u20ac\ud83d\ude00");
+        }
+        byte[] expected = text.toString().getBytes("UTF-8");
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        CachedContent content = new CachedContent(0, null, response);
+        content.getCachedWriter().print(text);
+        content.close();
+
+        assertEquals(expected.length, content.getLength());
+        assertTrue(Arrays.equals(expected, content.getContent()));
+        assertTrue(Arrays.equals(expected, response.toByteArray()));
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        content.writeTo(written);
+        assertTrue(Arrays.equals(expected, written.toByteArray()));
+    }
+
+
+    public void testSplitSurrogates() throws Exception {
+        CachedContent content = new CachedContent(0);
+        content.getCachedWriter().write('\ud83d');
+        content.getCachedWriter().write("\ude00!");
+        content.getCachedWriter().write('\ud83d');
+        content.close();
+
+        // an unpaired surrogate at the end is replaced
+        assertEquals("\ud83d\ude00!?", content.getContentAsString());
+    }
+
+
+    public void testPool() throws Exception {
+        ByteSegmentPool pool = new ByteSegmentPool(1024, 2);
+
+        SegmentedWriter writer = new SegmentedWriter(pool, null);
+        char[] chars = new char[2500];
+        Arrays.fill(chars, 'x');
+        writer.write(chars);
+        writer.close();
+        assertEquals(3, pool.getAllocated());
+        assertEquals(2500, writer.size());
+        assertTrue(Arrays.equals(new int[] {1024, 1024, 452}, writer.getLengths()));
+
+        // the trimmed tail went back to the pool
+        assertEquals(1, pool.getFree());
+        assertEquals(452, writer.getSegments()[2].length);
+
+        writer = new SegmentedWriter(pool, null);
+        writer.write("y");
+        writer.close();
+        assertEquals(1, pool.getReused());
+        assertEquals(3, pool.getAllocated());
+
+        // released segments are reused, up to the pool size
+        CachedContent content = new CachedContent(0);
+        content.getCachedWriter().write("z");
+        content.close();
+        content.release();
+        assertEquals(0, content.getLength());
+        pool.release(new byte[1024]);
+        pool.release(new byte[1024]);
+        pool.release(new byte[1024]);
+        pool.release(new byte[10]);
+        assertEquals(2, pool.getFree());
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import junit.framework.TestCase;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+
+
+/**
+ * Test surrogate key naming and purging.
+ */
+public class SurrogateKeyPurgeHandlerTest extends TestCase {
+
+    private Weblog weblog;
+    private WeblogEntry entry;
+
+
+    public void setUp() throws Exception {
+        weblog = new Weblog();
+        weblog.setId("w1");
+        weblog.setHandle("myblog");
+
+        entry = new WeblogEntry();
+        entry.setId("e1");
+        entry.setWebsite(weblog);
+    }
+
+
+    public void testKeys() throws Exception {
+        assertEquals("weblog:myblog", SurrogateKeys.weblog("myblog"));
+        assertEquals("category:myblog/Java+Stuff", SurrogateKeys.category("myblog", "Java Stuff"));
+        assertEquals("tag:myblog/a%2Fb", SurrogateKeys.tag("myblog", "a/b"));
+        assertEquals("planet", SurrogateKeys.planet(null));
+        assertEquals("planet:news", SurrogateKeys.planet("news"));
+    }
+
+
+    public void testCollector() throws Exception {
+        // nothing is collected without an active render
+        SurrogateKeys.touch(entry);
+        assertTrue(SurrogateKeys.end().isEmpty());
+
+        SurrogateKeys.begin();
+        SurrogateKeys.touch(entry);
+        SurrogateKeys.touch(entry);
+        SurrogateKeys.add(SurrogateKeys.SITE);
+        Set<String> keys = SurrogateKeys.end();
+        assertEquals(Arrays.asList("entry:e1", "site"), Arrays.asList(keys.toArray()));
+
+        // collecting stopped
+        SurrogateKeys.touch(entry);
+        assertTrue(SurrogateKeys.end().isEmpty());
+    }
+
+
+    public void testPurges() throws Exception {
+        LocalSurrogateKeyPurger purger = new LocalSurrogateKeyPurger();
+        SurrogateKeyPurgeHandler handler = new SurrogateKeyPurgeHandler(purger, false, 100);
+
+        WeblogEntryComment comment = new WeblogEntryComment();
+        comment.setWeblogEntry(entry);
+
+        WeblogTemplate template = new WeblogTemplate();
+        template.setId("t1");
+        template.setWeblog(weblog);
+
+        // keys are queued and purged once
+        handler.invalidate(entry);
+        handler.invalidate(comment);
+        handler.invalidate(template);
+        assertEquals(0, purger.getPurgeCount());
+
+        handler.flush();
+        assertEquals(1, purger.getPurgeCount());
+        assertEquals(Arrays.asList("entry:e1", "site", "weblog:myblog", "template:t1"),
+                purger.getPurgedKeys());
+
+        // nothing left to purge
+        handler.flush();
+        assertEquals(1, purger.getPurgeCount());
+
+        // comments limited to the entry
+        purger.reset();
+        handler = new SurrogateKeyPurgeHandler(purger, true, 100);
+        handler.invalidate(comment);
+        handler.flush();
+        assertEquals(Arrays.asList("entry:e1"), purger.getPurgedKeys());
+    }
+
+
+    public void testCoalescing() throws Exception {
+        LocalSurrogateKeyPurger purger = new LocalSurrogateKeyPurger();
+        SurrogateKeyPurgeHandler handler = new SurrogateKeyPurgeHandler(purger, false, 2);
+
+        handler.purge("entry:1", "entry:2", "entry:3");
+        handler.flush();
+        assertEquals(Arrays.asList(SurrogateKeys.ALL), purger.getPurgedKeys());
+
+        // a clear purges all regardless of what else is queued
+        purger.reset();
+        handler.purge("entry:1");
+        handler.clear();
+        handler.flush();
+        assertEquals(Arrays.asList(SurrogateKeys.ALL), purger.getPurgedKeys());
+    }
+
+
+    public void testRetry() throws Exception {
+        FailingPurger purger = new FailingPurger();
+        SurrogateKeyPurgeHandler handler = new SurrogateKeyPurgeHandler(purger, false, 100);
+
+        handler.invalidate(weblog);
+        handler.flush();
+        assertEquals(1, handler.getFailures());
+        assertEquals(0, purger.getPurgeCount());
+
+        // failed keys are purged on the next flush
+        purger.failing = false;
+        handler.flush();
+        assertEquals(Arrays.asList("site", "weblog:myblog"), purger.getPurgedKeys());
+        assertEquals(2, handler.getPurged());
+    }
+
+
+    /**
+     * Purger which fails until told otherwise.
+     */
+    private static class FailingPurger implements SurrogateKeyPurger {
+
+        private final LocalSurrogateKeyPurger local = new LocalSurrogateKeyPurger();
+        private boolean failing = true;
+
+        public void purge(Collection<String> keys) throws IOException {
+            if (failing) {
+                throw new IOException("unreachable");
+            }
+            local.purge(keys);
+        }
+
+        public void shutdown() {
+            // no-op
+        }
+
+        int getPurgeCount() {
+            return local.getPurgeCount();
+        }
+
+        List<String> getPurgedKeys() {
+            return local.getPurgedKeys();
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.benchmarks;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository.DeviceType;
+import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
+import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogPageCache;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.LRUCacheFactoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks the render cache hot paths: lookups and puts on the LRU cache
+ * implementation, and cache key generation for page requests.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+    /** Number of distinct keys relative to the cache size of 1000 */
+    @Param({"500", "5000"})
+    public int keyCount;
+
+    private Cache cache;
+    private String[] keys;
+    private WeblogPageRequest[] pageRequests;
+
+
+    @Setup
+    public void setup() {
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("id", "benchmark.lru");
+        props.put("size", "1000");
+        props.put("factory", LRUCacheFactoryImpl.class.getName());
+        cache = CacheManager.constructCache(null, props);
+
+        List<String> names = Fixtures.names(keyCount, "key-");
+        keys = names.toArray(new String[names.size()]);
+        for (int i = 0; i < keys.length && i < 1000; i++) {
+            cache.put(keys[i], keys[i]);
+        }
+
+        List<String> handles = Fixtures.names(64, "blog");
+        List<String> anchors = Fixtures.names(64, "entry_");
+        pageRequests = new WeblogPageRequest[64];
+        for (int i = 0; i < pageRequests.length; i++) {
+            WeblogPageRequest pageRequest = new WeblogPageRequest();
+            pageRequest.setWeblogHandle(handles.get(i));
+            pageRequest.setDeviceType(DeviceType.standard);
+            switch (i % 4) {
+                case 0:
+                    pageRequest.setWeblogAnchor(anchors.get(i));
+                    break;
+                case 1:
+                    pageRequest.setWeblogCategoryName("Category " + i);
+                    pageRequest.setPageNum(i % 3);
+                    break;
+                case 2:
+                    pageRequest.setContext("tags");
+                    pageRequest.setTags(Arrays.asList("java", "roller", "tag" + i));
+                    break;
+                default:
+                    pageRequest.setWeblogDate("201501" + (10 + i % 20));
+                    pageRequest.setLocale("en");
+            }
+            pageRequests[i] = pageRequest;
+        }
+    }
+
+
+    /**
+     * Per thread position in the key sequence.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = 0;
+
+        int next(int size) {
+            next = (next + 7) % size;
+            return next;
+        }
+    }
+
+
+    @Benchmark
+    @Threads(4)
+    public Object lruGet(Cursor cursor) {
+        return cache.get(keys[cursor.next(keys.length)]);
+    }
+
+
+    @Benchmark
+    @Threads(4)
+    public Object lruGetOrPut(Cursor cursor) {
+        String key = keys[cursor.next(keys.length)];
+        Object value = cache.get(key);
+        if (value == null) {
+            cache.put(key, key);
+        }
+        return value;
+    }
+
+
+    @Benchmark
+    public String siteWideGenerateKey(Cursor cursor) {
+        return SiteWideCache.getInstance().generateKey(
+                pageRequests[cursor.next(pageRequests.length)]);
+    }
+
+
+    @Benchmark
+    public String weblogPageGenerateKey(Cursor cursor) {
+        return WeblogPageCache.getInstance().generateKey(
+                pageRequests[cursor.next(pageRequests.length)]);
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Generates deterministic fixture data for the benchmarks.
+ *
+ * Texts are built from a fixed vocabulary with a fixed seed so that every
+ * run, on every machine, works on exactly the same input.
+ */
+public final class Fixtures {
+
+    private static final long SEED = 20150101L;
+
+    private static final String[] WORDS = {
+        "roller", "weblog", "entry", "comment", "apache", "java", "velocity",
+        "theme", "feed", "atom", "planet", "cache", "search", "lucene",
+        "category", "tag", "archive", "calendar", "permalink", "trackback",
+        "the", "a", "of", "and", "to", "in", "is", "that", "for", "with",
+        "performance", "database", "release", "server", "template", "user"
+    };
+
+    private static final String[] SPAM_WORDS = {
+        "cheap-pills", "casino", "viagra", "free-money", "poker", "replica"
+    };
+
+
+    // non-instantiable
+    private Fixtures() {}
+
+
+    /**
+     * Weblog entry bodies with typical markup: paragraphs, links, emphasis,
+     * images and the occasional script or style block.
+     */
+    public static List<String> entryBodies(int count, int paragraphs) {
+        Random random = new Random(SEED);
+        List<String> bodies = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int p = 0; p < paragraphs; p++) {
+                body.append("<p>");
+                appendSentences(random, body, 3 + random.nextInt(4), true);
+                body.append("</p>\n");
+                if (random.nextInt(4) == 0) {
+                    body.append("<img src=\"/roller/weblog/resource/img")
+                            .append(i).append(".png\" alt=\"image\" />\n");
+                }
+                if (random.nextInt(10) == 0) {
+                    body.append("<script type=\"text/javascript\">var x = ")
+                            .append(p).append(";</script>\n");
+                }
+                if (random.nextInt(10) == 0) {
+                    body.append("<style>p { color: red; }</style>\n");
+                }
+            }
+            bodies.add(body.toString());
+        }
+        return bodies;
+    }
+
+
+    /**
+     * Plain text comments, with about one in five containing spam words and
+     * links to spammy domains.
+     */
+    public static List<String> comments(int count) {
+        Random random = new Random(SEED + 1);
+        List<String> comments = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder comment = new StringBuilder();
+            appendSentences(random, comment, 1 + random.nextInt(3), false);
+            if (random.nextInt(5) == 0) {
+                String spam = SPAM_WORDS[random.nextInt(SPAM_WORDS.length)];
+                comment.append(" Visit http://www.").append(spam)
+                        .append("-").append(i).append(".com/ now!");
+            }
+            comments.add(comment.toString());
+        }
+        return comments;
+    }
+
+
+    /**
+     * Weblog handles, entry anchors and category names used for building
+     * cache keys.
+     */
+    public static List<String> names(int count, String prefix) {
+        Random random = new Random(SEED + prefix.hashCode());
+        List<String> names = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + WORDS[random.nextInt(WORDS.length)] + i);
+        }
+        return names;
+    }
+
+
+    private static void appendSentences(Random random, StringBuilder buf,
+                                        int sentences, boolean markup) {
+        for (int s = 0; s < sentences; s++) {
+            int words = 6 + random.nextInt(12);
+            for (int w = 0; w < words; w++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                if (w == 0) {
+                    buf.append(Character.toUpperCase(word.charAt(0)))
+                            .append(word.substring(1));
+                } else if (markup && random.nextInt(15) == 0) {
+                    buf.append("<a href=\"http://example.com/").append(word)
+                            .append("\">").append(word).append("</a>");
+                } else if (markup && random.nextInt(20) == 0) {
+                    buf.append("<em>").append(word).append("</em>");
+                } else {
+                    buf.append(word);
+                }
+                buf.append(w < words - 1 ? " " : ". ");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.util.Utilities;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.log.NullLogChute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks the rendering half of a PageServlet cache miss: merging a
+ * theme-like Velocity template listing weblog entries into a CachedContent
+ * buffer of the size PageServlet uses, and extracting the bytes that get
+ * written to the response and put into the page cache.
+ *
+ * Entries are plain fixture beans rather than pojo wrappers, so database
+ * access is deliberately not part of the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderingBenchmark {
+
+    /** Number of entries on the rendered page */
+    @Param({"10", "50"})
+    public int entryCount;
+
+    /** Whether to render excerpts instead of full entry text */
+    @Param({"false", "true"})
+    public boolean excerpts;
+
+    private Template template;
+    private VelocityContext context;
+
+
+    @Setup
+    public void setup() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(RuntimeConstants.RESOURCE_LOADER, "class");
+        props.setProperty("class.resource.loader.class",
+                "org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
+        props.setProperty("class.resource.loader.cache", "true");
+        props.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
+                NullLogChute.class.getName());
+
+        VelocityEngine engine = new VelocityEngine(props);
+        engine.init();
+        template = engine.getTemplate("benchmarks/weblog.vm", "UTF-8");
+
+        List<String> bodies = Fixtures.entryBodies(entryCount, 6);
+        List<String> anchors = Fixtures.names(entryCount, "entry_");
+        List<EntryFixture> entries = new ArrayList<EntryFixture>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            entries.add(new EntryFixture(anchors.get(i), "Entry number " + i,
+                    bodies.get(i), "Category" + (i % 5), new Date(1420070400000L + i * 3600000L),
+                    Arrays.asList("java", "roller", "tag" + (i % 7)), i % 13));
+        }
+
+        context = new VelocityContext();
+        context.put("weblog", new WeblogFixture());
+        context.put("entries", entries);
+        context.put("excerpts", excerpts);
+        context.put("utils", Utilities.class);
+    }
+
+
+    @Benchmark
+    public byte[] renderPage() throws Exception {
+        CachedContent output = new CachedContent(
+                RollerConstants.TWENTYFOUR_KB_IN_BYTES, "text/html; charset=utf-8");
+        template.merge(context, output.getCachedWriter());
+        output.flush();
+        output.close();
+        return output.getContent();
+    }
+
+
+    /**
+     * Weblog properties referenced by the template.
+     */
+    public static class WeblogFixture {
+
+        public String getName() {
+            return "Benchmark Weblog";
+        }
+
+        public String getTagline() {
+            return "Measuring the rendering hot path";
+        }
+
+        public String getUrl() {
+            return "http://localhost:8080/roller/benchmark";
+        }
+    }
+
+
+    /**
+     * Entry properties referenced by the template.
+     */
+    public static class EntryFixture {
+
+        private final String anchor;
+        private final String title;
+        private final String text;
+        private final String category;
+        private final Date pubTime;
+        private final List<String> tags;
+        private final int commentCount;
+
+        EntryFixture(String anchor, String title, String text, String category,
+                     Date pubTime, List<String> tags, int commentCount) {
+            this.anchor = anchor;
+            this.title = title;
+            this.text = text;
+            this.category = category;
+            this.pubTime = pubTime;
+            this.tags = tags;
+            this.commentCount = commentCount;
+        }
+
+        public String getAnchor() {
+            return anchor;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public Date getPubTime() {
+            return pubTime;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public int getCommentCount() {
+            return commentCount;
+        }
+    }
+
+}
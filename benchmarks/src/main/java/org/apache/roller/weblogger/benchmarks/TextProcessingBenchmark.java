@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.roller.weblogger.util.HTMLSanitizer;
+import org.apache.roller.weblogger.util.Utilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks the text processing done for every rendered entry: HTML
+ * stripping and truncation for excerpts, and HTML sanitizing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextProcessingBenchmark {
+
+    /** Number of paragraphs per entry body */
+    @Param({"2", "20"})
+    public int paragraphs;
+
+    private List<String> bodies;
+    private int next = 0;
+
+
+    @Setup
+    public void setup() {
+        bodies = Fixtures.entryBodies(64, paragraphs);
+    }
+
+
+    private String nextBody() {
+        next = (next + 1) % bodies.size();
+        return bodies.get(next);
+    }
+
+
+    @Benchmark
+    public String removeHTML() {
+        return Utilities.removeHTML(nextBody());
+    }
+
+
+    @Benchmark
+    public String truncateNicely() {
+        return Utilities.truncateNicely(nextBody(), 180, 200, "...");
+    }
+
+
+    @Benchmark
+    public String sanitize() {
+        return HTMLSanitizer.sanitize(nextBody());
+    }
+
+}
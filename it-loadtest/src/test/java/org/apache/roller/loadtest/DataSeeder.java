@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Seeds the load test database with users, weblogs, categories, entries,
+ * tags and comments using plain JDBC batches.
+ *
+ * Runs before Roller is started, against the schema created from
+ * createdb.sql, so Roller sees the data just like an existing installation.
+ *
+ * Usage: DataSeeder jdbcUrl weblogs entriesPerWeblog commentsPerEntry
+ */
+public class DataSeeder {
+
+    private static final int BATCH_SIZE = 500;
+    private static final long SCHEMA_TIMEOUT_MILLIS = 60000;
+
+    private final Connection con;
+    private final Random random = new Random(42);
+    private final long now = System.currentTimeMillis();
+
+    // tag name -> total, for the site-wide tag aggregates
+    private final Map<String, Integer> siteTags = new HashMap<String, Integer>();
+
+    private PreparedStatement userStmt;
+    private PreparedStatement roleStmt;
+    private PreparedStatement permStmt;
+    private PreparedStatement weblogStmt;
+    private PreparedStatement categoryStmt;
+    private PreparedStatement entryStmt;
+    private PreparedStatement tagStmt;
+    private PreparedStatement tagAggStmt;
+    private PreparedStatement commentStmt;
+    private int pending = 0;
+    private int tagAggregates = 0;
+
+
+    public DataSeeder(Connection con) {
+        this.con = con;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: DataSeeder jdbcUrl weblogs entriesPerWeblog commentsPerEntry");
+            System.exit(1);
+        }
+
+        Class.forName("org.apache.derby.jdbc.ClientDriver");
+        Connection con = DriverManager.getConnection(args[0], "APP", "APP");
+        try {
+            waitForSchema(con);
+
+            long start = System.currentTimeMillis();
+            new DataSeeder(con).seed(Integer.parseInt(args[1]),
+                    Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            System.out.println("Seeded load test database in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            con.close();
+        }
+    }
+
+
+    /**
+     * The database plugin runs createdb.sql in the background once the
+     * server is up, so wait until one of the last indexes it creates is in place.
+     */
+    private static void waitForSchema(Connection con) throws Exception {
+        long deadline = System.currentTimeMillis() + SCHEMA_TIMEOUT_MILLIS;
+        while (!hasIndex(con, "ROLLER_OAUTHCONSUMER", "OC_USERNAME_IDX")) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Roller schema was not created in time");
+            }
+            Thread.sleep(500);
+        }
+    }
+
+
+    private static boolean hasIndex(Connection con, String table, String index)
+            throws SQLException {
+        ResultSet rs = con.getMetaData().getIndexInfo(null, null, table, false, true);
+        try {
+            while (rs.next()) {
+                if (index.equals(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            rs.close();
+        }
+    }
+
+
+    public void seed(int weblogs, int entries, int comments) throws SQLException {
+        con.setAutoCommit(false);
+        try {
+            prepareStatements();
+            enableWebServices();
+
+            for (int w = 0; w < weblogs; w++) {
+                seedWeblog(w, entries, comments);
+            }
+
+            for (Map.Entry<String, Integer> tag : siteTags.entrySet()) {
+                addTagAggregate(null, tag.getKey(), tag.getValue());
+            }
+
+            executeBatches();
+            con.commit();
+        } finally {
+            // no-op unless seeding failed
+            con.rollback();
+            closeStatements();
+        }
+
+        System.out.println("Seeded " + weblogs + " weblogs, " + (weblogs * entries)
+                + " entries and " + (weblogs * entries * comments) + " comments");
+    }
+
+
+    private void enableWebServices() throws SQLException {
+        PreparedStatement stmt = con.prepareStatement(
+                "insert into roller_properties (name, value) values (?, ?)");
+        try {
+            for (String name : new String[] {"webservices.enableXmlRpc", "webservices.enableAtomPub"}) {
+                stmt.setString(1, name);
+                stmt.setString(2, "true");
+                stmt.executeUpdate();
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+
+    private void seedWeblog(int w, int entries, int comments) throws SQLException {
+        String userName = SeedData.userName(w);
+        String weblogId = id("wb", w, 0);
+        Timestamp created = new Timestamp(now - 365L * 24 * 3600 * 1000);
+
+        userStmt.setString(1, id("us", w, 0));
+        userStmt.setString(2, userName);
+        userStmt.setString(3, SeedData.PASSWORD);
+        userStmt.setString(4, userName);
+        userStmt.setString(5, "Load Test User " + w);
+        userStmt.setString(6, userName + "@example.com");
+        userStmt.setTimestamp(7, created);
+        userStmt.addBatch();
+
+        roleStmt.setString(1, id("ro", w, 0));
+        roleStmt.setString(2, userName);
+        roleStmt.addBatch();
+
+        permStmt.setString(1, id("pe", w, 0));
+        permStmt.setString(2, userName);
+        permStmt.setString(3, weblogId);
+        permStmt.setTimestamp(4, created);
+        permStmt.addBatch();
+
+        weblogStmt.setString(1, weblogId);
+        weblogStmt.setString(2, "Load Test Weblog " + w);
+        weblogStmt.setString(3, SeedData.handle(w));
+        weblogStmt.setString(4, userName);
+        weblogStmt.setString(5, userName + "@example.com");
+        weblogStmt.setTimestamp(6, created);
+        weblogStmt.setTimestamp(7, new Timestamp(now));
+        weblogStmt.addBatch();
+
+        for (int c = 0; c < SeedData.CATEGORIES.length; c++) {
+            categoryStmt.setString(1, id("ca", w, c));
+            categoryStmt.setString(2, SeedData.CATEGORIES[c]);
+            categoryStmt.setString(3, weblogId);
+            categoryStmt.setInt(4, c);
+            categoryStmt.addBatch();
+        }
+
+        Map<String, Integer> weblogTags = new HashMap<String, Integer>();
+        for (int e = 0; e < entries; e++) {
+            String entryId = id("en", w, e);
+            // one entry a day, newest first
+            Timestamp pubTime = new Timestamp(now - (e + 1) * 24L * 3600 * 1000);
+
+            entryStmt.setString(1, entryId);
+            entryStmt.setString(2, SeedData.anchor(e));
+            entryStmt.setString(3, userName);
+            entryStmt.setString(4, "Entry " + e + " about " + SeedData.word(w + e));
+            entryStmt.setString(5, text(w + e));
+            entryStmt.setTimestamp(6, pubTime);
+            entryStmt.setTimestamp(7, pubTime);
+            entryStmt.setString(8, weblogId);
+            entryStmt.setString(9, id("ca", w, e % SeedData.CATEGORIES.length));
+            entryStmt.addBatch();
+
+            String[] tags = SeedData.tags(w, e);
+            for (int t = 0; t < tags.length; t++) {
+                tagStmt.setString(1, id("tg", w, e * 10 + t));
+                tagStmt.setString(2, entryId);
+                tagStmt.setString(3, weblogId);
+                tagStmt.setString(4, userName);
+                tagStmt.setString(5, tags[t]);
+                tagStmt.setTimestamp(6, pubTime);
+                tagStmt.addBatch();
+                increment(weblogTags, tags[t]);
+                increment(siteTags, tags[t]);
+            }
+
+            for (int c = 0; c < comments; c++) {
+                commentStmt.setString(1, id("co", w, e * 1000 + c));
+                commentStmt.setString(2, entryId);
+                commentStmt.setString(3, "Commenter " + c);
+                commentStmt.setString(4, "commenter" + c + "@example.com");
+                commentStmt.setString(5, "Nice post on " + SeedData.word(w + e + c)
+                        + ", thanks for writing it up.");
+                commentStmt.setTimestamp(6, new Timestamp(pubTime.getTime() + (c + 1) * 60000L));
+                commentStmt.addBatch();
+            }
+
+            pending++;
+        }
+
+        for (Map.Entry<String, Integer> tag : weblogTags.entrySet()) {
+            addTagAggregate(weblogId, tag.getKey(), tag.getValue());
+        }
+
+        if (pending >= BATCH_SIZE) {
+            executeBatches();
+            con.commit();
+        }
+    }
+
+
+    private void addTagAggregate(String weblogId, String name, int total) throws SQLException {
+        tagAggStmt.setString(1, id("ta", tagAggregates++, 0));
+        tagAggStmt.setString(2, weblogId);
+        tagAggStmt.setString(3, name);
+        tagAggStmt.setInt(4, total);
+        tagAggStmt.setTimestamp(5, new Timestamp(now));
+        tagAggStmt.addBatch();
+    }
+
+
+    private String text(int seed) {
+        StringBuilder text = new StringBuilder();
+        for (int p = 0; p < 4; p++) {
+            text.append("<p>");
+            int words = 40 + random.nextInt(40);
+            for (int i = 0; i < words; i++) {
+                text.append(SeedData.word(seed + random.nextInt(SeedData.WORDS.length)));
+                text.append(i < words - 1 ? " " : ".");
+            }
+            text.append("</p>\n");
+        }
+        return text.toString();
+    }
+
+
+    private static String id(String type, int a, int b) {
+        return "lt-" + type + "-" + a + "-" + b;
+    }
+
+
+    private static void increment(Map<String, Integer> counts, String key) {
+        Integer count = counts.get(key);
+        counts.put(key, (count == null) ? 1 : count + 1);
+    }
+
+
+    private void prepareStatements() throws SQLException {
+        userStmt = con.prepareStatement("insert into roller_user (id, username, passphrase, "
+                + "screenname, fullname, emailaddress, datecreated, locale, timezone, isenabled) "
+                + "values (?, ?, ?, ?, ?, ?, ?, 'en_US', 'America/New_York', 1)");
+        roleStmt = con.prepareStatement(
+                "insert into userrole (id, rolename, username) values (?, 'editor', ?)");
+        permStmt = con.prepareStatement("insert into roller_permission (id, username, actions, "
+                + "objectid, objecttype, pending, datecreated) values (?, ?, 'admin', ?, 'Weblog', 0, ?)");
+        weblogStmt = con.prepareStatement("insert into weblog (id, name, handle, tagline, creator, "
+                + "enablebloggerapi, allowcomments, emailcomments, emailaddress, editortheme, locale, "
+                + "timezone, visible, isactive, datecreated, defaultallowcomments, defaultcommentdays, "
+                + "commentmod, displaycnt, lastmodified, enablemultilang, showalllangs) "
+                + "values (?, ?, ?, 'A weblog seeded for load testing', ?, 1, 1, 0, ?, 'basic', "
+                + "'en_US', 'America/New_York', 1, 1, ?, 1, 0, 0, 10, ?, 0, 1)");
+        categoryStmt = con.prepareStatement("insert into weblogcategory (id, name, description, "
+                + "websiteid, position) values (?, ?, null, ?, ?)");
+        entryStmt = con.prepareStatement("insert into weblogentry (id, anchor, creator, title, text, "
+                + "pubtime, updatetime, websiteid, categoryid, publishentry, allowcomments, commentdays, "
+                + "rightToLeft, pinnedtomain, locale, status) "
+                + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, 1, 1, 0, 0, 0, 'en_US', 'PUBLISHED')");
+        tagStmt = con.prepareStatement("insert into roller_weblogentrytag (id, entryid, websiteid, "
+                + "creator, name, time) values (?, ?, ?, ?, ?, ?)");
+        tagAggStmt = con.prepareStatement("insert into roller_weblogentrytagagg (id, websiteid, "
+                + "name, total, lastused) values (?, ?, ?, ?, ?)");
+        commentStmt = con.prepareStatement("insert into roller_comment (id, entryid, name, email, "
+                + "url, content, posttime, notify, remotehost, status, contenttype) "
+                + "values (?, ?, ?, ?, null, ?, ?, 0, '127.0.0.1', 'APPROVED', 'text/plain')");
+    }
+
+
+    // in foreign key order
+    private void executeBatches() throws SQLException {
+        for (PreparedStatement stmt : statements()) {
+            stmt.executeBatch();
+        }
+        pending = 0;
+    }
+
+
+    private void closeStatements() throws SQLException {
+        for (PreparedStatement stmt : statements()) {
+            if (stmt != null) {
+                stmt.close();
+            }
+        }
+    }
+
+
+    private PreparedStatement[] statements() {
+        return new PreparedStatement[] {userStmt, roleStmt, permStmt, weblogStmt,
+                categoryStmt, entryStmt, tagStmt, tagAggStmt, commentStmt};
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.loadtest;
+
+import java.util.Arrays;
+
+
+/**
+ * Collects response times and outcomes of the requests sent to a single
+ * endpoint and computes throughput and latency percentiles from them.
+ */
+public class EndpointStats {
+
+    private final String name;
+
+    // response times in microseconds
+    private long[] latencies = new long[1024];
+    private int count = 0;
+
+    private int clientErrors = 0;
+    private int serverErrors = 0;
+    private int failures = 0;
+
+    private long elapsedMillis = 0;
+
+
+    public EndpointStats(String name) {
+        this.name = name;
+    }
+
+
+    /**
+     * Record a completed request, status is -1 for requests which failed
+     * without a response.
+     */
+    public synchronized void record(long micros, int status) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = micros;
+
+        if (status < 0) {
+            failures++;
+        } else if (status >= 500) {
+            serverErrors++;
+        } else if (status >= 400) {
+            clientErrors++;
+        }
+    }
+
+
+    public synchronized void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized int getClientErrors() {
+        return clientErrors;
+    }
+
+    public synchronized int getServerErrors() {
+        return serverErrors;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+
+    /**
+     * Requests per second over the time it took to send them all.
+     */
+    public synchronized double getThroughput() {
+        return (elapsedMillis > 0) ? count * 1000.0 / elapsedMillis : 0;
+    }
+
+
+    /**
+     * Response time percentile in milliseconds, e.g. percentile(99).
+     */
+    public synchronized double percentile(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percent / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1000.0;
+    }
+
+
+    public static String header() {
+        return String.format("%-24s %8s %10s %9s %9s %9s %9s %6s %6s %6s",
+                "endpoint", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms",
+                "max ms", "4xx", "5xx", "fail");
+    }
+
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%-24s %8d %10.1f %9.1f %9.1f %9.1f %9.1f %6d %6d %6d",
+                name, count, getThroughput(), percentile(50), percentile(90),
+                percentile(99), percentile(100), clientErrors, serverErrors, failures);
+    }
+
+}
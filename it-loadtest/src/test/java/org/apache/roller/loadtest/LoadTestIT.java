@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.loadtest;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.bind.DatatypeConverter;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Drives scripted traffic against a running Roller seeded by DataSeeder and
+ * reports throughput and latency percentiles per endpoint.
+ *
+ * Each endpoint is loaded on its own, with a fixed number of requests spread
+ * over a fixed number of threads, and every request addresses a randomly
+ * chosen seeded weblog so that caches behave as on a busy site.
+ */
+public class LoadTestIT {
+
+    private static final int STARTUP_TIMEOUT_SECONDS = 300;
+
+    private static String baseUrl;
+    private static int weblogs;
+    private static int entries;
+    private static int threads;
+    private static int requests;
+    private static File report;
+
+
+    @BeforeClass
+    public static void waitForRoller() throws Exception {
+        baseUrl = System.getProperty("loadtest.baseUrl", "http://localhost:8089/roller");
+        weblogs = Integer.getInteger("loadtest.weblogs", 1000);
+        entries = Integer.getInteger("loadtest.entries", 10);
+        threads = Integer.getInteger("loadtest.threads", 8);
+        requests = Integer.getInteger("loadtest.requests", 500);
+        report = new File(System.getProperty("loadtest.report", "target/loadtest-report.txt"));
+
+        // Roller starts in the background, wait until it serves weblog pages
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_SECONDS * 1000L;
+        String url = baseUrl + "/" + SeedData.handle(0) + "/";
+        while (true) {
+            try {
+                if (get(url, false) == HttpURLConnection.HTTP_OK) {
+                    return;
+                }
+            } catch (IOException ignored) {
+                // not up yet
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("Roller did not start within " + STARTUP_TIMEOUT_SECONDS + " seconds");
+            }
+            Thread.sleep(1000);
+        }
+    }
+
+
+    @Test
+    public void testLoad() throws Exception {
+        List<Endpoint> endpoints = new ArrayList<Endpoint>();
+
+        // PageServlet
+        endpoints.add(new Endpoint("page-index") {
+            int send(Random random) throws IOException {
+                return get(baseUrl + "/" + randomHandle(random) + "/", false);
+            }
+        });
+        endpoints.add(new Endpoint("page-permalink") {
+            int send(Random random) throws IOException {
+                return get(baseUrl + "/" + randomHandle(random) + "/entry/"
+                        + SeedData.anchor(random.nextInt(entries)), false);
+            }
+        });
+        endpoints.add(new Endpoint("page-category") {
+            int send(Random random) throws IOException {
+                return get(baseUrl + "/" + randomHandle(random) + "/category/"
+                        + SeedData.category(random.nextInt(entries)), false);
+            }
+        });
+        endpoints.add(new Endpoint("page-tag") {
+            int send(Random random) throws IOException {
+                int weblog = random.nextInt(weblogs);
+                return get(baseUrl + "/" + SeedData.handle(weblog) + "/tags/"
+                        + SeedData.tags(weblog, random.nextInt(entries))[0], false);
+            }
+        });
+
+        // FeedServlet
+        endpoints.add(new Endpoint("feed-entries-atom") {
+            int send(Random random) throws IOException {
+                return get(baseUrl + "/" + randomHandle(random) + "/feed/entries/atom", false);
+            }
+        });
+        endpoints.add(new Endpoint("feed-entries-rss") {
+            int send(Random random) throws IOException {
+                return get(baseUrl + "/" + randomHandle(random) + "/feed/entries/rss", false);
+            }
+        });
+        endpoints.add(new Endpoint("feed-comments-rss") {
+            int send(Random random) throws IOException {
+                return get(baseUrl + "/" + randomHandle(random) + "/feed/comments/rss", false);
+            }
+        });
+
+        // SearchServlet
+        endpoints.add(new Endpoint("search") {
+            int send(Random random) throws IOException {
+                return get(baseUrl + "/" + randomHandle(random) + "/search?q="
+                        + SeedData.word(random.nextInt(100)), false);
+            }
+        });
+
+        // CommentServlet, comments are posted to the entry permalink
+        endpoints.add(new Endpoint("comment-post") {
+            int send(Random random) throws IOException {
+                String form = "name=" + encode("Load Tester")
+                        + "&email=" + encode("tester@example.com")
+                        + "&url=" + encode("http://example.com/")
+                        + "&content=" + encode("Load test comment about "
+                        + SeedData.word(random.nextInt(100)) + " number " + random.nextInt());
+                return post(baseUrl + "/" + randomHandle(random) + "/entry/"
+                        + SeedData.anchor(random.nextInt(entries)),
+                        "application/x-www-form-urlencoded", form, null);
+            }
+        });
+
+        // AtomPub
+        endpoints.add(new Endpoint("atom-service") {
+            int send(Random random) throws IOException {
+                int weblog = random.nextInt(weblogs);
+                return get(baseUrl + "/roller-services/app", basicAuth(weblog));
+            }
+        });
+        endpoints.add(new Endpoint("atom-entries") {
+            int send(Random random) throws IOException {
+                int weblog = random.nextInt(weblogs);
+                return get(baseUrl + "/roller-services/app/" + SeedData.handle(weblog)
+                        + "/entries", basicAuth(weblog));
+            }
+        });
+
+        // XML-RPC
+        endpoints.add(new Endpoint("xmlrpc-recentposts") {
+            int send(Random random) throws IOException {
+                int weblog = random.nextInt(weblogs);
+                String call = "<?xml version=\"1.0\"?><methodCall>"
+                        + "<methodName>metaWeblog.getRecentPosts</methodName><params>"
+                        + "<param><value><string>" + SeedData.handle(weblog) + "</string></value></param>"
+                        + "<param><value><string>" + SeedData.userName(weblog) + "</string></value></param>"
+                        + "<param><value><string>" + SeedData.PASSWORD + "</string></value></param>"
+                        + "<param><value><int>10</int></value></param>"
+                        + "</params></methodCall>";
+                return post(baseUrl + "/roller-services/xmlrpc", "text/xml", call, null);
+            }
+        });
+
+        List<EndpointStats> results = new ArrayList<EndpointStats>();
+        for (Endpoint endpoint : endpoints) {
+            results.add(run(endpoint));
+        }
+
+        writeReport(results);
+
+        for (EndpointStats stats : results) {
+            assertEquals("requests to " + stats.getName(), requests, stats.getCount());
+            assertEquals("server errors from " + stats.getName(), 0, stats.getServerErrors());
+            assertEquals("failed requests to " + stats.getName(), 0, stats.getFailures());
+            assertTrue("client errors from " + stats.getName(), stats.getClientErrors() < requests);
+        }
+    }
+
+
+    /**
+     * Send the configured number of requests to an endpoint from the
+     * configured number of threads.
+     */
+    private EndpointStats run(final Endpoint endpoint) throws InterruptedException {
+        final EndpointStats stats = new EndpointStats(endpoint.name);
+        final AtomicInteger remaining = new AtomicInteger(requests);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.currentTimeMillis();
+        for (int t = 0; t < threads; t++) {
+            final long seed = endpoint.name.hashCode() * 31L + t;
+            executor.execute(new Runnable() {
+                public void run() {
+                    Random random = new Random(seed);
+                    while (remaining.getAndDecrement() > 0) {
+                        long begin = System.nanoTime();
+                        int status;
+                        try {
+                            status = endpoint.send(random);
+                        } catch (IOException ex) {
+                            status = -1;
+                        }
+                        stats.record((System.nanoTime() - begin) / 1000, status);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        stats.setElapsedMillis(System.currentTimeMillis() - start);
+
+        System.out.println(stats);
+        return stats;
+    }
+
+
+    private void writeReport(List<EndpointStats> results) throws IOException {
+        File dir = report.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+
+        PrintWriter out = new PrintWriter(new FileWriter(report));
+        try {
+            out.println("Roller load test: " + weblogs + " weblogs, " + entries
+                    + " entries per weblog, " + threads + " threads, "
+                    + requests + " requests per endpoint");
+            out.println();
+            out.println(EndpointStats.header());
+            for (EndpointStats stats : results) {
+                out.println(stats);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+
+    private static String randomHandle(Random random) {
+        return SeedData.handle(random.nextInt(weblogs));
+    }
+
+
+    private static String basicAuth(int weblog) {
+        String credentials = SeedData.userName(weblog) + ":" + SeedData.PASSWORD;
+        try {
+            return "Basic " + DatatypeConverter.printBase64Binary(credentials.getBytes("UTF-8"));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+
+    private static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+        con.setConnectTimeout(10000);
+        con.setReadTimeout(60000);
+        return con;
+    }
+
+
+    private static int get(String url, boolean followRedirects) throws IOException {
+        HttpURLConnection con = open(url);
+        con.setInstanceFollowRedirects(followRedirects);
+        return complete(con);
+    }
+
+
+    private static int get(String url, String authorization) throws IOException {
+        HttpURLConnection con = open(url);
+        con.setRequestProperty("Authorization", authorization);
+        return complete(con);
+    }
+
+
+    private static int post(String url, String contentType, String body, String authorization)
+            throws IOException {
+        HttpURLConnection con = open(url);
+        con.setInstanceFollowRedirects(false);
+        con.setRequestMethod("POST");
+        con.setDoOutput(true);
+        con.setRequestProperty("Content-Type", contentType);
+        if (authorization != null) {
+            con.setRequestProperty("Authorization", authorization);
+        }
+        OutputStream out = con.getOutputStream();
+        try {
+            out.write(body.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return complete(con);
+    }
+
+
+    /**
+     * Read the whole response so that timings include transferring the body
+     * and the connection can be reused.
+     */
+    private static int complete(HttpURLConnection con) throws IOException {
+        int status = con.getResponseCode();
+        InputStream in = (status >= 400) ? con.getErrorStream() : con.getInputStream();
+        if (in != null) {
+            byte[] buf = new byte[8192];
+            try {
+                while (in.read(buf) != -1) {
+                    // discard
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return status;
+    }
+
+
+    /**
+     * A kind of request sent during the load test.
+     */
+    private abstract static class Endpoint {
+
+        private final String name;
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Send one request, returning the HTTP status.
+         */
+        abstract int send(Random random) throws IOException;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.loadtest;
+
+
+/**
+ * Naming scheme of the seeded data, shared by the seeder and the load
+ * driver so that requests always address existing weblogs and entries.
+ */
+public final class SeedData {
+
+    public static final String PASSWORD = "loadtest";
+
+    public static final String[] CATEGORIES = {"General", "Java", "Status"};
+
+    public static final String[] TAGS = {
+        "roller", "java", "apache", "performance", "velocity", "lucene",
+        "derby", "jetty", "atom", "feeds", "blogging", "release"
+    };
+
+    public static final String[] WORDS = {
+        "roller", "weblog", "entry", "comment", "apache", "java", "velocity",
+        "theme", "feed", "atom", "planet", "cache", "search", "lucene",
+        "performance", "database", "release", "server", "template", "user"
+    };
+
+
+    // non-instantiable
+    private SeedData() {}
+
+
+    public static String userName(int weblog) {
+        return String.format("ltuser%05d", weblog);
+    }
+
+    public static String handle(int weblog) {
+        return String.format("loadtest%05d", weblog);
+    }
+
+    public static String anchor(int entry) {
+        return String.format("loadtest-entry-%03d", entry);
+    }
+
+    public static String category(int entry) {
+        return CATEGORIES[entry % CATEGORIES.length];
+    }
+
+    /**
+     * Tags of an entry, three consecutive ones from the tag list.
+     */
+    public static String[] tags(int weblog, int entry) {
+        String[] tags = new String[3];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = TAGS[(weblog + entry + i) % TAGS.length];
+        }
+        return tags;
+    }
+
+    /**
+     * A search term which is guaranteed to match seeded entries.
+     */
+    public static String word(int i) {
+        return WORDS[i % WORDS.length];
+    }
+
+}